@@ -60,10 +60,10 @@ import cgeo.geocaching.settings.SettingsActivity;
 import cgeo.geocaching.sorting.CacheComparator;
 import cgeo.geocaching.sorting.SortActionProvider;
 import cgeo.geocaching.storage.DataStore;
+import cgeo.geocaching.storage.OfflineStoreQueue;
 import cgeo.geocaching.ui.CacheListAdapter;
 import cgeo.geocaching.ui.WeakReferenceHandler;
 import cgeo.geocaching.ui.dialog.Dialogs;
-import cgeo.geocaching.utils.AndroidRxUtils;
 import cgeo.geocaching.utils.AngleUtils;
 import cgeo.geocaching.utils.CalendarUtils;
 import cgeo.geocaching.utils.DisposableHandler;
@@ -110,10 +110,12 @@ import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -121,12 +123,10 @@ import butterknife.ButterKnife;
 import com.github.amlcurran.showcaseview.targets.ActionViewTarget;
 import com.github.amlcurran.showcaseview.targets.ActionViewTarget.Type;
 import io.reactivex.Observable;
-import io.reactivex.ObservableEmitter;
-import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.ObservableSource;
 import io.reactivex.disposables.CompositeDisposable;
-import io.reactivex.disposables.Disposable;
-import io.reactivex.disposables.Disposables;
 import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
 import io.reactivex.functions.Function;
 import io.reactivex.schedulers.Schedulers;
 import org.apache.commons.collections4.CollectionUtils;
@@ -1072,11 +1072,20 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
     }
 
     private void setFilter(final IFilter filter) {
+        // stored lists are filtered by the database where possible, so they have to be loaded again
+        final boolean reload = type == CacheListType.OFFLINE && (hasSqlPredicate(currentFilter) || hasSqlPredicate(filter));
         currentFilter = filter;
         adapter.setFilter(filter);
         prepareFilterBar();
         updateTitle();
         invalidateOptionsMenuCompatible();
+        if (reload) {
+            refreshCurrentList();
+        }
+    }
+
+    private static boolean hasSqlPredicate(@Nullable final IFilter filter) {
+        return filter != null && filter.toSqlPredicate() != null;
     }
 
     @Override
@@ -1311,57 +1320,63 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
      * Method to asynchronously refresh the caches details.
      */
     private void loadDetails(final DisposableHandler handler, final List<Geocache> caches, final Set<Integer> additionalListIds) {
-        final Observable<Geocache> allCaches;
-        if (Settings.isStoreOfflineMaps()) {
-            allCaches = Observable.create(new ObservableOnSubscribe<Geocache>() {
-                private final Disposable disposable = Disposables.empty();
-
-                @Override
-                public void subscribe(final ObservableEmitter<Geocache> emitter) throws Exception {
-                    emitter.setDisposable(disposable);
-                    final Deque<Geocache> withStaticMaps = new LinkedList<>();
-                    for (final Geocache cache : caches) {
-                        if (disposable.isDisposed()) {
-                            return;
-                        }
-                        if (cache.hasStaticMap()) {
-                            withStaticMaps.push(cache);
-                        } else {
-                            emitter.onNext(cache);
-                        }
-                    }
-                    for (final Geocache cache : withStaticMaps) {
-                        if (disposable.isDisposed()) {
-                            return;
-                        }
-                        emitter.onNext(cache);
-                    }
-                    emitter.onComplete();
-                }
-            }).subscribeOn(Schedulers.io());
-        } else {
-            allCaches = Observable.fromIterable(caches);
+        final Map<String, Geocache> cachesByGeocode = new HashMap<>();
+        for (final Geocache cache : caches) {
+            cachesByGeocode.put(cache.getGeocode(), cache);
         }
-        final Observable<Geocache> loaded = allCaches.flatMap(new Function<Geocache, Observable<Geocache>>() {
+        final Observable<String> loaded = Observable.fromCallable(new Callable<Map<String, Set<Integer>>>() {
             @Override
-            public Observable<Geocache> apply(final Geocache cache) {
-                return Observable.create(new ObservableOnSubscribe<Geocache>() {
-                    @Override
-                    public void subscribe(final ObservableEmitter<Geocache> emitter) throws Exception {
-                        cache.refreshSynchronous(null, additionalListIds);
-                        detailProgress.incrementAndGet();
-                        handler.obtainMessage(DownloadProgress.MSG_LOADED, cache).sendToTarget();
-                        emitter.onComplete();
-                    }
-                }).subscribeOn(AndroidRxUtils.refreshScheduler);
+            public Map<String, Set<Integer>> call() {
+                return getCachesLists(caches, additionalListIds);
             }
-        }).doOnComplete(new Action() {
+        }).flatMap(new Function<Map<String, Set<Integer>>, ObservableSource<String>>() {
+            @Override
+            public ObservableSource<String> apply(final Map<String, Set<Integer>> cachesLists) {
+                return OfflineStoreQueue.store(cachesLists, true, null);
+            }
+        }).subscribeOn(Schedulers.io()).doOnComplete(new Action() {
             @Override
             public void run() {
                 handler.sendEmptyMessage(DownloadProgress.MSG_DONE);
             }
         });
-        handler.add(loaded.subscribe());
+        handler.add(loaded.subscribe(new Consumer<String>() {
+            @Override
+            public void accept(final String geocode) {
+                detailProgress.incrementAndGet();
+                handler.obtainMessage(DownloadProgress.MSG_LOADED, cachesByGeocode.get(geocode)).sendToTarget();
+            }
+        }));
+    }
+
+    /**
+     * Get the lists to store each cache on, in the order in which the caches should be refreshed. If static maps are
+     * stored, the caches which already have static maps go last.
+     */
+    @NonNull
+    private static Map<String, Set<Integer>> getCachesLists(final List<Geocache> caches, final Set<Integer> additionalListIds) {
+        final List<Geocache> ordered;
+        if (Settings.isStoreOfflineMaps()) {
+            ordered = new ArrayList<>(caches.size());
+            final Deque<Geocache> withStaticMaps = new LinkedList<>();
+            for (final Geocache cache : caches) {
+                if (cache.hasStaticMap()) {
+                    withStaticMaps.push(cache);
+                } else {
+                    ordered.add(cache);
+                }
+            }
+            ordered.addAll(withStaticMaps);
+        } else {
+            ordered = caches;
+        }
+        final Map<String, Set<Integer>> cachesLists = new LinkedHashMap<>();
+        for (final Geocache cache : ordered) {
+            final Set<Integer> listIds = new HashSet<>(cache.getLists());
+            listIds.addAll(additionalListIds);
+            cachesLists.put(cache.getGeocode(), listIds);
+        }
+        return cachesLists;
     }
 
     private static final class LastPositionHelper {
@@ -1782,7 +1797,7 @@ public class CacheListActivity extends AbstractListActivity implements FilteredA
                     title = list.title;
                 }
 
-                loader = new OfflineGeocacheListLoader(this, coords, listId);
+                loader = new OfflineGeocacheListLoader(this, coords, listId, currentFilter);
 
                 break;
             case HISTORY:
@@ -4,7 +4,6 @@ import cgeo.geocaching.sensors.Sensors;
 import cgeo.geocaching.settings.Settings;
 import cgeo.geocaching.storage.DataStore;
 import cgeo.geocaching.utils.AndroidRxUtils;
-import cgeo.geocaching.utils.Log;
 import cgeo.geocaching.utils.OOMDumpingUncaughtExceptionHandler;
 
 import android.annotation.SuppressLint;
@@ -110,10 +109,7 @@ public class CgeoApplication extends Application {
     @Override
     public void onTrimMemory(final int level) {
         super.onTrimMemory(level);
-        if (level >= TRIM_MEMORY_MODERATE) {
-            Log.i("Cleaning applications cache to trim memory");
-            DataStore.removeAllFromCache();
-        }
+        DataStore.trimCacheCache(level);
     }
 
     /**
@@ -24,6 +24,7 @@ import cgeo.geocaching.sensors.Sensors;
 import cgeo.geocaching.settings.Settings;
 import cgeo.geocaching.settings.SettingsActivity;
 import cgeo.geocaching.storage.DataStore;
+import cgeo.geocaching.storage.OfflineStoreQueue;
 import cgeo.geocaching.ui.dialog.Dialogs;
 import cgeo.geocaching.utils.AndroidRxUtils;
 import cgeo.geocaching.utils.DatabaseBackupUtils;
@@ -237,6 +238,8 @@ public class MainActivity extends AbstractActionBarActivity {
         init();
 
         checkShowChangelog();
+
+        OfflineStoreQueue.resume();
     }
 
     @Override
@@ -13,9 +13,11 @@ import cgeo.geocaching.maps.LivemapStrategy;
 import cgeo.geocaching.maps.LivemapStrategy.Flag;
 import cgeo.geocaching.models.Geocache;
 import cgeo.geocaching.network.Parameters;
+import cgeo.geocaching.sensors.GeoData;
 import cgeo.geocaching.sensors.Sensors;
 import cgeo.geocaching.settings.Settings;
 import cgeo.geocaching.storage.DataStore;
+import cgeo.geocaching.utils.AndroidRxUtils;
 import cgeo.geocaching.utils.Formatter;
 import cgeo.geocaching.utils.JsonUtils;
 import cgeo.geocaching.utils.LeastRecentlyUsedMap;
@@ -37,16 +39,23 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.functions.BiFunction;
+import io.reactivex.functions.Function;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 
 public class GCMap {
+    /** Maximum number of live map tiles loaded at the same time */
+    private static final int MAX_PARALLEL_TILE_REQUESTS = 6;
+
     private static Viewport lastSearchViewport = null;
     private static final Bitmap ONE_ONE_BITMAP = Bitmap.createBitmap(1, 1, Config.ARGB_8888);
 
@@ -121,110 +130,131 @@ public class GCMap {
      * @return SearchResult. Never null.
      */
     public static SearchResult parseMapJSON(final String data, final Tile tile, final Bitmap bitmap, final LivemapStrategy strategy) {
-        final SearchResult searchResult = new SearchResult();
-
         try {
+            return filterAndPutInCache(parseMapJSONCaches(data, tile, bitmap, strategy), tile);
+        } catch (RuntimeException | ParserException | IOException e) {
+            Log.e("GCMap.parseMapJSON", e);
+        }
+        return new SearchResult();
+    }
 
-            if (StringUtils.isEmpty(data)) {
-                throw new ParserException("No page given");
-            }
-
-            // Example JSON information
-            // {"grid":[....],
-            //  "keys":["","55_55","55_54","17_25","55_53","17_27","17_26","57_53","57_55","3_62","3_61","57_54","3_60","15_27","15_26","15_25","4_60","4_61","4_62","16_25","16_26","16_27","2_62","2_60","2_61","56_53","56_54","56_55"],
-            //  "data":{"55_55":[{"i":"gEaR","n":"Spiel & Sport"}],"55_54":[{"i":"gEaR","n":"Spiel & Sport"}],"17_25":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"55_53":[{"i":"gEaR","n":"Spiel & Sport"}],"17_27":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"17_26":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"57_53":[{"i":"gEaR","n":"Spiel & Sport"}],"57_55":[{"i":"gEaR","n":"Spiel & Sport"}],"3_62":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"3_61":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"57_54":[{"i":"gEaR","n":"Spiel & Sport"}],"3_60":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"15_27":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"15_26":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"15_25":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"4_60":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"4_61":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"4_62":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"16_25":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"16_26":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"16_27":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"2_62":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"2_60":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"2_61":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"56_53":[{"i":"gEaR","n":"Spiel & Sport"}],"56_54":[{"i":"gEaR","n":"Spiel & Sport"}],"56_55":[{"i":"gEaR","n":"Spiel & Sport"}]}
-            //  }
+    /**
+     * Parse the caches of a tile, without applying the filters from the settings.
+     *
+     * @param data
+     *            Retrieved data.
+     */
+    @NonNull
+    private static List<Geocache> parseMapJSONCaches(final String data, final Tile tile, final Bitmap bitmap, final LivemapStrategy strategy) throws ParserException, IOException {
+        if (StringUtils.isEmpty(data)) {
+            throw new ParserException("No page given");
+        }
 
-            final ObjectNode json = (ObjectNode) JsonUtils.reader.readTree(data);
+        // Example JSON information
+        // {"grid":[....],
+        //  "keys":["","55_55","55_54","17_25","55_53","17_27","17_26","57_53","57_55","3_62","3_61","57_54","3_60","15_27","15_26","15_25","4_60","4_61","4_62","16_25","16_26","16_27","2_62","2_60","2_61","56_53","56_54","56_55"],
+        //  "data":{"55_55":[{"i":"gEaR","n":"Spiel & Sport"}],"55_54":[{"i":"gEaR","n":"Spiel & Sport"}],"17_25":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"55_53":[{"i":"gEaR","n":"Spiel & Sport"}],"17_27":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"17_26":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"57_53":[{"i":"gEaR","n":"Spiel & Sport"}],"57_55":[{"i":"gEaR","n":"Spiel & Sport"}],"3_62":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"3_61":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"57_54":[{"i":"gEaR","n":"Spiel & Sport"}],"3_60":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"15_27":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"15_26":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"15_25":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"4_60":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"4_61":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"4_62":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"16_25":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"16_26":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"16_27":[{"i":"Rkzt","n":"EDSSW:  Rathaus "}],"2_62":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"2_60":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"2_61":[{"i":"gOWz","n":"Baumarktserie - Wer Wo Was -"}],"56_53":[{"i":"gEaR","n":"Spiel & Sport"}],"56_54":[{"i":"gEaR","n":"Spiel & Sport"}],"56_55":[{"i":"gEaR","n":"Spiel & Sport"}]}
+        //  }
 
-            final ArrayNode grid = (ArrayNode) json.get("grid");
-            if (grid == null || grid.size() != (UTFGrid.GRID_MAXY + 1)) {
-                throw new ParserException("No grid inside JSON");
-            }
-            final ArrayNode keys = (ArrayNode) json.get("keys");
-            if (keys == null) {
-                throw new ParserException("No keys inside JSON");
-            }
-            final ObjectNode dataObject = (ObjectNode) json.get("data");
-            if (dataObject == null) {
-                throw new ParserException("No data inside JSON");
-            }
+        final ObjectNode json = (ObjectNode) JsonUtils.reader.readTree(data);
 
-            // iterate over the data and construct all caches in this tile
-            final Map<String, List<UTFGridPosition>> positions = new HashMap<>(); // JSON id as key
-            final Map<String, List<UTFGridPosition>> singlePositions = new HashMap<>(); // JSON id as key
-            final LeastRecentlyUsedMap<String, String> nameCache = new LeastRecentlyUsedMap.LruCache<>(2000); // JSON id, cache name
-
-            for (final JsonNode rawKey: keys) {
-                final String key = rawKey.asText();
-                if (StringUtils.isNotBlank(key)) { // index 0 is empty
-                    final UTFGridPosition pos = UTFGridPosition.fromString(key);
-                    final ArrayNode dataForKey = (ArrayNode) dataObject.get(key);
-                    for (final JsonNode cacheInfo: dataForKey) {
-                        final String id = cacheInfo.get("i").asText();
-                        nameCache.put(id, cacheInfo.get("n").asText());
-
-                        List<UTFGridPosition> listOfPositions = positions.get(id);
-                        List<UTFGridPosition> singleListOfPositions = singlePositions.get(id);
-
-                        if (listOfPositions == null) {
-                            listOfPositions = new ArrayList<>();
-                            positions.put(id, listOfPositions);
-                            singleListOfPositions = new ArrayList<>();
-                            singlePositions.put(id, singleListOfPositions);
-                        }
+        final ArrayNode grid = (ArrayNode) json.get("grid");
+        if (grid == null || grid.size() != (UTFGrid.GRID_MAXY + 1)) {
+            throw new ParserException("No grid inside JSON");
+        }
+        final ArrayNode keys = (ArrayNode) json.get("keys");
+        if (keys == null) {
+            throw new ParserException("No keys inside JSON");
+        }
+        final ObjectNode dataObject = (ObjectNode) json.get("data");
+        if (dataObject == null) {
+            throw new ParserException("No data inside JSON");
+        }
 
-                        listOfPositions.add(pos);
-                        if (dataForKey.size() == 1) {
-                            singleListOfPositions.add(pos);
-                        }
+        // iterate over the data and construct all caches in this tile
+        final Map<String, List<UTFGridPosition>> positions = new HashMap<>(); // JSON id as key
+        final Map<String, List<UTFGridPosition>> singlePositions = new HashMap<>(); // JSON id as key
+        final LeastRecentlyUsedMap<String, String> nameCache = new LeastRecentlyUsedMap.LruCache<>(2000); // JSON id, cache name
+
+        for (final JsonNode rawKey: keys) {
+            final String key = rawKey.asText();
+            if (StringUtils.isNotBlank(key)) { // index 0 is empty
+                final UTFGridPosition pos = UTFGridPosition.fromString(key);
+                final ArrayNode dataForKey = (ArrayNode) dataObject.get(key);
+                for (final JsonNode cacheInfo: dataForKey) {
+                    final String id = cacheInfo.get("i").asText();
+                    nameCache.put(id, cacheInfo.get("n").asText());
+
+                    List<UTFGridPosition> listOfPositions = positions.get(id);
+                    List<UTFGridPosition> singleListOfPositions = singlePositions.get(id);
+
+                    if (listOfPositions == null) {
+                        listOfPositions = new ArrayList<>();
+                        positions.put(id, listOfPositions);
+                        singleListOfPositions = new ArrayList<>();
+                        singlePositions.put(id, singleListOfPositions);
+                    }
 
+                    listOfPositions.add(pos);
+                    if (dataForKey.size() == 1) {
+                        singleListOfPositions.add(pos);
                     }
+
                 }
             }
+        }
 
-            final List<Geocache> caches = new ArrayList<>();
-            for (final Entry<String, List<UTFGridPosition>> entry : positions.entrySet()) {
-                final String id = entry.getKey();
-                final List<UTFGridPosition> pos = entry.getValue();
-                final UTFGridPosition xy = UTFGrid.getPositionInGrid(pos);
-                final Geocache cache = new Geocache();
-                cache.setDetailed(false);
-                cache.setReliableLatLon(false);
-                cache.setGeocode(id);
-                cache.setName(nameCache.get(id));
-                cache.setCoords(tile.getCoord(xy), tile.getZoomLevel());
-                if (strategy.flags.contains(LivemapStrategy.Flag.PARSE_TILES) && bitmap != null) {
-                    for (final UTFGridPosition singlePos : singlePositions.get(id)) {
-                        if (IconDecoder.parseMapPNG(cache, bitmap, singlePos, tile.getZoomLevel())) {
-                            break; // cache parsed
-                        }
+        // read the pixels of the tile only once for all caches
+        final IconDecoder iconDecoder = strategy.flags.contains(LivemapStrategy.Flag.PARSE_TILES) && bitmap != null ? new IconDecoder(bitmap, tile.getZoomLevel()) : null;
+        final List<Geocache> caches = new ArrayList<>();
+        for (final Entry<String, List<UTFGridPosition>> entry : positions.entrySet()) {
+            final String id = entry.getKey();
+            final List<UTFGridPosition> pos = entry.getValue();
+            final UTFGridPosition xy = UTFGrid.getPositionInGrid(pos);
+            final Geocache cache = new Geocache();
+            cache.setDetailed(false);
+            cache.setReliableLatLon(false);
+            cache.setGeocode(id);
+            cache.setName(nameCache.get(id));
+            cache.setCoords(tile.getCoord(xy), tile.getZoomLevel());
+            if (iconDecoder != null) {
+                for (final UTFGridPosition singlePos : singlePositions.get(id)) {
+                    if (iconDecoder.parseMapPNG(cache, singlePos)) {
+                        break; // cache parsed
                     }
-                } else {
-                    cache.setType(CacheType.UNKNOWN, tile.getZoomLevel());
-                }
-
-                boolean exclude = false;
-                if (Settings.isExcludeMyCaches() && (cache.isFound() || cache.isOwner())) { // workaround for BM
-                    exclude = true;
-                }
-                if (Settings.isExcludeDisabledCaches() && cache.isDisabled()) {
-                    exclude = true;
-                }
-                if (!Settings.getCacheType().contains(cache) && cache.getType() != CacheType.UNKNOWN) { // workaround for BM
-                    exclude = true;
-                }
-                if (!exclude) {
-                    caches.add(cache);
                 }
+            } else {
+                cache.setType(CacheType.UNKNOWN, tile.getZoomLevel());
             }
-            searchResult.addAndPutInCache(caches);
-            Log.d("Retrieved " + searchResult.getCount() + " caches for tile " + tile.toString());
-
-        } catch (RuntimeException | ParserException | IOException e) {
-            Log.e("GCMap.parseMapJSON", e);
+            caches.add(cache);
         }
+        return caches;
+    }
 
+    /**
+     * Apply the filters from the settings to the caches of a tile, and put the remaining caches into the CacheCache.
+     */
+    @NonNull
+    private static SearchResult filterAndPutInCache(@NonNull final List<Geocache> tileCaches, final Tile tile) {
+        final List<Geocache> caches = new ArrayList<>(tileCaches.size());
+        for (final Geocache cache : tileCaches) {
+            boolean exclude = false;
+            if (Settings.isExcludeMyCaches() && (cache.isFound() || cache.isOwner())) { // workaround for BM
+                exclude = true;
+            }
+            if (Settings.isExcludeDisabledCaches() && cache.isDisabled()) {
+                exclude = true;
+            }
+            if (!Settings.getCacheType().contains(cache) && cache.getType() != CacheType.UNKNOWN) { // workaround for BM
+                exclude = true;
+            }
+            if (!exclude) {
+                caches.add(cache);
+            }
+        }
+        final SearchResult searchResult = new SearchResult();
+        searchResult.addAndPutInCache(caches);
+        Log.d("Retrieved " + searchResult.getCount() + " caches for tile " + tile.toString());
         return searchResult;
     }
 
@@ -238,7 +268,8 @@ public class GCMap {
      */
     @NonNull
     public static SearchResult searchByViewport(@NonNull final Viewport viewport, @Nullable final MapTokens tokens) {
-        final int speed = (int) Sensors.getInstance().currentGeo().getSpeed() * 60 * 60 / 1000; // in km/h
+        final GeoData geo = Sensors.getInstance().currentGeo();
+        final int speed = (int) geo.getSpeed() * 60 * 60 / 1000; // in km/h
         LivemapStrategy strategy = Settings.getLiveMapStrategy();
         if (strategy == LivemapStrategy.AUTO) {
             strategy = speed >= 30 ? LivemapStrategy.FAST : LivemapStrategy.DETAILED;
@@ -246,6 +277,9 @@ public class GCMap {
 
         final SearchResult result = searchByViewport(viewport, tokens, strategy);
 
+        // load the area ahead in the background while moving
+        LivemapPrefetcher.prefetch(viewport, geo, tokens, strategy);
+
         if (Settings.isDebug()) {
             final StringBuilder text = new StringBuilder(Formatter.SEPARATOR).append(strategy.getL10n()).append(Formatter.SEPARATOR).append(Units.getSpeed(speed));
             result.setUrl(result.getUrl() + text);
@@ -285,65 +319,22 @@ public class GCMap {
                 searchResult.setUrl(new StringBuilder().append(tiles.iterator().next().getZoomLevel()).append(Formatter.SEPARATOR).append(searchResult.getUrl()).toString());
             }
 
+            final List<Tile> missingTiles = new ArrayList<>(tiles.size());
             for (final Tile tile : tiles) {
                 if (!Tile.cache.contains(tile)) {
-                    final Parameters params = new Parameters(
-                            "x", String.valueOf(tile.getX()),
-                            "y", String.valueOf(tile.getY()),
-                            "z", String.valueOf(tile.getZoomLevel()),
-                            "ep", "1",
-                            "app", "cgeo");
-                    if (tokens != null) {
-                        params.put("k", tokens.getUserSession(), "st", tokens.getSessionToken());
-                    }
-                    if (Settings.isExcludeMyCaches()) { // works only for PM
-                        params.put("hf", "1", "hh", "1"); // hide found, hide hidden
-                    }
-                    // ect: exclude cache type (probably), comma separated list
-                    if (Settings.getCacheType() != CacheType.ALL) {
-                        params.put("ect", getCacheTypeFilter(Settings.getCacheType()));
-                    }
-                    if (tile.getZoomLevel() != 14) {
-                        params.put("_", String.valueOf(System.currentTimeMillis()));
-                    }
-
-                    // The PNG must be requested first, otherwise the following request would always return with 204 - No Content
-                    final Single<Bitmap> bitmapObs = Tile.requestMapTile(params).onErrorResumeNext(Single.just(ONE_ONE_BITMAP));
-                    final Single<String> dataObs = Tile.requestMapInfo(GCConstants.URL_MAP_INFO, params, GCConstants.URL_LIVE_MAP).onErrorResumeNext(Single.just(""));
-                    try {
-                        Single.zip(bitmapObs, dataObs, new BiFunction<Bitmap, String, String>() {
-                            @Override
-                            public String apply(final Bitmap bitmap, final String data) {
-                                final boolean validBitmap = bitmap.getWidth() == Tile.TILE_SIZE && bitmap.getHeight() == Tile.TILE_SIZE;
-
-                                if (StringUtils.isEmpty(data)) {
-                                    Log.w("GCMap.searchByViewport: No data from server for tile (" + tile.getX() + "/" + tile.getY() + ")");
-                                } else {
-                                    final SearchResult search = parseMapJSON(data, tile, validBitmap ? bitmap : null, strategy);
-                                    if (CollectionUtils.isEmpty(search.getGeocodes())) {
-                                        Log.w("GCMap.searchByViewport: No cache parsed for viewport " + viewport);
-                                    } else {
-                                        synchronized (searchResult) {
-                                            searchResult.addSearchResult(search);
-                                        }
-                                    }
-                                    synchronized (Tile.cache) {
-                                        Tile.cache.add(tile);
-                                    }
-                                }
-
-                                // release native bitmap memory if we didn't get the placeholder
-                                if (bitmap != ONE_ONE_BITMAP) {
-                                    bitmap.recycle();
-                                }
+                    missingTiles.add(tile);
+                }
+            }
 
-                                return data;
-                            }
-                        }).toCompletable().blockingAwait();
-                    } catch (final Exception e) {
-                        Log.e("GCMap.searchByViewPort: connection error", e);
-                    }
+            // fetch the tiles concurrently, and merge the results in this thread
+            final List<SearchResult> tileResults = Observable.fromIterable(missingTiles).flatMap(new Function<Tile, Observable<SearchResult>>() {
+                @Override
+                public Observable<SearchResult> apply(final Tile tile) {
+                    return loadTile(tile, tokens, strategy, viewport).subscribeOn(AndroidRxUtils.networkScheduler).toObservable();
                 }
+            }, MAX_PARALLEL_TILE_REQUESTS).toList().blockingGet();
+            for (final SearchResult tileResult : tileResults) {
+                searchResult.addSearchResult(tileResult);
             }
 
             // Check for vanished found caches
@@ -367,6 +358,107 @@ public class GCMap {
         return searchResult;
     }
 
+    /**
+     * Load the caches of a single live map tile. The tile is added to the tile cache if the server returned data.
+     * Recently loaded tiles are served from the {@link TileStore} instead, and older stored tiles are used if the
+     * server cannot be reached.
+     *
+     * @return the caches of the tile, or nothing if no caches could be loaded
+     */
+    @NonNull
+    static Maybe<SearchResult> loadTile(@NonNull final Tile tile, @Nullable final MapTokens tokens, @NonNull final LivemapStrategy strategy, @NonNull final Viewport viewport) {
+        return Maybe.fromCallable(new Callable<SearchResult>() {
+            @Override
+            public SearchResult call() {
+                final boolean parseTiles = strategy.flags.contains(LivemapStrategy.Flag.PARSE_TILES);
+                final TileStore store = TileStore.getInstance();
+                final String storeKey = TileStore.getKey(tile, Settings.isExcludeMyCaches() + "|" + Settings.getCacheType().id + "|" + parseTiles);
+                final TileStore.StoredTile stored = store.load(storeKey, tile);
+                if (stored != null && stored.isFresh()) {
+                    return toTileResult(stored.caches, tile, viewport, true);
+                }
+
+                final Parameters params = new Parameters(
+                        "x", String.valueOf(tile.getX()),
+                        "y", String.valueOf(tile.getY()),
+                        "z", String.valueOf(tile.getZoomLevel()),
+                        "ep", "1",
+                        "app", "cgeo");
+                if (tokens != null) {
+                    params.put("k", tokens.getUserSession(), "st", tokens.getSessionToken());
+                }
+                if (Settings.isExcludeMyCaches()) { // works only for PM
+                    params.put("hf", "1", "hh", "1"); // hide found, hide hidden
+                }
+                // ect: exclude cache type (probably), comma separated list
+                if (Settings.getCacheType() != CacheType.ALL) {
+                    params.put("ect", getCacheTypeFilter(Settings.getCacheType()));
+                }
+                if (tile.getZoomLevel() != 14) {
+                    params.put("_", String.valueOf(System.currentTimeMillis()));
+                }
+
+                try {
+                    // The PNG must be requested first, otherwise the following request would always return with 204 - No Content.
+                    // Both requests are issued from this thread in that order, the bitmap is decoded while the data is loaded.
+                    final Single<Bitmap> bitmapObs = Tile.requestMapTile(params).onErrorResumeNext(Single.just(ONE_ONE_BITMAP));
+                    final Single<String> dataObs = Tile.requestMapInfo(GCConstants.URL_MAP_INFO, params, GCConstants.URL_LIVE_MAP).onErrorResumeNext(Single.just(""));
+                    final List<Geocache> caches = Single.zip(bitmapObs, dataObs, new BiFunction<Bitmap, String, List<Geocache>>() {
+                        @Override
+                        public List<Geocache> apply(final Bitmap bitmap, final String data) throws ParserException, IOException {
+                            try {
+                                if (StringUtils.isEmpty(data)) {
+                                    throw new IOException("No data from server for tile (" + tile.getX() + "/" + tile.getY() + ")");
+                                }
+                                final boolean validBitmap = bitmap.getWidth() == Tile.TILE_SIZE && bitmap.getHeight() == Tile.TILE_SIZE;
+                                final List<Geocache> tileCaches = parseMapJSONCaches(data, tile, validBitmap ? bitmap : null, strategy);
+                                // do not store tiles without cache types if they could not be decoded
+                                if (validBitmap || !parseTiles) {
+                                    store.save(storeKey, tileCaches);
+                                }
+                                return tileCaches;
+                            } finally {
+                                // release native bitmap memory if we didn't get the placeholder
+                                if (bitmap != ONE_ONE_BITMAP) {
+                                    bitmap.recycle();
+                                }
+                            }
+                        }
+                    }).blockingGet();
+                    return toTileResult(caches, tile, viewport, true);
+                } catch (final Exception e) {
+                    if (stored != null) {
+                        Log.w("GCMap.searchByViewport: using stored tile (" + tile.getX() + "/" + tile.getY() + ") after error", e);
+                        // do not remember the tile as loaded, so that it is requested again next time
+                        return toTileResult(stored.caches, tile, viewport, false);
+                    }
+                    Log.e("GCMap.searchByViewPort: connection error", e);
+                    return null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Filter the caches of a loaded tile, and optionally add the tile to the tile cache.
+     *
+     * @return the caches of the tile, or {@code null} if there are none
+     */
+    @Nullable
+    private static SearchResult toTileResult(@NonNull final List<Geocache> caches, @NonNull final Tile tile, @NonNull final Viewport viewport, final boolean addToTileCache) {
+        if (addToTileCache) {
+            synchronized (Tile.cache) {
+                Tile.cache.add(tile);
+            }
+        }
+        final SearchResult search = filterAndPutInCache(caches, tile);
+        if (CollectionUtils.isEmpty(search.getGeocodes())) {
+            Log.w("GCMap.searchByViewport: No cache parsed for viewport " + viewport);
+            return null;
+        }
+        return search;
+    }
+
     /**
      * Creates a list of caches types to filter on the live map (exclusion string)
      *
@@ -8,7 +8,10 @@ import android.graphics.Bitmap;
 
 /**
  * icon decoder for cache icons
- *
+ * <p>
+ * An instance decodes the icons of all caches of one tile. It reads the pixels of the tile only once, and classifies
+ * the pixel colors using a lookup table per zoom band, which is shared by all instances.
+ * </p>
  */
 final class IconDecoder {
     private static final int CT_TRADITIONAL = 0;
@@ -24,55 +27,130 @@ final class IconDecoder {
     private static final int CT_WHERIGO = 10;
     private static final int CT_WEBCAM = 11;
     private static final int CT_LETTERBOX = 12;
+    private static final int CT_COUNT = 13;
+    /** pseudo type of pixels which appear on more than one cache type */
+    private static final int CT_IGNORED = -1;
 
-    private IconDecoder() {
-        throw new IllegalStateException("utility class");
+    /** size of the icon area of a single UTFGrid position in pixels */
+    private static final int ICON_AREA = 4;
+
+    private static final ColorTable TABLE_11 = new ColorTable(11);
+    private static final ColorTable TABLE_13 = new ColorTable(13);
+    private static final ColorTable TABLE_14 = new ColorTable(14);
+
+    private final int[] pixels;
+    /** position of the read pixels in the tile */
+    private final int originX;
+    private final int originY;
+    private final int width;
+    private final int height;
+    private final int zoomlevel;
+    private final ColorTable table;
+    /** number of pixels detected per type, reused for all positions */
+    private final int[] typeCounts = new int[CT_COUNT];
+
+    /**
+     * Lookup table from the RGB value of a pixel to its cache type in one zoom band. The table is filled lazily, as a
+     * table for all 2^24 colors would be too large.
+     * <p>
+     * Each slot holds the color and the type packed into one int, so that concurrent readers and writers never see a
+     * partially written entry without any locking. A lost update only means that the type of a color is computed
+     * again.
+     * </p>
+     */
+    private static final class ColorTable {
+        private static final int SIZE = 1 << 14;
+        private static final int MAX_PROBES = 8;
+        private static final int TYPE_BITS = 5;
+        private static final int TYPE_MASK = (1 << TYPE_BITS) - 1;
+
+        private final int zoomlevel;
+        private final int[] slots = new int[SIZE];
+
+        ColorTable(final int zoomlevel) {
+            this.zoomlevel = zoomlevel;
+        }
+
+        int getType(final int rgb) {
+            final int hash = (rgb * 0x9E3779B1) >>> 18;
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                final int index = (hash + probe) & (SIZE - 1);
+                final int slot = slots[index];
+                if (slot == 0) {
+                    final int type = classify(rgb, zoomlevel);
+                    // store type + 2, so that an empty slot is never a valid entry
+                    slots[index] = (rgb << TYPE_BITS) | (type + 2);
+                    return type;
+                }
+                if (slot >>> TYPE_BITS == rgb) {
+                    return (slot & TYPE_MASK) - 2;
+                }
+            }
+            // neighborhood full, do not cache this color
+            return classify(rgb, zoomlevel);
+        }
     }
 
-    static boolean parseMapPNG(final Geocache cache, final Bitmap bitmap, final UTFGridPosition xy, final int zoomlevel) {
-        final int topX = xy.getX() * 4;
-        final int topY = xy.getY() * 4;
-        final int bitmapWidth = bitmap.getWidth();
-        final int bitmapHeight = bitmap.getHeight();
+    /**
+     * Read the pixels of a tile for decoding the icons of its caches.
+     */
+    IconDecoder(final Bitmap bitmap, final int zoomlevel) {
+        this(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), zoomlevel);
+    }
+
+    private IconDecoder(final Bitmap bitmap, final int originX, final int originY, final int width, final int height, final int zoomlevel) {
+        this.originX = originX;
+        this.originY = originY;
+        this.width = width;
+        this.height = height;
+        pixels = new int[width * height];
+        bitmap.getPixels(pixels, 0, width, originX, originY, width, height);
+        this.zoomlevel = zoomlevel;
+        table = getTable(zoomlevel);
+    }
 
-        if ((topX < 0) || (topY < 0) || (topX + 4 > bitmapWidth) || (topY + 4 > bitmapHeight)) {
+    /**
+     * Decode a single icon. Use an instance to decode several icons of the same tile.
+     */
+    static boolean parseMapPNG(final Geocache cache, final Bitmap bitmap, final UTFGridPosition xy, final int zoomlevel) {
+        final int topX = xy.getX() * ICON_AREA;
+        final int topY = xy.getY() * ICON_AREA;
+        if ((topX < 0) || (topY < 0) || (topX + ICON_AREA > bitmap.getWidth()) || (topY + ICON_AREA > bitmap.getHeight())) {
             return false; //out of image position
         }
+        return new IconDecoder(bitmap, topX, topY, ICON_AREA, ICON_AREA, zoomlevel).parseMapPNG(cache, xy);
+    }
 
-        int numberOfDetections = 9; //for level 12 and 13
-        if (zoomlevel < 12) {
-            numberOfDetections = 5;
-        }
-        if (zoomlevel > 13) {
-            numberOfDetections = 9;
+    /**
+     * Decode the icon at the given position, and set the type or state of the cache if it could be detected.
+     *
+     * @return {@code true} if the icon could be decoded
+     */
+    boolean parseMapPNG(final Geocache cache, final UTFGridPosition xy) {
+        final int topX = xy.getX() * ICON_AREA - originX;
+        final int topY = xy.getY() * ICON_AREA - originY;
+
+        if ((topX < 0) || (topY < 0) || (topX + ICON_AREA > width) || (topY + ICON_AREA > height)) {
+            return false; //out of image position
         }
 
-        final int[] pngType = new int[numberOfDetections];
-        for (int x = topX; x < topX + 4; x++) {
-            for (int y = topY; y < topY + 4; y++) {
-                final int color = bitmap.getPixel(x, y);
+        final int[] pngType = typeCounts;
+        for (int i = 0; i < CT_COUNT; i++) {
+            pngType[i] = 0;
+        }
+        for (int y = topY; y < topY + ICON_AREA; y++) {
+            final int rowOffset = y * width;
+            for (int x = topX; x < topX + ICON_AREA; x++) {
+                final int color = pixels[rowOffset + x];
 
                 if ((color >>> 24) != 255) {
                     continue; //transparent pixels (or semi_transparent) are only shadows of border
                 }
 
-                final int r = (color & 0xFF0000) >> 16;
-                final int g = (color & 0xFF00) >> 8;
-                final int b = color & 0xFF;
-
-                if (isPixelDuplicated(r, g, b, zoomlevel)) {
-                    continue;
-                }
-
-                final int type;
-                if (zoomlevel < 12) {
-                    type = getCacheTypeFromPixel11(r, g, b);
-                } else if (zoomlevel > 13) {
-                    type = getCacheTypeFromPixel14(r, g, b);
-                } else {
-                    type = getCacheTypeFromPixel13(r, g, b);
+                final int type = table.getType(color & 0xFFFFFF);
+                if (type != CT_IGNORED) {
+                    pngType[type]++;
                 }
-                pngType[type]++;
             }
         }
 
@@ -132,6 +210,36 @@ final class IconDecoder {
         return false;
     }
 
+    private static ColorTable getTable(final int zoomlevel) {
+        if (zoomlevel < 12) {
+            return TABLE_11;
+        }
+        if (zoomlevel > 13) {
+            return TABLE_14;
+        }
+        return TABLE_13;
+    }
+
+    /**
+     * @return the type detected from a pixel color, or {@link #CT_IGNORED} if the color appears on more than one type
+     */
+    private static int classify(final int rgb, final int zoomlevel) {
+        final int r = (rgb & 0xFF0000) >> 16;
+        final int g = (rgb & 0xFF00) >> 8;
+        final int b = rgb & 0xFF;
+
+        if (isPixelDuplicated(r, g, b, zoomlevel)) {
+            return CT_IGNORED;
+        }
+        if (zoomlevel < 12) {
+            return getCacheTypeFromPixel11(r, g, b);
+        }
+        if (zoomlevel > 13) {
+            return getCacheTypeFromPixel14(r, g, b);
+        }
+        return getCacheTypeFromPixel13(r, g, b);
+    }
+
     /**
      * A method that returns true if pixel color appears on more than one cache type and shall be excluded from parsing
      *
@@ -145,7 +253,7 @@ final class IconDecoder {
      *            zoom level of map
      * @return true if parsing should not be performed
      */
-    private static boolean isPixelDuplicated(final int r, final int g, final int b, final int zoomlevel) {
+    static boolean isPixelDuplicated(final int r, final int g, final int b, final int zoomlevel) {
         if ((r == g) && (g == b)) {
             return true;
         }
@@ -179,7 +287,7 @@ final class IconDecoder {
      *            Blue component of pixel (from 0 - 255)
      * @return Value from 0 to 6 representing detected type or state of the cache.
      */
-    private static int getCacheTypeFromPixel13(final int r, final int g, final int b) {
+    static int getCacheTypeFromPixel13(final int r, final int g, final int b) {
         if (b < 139) {
             if (r < 115) {
                 if (b < 82) {
@@ -553,7 +661,7 @@ final class IconDecoder {
      *            Blue component of pixel (from 0 - 255)
      * @return Value from 0 to 6 representing detected type or state of the cache.
      */
-    private static int getCacheTypeFromPixel14(final int r, final int g, final int b) {
+    static int getCacheTypeFromPixel14(final int r, final int g, final int b) {
         if (b < 150) {
             if (r < 118) {
                 if (b < 93) {
@@ -996,7 +1104,7 @@ final class IconDecoder {
      *            Blue component of pixel (from 0 - 255)
      * @return Value from 0 to 4 representing detected type or state of the cache.
      */
-    private static int getCacheTypeFromPixel11(final int r, final int g, final int b) {
+    static int getCacheTypeFromPixel11(final int r, final int g, final int b) {
         if (r < 182) {
             if (b < 158) {
                 if (g < 103) {
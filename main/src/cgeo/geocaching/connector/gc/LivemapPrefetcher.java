@@ -0,0 +1,135 @@
+package cgeo.geocaching.connector.gc;
+
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.location.Viewport;
+import cgeo.geocaching.maps.LivemapStrategy;
+import cgeo.geocaching.sensors.GeoData;
+import cgeo.geocaching.utils.Log;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.Scheduler;
+import io.reactivex.internal.schedulers.RxThreadFactory;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Loads the live map tiles of the area ahead while moving, so that they are already known when the map gets there.
+ * <p>
+ * The device position is projected along the current bearing for the distance covered in {@link #LOOKAHEAD_SECONDS},
+ * and the missing tiles of the viewport around that position are loaded one by one on a low priority thread. At most
+ * {@link #TILES_PER_SESSION} tiles are prefetched per live map session.
+ * </p>
+ */
+final class LivemapPrefetcher {
+
+    /** minimum speed in m/s to prefetch, to ignore the jitter of the location when standing still */
+    private static final float MIN_SPEED = 3.0f;
+    private static final int LOOKAHEAD_SECONDS = 90;
+    private static final int TILES_PER_SESSION = 60;
+
+    private static final Scheduler prefetchScheduler = Schedulers.from(Executors.newSingleThreadExecutor(new RxThreadFactory("prefetch-", Thread.MIN_PRIORITY)));
+    private static final AtomicBoolean running = new AtomicBoolean(false);
+
+    private static final Object budgetLock = new Object();
+    @Nullable private static MapTokens budgetTokens = null;
+    private static int remainingTiles = TILES_PER_SESSION;
+
+    private LivemapPrefetcher() {
+        // utility class
+    }
+
+    /**
+     * Prefetch the tiles ahead of the current position in the background, unless a prefetch is already running.
+     *
+     * @param viewport
+     *            the viewport which has just been loaded
+     */
+    static void prefetch(@NonNull final Viewport viewport, @NonNull final GeoData geo, @Nullable final MapTokens tokens, @NonNull final LivemapStrategy strategy) {
+        if (!geo.hasBearing() || geo.getSpeed() < MIN_SPEED || !strategy.flags.contains(LivemapStrategy.Flag.LOAD_TILES)) {
+            return;
+        }
+        final Viewport ahead = getViewportAhead(viewport, geo.getCoords(), geo.getBearing(), geo.getSpeed());
+        if (ahead == null || !running.compareAndSet(false, true)) {
+            return;
+        }
+        prefetchScheduler.scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    loadMissingTiles(ahead, tokens, strategy);
+                } catch (final Exception e) {
+                    Log.w("LivemapPrefetcher.prefetch", e);
+                } finally {
+                    running.set(false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Get the viewport of the same size as the given one, around the position expected after
+     * {@link #LOOKAHEAD_SECONDS}. The position is projected at most one viewport diagonal ahead, so that the prefetched
+     * area stays next to the shown one.
+     *
+     * @param viewport
+     *            the searched viewport, which is {@link LivemapStrategy#SEARCH_FACTOR} times the shown one
+     * @param speed
+     *            speed in m/s
+     * @return the viewport ahead, or {@code null} if the position is outside of the shown viewport
+     */
+    @Nullable
+    static Viewport getViewportAhead(@NonNull final Viewport viewport, @NonNull final Geopoint position, final float bearing, final float speed) {
+        if (!viewport.resize(1 / LivemapStrategy.SEARCH_FACTOR).contains(position)) {
+            return null;
+        }
+        final float diagonal = viewport.bottomLeft.distanceTo(viewport.topRight);
+        final double distance = Math.min(speed * LOOKAHEAD_SECONDS / 1000.0, diagonal);
+        final Geopoint center = position.project(bearing, distance);
+        return new Viewport(center, viewport.getLatitudeSpan(), viewport.getLongitudeSpan());
+    }
+
+    private static void loadMissingTiles(@NonNull final Viewport viewport, @Nullable final MapTokens tokens, @NonNull final LivemapStrategy strategy) {
+        final List<Tile> missingTiles = new ArrayList<>();
+        for (final Tile tile : Tile.getTilesForViewport(viewport)) {
+            if (!Tile.cache.contains(tile)) {
+                missingTiles.add(tile);
+            }
+        }
+        int loaded = 0;
+        for (final Tile tile : missingTiles) {
+            if (!takeFromBudget(tokens)) {
+                Log.d("LivemapPrefetcher: tile budget of the session used up");
+                break;
+            }
+            GCMap.loadTile(tile, tokens, strategy, viewport).blockingGet();
+            loaded++;
+        }
+        Log.d(String.format(Locale.ENGLISH, "LivemapPrefetcher: prefetched %d of %d missing tiles around %s", loaded, missingTiles.size(), viewport.getCenter()));
+    }
+
+    /**
+     * Take one tile from the budget of the live map session, starting a new budget when the session tokens changed.
+     *
+     * @return {@code false} if the budget is used up
+     */
+    private static boolean takeFromBudget(@Nullable final MapTokens tokens) {
+        synchronized (budgetLock) {
+            if (tokens != budgetTokens) {
+                budgetTokens = tokens;
+                remainingTiles = TILES_PER_SESSION;
+            }
+            if (remainingTiles <= 0) {
+                return false;
+            }
+            remainingTiles--;
+            return true;
+        }
+    }
+}
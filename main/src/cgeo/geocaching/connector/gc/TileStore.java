@@ -0,0 +1,287 @@
+package cgeo.geocaching.connector.gc;
+
+import cgeo.geocaching.CgeoApplication;
+import cgeo.geocaching.enumerations.CacheType;
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.settings.Settings;
+import cgeo.geocaching.utils.FileUtils;
+import cgeo.geocaching.utils.JsonUtils;
+import cgeo.geocaching.utils.Log;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Disk store for the parsed content of live map tiles.
+ * <p>
+ * For each tile, the caches parsed from the UTFGrid together with the types decoded from the PNG are stored in a small
+ * JSON file. A stored tile is used instead of the network for {@link #FRESH_MS}. Afterwards, it is only used if the
+ * tile cannot be loaded from the network. Stored tiles are deleted when they are older than {@link #MAX_AGE_MS}, or,
+ * oldest first, when the store exceeds its size limit.
+ * </p>
+ */
+final class TileStore {
+
+    /** Age until which a stored tile is used without asking the server */
+    static final long FRESH_MS = TimeUnit.HOURS.toMillis(12);
+    /** Age after which a stored tile is not used anymore, not even without connectivity */
+    static final long MAX_AGE_MS = TimeUnit.DAYS.toMillis(30);
+    private static final long DEFAULT_MAX_BYTES = 10 * 1024 * 1024;
+    private static final String SUFFIX = ".json";
+
+    private static TileStore instance;
+
+    @NonNull private final File directory;
+    private final long maxBytes;
+    /** total size of the stored tiles, or -1 if not yet known. Guarded by this. */
+    private long storedBytes = -1;
+
+    /**
+     * Parsed content of a stored tile.
+     */
+    static final class StoredTile {
+        @NonNull final List<Geocache> caches;
+        final long time;
+
+        StoredTile(@NonNull final List<Geocache> caches, final long time) {
+            this.caches = caches;
+            this.time = time;
+        }
+
+        boolean isFresh() {
+            return System.currentTimeMillis() - time < FRESH_MS;
+        }
+    }
+
+    TileStore(@NonNull final File directory, final long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    @NonNull
+    static synchronized TileStore getInstance() {
+        if (instance == null) {
+            instance = new TileStore(new File(CgeoApplication.getInstance().getCacheDir(), "livemap-tiles"), DEFAULT_MAX_BYTES);
+        }
+        return instance;
+    }
+
+    /**
+     * Compute the key of a tile. Tiles are stored separately for each user and filter, as the server returns different
+     * content for them.
+     *
+     * @param filter
+     *            the filter parameters used for requesting the tile
+     */
+    @NonNull
+    static String getKey(@NonNull final Tile tile, @NonNull final String filter) {
+        final String variant = StringUtils.defaultString(Settings.getUserName()) + '|' + filter;
+        return tile.getZoomLevel() + "_" + tile.getX() + "_" + tile.getY() + "_" + Integer.toHexString(variant.hashCode());
+    }
+
+    /**
+     * @return the stored content of the tile, or {@code null} if the tile is not stored or too old
+     */
+    @Nullable
+    StoredTile load(@NonNull final String key, @NonNull final Tile tile) {
+        final File file = getFile(key);
+        final long time = file.lastModified();
+        if (time == 0) {
+            return null;
+        }
+        if (System.currentTimeMillis() - time > MAX_AGE_MS) {
+            delete(file);
+            return null;
+        }
+        InputStream input = null;
+        try {
+            input = new FileInputStream(file);
+            final ArrayNode json = (ArrayNode) JsonUtils.reader.readTree(input).get("caches");
+            final List<Geocache> caches = new ArrayList<>(json.size());
+            for (final JsonNode node : json) {
+                caches.add(createCache(node, tile.getZoomLevel()));
+            }
+            return new StoredTile(caches, time);
+        } catch (IOException | RuntimeException e) {
+            Log.w("TileStore.load: cannot read " + file, e);
+            delete(file);
+            return null;
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * Store the content of a tile, replacing an already stored content.
+     */
+    void save(@NonNull final String key, @NonNull final List<Geocache> caches) {
+        final ObjectNode json = JsonUtils.factory.objectNode();
+        final ArrayNode array = json.putArray("caches");
+        for (final Geocache cache : caches) {
+            array.add(toJson(cache));
+        }
+        synchronized (this) {
+            if (!FileUtils.mkdirs(directory)) {
+                return;
+            }
+            final File file = getFile(key);
+            final File tempFile = new File(directory, key + ".tmp");
+            try {
+                JsonUtils.writer.writeValue(tempFile, json);
+                initStoredBytes();
+                storedBytes -= file.length();
+                if (!tempFile.renameTo(file)) {
+                    throw new IOException("cannot rename " + tempFile);
+                }
+                storedBytes += file.length();
+            } catch (final IOException e) {
+                Log.w("TileStore.save: cannot write " + file, e);
+                FileUtils.deleteIgnoringFailure(tempFile);
+                storedBytes = -1;
+                return;
+            }
+            if (storedBytes > maxBytes) {
+                trim(maxBytes * 3 / 4);
+            }
+        }
+    }
+
+    /**
+     * Delete the oldest tiles until the store uses at most the given number of bytes.
+     */
+    synchronized void trim(final long bytes) {
+        final File[] files = listFiles();
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(final File lhs, final File rhs) {
+                final long lhsTime = lhs.lastModified();
+                final long rhsTime = rhs.lastModified();
+                return lhsTime < rhsTime ? -1 : (lhsTime == rhsTime ? 0 : 1);
+            }
+        });
+        long remaining = 0;
+        for (final File file : files) {
+            remaining += file.length();
+        }
+        for (final File file : files) {
+            if (remaining <= bytes) {
+                break;
+            }
+            final long length = file.length();
+            if (FileUtils.delete(file)) {
+                remaining -= length;
+            }
+        }
+        storedBytes = remaining;
+    }
+
+    /**
+     * @return the total size of the stored tiles in bytes
+     */
+    synchronized long getStoredBytes() {
+        initStoredBytes();
+        return storedBytes;
+    }
+
+    private void initStoredBytes() {
+        if (storedBytes < 0) {
+            storedBytes = 0;
+            for (final File file : listFiles()) {
+                storedBytes += file.length();
+            }
+        }
+    }
+
+    @NonNull
+    private File[] listFiles() {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        final List<File> tiles = new ArrayList<>(files.length);
+        for (final File file : files) {
+            if (file.getName().endsWith(SUFFIX)) {
+                tiles.add(file);
+            }
+        }
+        return tiles.toArray(new File[tiles.size()]);
+    }
+
+    private synchronized void delete(@NonNull final File file) {
+        final long length = file.length();
+        if (FileUtils.delete(file) && storedBytes >= 0) {
+            storedBytes -= length;
+        }
+    }
+
+    @NonNull
+    private File getFile(@NonNull final String key) {
+        return new File(directory, key + SUFFIX);
+    }
+
+    @NonNull
+    private static ObjectNode toJson(@NonNull final Geocache cache) {
+        final ObjectNode node = JsonUtils.factory.objectNode();
+        node.put("g", cache.getGeocode());
+        node.put("n", cache.getName());
+        node.put("lat", cache.getCoords().getLatitude());
+        node.put("lon", cache.getCoords().getLongitude());
+        node.put("t", cache.getType().id);
+        if (cache.isFound()) {
+            node.put("f", true);
+        }
+        if (cache.isOwner()) {
+            node.put("o", true);
+        }
+        return node;
+    }
+
+    @NonNull
+    private static Geocache createCache(@NonNull final JsonNode node, final int zoomlevel) {
+        final Geocache cache = new Geocache();
+        cache.setDetailed(false);
+        cache.setReliableLatLon(false);
+        cache.setGeocode(node.get("g").asText());
+        cache.setName(node.get("n").asText());
+        cache.setCoords(new Geopoint(node.get("lat").asDouble(), node.get("lon").asDouble()), zoomlevel);
+        cache.setType(CacheType.getById(node.get("t").asText()), zoomlevel);
+        if (node.path("f").asBoolean()) {
+            cache.setFound(true);
+        }
+        if (node.path("o").asBoolean()) {
+            cache.setOwnerUserId(Settings.getUserName());
+        }
+        return cache;
+    }
+
+    /**
+     * @return the keys of all stored tiles, sorted alphabetically
+     */
+    @NonNull
+    List<String> getKeys() {
+        final List<String> keys = new ArrayList<>();
+        for (final File file : listFiles()) {
+            keys.add(StringUtils.removeEnd(file.getName(), SUFFIX));
+        }
+        Collections.sort(keys);
+        return keys;
+    }
+}
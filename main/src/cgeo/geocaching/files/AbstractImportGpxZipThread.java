@@ -30,20 +30,24 @@ abstract class AbstractImportGpxZipThread extends AbstractImportGpxThread {
     @Override
     protected Collection<Geocache> doImport(final GPXParser parser) throws IOException, ParserException {
         Collection<Geocache> caches = Collections.emptySet();
-        // can't assume that GPX file comes before waypoint file in zip -> so we need two passes
-        // 1. parse GPX files
-        final ZipArchiveInputStream zisPass1 = new ZipArchiveInputStream(new BufferedInputStream(getInputStream()), ENCODING);
+        // can't assume that GPX file comes before waypoint file in zip -> keep the child waypoints until all files are
+        // parsed, so that every entry of the archive is read and inflated only once
+        parser.deferChildWaypoints();
+        final InputStream inputStream = getInputStream();
+        final ZipArchiveInputStream zis = new ZipArchiveInputStream(new BufferedInputStream(inputStream), ENCODING);
         try {
             int acceptedFiles = 0;
             int ignoredFiles = 0;
-            for (ZipEntry zipEntry = zisPass1.getNextZipEntry(); zipEntry != null; zipEntry = zisPass1.getNextZipEntry()) {
-                gpxFileName = zipEntry.getName();
-                if (StringUtils.endsWithIgnoreCase(gpxFileName, GPXImporter.GPX_FILE_EXTENSION)) {
-                    if (!StringUtils.endsWithIgnoreCase(gpxFileName, GPXImporter.WAYPOINTS_FILE_SUFFIX_AND_EXTENSION)) {
-                        importStepHandler.sendMessage(importStepHandler.obtainMessage(GPXImporter.IMPORT_STEP_READ_FILE, R.string.gpx_import_loading_caches_with_filename, (int) zipEntry.getSize(), getSourceDisplayName()));
-                        caches = parser.parse(new NoCloseInputStream(zisPass1), progressHandler);
-                        acceptedFiles++;
-                    }
+            for (ZipEntry zipEntry = zis.getNextZipEntry(); zipEntry != null; zipEntry = zis.getNextZipEntry()) {
+                final String entryName = zipEntry.getName();
+                if (StringUtils.endsWithIgnoreCase(entryName, GPXImporter.WAYPOINTS_FILE_SUFFIX_AND_EXTENSION)) {
+                    importStepHandler.sendMessage(importStepHandler.obtainMessage(GPXImporter.IMPORT_STEP_READ_WPT_FILE, R.string.gpx_import_loading_waypoints_with_filename, (int) zipEntry.getSize(), entryName));
+                    caches = parser.parse(new NoCloseInputStream(zis), progressHandler);
+                } else if (StringUtils.endsWithIgnoreCase(entryName, GPXImporter.GPX_FILE_EXTENSION)) {
+                    gpxFileName = entryName;
+                    importStepHandler.sendMessage(importStepHandler.obtainMessage(GPXImporter.IMPORT_STEP_READ_FILE, R.string.gpx_import_loading_caches_with_filename, (int) zipEntry.getSize(), getSourceDisplayName()));
+                    caches = parser.parse(new NoCloseInputStream(zis), progressHandler);
+                    acceptedFiles++;
                 } else {
                     ignoredFiles++;
                 }
@@ -52,24 +56,11 @@ abstract class AbstractImportGpxZipThread extends AbstractImportGpxThread {
                 throw new ParserException("Imported ZIP does not contain a GPX file.");
             }
         } finally {
-            IOUtils.closeQuietly(zisPass1);
-        }
-
-        // 2. parse waypoint files
-        final InputStream inputStream = getInputStream();
-        final ZipArchiveInputStream zisPass2 = new ZipArchiveInputStream(new BufferedInputStream(inputStream), ENCODING);
-        try {
-            for (ZipEntry zipEntry = zisPass2.getNextZipEntry(); zipEntry != null; zipEntry = zisPass2.getNextZipEntry()) {
-                if (StringUtils.endsWithIgnoreCase(zipEntry.getName(), GPXImporter.WAYPOINTS_FILE_SUFFIX_AND_EXTENSION)) {
-                    importStepHandler.sendMessage(importStepHandler.obtainMessage(GPXImporter.IMPORT_STEP_READ_WPT_FILE, R.string.gpx_import_loading_waypoints_with_filename, (int) zipEntry.getSize(), zipEntry.getName()));
-                    caches = parser.parse(new NoCloseInputStream(zisPass2), progressHandler);
-                }
-            }
-        } finally {
-            IOUtils.closeQuietly(zisPass2);
+            IOUtils.closeQuietly(zis);
             IOUtils.closeQuietly(inputStream);
         }
 
+        parser.addDeferredWaypoints(progressHandler);
         return caches;
     }
 
@@ -0,0 +1,198 @@
+package cgeo.geocaching.files;
+
+import cgeo.geocaching.enumerations.LoadFlags.RemoveFlag;
+import cgeo.geocaching.enumerations.LoadFlags.SaveFlag;
+import cgeo.geocaching.log.LogEntry;
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.storage.DataStore;
+import cgeo.geocaching.utils.Log;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writer stage of the file import. The parser hands over finished caches with {@link #put(Geocache, List)}, and this
+ * thread stores them into the database in batches, so that parsing and database writes run in parallel.
+ * <p>
+ * The queue between parser and writer is bounded. If the database is slower than the parser, {@link #put(Geocache, List)}
+ * blocks until the writer caught up.
+ * </p>
+ */
+final class CacheImportWriter extends Thread {
+
+    /** Maximum number of parsed caches waiting to be written */
+    private static final int QUEUE_CAPACITY = 2 * DataStore.SAVE_BATCH_SIZE;
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private final BlockingQueue<ImportedCache> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    /** geocodes of the caches handed over, but not yet written. Guarded by this. */
+    private final Set<String> pendingGeocodes = new HashSet<>();
+    /** number of caches handed over, but not yet written. Guarded by this. */
+    private int unwritten = 0;
+    private volatile boolean closed = false;
+    private volatile boolean canceled = false;
+    private volatile RuntimeException failure = null;
+
+    private static final class ImportedCache {
+        @NonNull final Geocache cache;
+        @NonNull final List<LogEntry> logs;
+
+        ImportedCache(@NonNull final Geocache cache, @NonNull final List<LogEntry> logs) {
+            this.cache = cache;
+            this.logs = logs;
+        }
+    }
+
+    CacheImportWriter() {
+        super("import writer");
+    }
+
+    /**
+     * Hand over a parsed cache and its logs. Blocks while the queue is full.
+     */
+    void put(@NonNull final Geocache cache, @NonNull final List<LogEntry> logs) {
+        checkFailure();
+        synchronized (this) {
+            pendingGeocodes.add(cache.getGeocode());
+            unwritten++;
+        }
+        final ImportedCache item = new ImportedCache(cache, logs);
+        try {
+            while (!queue.offer(item, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+                if (!isAlive()) {
+                    throw new IllegalStateException("import writer terminated");
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("interrupted while waiting for the import writer");
+        }
+    }
+
+    /**
+     * @return {@code true} if a cache with this geocode has been handed over, but not yet been written
+     */
+    synchronized boolean isPending(final String geocode) {
+        return pendingGeocodes.contains(geocode);
+    }
+
+    /**
+     * Wait until all caches handed over so far have been written.
+     */
+    void flush() {
+        synchronized (this) {
+            while (unwritten > 0 && isAlive() && failure == null) {
+                try {
+                    wait(POLL_INTERVAL_MS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("interrupted while waiting for the import writer");
+                }
+            }
+        }
+        checkFailure();
+    }
+
+    /**
+     * Write all remaining caches and wait for the writer to terminate.
+     */
+    void finish() {
+        closed = true;
+        awaitTermination(false);
+        checkFailure();
+    }
+
+    /**
+     * Discard the caches not yet written and wait for the writer to terminate. Does nothing if the writer has already
+     * finished.
+     */
+    void cancel() {
+        canceled = true;
+        queue.clear();
+        awaitTermination(true);
+    }
+
+    @Override
+    public void run() {
+        final List<ImportedCache> batch = new ArrayList<>(DataStore.SAVE_BATCH_SIZE);
+        try {
+            while (!canceled) {
+                final ImportedCache first = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closed) {
+                        break;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, DataStore.SAVE_BATCH_SIZE - 1);
+                write(batch);
+                batch.clear();
+            }
+        } catch (final InterruptedException e) {
+            Log.w("CacheImportWriter interrupted", e);
+        } catch (final RuntimeException e) {
+            Log.e("CacheImportWriter failed", e);
+            failure = e;
+        } finally {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    private void write(@NonNull final List<ImportedCache> batch) {
+        final List<Geocache> caches = new ArrayList<>(batch.size());
+        final Map<String, List<LogEntry>> logs = new HashMap<>();
+        for (final ImportedCache item : batch) {
+            caches.add(item.cache);
+            logs.put(item.cache.getGeocode(), item.logs);
+        }
+        DataStore.saveCaches(caches, EnumSet.of(SaveFlag.DB));
+        DataStore.saveLogs(logs);
+
+        // avoid the cachecache using lots of memory for caches which the user did not actually look at
+        for (final Geocache cache : caches) {
+            DataStore.removeCache(cache.getGeocode(), EnumSet.of(RemoveFlag.CACHE));
+        }
+
+        synchronized (this) {
+            pendingGeocodes.removeAll(logs.keySet());
+            unwritten -= batch.size();
+            notifyAll();
+        }
+    }
+
+    private void awaitTermination(final boolean ignoreInterrupt) {
+        try {
+            join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (!ignoreInterrupt) {
+                throw new CancellationException("interrupted while waiting for the import writer");
+            }
+        }
+    }
+
+    private void checkFailure() {
+        final RuntimeException e = failure;
+        if (e != null) {
+            throw e;
+        }
+        if (canceled) {
+            throw new CancellationException();
+        }
+    }
+}
@@ -12,7 +12,6 @@ import cgeo.geocaching.enumerations.CacheSize;
 import cgeo.geocaching.enumerations.CacheType;
 import cgeo.geocaching.enumerations.LoadFlags;
 import cgeo.geocaching.enumerations.LoadFlags.LoadFlag;
-import cgeo.geocaching.enumerations.LoadFlags.RemoveFlag;
 import cgeo.geocaching.enumerations.LoadFlags.SaveFlag;
 import cgeo.geocaching.enumerations.WaypointType;
 import cgeo.geocaching.list.StoredList;
@@ -49,13 +48,17 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.CharEncoding;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
@@ -116,12 +119,20 @@ abstract class GPXParser extends FileParser {
     private boolean wptVisited = false;
     private boolean wptUserDefined = false;
     private List<LogEntry> logs = new ArrayList<>();
+    /**
+     * Child waypoints by geocode of their parent cache, if child waypoints are deferred
+     */
+    @Nullable private Map<String, List<ImmutablePair<String, Waypoint>>> deferredWaypoints = null;
 
     /**
      * Parser result. Maps geocode to cache.
      */
     private final Set<String> result = new HashSet<>(100);
     private ProgressInputStream progressStream;
+    /**
+     * Stores the parsed caches into the database, in parallel to parsing. Only set while parsing.
+     */
+    private CacheImportWriter writer;
     /**
      * URL contained in the header of the GPX file. Used to guess where the file is coming from.
      */
@@ -251,13 +262,9 @@ abstract class GPXParser extends FileParser {
                     // modify cache depending on the use case/connector
                     afterParsing(cache);
 
-                    // finally store the cache in the database
+                    // finally hand the cache over to be stored in the database
                     result.add(geocode);
-                    DataStore.saveCache(cache, EnumSet.of(SaveFlag.DB));
-                    DataStore.saveLogs(cache.getGeocode(), logs);
-
-                    // avoid the cachecache using lots of memory for caches which the user did not actually look at
-                    DataStore.removeCache(geocode, EnumSet.of(RemoveFlag.CACHE));
+                    writer.put(cache, logs);
                     showProgressMessage(progressHandler, progressStream.getProgress());
                 } else if (StringUtils.isNotBlank(cache.getName())
  && (StringUtils.containsIgnoreCase(type, "waypoint") || terraChildWaypoint)) {
@@ -285,26 +292,33 @@ abstract class GPXParser extends FileParser {
                         cache.setShortDescription("");
                     }
 
-                    final Geocache cacheForWaypoint = findParentCache();
-                    if (cacheForWaypoint != null) {
-                        final Waypoint waypoint = new Waypoint(cache.getShortDescription(), WaypointType.fromGPXString(sym), false);
-                        if (wptUserDefined) {
-                            waypoint.setUserDefined();
+                    final Waypoint waypoint = new Waypoint(cache.getShortDescription(), WaypointType.fromGPXString(sym), false);
+                    if (wptUserDefined) {
+                        waypoint.setUserDefined();
+                    }
+                    waypoint.setId(-1);
+                    waypoint.setGeocode(parentCacheCode);
+                    waypoint.setLookup("---");
+                    // there is no lookup code in gpx file
+                    waypoint.setCoords(cache.getCoords());
+                    waypoint.setNote(cache.getDescription());
+                    waypoint.setVisited(wptVisited);
+
+                    if (deferredWaypoints != null) {
+                        // the parent cache may not have been imported yet
+                        List<ImmutablePair<String, Waypoint>> waypointsOfParent = deferredWaypoints.get(parentCacheCode);
+                        if (waypointsOfParent == null) {
+                            waypointsOfParent = new ArrayList<>();
+                            deferredWaypoints.put(parentCacheCode, waypointsOfParent);
                         }
-                        waypoint.setId(-1);
-                        waypoint.setGeocode(parentCacheCode);
-                        waypoint.setPrefix(cacheForWaypoint.getWaypointPrefix(cache.getName()));
-                        waypoint.setLookup("---");
-                        // there is no lookup code in gpx file
-                        waypoint.setCoords(cache.getCoords());
-                        waypoint.setNote(cache.getDescription());
-                        waypoint.setVisited(wptVisited);
-                        final List<Waypoint> mergedWayPoints = new ArrayList<>(cacheForWaypoint.getWaypoints());
-
-                        final List<Waypoint> newPoints = new ArrayList<>();
-                        newPoints.add(waypoint);
-                        Waypoint.mergeWayPoints(newPoints, mergedWayPoints, true);
-                        cacheForWaypoint.setWaypoints(newPoints, false);
+                        waypointsOfParent.add(new ImmutablePair<>(cache.getName(), waypoint));
+                        showProgressMessage(progressHandler, progressStream.getProgress());
+                        return;
+                    }
+
+                    final Geocache cacheForWaypoint = findParentCache(parentCacheCode);
+                    if (cacheForWaypoint != null) {
+                        addWaypoint(cacheForWaypoint, cache.getName(), waypoint);
                         DataStore.saveCache(cacheForWaypoint, EnumSet.of(SaveFlag.DB));
                         showProgressMessage(progressHandler, progressStream.getProgress());
                     }
@@ -741,13 +755,20 @@ abstract class GPXParser extends FileParser {
             });
         }
 
+        // parsed caches are stored by a separate thread while parsing continues
+        writer = new CacheImportWriter();
+        writer.start();
         try {
             progressStream = new ProgressInputStream(stream);
             final BufferedReader reader = new BufferedReader(new InputStreamReader(progressStream, CharEncoding.UTF_8));
             Xml.parse(new InvalidXMLCharacterFilterReader(reader), root.getContentHandler());
+            writer.finish();
             return DataStore.loadCaches(result, EnumSet.of(LoadFlag.DB_MINIMAL));
         } catch (final SAXException e) {
             throw new ParserException("Cannot parse .gpx file as GPX " + version + ": could not parse XML", e);
+        } finally {
+            writer.cancel();
+            writer = null;
         }
     }
 
@@ -1163,14 +1184,21 @@ abstract class GPXParser extends FileParser {
     }
 
     @Nullable
-    private Geocache findParentCache() {
+    private Geocache findParentCache(final String parentCacheCode) {
         if (StringUtils.isBlank(parentCacheCode)) {
             return null;
         }
+        // the parent cache may still wait for being written
+        if (writer != null && writer.isPending(parentCacheCode)) {
+            writer.flush();
+        }
         // first match by geocode only
         Geocache cacheForWaypoint = DataStore.loadCache(parentCacheCode, LoadFlags.LOAD_CACHE_OR_DB);
         if (cacheForWaypoint == null) {
             // then match by title
+            if (writer != null) {
+                writer.flush();
+            }
             final String geocode = DataStore.getGeocodeForTitle(parentCacheCode);
             if (StringUtils.isNotBlank(geocode)) {
                 cacheForWaypoint = DataStore.loadCache(geocode, LoadFlags.LOAD_CACHE_OR_DB);
@@ -1178,4 +1206,57 @@ abstract class GPXParser extends FileParser {
         }
         return cacheForWaypoint;
     }
+
+    /**
+     * Merge a child waypoint into the waypoints of its parent cache.
+     *
+     * @param waypointName
+     *            the name of the waypoint in the GPX file, used to determine the prefix
+     */
+    private static void addWaypoint(@NonNull final Geocache cacheForWaypoint, final String waypointName, @NonNull final Waypoint waypoint) {
+        waypoint.setPrefix(cacheForWaypoint.getWaypointPrefix(waypointName));
+        final List<Waypoint> mergedWayPoints = new ArrayList<>(cacheForWaypoint.getWaypoints());
+
+        final List<Waypoint> newPoints = new ArrayList<>();
+        newPoints.add(waypoint);
+        Waypoint.mergeWayPoints(newPoints, mergedWayPoints, true);
+        cacheForWaypoint.setWaypoints(newPoints, false);
+    }
+
+    /**
+     * Keep child waypoints until {@link #addDeferredWaypoints(DisposableHandler)} is called, instead of adding them to
+     * their parent cache immediately. This allows importing several files in arbitrary order, e.g. the waypoint
+     * file of a pocket query before the cache file.
+     */
+    void deferChildWaypoints() {
+        deferredWaypoints = new LinkedHashMap<>();
+    }
+
+    /**
+     * Add all deferred child waypoints to their parent caches, which must have been parsed by now. Each parent cache
+     * is stored only once, regardless of the number of its child waypoints.
+     */
+    void addDeferredWaypoints(@Nullable final DisposableHandler progressHandler) {
+        if (deferredWaypoints == null || deferredWaypoints.isEmpty()) {
+            return;
+        }
+        final List<Geocache> parents = new ArrayList<>(deferredWaypoints.size());
+        try {
+            for (final Map.Entry<String, List<ImmutablePair<String, Waypoint>>> entry : deferredWaypoints.entrySet()) {
+                if (progressHandler != null && progressHandler.isDisposed()) {
+                    throw new CancellationException();
+                }
+                final Geocache cacheForWaypoint = findParentCache(entry.getKey());
+                if (cacheForWaypoint != null) {
+                    for (final ImmutablePair<String, Waypoint> waypoint : entry.getValue()) {
+                        addWaypoint(cacheForWaypoint, waypoint.left, waypoint.right);
+                    }
+                    parents.add(cacheForWaypoint);
+                }
+            }
+            DataStore.saveCaches(parents, EnumSet.of(SaveFlag.DB));
+        } finally {
+            deferredWaypoints.clear();
+        }
+    }
 }
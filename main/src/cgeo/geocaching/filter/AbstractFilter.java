@@ -4,11 +4,11 @@ import cgeo.geocaching.CgeoApplication;
 import cgeo.geocaching.models.Geocache;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import android.os.Parcel;
 import android.support.annotation.StringRes;
 
-import java.util.ArrayList;
 import java.util.List;
 
 abstract class AbstractFilter implements IFilter {
@@ -29,13 +29,21 @@ abstract class AbstractFilter implements IFilter {
 
     @Override
     public void filter(@NonNull final List<Geocache> list) {
-        final List<Geocache> itemsToRemove = new ArrayList<>();
-        for (final Geocache item : list) {
-            if (!accepts(item)) {
-                itemsToRemove.add(item);
-            }
-        }
-        list.removeAll(itemsToRemove);
+        FilterUtils.filter(list, this);
+    }
+
+    @Override
+    @Nullable
+    public String toSqlPredicate() {
+        return null;
+    }
+
+    /**
+     * @return the value as SQL string literal
+     */
+    @NonNull
+    protected static String toSqlString(@NonNull final String value) {
+        return '\'' + value.replace("'", "''") + '\'';
     }
 
     @Override
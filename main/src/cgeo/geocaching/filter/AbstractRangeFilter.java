@@ -25,6 +25,13 @@ abstract class AbstractRangeFilter extends AbstractFilter {
         rangeMax = in.readFloat();
     }
 
+    /**
+     * @return the SQL condition for the given column to be within the range of this filter
+     */
+    protected String toSqlPredicate(final String column) {
+        return String.format(Locale.US, "%s >= %.1f AND %s < %.1f", column, rangeMin, column, rangeMax);
+    }
+
     @Override
     public void writeToParcel(final Parcel dest, final int flags) {
         super.writeToParcel(dest, flags);
@@ -42,6 +42,11 @@ class DifficultyFilter extends AbstractRangeFilter {
         return rangeMin <= difficulty && difficulty < rangeMax;
     }
 
+    @Override
+    public String toSqlPredicate() {
+        return toSqlPredicate("difficulty");
+    }
+
     public static class Factory implements IFilterFactory {
 
         private static final int DIFFICULTY_MIN = 1;
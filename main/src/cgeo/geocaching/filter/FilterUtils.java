@@ -0,0 +1,146 @@
+package cgeo.geocaching.filter;
+
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.utils.AndroidRxUtils;
+import cgeo.geocaching.utils.functions.Func1;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Function;
+
+/**
+ * Removes the items not accepted by a filter from a collection in linear time.
+ * <p>
+ * The filter is evaluated once per item, and the rejected items are then removed in a single pass, by moving the
+ * accepted items to the front of random access lists, or by removing them through the iterator of all other
+ * collections. Collections with at least {@link #PARALLEL_THRESHOLD} items are evaluated in chunks on the computation
+ * scheduler, so the filter must not modify the items.
+ * </p>
+ */
+public final class FilterUtils {
+
+    static final int PARALLEL_THRESHOLD = 2000;
+    static final int CHUNK_SIZE = 500;
+
+    private FilterUtils() {
+        // utility class
+    }
+
+    /**
+     * @return a predicate accepting the caches accepted by all given filters
+     */
+    @NonNull
+    public static Func1<Geocache, Boolean> allOf(@NonNull final IFilter... filters) {
+        final IFilter[] copy = Arrays.copyOf(filters, filters.length);
+        return new Func1<Geocache, Boolean>() {
+            @Override
+            public Boolean call(final Geocache cache) {
+                for (final IFilter filter : copy) {
+                    if (!filter.accepts(cache)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Remove the caches not accepted by all given filters, keeping the order of the remaining ones.
+     */
+    public static void filter(@NonNull final Collection<Geocache> caches, @NonNull final IFilter... filters) {
+        filter(caches, allOf(filters));
+    }
+
+    /**
+     * Remove the items not accepted by the predicate, keeping the order of the remaining ones.
+     */
+    public static <T> void filter(@NonNull final Collection<T> items, @NonNull final Func1<? super T, Boolean> predicate) {
+        filter(items, predicate, items.size() >= PARALLEL_THRESHOLD ? AndroidRxUtils.computationScheduler : null);
+    }
+
+    /**
+     * @param scheduler
+     *            the scheduler to evaluate the chunks of items on in parallel, or {@code null} to evaluate the items in
+     *            the calling thread
+     */
+    static <T> void filter(@NonNull final Collection<T> items, @NonNull final Func1<? super T, Boolean> predicate, final Scheduler scheduler) {
+        if (items.isEmpty()) {
+            return;
+        }
+        final List<T> snapshot = items instanceof List && items instanceof RandomAccess ? (List<T>) items : new ArrayList<>(items);
+        final boolean[] accepted = scheduler != null ? evaluateParallel(snapshot, predicate, scheduler) : evaluate(snapshot, predicate);
+
+        if (snapshot == items) {
+            compact(snapshot, accepted);
+            return;
+        }
+        // the iterator returns the items in the same order as the snapshot was built
+        int index = 0;
+        for (final Iterator<T> iterator = items.iterator(); iterator.hasNext(); index++) {
+            iterator.next();
+            if (!accepted[index]) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @NonNull
+    private static <T> boolean[] evaluate(@NonNull final List<T> items, @NonNull final Func1<? super T, Boolean> predicate) {
+        final boolean[] accepted = new boolean[items.size()];
+        for (int i = 0; i < accepted.length; i++) {
+            accepted[i] = predicate.call(items.get(i));
+        }
+        return accepted;
+    }
+
+    @NonNull
+    private static <T> boolean[] evaluateParallel(@NonNull final List<T> items, @NonNull final Func1<? super T, Boolean> predicate, @NonNull final Scheduler scheduler) {
+        final boolean[] accepted = new boolean[items.size()];
+        final int chunks = (accepted.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        Observable.range(0, chunks).flatMap(new Function<Integer, Observable<Integer>>() {
+            @Override
+            public Observable<Integer> apply(final Integer chunk) {
+                return Observable.fromCallable(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        final int end = Math.min(accepted.length, (chunk + 1) * CHUNK_SIZE);
+                        for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+                            accepted[i] = predicate.call(items.get(i));
+                        }
+                        return chunk;
+                    }
+                }).subscribeOn(scheduler);
+            }
+        }).ignoreElements().blockingAwait();
+        return accepted;
+    }
+
+    /**
+     * Move the accepted items to the front of the list, and cut off the rest.
+     */
+    private static <T> void compact(@NonNull final List<T> list, @NonNull final boolean[] accepted) {
+        int kept = 0;
+        for (int i = 0; i < accepted.length; i++) {
+            if (accepted[i]) {
+                if (kept != i) {
+                    list.set(kept, list.get(i));
+                }
+                kept++;
+            }
+        }
+        if (kept < accepted.length) {
+            list.subList(kept, accepted.length).clear();
+        }
+    }
+}
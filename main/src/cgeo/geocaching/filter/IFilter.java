@@ -3,6 +3,7 @@ package cgeo.geocaching.filter;
 import cgeo.geocaching.models.Geocache;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import android.os.Parcelable;
 
@@ -20,4 +21,14 @@ public interface IFilter extends Parcelable {
 
     void filter(@NonNull final List<Geocache> list);
 
+    /**
+     * Get a condition on the columns of the caches table, so that stored caches can be filtered by the database
+     * instead of loading them first.
+     *
+     * @return a SQL condition accepting the same caches as {@link #accepts(Geocache)}, or {@code null} if the filter can
+     *         only be applied to loaded caches
+     */
+    @Nullable
+    String toSqlPredicate();
+
 }
@@ -41,6 +41,11 @@ class SizeFilter extends AbstractFilter {
         return cacheSize == cache.getSize();
     }
 
+    @Override
+    public String toSqlPredicate() {
+        return "size = " + toSqlString(cacheSize.id);
+    }
+
     @Override
     @NonNull
     public String getName() {
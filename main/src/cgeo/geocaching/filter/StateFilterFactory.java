@@ -46,6 +46,11 @@ class StateFilterFactory implements IFilterFactory {
         public boolean accepts(@NonNull final Geocache cache) {
             return cache.isArchived();
         }
+
+        @Override
+        public String toSqlPredicate() {
+            return "archived = 1";
+        }
     }
 
     static class StateDisabledFilter extends AbstractFilter {
@@ -76,6 +81,11 @@ class StateFilterFactory implements IFilterFactory {
         public boolean accepts(@NonNull final Geocache cache) {
             return cache.isDisabled() && !cache.isArchived();
         }
+
+        @Override
+        public String toSqlPredicate() {
+            return "disabled = 1 AND archived IS NOT 1";
+        }
     }
 
     static class StateFoundFilter extends AbstractFilter {
@@ -105,6 +115,11 @@ class StateFilterFactory implements IFilterFactory {
         public boolean accepts(@NonNull final Geocache cache) {
             return cache.isFound();
         }
+
+        @Override
+        public String toSqlPredicate() {
+            return "found = 1";
+        }
     }
 
     static class StateFoundLastMonthFilter extends AbstractFilter {
@@ -221,6 +236,11 @@ class StateFilterFactory implements IFilterFactory {
         public boolean accepts(@NonNull final Geocache cache) {
             return !cache.isPremiumMembersOnly();
         }
+
+        @Override
+        public String toSqlPredicate() {
+            return "members IS NOT 1";
+        }
     }
 
     static class StateNotFoundFilter extends AbstractFilter {
@@ -250,6 +270,11 @@ class StateFilterFactory implements IFilterFactory {
         public boolean accepts(@NonNull final Geocache cache) {
             return !cache.isFound();
         }
+
+        @Override
+        public String toSqlPredicate() {
+            return "found IS NOT 1";
+        }
     }
 
     static class StateNotStoredFilter extends AbstractFilter {
@@ -310,6 +335,11 @@ class StateFilterFactory implements IFilterFactory {
         public boolean accepts(@NonNull final Geocache cache) {
             return cache.isPremiumMembersOnly();
         }
+
+        @Override
+        public String toSqlPredicate() {
+            return "members = 1";
+        }
     }
 
     static class StateStoredFilter extends AbstractFilter {
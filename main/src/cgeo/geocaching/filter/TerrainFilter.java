@@ -30,6 +30,11 @@ class TerrainFilter extends AbstractRangeFilter {
         return rangeMin <= terrain && terrain < rangeMax;
     }
 
+    @Override
+    public String toSqlPredicate() {
+        return toSqlPredicate("terrain");
+    }
+
     public static class Factory implements IFilterFactory {
         private static final int TERRAIN_MIN = 1;
         private static final int TERRAIN_MAX = 7;
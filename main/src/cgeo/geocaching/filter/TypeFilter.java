@@ -29,6 +29,12 @@ class TypeFilter extends AbstractFilter {
         return cacheType == cache.getType();
     }
 
+    @Override
+    public String toSqlPredicate() {
+        // unknown types are stored with any id not known by this version
+        return cacheType == CacheType.UNKNOWN ? null : "type = " + toSqlString(cacheType.id);
+    }
+
     @Override
     @NonNull
     public String getName() {
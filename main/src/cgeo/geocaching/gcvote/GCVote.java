@@ -4,6 +4,7 @@ import cgeo.geocaching.CgeoApplication;
 import cgeo.geocaching.R;
 import cgeo.geocaching.connector.capability.ICredentials;
 import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.network.HttpCache;
 import cgeo.geocaching.network.Network;
 import cgeo.geocaching.network.Parameters;
 import cgeo.geocaching.settings.Credentials;
@@ -41,6 +42,7 @@ public final class GCVote implements ICredentials {
     private static final LeastRecentlyUsedMap<String, GCVoteRating> RATINGS_CACHE = new LeastRecentlyUsedMap.LruCache<>(MAX_CACHED_RATINGS);
     private static final float MIN_RATING = 1;
     private static final float MAX_RATING = 5;
+    private static final String GET_VOTES_URL = "http://gcvote.com/getVotes.php";
 
     private GCVote() {
         // utility class
@@ -97,7 +99,7 @@ public final class GCVote implements ICredentials {
         } else {
             params.put("waypoints", StringUtils.join(geocodes, ','));
         }
-        final InputStream response = Network.getResponseStream(Network.getRequest("http://gcvote.com/getVotes.php", params));
+        final InputStream response = Network.getResponseStream(Network.getRequest(GET_VOTES_URL, params));
         if (response == null) {
             return Collections.emptyMap();
         }
@@ -175,6 +177,8 @@ public final class GCVote implements ICredentials {
             Log.e("GCVote.setRating: could not post rating, answer was " + result);
             return false;
         }
+        // the cached votes contain the former average
+        HttpCache.evict(GET_VOTES_URL);
         return true;
     }
 
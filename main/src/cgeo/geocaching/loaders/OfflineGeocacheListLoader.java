@@ -2,27 +2,35 @@ package cgeo.geocaching.loaders;
 
 import cgeo.geocaching.Intents;
 import cgeo.geocaching.SearchResult;
+import cgeo.geocaching.filter.IFilter;
 import cgeo.geocaching.location.Geopoint;
 import cgeo.geocaching.settings.Settings;
 import cgeo.geocaching.storage.DataStore;
 
 import android.app.Activity;
 import android.os.Bundle;
+import android.support.annotation.Nullable;
 
 public class OfflineGeocacheListLoader extends AbstractSearchLoader {
 
     private final int listId;
     private final Geopoint searchCenter;
+    @Nullable private final IFilter filter;
 
-    public OfflineGeocacheListLoader(final Activity activity, final Geopoint searchCenter, final int listId) {
+    /**
+     * @param filter
+     *            the filter of the list, which is applied by the database if possible
+     */
+    public OfflineGeocacheListLoader(final Activity activity, final Geopoint searchCenter, final int listId, @Nullable final IFilter filter) {
         super(activity);
         this.searchCenter = searchCenter;
         this.listId = listId;
+        this.filter = filter;
     }
 
     @Override
     public SearchResult runSearch() {
-        return DataStore.getBatchOfStoredCaches(searchCenter, Settings.getCacheType(), listId);
+        return DataStore.getBatchOfStoredCaches(searchCenter, Settings.getCacheType(), listId, filter);
     }
 
     /**
@@ -0,0 +1,157 @@
+package cgeo.geocaching.location;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Spatial index based on a fixed grid over the earth. Each grid cell is numbered along a Z-order (Morton) curve, so that
+ * points close to each other mostly get close cell numbers, and any viewport is covered by a few ranges of cell
+ * numbers. The cell number is stored next to the coordinates in the database and allows a viewport query to use a
+ * single index on the cell number instead of separate indexes on latitude and longitude.
+ */
+public final class SpatialIndex {
+
+    /** Number of bits per axis, i.e. the grid has 2^BITS x 2^BITS cells (about 600m x 300m at the equator). */
+    static final int BITS = 16;
+    private static final int CELLS_PER_AXIS = 1 << BITS;
+    /** Maximum number of grid cells per axis used to cover a viewport */
+    static final int MAX_COVER_CELLS_PER_AXIS = 4;
+
+    private static final Comparator<long[]> RANGE_START_COMPARATOR = new Comparator<long[]>() {
+        @Override
+        public int compare(final long[] lhs, final long[] rhs) {
+            return lhs[0] < rhs[0] ? -1 : (lhs[0] == rhs[0] ? 0 : 1);
+        }
+    };
+
+    private SpatialIndex() {
+        // utility class
+    }
+
+    /**
+     * @return the cell number of the given coordinates, or {@code null} if there are no coordinates
+     */
+    @Nullable
+    public static Long getCell(@Nullable final Geopoint coords) {
+        return coords == null ? null : getCell(coords.getLatitude(), coords.getLongitude());
+    }
+
+    public static long getCell(final double latitude, final double longitude) {
+        return interleave(toGridX(longitude), toGridY(latitude));
+    }
+
+    /**
+     * Compute ranges of cell numbers covering the given viewport. Every point in the viewport has a cell number in
+     * one of the ranges, but the ranges may also contain points outside of the viewport.
+     *
+     * @return sorted, non overlapping ranges, each given as array of first and last cell number (inclusive)
+     */
+    @NonNull
+    public static List<long[]> getCellRanges(@NonNull final Viewport viewport) {
+        final int xMin = toGridX(viewport.getLongitudeMin());
+        final int xMax = toGridX(viewport.getLongitudeMax());
+        final int yMin = toGridY(viewport.getLatitudeMin());
+        final int yMax = toGridY(viewport.getLatitudeMax());
+
+        // use coarser cells until the viewport is covered by a few of them
+        int shift = 0;
+        while ((xMax >> shift) - (xMin >> shift) >= MAX_COVER_CELLS_PER_AXIS || (yMax >> shift) - (yMin >> shift) >= MAX_COVER_CELLS_PER_AXIS) {
+            shift++;
+        }
+
+        final long cellsPerCoarseCell = 1L << (2 * shift);
+        final List<long[]> ranges = new ArrayList<>();
+        for (int x = xMin >> shift; x <= xMax >> shift; x++) {
+            for (int y = yMin >> shift; y <= yMax >> shift; y++) {
+                final long first = interleave(x, y) * cellsPerCoarseCell;
+                ranges.add(new long[] { first, first + cellsPerCoarseCell - 1 });
+            }
+        }
+        Collections.sort(ranges, RANGE_START_COMPARATOR);
+
+        // merge adjacent ranges
+        final List<long[]> merged = new ArrayList<>(ranges.size());
+        for (final long[] range : ranges) {
+            final long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && last[1] + 1 >= range[0]) {
+                last[1] = Math.max(last[1], range[1]);
+            } else {
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Return the "where" part of a SQL query selecting the cells covering the viewport. This must be combined with
+     * {@link Viewport#sqlWhere(String)} for an exact result.
+     * <p>
+     * If the viewport is covered by several ranges, the condition starts with the single range from the first to the
+     * last cell, which the database can search in an index on the cell number. The ranges themselves then skip the
+     * index entries between them.
+     * </p>
+     *
+     * @param dbTable
+     *            the database table to use as prefix, or null if no prefix is required
+     * @return the string without the "where" keyword
+     */
+    @NonNull
+    public static StringBuilder sqlWhere(@Nullable final String dbTable, @NonNull final Viewport viewport) {
+        final String column = (dbTable == null ? "" : (dbTable + ".")) + "spatial_cell";
+        final List<long[]> ranges = getCellRanges(viewport);
+        final StringBuilder where = new StringBuilder("(");
+        if (ranges.size() > 1) {
+            appendRange(where, column, ranges.get(0)[0], ranges.get(ranges.size() - 1)[1]).append(" and (");
+        }
+        boolean first = true;
+        for (final long[] range : ranges) {
+            if (!first) {
+                where.append(" or ");
+            }
+            first = false;
+            appendRange(where, column, range[0], range[1]);
+        }
+        if (ranges.size() > 1) {
+            where.append(')');
+        }
+        return where.append(')');
+    }
+
+    @NonNull
+    private static StringBuilder appendRange(@NonNull final StringBuilder where, @NonNull final String column, final long first, final long last) {
+        return where.append(column).append(" between ").append(first).append(" and ").append(last);
+    }
+
+    private static int toGridX(final double longitude) {
+        return toGrid((longitude + 180.0) / 360.0);
+    }
+
+    private static int toGridY(final double latitude) {
+        return toGrid((latitude + 90.0) / 180.0);
+    }
+
+    private static int toGrid(final double fraction) {
+        return Math.max(0, Math.min(CELLS_PER_AXIS - 1, (int) Math.floor(fraction * CELLS_PER_AXIS)));
+    }
+
+    /**
+     * Interleave the bits of x (even bits) and y (odd bits).
+     */
+    static long interleave(final int x, final int y) {
+        return spread(x) | (spread(y) << 1);
+    }
+
+    private static long spread(final int value) {
+        long v = value & 0xFFFFL;
+        v = (v | (v << 8)) & 0x00FF00FFL;
+        v = (v | (v << 4)) & 0x0F0F0F0FL;
+        v = (v | (v << 2)) & 0x33333333L;
+        v = (v | (v << 1)) & 0x55555555L;
+        return v;
+    }
+}
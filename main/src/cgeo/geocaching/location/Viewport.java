@@ -157,6 +157,41 @@ public final class Viewport {
         return new Viewport(getCenter(), getLatitudeSpan() * factor, getLongitudeSpan() * factor);
     }
 
+    /**
+     * Return the parts of this viewport which are not covered by another one.
+     *
+     * @param other
+     *            the viewport to remove from this one
+     * @return at most four non overlapping viewports covering the remaining area, or this viewport alone if the other
+     *         one does not intersect it
+     */
+    @NonNull
+    public Collection<Viewport> subtract(@NonNull final Viewport other) {
+        final Collection<Viewport> result = new ArrayList<>(4);
+        final double latMin = Math.max(getLatitudeMin(), other.getLatitudeMin());
+        final double latMax = Math.min(getLatitudeMax(), other.getLatitudeMax());
+        final double lonMin = Math.max(getLongitudeMin(), other.getLongitudeMin());
+        final double lonMax = Math.min(getLongitudeMax(), other.getLongitudeMax());
+        if (latMin >= latMax || lonMin >= lonMax) {
+            result.add(this);
+            return result;
+        }
+        // full width strips below and above the other viewport, and the remaining parts left and right of it
+        if (getLatitudeMin() < latMin) {
+            result.add(new Viewport(bottomLeft, new Geopoint(latMin, getLongitudeMax())));
+        }
+        if (latMax < getLatitudeMax()) {
+            result.add(new Viewport(new Geopoint(latMax, getLongitudeMin()), topRight));
+        }
+        if (getLongitudeMin() < lonMin) {
+            result.add(new Viewport(new Geopoint(latMin, getLongitudeMin()), new Geopoint(latMax, lonMin)));
+        }
+        if (lonMax < getLongitudeMax()) {
+            result.add(new Viewport(new Geopoint(latMin, lonMax), new Geopoint(latMax, getLongitudeMax())));
+        }
+        return result;
+    }
+
     /**
      * Return the smallest viewport containing all the given points.
      *
@@ -13,7 +13,9 @@ import cgeo.geocaching.connector.gc.Tile;
 import cgeo.geocaching.enumerations.CacheType;
 import cgeo.geocaching.enumerations.LoadFlags;
 import cgeo.geocaching.enumerations.LoadFlags.RemoveFlag;
+import cgeo.geocaching.enumerations.StatusCode;
 import cgeo.geocaching.enumerations.WaypointType;
+import cgeo.geocaching.filter.FilterUtils;
 import cgeo.geocaching.list.StoredList;
 import cgeo.geocaching.location.Geopoint;
 import cgeo.geocaching.location.Viewport;
@@ -36,6 +38,7 @@ import cgeo.geocaching.sensors.GeoDirHandler;
 import cgeo.geocaching.sensors.Sensors;
 import cgeo.geocaching.settings.Settings;
 import cgeo.geocaching.storage.DataStore;
+import cgeo.geocaching.storage.OfflineStoreQueue;
 import cgeo.geocaching.utils.AndroidRxUtils;
 import cgeo.geocaching.utils.AngleUtils;
 import cgeo.geocaching.utils.DisposableHandler;
@@ -44,6 +47,7 @@ import cgeo.geocaching.utils.LeastRecentlyUsedSet;
 import cgeo.geocaching.utils.Log;
 import cgeo.geocaching.utils.MapUtils;
 import cgeo.geocaching.utils.functions.Action1;
+import cgeo.geocaching.utils.functions.Func1;
 
 import android.app.ActionBar;
 import android.app.Activity;
@@ -77,7 +81,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
@@ -87,6 +93,7 @@ import java.util.concurrent.TimeUnit;
 import butterknife.ButterKnife;
 import io.reactivex.disposables.CompositeDisposable;
 import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
 import io.reactivex.schedulers.Schedulers;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -136,10 +143,10 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
     // threads
     private Disposable loadTimer;
     private LoadDetails loadDetailsThread = null;
-    /** Time of last {@link LoadRunnable} run */
-    private volatile long loadThreadRun = 0L;
     //Interthread communication flag
     private volatile boolean downloaded = false;
+    /** the last live map download failed, and is retried by the {@link DownloadRetryAction} */
+    private volatile boolean downloadFailed = false;
 
     /** Count of caches currently visible */
     private int cachesCnt = 0;
@@ -163,6 +170,8 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
      * if live map is enabled, this is the minimum zoom level, independent of the stored setting
      */
     private static final int MIN_LIVEMAP_ZOOM = 12;
+    /** interval in which a failed live map download is retried, even if the map did not move */
+    private static final long DOWNLOAD_RETRY_SECONDS = 5;
     // Thread pooling
     private static final BlockingQueue<Runnable> displayQueue = new ArrayBlockingQueue<>(1);
     private static final ThreadPoolExecutor displayExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, displayQueue, new ThreadPoolExecutor.DiscardOldestPolicy());
@@ -641,7 +650,7 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
                 if (mapOptions.mapMode == MapMode.LIVE) {
                     Settings.setLiveMap(mapOptions.isLiveEnabled);
                 }
-                markersInvalidated = true;
+                invalidateMarkers();
                 lastSearchResult = null;
                 mapOptions.searchResult = null;
                 ActivityMixin.invalidateOptionsMenu(activity);
@@ -690,7 +699,7 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
                 return true;
             case R.id.menu_mycaches_mode:
                 Settings.setExcludeMine(!Settings.isExcludeMyCaches());
-                markersInvalidated = true;
+                invalidateMarkers();
                 ActivityMixin.invalidateOptionsMenu(activity);
                 if (!Settings.isExcludeMyCaches()) {
                     Tile.cache.clear();
@@ -698,7 +707,7 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
                 return true;
             case R.id.menu_disabled_mode:
                 Settings.setExcludeDisabled(!Settings.isExcludeDisabledCaches());
-                markersInvalidated = true;
+                invalidateMarkers();
                 ActivityMixin.invalidateOptionsMenu(activity);
                 if (!Settings.isExcludeDisabledCaches()) {
                     Tile.cache.clear();
@@ -1005,7 +1014,7 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
     }
 
     /**
-     * Starts the load timer.
+     * Starts loading the caches each time the map settled.
      */
 
     private Disposable startTimer() {
@@ -1014,12 +1023,21 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
             displayPoint(mapOptions.coords);
             loadTimer = new CompositeDisposable();
         } else {
-            loadTimer = Schedulers.newThread().schedulePeriodicallyDirect(new LoadTimerAction(this), 0, 250, TimeUnit.MILLISECONDS);
+            loadTimer = new CompositeDisposable(mapView.getViewportUpdates().settled().subscribe(new LoadTimerAction(this)),
+                    Schedulers.computation().schedulePeriodicallyDirect(new DownloadRetryAction(this), DOWNLOAD_RETRY_SECONDS, DOWNLOAD_RETRY_SECONDS, TimeUnit.SECONDS));
         }
         return loadTimer;
     }
 
-    private static final class LoadTimerAction implements Runnable {
+    /**
+     * Load the caches again, even if the map did not move.
+     */
+    private void invalidateMarkers() {
+        markersInvalidated = true;
+        mapView.getViewportUpdates().refresh();
+    }
+
+    private static final class LoadTimerAction implements Consumer<Viewport> {
 
         @NonNull private final WeakReference<CGeoMap> mapRef;
         private int previousZoom = -100;
@@ -1030,14 +1048,12 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
         }
 
         @Override
-        public void run() {
+        public void accept(final Viewport viewportNow) {
             final CGeoMap map = mapRef.get();
             if (map == null) {
                 return;
             }
             try {
-                // get current viewport
-                final Viewport viewportNow = map.mapView.getViewport();
                 // Since zoomNow is used only for local comparison purposes,
                 // it is ok to use the Google Maps compatible zoom level of OSM Maps
                 final int zoomNow = map.mapView.getMapZoomLevel();
@@ -1055,14 +1071,9 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
                 // save new values
                 if (moved) {
                     map.markersInvalidated = false;
-
-                    final long currentTime = System.currentTimeMillis();
-
-                    if ((currentTime - map.loadThreadRun) > 1000) {
-                        previousViewport = viewportNow;
-                        previousZoom = zoomNow;
-                        loadExecutor.execute(new LoadRunnable(map));
-                    }
+                    previousViewport = viewportNow;
+                    previousZoom = zoomNow;
+                    loadExecutor.execute(new LoadRunnable(map));
                 }
             } catch (final Exception e) {
                 Log.w("CGeoMap.startLoadtimer.start", e);
@@ -1070,6 +1081,27 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
         }
     }
 
+    /**
+     * Load the caches again after a failed live map download, as the map may not move anymore.
+     */
+    private static final class DownloadRetryAction implements Runnable {
+
+        @NonNull private final WeakReference<CGeoMap> mapRef;
+
+        DownloadRetryAction(@NonNull final CGeoMap map) {
+            this.mapRef = new WeakReference<>(map);
+        }
+
+        @Override
+        public void run() {
+            final CGeoMap map = mapRef.get();
+            if (map != null && map.mapOptions.isLiveEnabled && map.downloadFailed) {
+                map.downloadFailed = false;
+                map.invalidateMarkers();
+            }
+        }
+    }
+
     /**
      * get if map is loading something
      *
@@ -1101,7 +1133,6 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
     private void doLoadRun() {
         try {
             showProgressHandler.sendEmptyMessage(SHOW_PROGRESS);
-            loadThreadRun = System.currentTimeMillis();
 
             final SearchResult searchResult;
             final MapMode mapMode = mapOptions.mapMode;
@@ -1193,8 +1224,9 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
                     }
                 }
             }
-            final SearchResult searchResult = ConnectorFactory.searchByViewport(mapView.getViewport().resize(0.8), tokens);
+            final SearchResult searchResult = ConnectorFactory.searchByViewport(mapView.getViewport().resize(LivemapStrategy.SEARCH_FACTOR), tokens);
             downloaded = true;
+            downloadFailed = searchResult.getError() != StatusCode.NO_ERROR;
 
             final Set<Geocache> result = searchResult.getCachesFromSearchResult(LoadFlags.LOAD_CACHE_OR_DB);
             filter(result);
@@ -1212,6 +1244,9 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
             //render
             displayExecutor.execute(new DisplayRunnable(this));
 
+        } catch (final RuntimeException e) {
+            Log.w("CGeoMap.doDownloadRun", e);
+            downloadFailed = true;
         } finally {
             showProgressHandler.sendEmptyMessage(HIDE_PROGRESS); // hide progress
         }
@@ -1373,24 +1408,33 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
                 return;
             }
 
+            final Map<String, Set<Integer>> cachesLists = new LinkedHashMap<>();
             for (final String geocode : geocodes) {
-                try {
-                    if (handler.isDisposed()) {
-                        break;
-                    }
-
-                    if (!DataStore.isOffline(geocode, null)) {
-                        Geocache.storeCache(null, geocode, listIds, false, handler);
-                    }
-                } catch (final Exception e) {
-                    Log.e("CGeoMap.LoadDetails.run", e);
-                } finally {
+                if (handler.isDisposed()) {
+                    break;
+                }
+                if (DataStore.isOffline(geocode, null)) {
                     // one more cache over
                     detailProgress++;
                     handler.sendEmptyMessage(UPDATE_PROGRESS);
+                } else {
+                    cachesLists.put(geocode, listIds);
                 }
             }
 
+            try {
+                OfflineStoreQueue.store(cachesLists, false, handler).blockingForEach(new Consumer<String>() {
+                    @Override
+                    public void accept(final String geocode) {
+                        // one more cache over
+                        detailProgress++;
+                        handler.sendEmptyMessage(UPDATE_PROGRESS);
+                    }
+                });
+            } catch (final Exception e) {
+                Log.e("CGeoMap.LoadDetails.run", e);
+            }
+
             // we're done
             handler.sendEmptyMessage(FINISHED_LOADING_DETAILS);
         }
@@ -1400,13 +1444,12 @@ public class CGeoMap extends AbstractMap implements ViewFactory {
         final boolean excludeMine = Settings.isExcludeMyCaches();
         final boolean excludeDisabled = Settings.isExcludeDisabledCaches();
 
-        final List<Geocache> removeList = new ArrayList<>();
-        for (final Geocache cache : caches) {
-            if ((excludeMine && (cache.isFound() || cache.isOwner())) || (excludeDisabled && (cache.isDisabled() || cache.isArchived()))) {
-                removeList.add(cache);
+        FilterUtils.filter(caches, new Func1<Geocache, Boolean>() {
+            @Override
+            public Boolean call(final Geocache cache) {
+                return !((excludeMine && (cache.isFound() || cache.isOwner())) || (excludeDisabled && (cache.isDisabled() || cache.isArchived())));
             }
-        }
-        caches.removeAll(removeList);
+        });
     }
 
     private static boolean mapMoved(final Viewport referenceViewport, final Viewport newViewport) {
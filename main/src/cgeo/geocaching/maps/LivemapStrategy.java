@@ -14,6 +14,9 @@ public enum LivemapStrategy {
     AUTO(3, EnumSet.noneOf(Flag.class), R.string.map_strategy_auto),
     DETAILED(4, EnumSet.allOf(Flag.class), R.string.map_strategy_detailed);
 
+    /** size of the area searched on the Live Map relative to the shown area, to also show the caches next to it */
+    public static final double SEARCH_FACTOR = 1.2;
+
     public final int id;
     public final EnumSet<Flag> flags;
     private final int stringId;
@@ -0,0 +1,88 @@
+package cgeo.geocaching.maps;
+
+import cgeo.geocaching.location.Viewport;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.BehaviorSubject;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+
+/**
+ * Changes of the viewport shown by a map view.
+ * <p>
+ * The map view reports its viewport whenever its position or size may have changed. The content of the map is loaded
+ * only once the map {@link #settled()}, instead of checking the viewport periodically.
+ * </p>
+ */
+public final class ViewportUpdates {
+
+    /** time without any change after which the map is considered settled */
+    public static final long SETTLE_DELAY_MS = 300;
+
+    private final Scheduler scheduler;
+    private final Subject<Viewport> changes = BehaviorSubject.<Viewport> create().toSerialized();
+    private final Subject<Viewport> refreshes = PublishSubject.<Viewport> create().toSerialized();
+    @Nullable private Viewport lastViewport = null;
+
+    public ViewportUpdates() {
+        this(Schedulers.computation());
+    }
+
+    ViewportUpdates(@NonNull final Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Report the viewport currently shown. Unchanged and empty viewports are ignored.
+     */
+    public void onViewportChanged(@Nullable final Viewport viewport) {
+        if (viewport == null || (viewport.getLatitudeSpan() == 0 && viewport.getLongitudeSpan() == 0)) {
+            return;
+        }
+        synchronized (this) {
+            if (viewport.equals(lastViewport)) {
+                return;
+            }
+            lastViewport = viewport;
+        }
+        changes.onNext(viewport);
+    }
+
+    /**
+     * Emit the current viewport as settled without waiting, for example because the content of the map must be loaded
+     * again.
+     */
+    public void refresh() {
+        final Viewport viewport;
+        synchronized (this) {
+            viewport = lastViewport;
+        }
+        if (viewport != null) {
+            refreshes.onNext(viewport);
+        }
+    }
+
+    /**
+     * @return all viewport changes, starting with the current viewport if known
+     */
+    @NonNull
+    public Observable<Viewport> changes() {
+        return changes;
+    }
+
+    /**
+     * @return the viewport each time the map did not move for {@link #SETTLE_DELAY_MS}, as well as on each
+     *         {@link #refresh()}
+     */
+    @NonNull
+    public Observable<Viewport> settled() {
+        return changes.debounce(SETTLE_DELAY_MS, TimeUnit.MILLISECONDS, scheduler).mergeWith(refreshes);
+    }
+}
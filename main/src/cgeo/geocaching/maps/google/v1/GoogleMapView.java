@@ -6,6 +6,7 @@ import cgeo.geocaching.location.Geopoint;
 import cgeo.geocaching.location.Viewport;
 import cgeo.geocaching.maps.CachesOverlay;
 import cgeo.geocaching.maps.PositionAndScaleOverlay;
+import cgeo.geocaching.maps.ViewportUpdates;
 import cgeo.geocaching.maps.interfaces.GeneralOverlay;
 import cgeo.geocaching.maps.interfaces.GeoPointImpl;
 import cgeo.geocaching.maps.interfaces.MapControllerImpl;
@@ -36,6 +37,7 @@ public class GoogleMapView extends MapView implements MapViewImpl {
     private GestureDetector gestureDetector;
     private OnMapDragListener onDragListener;
     private final GoogleMapController mapController = new GoogleMapController(getController());
+    private final ViewportUpdates viewportUpdates = new ViewportUpdates();
 
     public GoogleMapView(final Context context, final AttributeSet attrs) {
         super(context, attrs);
@@ -67,11 +69,17 @@ public class GoogleMapView extends MapView implements MapViewImpl {
             }
 
             super.draw(canvas);
+            viewportUpdates.onViewportChanged(getViewport());
         } catch (final Exception e) {
             Log.e("GoogleMapView.draw", e);
         }
     }
 
+    @Override
+    public ViewportUpdates getViewportUpdates() {
+        return viewportUpdates;
+    }
+
     @Override
     public void displayZoomControls(final boolean takeFocus) {
         try {
@@ -4,6 +4,7 @@ import cgeo.geocaching.location.Geopoint;
 import cgeo.geocaching.location.Viewport;
 import cgeo.geocaching.maps.CachesOverlay;
 import cgeo.geocaching.maps.PositionAndScaleOverlay;
+import cgeo.geocaching.maps.ViewportUpdates;
 
 import android.support.annotation.NonNull;
 
@@ -73,6 +74,13 @@ public interface MapViewImpl {
 
     Viewport getViewport();
 
+    /**
+     * Changes of the viewport, reported whenever the map view is drawn at a new position
+     *
+     * @return the viewport changes of this map view
+     */
+    ViewportUpdates getViewportUpdates();
+
     /**
      * Indicates if the current map view supports different themes
      * for map rendering
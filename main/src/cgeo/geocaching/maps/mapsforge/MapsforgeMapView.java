@@ -5,6 +5,7 @@ import cgeo.geocaching.location.Geopoint;
 import cgeo.geocaching.location.Viewport;
 import cgeo.geocaching.maps.CachesOverlay;
 import cgeo.geocaching.maps.PositionAndScaleOverlay;
+import cgeo.geocaching.maps.ViewportUpdates;
 import cgeo.geocaching.maps.interfaces.GeneralOverlay;
 import cgeo.geocaching.maps.interfaces.GeoPointImpl;
 import cgeo.geocaching.maps.interfaces.MapControllerImpl;
@@ -40,6 +41,7 @@ public class MapsforgeMapView extends MapView implements MapViewImpl {
     private GestureDetector gestureDetector;
     private OnMapDragListener onDragListener;
     private final MapsforgeMapController mapController = new MapsforgeMapController(getController(), getMapGenerator().getZoomLevelMax());
+    private final ViewportUpdates viewportUpdates = new ViewportUpdates();
 
     public MapsforgeMapView(final Context context, final AttributeSet attrs) {
         super(context, attrs);
@@ -66,11 +68,17 @@ public class MapsforgeMapView extends MapView implements MapViewImpl {
             }
 
             super.draw(canvas);
+            viewportUpdates.onViewportChanged(getViewport());
         } catch (final Exception e) {
             Log.e("MapsforgeMapView.draw", e);
         }
     }
 
+    @Override
+    public ViewportUpdates getViewportUpdates() {
+        return viewportUpdates;
+    }
+
     @Override
     public void displayZoomControls(final boolean takeFocus) {
         // nothing to do here
@@ -3,6 +3,7 @@ package cgeo.geocaching.maps.mapsforge.v6;
 import cgeo.geocaching.location.Geopoint;
 import cgeo.geocaching.location.Viewport;
 import cgeo.geocaching.maps.MapMode;
+import cgeo.geocaching.maps.ViewportUpdates;
 import cgeo.geocaching.maps.interfaces.OnMapDragListener;
 import cgeo.geocaching.settings.Settings;
 import cgeo.geocaching.utils.Log;
@@ -18,16 +19,37 @@ import org.mapsforge.core.model.LatLong;
 import org.mapsforge.core.model.Point;
 import org.mapsforge.core.util.MercatorProjection;
 import org.mapsforge.map.android.view.MapView;
+import org.mapsforge.map.model.common.Observer;
 
 public class MfMapView extends MapView {
 
     private final GestureDetector gestureDetector;
     private OnMapDragListener onDragListener;
+    private final ViewportUpdates viewportUpdates = new ViewportUpdates();
 
     public MfMapView(final Context context, final AttributeSet attributeSet) {
         super(context, attributeSet);
 
         gestureDetector = new GestureDetector(context, new GestureListener());
+        getModel().mapViewPosition.addObserver(new Observer() {
+            @Override
+            public void onChange() {
+                viewportUpdates.onViewportChanged(getViewport());
+            }
+        });
+    }
+
+    /**
+     * @return the changes of the viewport, reported whenever the map position changes
+     */
+    public ViewportUpdates getViewportUpdates() {
+        return viewportUpdates;
+    }
+
+    @Override
+    protected void onSizeChanged(final int width, final int height, final int oldWidth, final int oldHeight) {
+        super.onSizeChanged(width, height, oldWidth, oldHeight);
+        viewportUpdates.onViewportChanged(getViewport());
     }
 
     public Viewport getViewport() {
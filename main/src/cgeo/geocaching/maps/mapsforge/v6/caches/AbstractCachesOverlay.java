@@ -1,22 +1,23 @@
 package cgeo.geocaching.maps.mapsforge.v6.caches;
 
 import cgeo.geocaching.CgeoApplication;
+import cgeo.geocaching.enumerations.CoordinatesType;
 import cgeo.geocaching.enumerations.LoadFlags;
+import cgeo.geocaching.filter.FilterUtils;
 import cgeo.geocaching.location.Geopoint;
 import cgeo.geocaching.location.Viewport;
 import cgeo.geocaching.maps.mapsforge.v6.MapHandlers;
 import cgeo.geocaching.maps.mapsforge.v6.MfMapView;
 import cgeo.geocaching.maps.mapsforge.v6.NewMap;
-import cgeo.geocaching.maps.mapsforge.v6.TapHandler;
 import cgeo.geocaching.models.Geocache;
 import cgeo.geocaching.models.Waypoint;
 import cgeo.geocaching.settings.Settings;
 import cgeo.geocaching.storage.DataStore;
 import cgeo.geocaching.utils.Log;
 import cgeo.geocaching.utils.MapUtils;
+import cgeo.geocaching.utils.functions.Func1;
 
 import java.lang.ref.WeakReference;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -25,7 +26,6 @@ import java.util.Set;
 
 import org.mapsforge.core.graphics.Bitmap;
 import org.mapsforge.core.model.LatLong;
-import org.mapsforge.map.android.graphics.AndroidGraphicFactory;
 import org.mapsforge.map.android.view.MapView;
 import org.mapsforge.map.layer.Layer;
 import org.mapsforge.map.layer.Layers;
@@ -35,8 +35,7 @@ public abstract class AbstractCachesOverlay {
     private final int overlayId;
     private final Set<GeoEntry> geoEntries;
     private final WeakReference<MfMapView> mapViewRef;
-    private final Layer anchorLayer;
-    private final GeoitemLayers layerList = new GeoitemLayers();
+    private final GeoitemsLayer geoitemsLayer;
     private final MapHandlers mapHandlers;
     private boolean invalidated = true;
 
@@ -44,12 +43,19 @@ public abstract class AbstractCachesOverlay {
         this.overlayId = overlayId;
         this.geoEntries = geoEntries;
         this.mapViewRef = new WeakReference<>(mapView);
-        this.anchorLayer = anchorLayer;
         this.mapHandlers = mapHandlers;
+        this.geoitemsLayer = new GeoitemsLayer(mapHandlers.getTapHandler());
+
+        final Layers layers = mapView.getLayerManager().getLayers();
+        layers.add(layers.indexOf(anchorLayer) + 1, geoitemsLayer);
     }
 
     public void onDestroy() {
         clearLayers();
+        final MapView mapView = mapViewRef.get();
+        if (mapView != null) {
+            mapView.getLayerManager().getLayers().remove(geoitemsLayer);
+        }
     }
 
     public Set<String> getVisibleGeocodes() {
@@ -74,11 +80,15 @@ public abstract class AbstractCachesOverlay {
     }
 
     public int getItemsCount() {
-        return layerList.size();
+        return geoitemsLayer.size();
     }
 
     public void invalidate() {
         invalidated = true;
+        final MfMapView mapView = mapViewRef.get();
+        if (mapView != null) {
+            mapView.getViewportUpdates().refresh();
+        }
     }
 
     public void invalidate(final Collection<String> invalidGeocodes) {
@@ -108,49 +118,75 @@ public abstract class AbstractCachesOverlay {
 
             Log.d(String.format(Locale.ENGLISH, "CachesToDisplay: %d, showWaypoints: %b", cachesToDisplay.size(), showWaypoints));
 
-            for (final Geocache cache : cachesToDisplay) {
+            addItems(cachesToDisplay, showWaypoints, removeCodes, newCodes);
+        }
 
-                if (cache == null) {
-                    continue;
-                }
-                if (showWaypoints) {
-                    final List<Waypoint> waypoints = cache.getWaypoints();
-                    for (final Waypoint waypoint : waypoints) {
-                        if (waypoint == null || waypoint.getCoords() == null) {
-                            continue;
-                        }
-                        if (removeCodes.contains(waypoint.getGpxId())) {
-                            removeCodes.remove(waypoint.getGpxId());
-                        } else {
-                            if (addItem(waypoint)) {
-                                newCodes.add(waypoint.getGpxId());
-                            }
+        syncLayers(removeCodes, newCodes);
+
+        repaint();
+    }
+
+    /**
+     * Add caches to the shown items. Unlike {@link #fill(Set)}, all other items are kept, except for those outside the
+     * retained area.
+     */
+    protected void extend(final Set<Geocache> caches, final boolean showWaypoints, final Viewport retainedArea) {
+
+        final Collection<String> removeCodes = geoitemsLayer.getItemCodesOutside(retainedArea);
+        final Collection<String> newCodes = new HashSet<>();
+
+        Log.d(String.format(Locale.ENGLISH, "CachesToAdd: %d, showWaypoints: %b, items outside retained area: %d", caches.size(), showWaypoints, removeCodes.size()));
+
+        addItems(caches, showWaypoints, removeCodes, newCodes);
+
+        syncLayers(removeCodes, newCodes);
+
+        repaint();
+    }
+
+    /**
+     * Add the caches and their waypoints which are not shown yet. Items which are still shown are taken from the codes
+     * to remove.
+     */
+    private void addItems(final Set<Geocache> caches, final boolean showWaypoints, final Collection<String> removeCodes, final Collection<String> newCodes) {
+        for (final Geocache cache : caches) {
+
+            if (cache == null) {
+                continue;
+            }
+            if (showWaypoints) {
+                final List<Waypoint> waypoints = cache.getWaypoints();
+                for (final Waypoint waypoint : waypoints) {
+                    if (waypoint == null || waypoint.getCoords() == null) {
+                        continue;
+                    }
+                    if (removeCodes.contains(waypoint.getGpxId())) {
+                        removeCodes.remove(waypoint.getGpxId());
+                    } else {
+                        if (addItem(waypoint)) {
+                            newCodes.add(waypoint.getGpxId());
                         }
                     }
                 }
+            }
 
-                if (cache.getCoords() == null) {
-                    continue;
-                }
-                if (removeCodes.contains(cache.getGeocode())) {
-                    removeCodes.remove(cache.getGeocode());
-                } else {
-                    if (addItem(cache)) {
-                        newCodes.add(cache.getGeocode());
-                    }
+            if (cache.getCoords() == null) {
+                continue;
+            }
+            if (removeCodes.contains(cache.getGeocode())) {
+                removeCodes.remove(cache.getGeocode());
+            } else {
+                if (addItem(cache)) {
+                    newCodes.add(cache.getGeocode());
                 }
             }
         }
-
-        syncLayers(removeCodes, newCodes);
-
-        repaint();
     }
 
     protected final boolean addItem(final Geocache cache) {
         final GeoEntry entry = new GeoEntry(cache.getGeocode(), overlayId);
         if (geoEntries.add(entry)) {
-            layerList.add(getCacheItem(cache, this.mapHandlers.getTapHandler()));
+            geoitemsLayer.add(getCacheItem(cache));
 
             Log.d(String.format(Locale.ENGLISH, "Cache %s for id %d added, geoEntries: %d", entry.geocode, overlayId, geoEntries.size()));
 
@@ -164,9 +200,8 @@ public abstract class AbstractCachesOverlay {
 
     protected final boolean addItem(final Waypoint waypoint) {
         final GeoEntry entry = new GeoEntry(waypoint.getGpxId(), overlayId);
-        final GeoitemLayer waypointItem = getWaypointItem(waypoint, this.mapHandlers.getTapHandler());
-        if (waypointItem != null && geoEntries.add(entry)) {
-            layerList.add(waypointItem);
+        if (waypoint.getCoords() != null && geoEntries.add(entry)) {
+            geoitemsLayer.add(getWaypointItem(waypoint));
 
             Log.d(String.format(Locale.ENGLISH, "Waypoint %s for id %d added, geoEntries: %d", entry.geocode, overlayId, geoEntries.size()));
 
@@ -179,17 +214,18 @@ public abstract class AbstractCachesOverlay {
     }
 
     protected void addLayers() {
-        final MapView mapView = mapViewRef.get();
-        if (mapView == null) {
-            return;
-        }
-        final Layers layers = mapView.getLayerManager().getLayers();
-        final int index = layers.indexOf(anchorLayer) + 1;
-        layers.addAll(index, layerList.getAsLayers());
+        geoitemsLayer.requestRedraw();
     }
 
     protected Collection<String> getGeocodes() {
-        return layerList.getGeocodes();
+        return geoitemsLayer.getItemCodes();
+    }
+
+    /**
+     * @return the number of caches shown inside the given area
+     */
+    protected int countCaches(final Viewport area) {
+        return geoitemsLayer.count(area, CoordinatesType.CACHE);
     }
 
     protected Viewport getViewport() {
@@ -222,47 +258,25 @@ public abstract class AbstractCachesOverlay {
     }
 
     protected void clearLayers() {
-        final MfMapView mapView = this.mapViewRef.get();
-        if (mapView == null) {
-            return;
+        for (final String itemCode : geoitemsLayer.clear()) {
+            geoEntries.remove(new GeoEntry(itemCode, overlayId));
         }
-        final Layers layers = mapView.getLayerManager().getLayers();
+        geoitemsLayer.requestRedraw();
 
-        for (final GeoitemLayer layer : layerList) {
-            geoEntries.remove(new GeoEntry(layer.getItemCode(), overlayId));
-            layers.remove(layer);
-        }
-
-        layerList.clear();
-
-        Log.d(String.format(Locale.ENGLISH, "Layers for id %d cleared, remaining geoEntries: %d", overlayId, geoEntries.size()));
+        Log.d(String.format(Locale.ENGLISH, "Layers for id %d cleared, remaining geoEntries: %d, pooled markers: %d", overlayId, geoEntries.size(), MarkerBitmapPool.size()));
     }
 
     protected void syncLayers(final Collection<String> removeCodes, final Collection<String> newCodes) {
-        final MfMapView mapView = this.mapViewRef.get();
-        if (mapView == null) {
-            return;
-        }
         removeItems(removeCodes);
-        final Layers layers = mapView.getLayerManager().getLayers();
-        final int index = layers.indexOf(anchorLayer) + 1;
-        layers.addAll(index, layerList.getMatchingLayers(newCodes));
+        geoitemsLayer.requestRedraw();
 
         Log.d(String.format(Locale.ENGLISH, "Layers for id %d synced. Codes removed: %d, new codes: %d, geoEntries: %d", overlayId, removeCodes.size(), newCodes.size(), geoEntries.size()));
     }
 
     private void removeItems(final Collection<String> removeCodes) {
-        final MfMapView mapView = this.mapViewRef.get();
-        if (mapView == null) {
-            return;
-        }
-        final Layers layers = mapView.getLayerManager().getLayers();
         for (final String code : removeCodes) {
-            final GeoitemLayer item = layerList.getItem(code);
-            if (item != null) {
+            if (geoitemsLayer.remove(code)) {
                 geoEntries.remove(new GeoEntry(code, overlayId));
-                layers.remove(item);
-                layerList.remove(item);
             }
         }
     }
@@ -278,29 +292,25 @@ public abstract class AbstractCachesOverlay {
         final boolean excludeMine = Settings.isExcludeMyCaches();
         final boolean excludeDisabled = Settings.isExcludeDisabledCaches();
 
-        final List<Geocache> removeList = new ArrayList<>();
-        for (final Geocache cache : caches) {
-            if ((excludeMine && cache.isFound()) || (excludeMine && cache.isOwner()) || (excludeDisabled && cache.isDisabled()) || (excludeDisabled && cache.isArchived())) {
-                removeList.add(cache);
+        FilterUtils.filter(caches, new Func1<Geocache, Boolean>() {
+            @Override
+            public Boolean call(final Geocache cache) {
+                return !((excludeMine && cache.isFound()) || (excludeMine && cache.isOwner()) || (excludeDisabled && cache.isDisabled()) || (excludeDisabled && cache.isArchived()));
             }
-        }
-        caches.removeAll(removeList);
+        });
     }
 
-    private static GeoitemLayer getCacheItem(final Geocache cache, final TapHandler tapHandler) {
+    private static GeoitemMarker getCacheItem(final Geocache cache) {
         final Geopoint target = cache.getCoords();
-        final Bitmap marker = AndroidGraphicFactory.convertToBitmap(MapUtils.getCacheMarker(CgeoApplication.getInstance().getResources(), cache));
-        return new GeoitemLayer(cache.getGeoitemRef(), tapHandler, new LatLong(target.getLatitude(), target.getLongitude()), marker, 0, -marker.getHeight() / 2);
+        final int markerKey = MapUtils.getCacheMarkerHash(cache, null);
+        final Bitmap marker = MarkerBitmapPool.acquire(markerKey, MapUtils.getCacheMarker(CgeoApplication.getInstance().getResources(), cache));
+        return new GeoitemMarker(cache.getGeoitemRef(), new LatLong(target.getLatitude(), target.getLongitude()), markerKey, marker, 0, -marker.getHeight() / 2);
     }
 
-    private static GeoitemLayer getWaypointItem(final Waypoint waypoint, final TapHandler tapHandler) {
+    private static GeoitemMarker getWaypointItem(final Waypoint waypoint) {
         final Geopoint target = waypoint.getCoords();
-
-        if (target != null) {
-            final Bitmap marker = AndroidGraphicFactory.convertToBitmap(MapUtils.getWaypointMarker(CgeoApplication.getInstance().getResources(), waypoint));
-            return new GeoitemLayer(waypoint.getGeoitemRef(), tapHandler, new LatLong(target.getLatitude(), target.getLongitude()), marker, 0, -marker.getHeight() / 2);
-        }
-
-        return null;
+        final int markerKey = MapUtils.getWaypointMarkerHash(waypoint);
+        final Bitmap marker = MarkerBitmapPool.acquire(markerKey, MapUtils.getWaypointMarker(CgeoApplication.getInstance().getResources(), waypoint));
+        return new GeoitemMarker(waypoint.getGeoitemRef(), new LatLong(target.getLatitude(), target.getLongitude()), markerKey, marker, 0, -marker.getHeight() / 2);
     }
  }
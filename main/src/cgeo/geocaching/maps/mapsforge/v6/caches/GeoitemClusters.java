@@ -0,0 +1,129 @@
+package cgeo.geocaching.maps.mapsforge.v6.caches;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Grid based clustering of items for one zoom level.
+ * <p>
+ * All items in the same grid cell form one cluster, which is shown at the center of its items. Adding or removing an
+ * item only updates its own cluster, so the clusters don't need to be computed again when items change or the map is
+ * moved. Positions are given in Mercator coordinates normalized to [0, 1], like for the {@link GeoitemGrid}.
+ * </p>
+ * <p>
+ * This class is not thread safe.
+ * </p>
+ */
+final class GeoitemClusters<T> {
+
+    static final class Cluster<T> {
+        private final List<T> items = new ArrayList<>(2);
+        private double sumX = 0;
+        private double sumY = 0;
+
+        int size() {
+            return items.size();
+        }
+
+        @NonNull
+        List<T> getItems() {
+            return items;
+        }
+
+        double getX() {
+            return sumX / items.size();
+        }
+
+        double getY() {
+            return sumY / items.size();
+        }
+    }
+
+    private final double cellSize;
+    private final Map<Long, Cluster<T>> clusters = new HashMap<>();
+
+    /**
+     * @param cellSize
+     *            the size of a cluster cell in normalized coordinates
+     */
+    GeoitemClusters(final double cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    void add(@NonNull final T item, final double x, final double y) {
+        final long cell = getCell(x, y);
+        Cluster<T> cluster = clusters.get(cell);
+        if (cluster == null) {
+            cluster = new Cluster<>();
+            clusters.put(cell, cluster);
+        }
+        cluster.items.add(item);
+        cluster.sumX += x;
+        cluster.sumY += y;
+    }
+
+    /**
+     * Remove an item, which must be given with the same position it was added with.
+     */
+    void remove(@NonNull final T item, final double x, final double y) {
+        final long cell = getCell(x, y);
+        final Cluster<T> cluster = clusters.get(cell);
+        if (cluster == null || !cluster.items.remove(item)) {
+            return;
+        }
+        if (cluster.items.isEmpty()) {
+            clusters.remove(cell);
+        } else {
+            cluster.sumX -= x;
+            cluster.sumY -= y;
+        }
+    }
+
+    /**
+     * Add the clusters of all cells overlapping the given rectangle to the result.
+     */
+    void query(final double minX, final double minY, final double maxX, final double maxY, @NonNull final List<Cluster<T>> result) {
+        final int minCellX = toCell(minX);
+        final int minCellY = toCell(minY);
+        final int maxCellX = toCell(maxX);
+        final int maxCellY = toCell(maxY);
+        if ((long) (maxCellX - minCellX + 1) * (maxCellY - minCellY + 1) >= clusters.size()) {
+            for (final Map.Entry<Long, Cluster<T>> entry : clusters.entrySet()) {
+                final int cellX = (int) (entry.getKey() >> 32);
+                final int cellY = (int) (long) entry.getKey();
+                if (cellX >= minCellX && cellX <= maxCellX && cellY >= minCellY && cellY <= maxCellY) {
+                    result.add(entry.getValue());
+                }
+            }
+            return;
+        }
+        for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+            for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+                final Cluster<T> cluster = clusters.get(getCell(cellX, cellY));
+                if (cluster != null) {
+                    result.add(cluster);
+                }
+            }
+        }
+    }
+
+    int size() {
+        return clusters.size();
+    }
+
+    private int toCell(final double coordinate) {
+        return (int) Math.floor(Math.max(0, Math.min(1, coordinate)) / cellSize);
+    }
+
+    private long getCell(final double x, final double y) {
+        return getCell(toCell(x), toCell(y));
+    }
+
+    private static long getCell(final int cellX, final int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+    }
+}
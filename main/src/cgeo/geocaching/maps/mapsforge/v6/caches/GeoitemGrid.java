@@ -0,0 +1,149 @@
+package cgeo.geocaching.maps.mapsforge.v6.caches;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uniform grid over the Mercator projected world, used to find the items in a part of the map without looking at all
+ * items.
+ * <p>
+ * Positions are given in Mercator coordinates normalized to [0, 1], as returned by the {@code MercatorProjection}
+ * methods for a map size of 1. Queries return the items in the order they were added, so that items added later can be
+ * drawn on top.
+ * </p>
+ * <p>
+ * This class is not thread safe.
+ * </p>
+ */
+final class GeoitemGrid<T> {
+
+    /** 2^14 cells per axis, giving cells of about 2.4 km at the equator */
+    static final int GRID_BITS = 14;
+    private static final int GRID_SIZE = 1 << GRID_BITS;
+
+    private static final Comparator<Entry<?>> SEQUENCE_COMPARATOR = new Comparator<Entry<?>>() {
+        @Override
+        public int compare(final Entry<?> lhs, final Entry<?> rhs) {
+            return lhs.sequence < rhs.sequence ? -1 : (lhs.sequence == rhs.sequence ? 0 : 1);
+        }
+    };
+
+    private static final class Entry<T> {
+        final T item;
+        final double x;
+        final double y;
+        final long cell;
+        final long sequence;
+
+        Entry(final T item, final double x, final double y, final long sequence) {
+            this.item = item;
+            this.x = x;
+            this.y = y;
+            this.cell = getCell(toGrid(x), toGrid(y));
+            this.sequence = sequence;
+        }
+
+        boolean isInside(final double minX, final double minY, final double maxX, final double maxY) {
+            return x >= minX && x <= maxX && y >= minY && y <= maxY;
+        }
+    }
+
+    /** all entries in the order they were added */
+    private final Map<T, Entry<T>> entries = new LinkedHashMap<>();
+    private final Map<Long, List<Entry<T>>> cells = new HashMap<>();
+    private final List<Entry<T>> found = new ArrayList<>();
+    private long sequence = 0;
+
+    /**
+     * Add an item, or move it to the given position if it is already contained. The item is then drawn after all other
+     * items.
+     */
+    void put(@NonNull final T item, final double x, final double y) {
+        remove(item);
+        final Entry<T> entry = new Entry<>(item, x, y, sequence++);
+        entries.put(item, entry);
+        List<Entry<T>> cell = cells.get(entry.cell);
+        if (cell == null) {
+            cell = new ArrayList<>(4);
+            cells.put(entry.cell, cell);
+        }
+        cell.add(entry);
+    }
+
+    boolean remove(@NonNull final T item) {
+        final Entry<T> entry = entries.remove(item);
+        if (entry == null) {
+            return false;
+        }
+        final List<Entry<T>> cell = cells.get(entry.cell);
+        cell.remove(entry);
+        if (cell.isEmpty()) {
+            cells.remove(entry.cell);
+        }
+        return true;
+    }
+
+    void clear() {
+        entries.clear();
+        cells.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Add the items inside the given rectangle to the result, in the order they were added to the grid.
+     */
+    void query(final double minX, final double minY, final double maxX, final double maxY, @NonNull final List<T> result) {
+        final int minCellX = toGrid(minX);
+        final int minCellY = toGrid(minY);
+        final int maxCellX = toGrid(maxX);
+        final int maxCellY = toGrid(maxY);
+        final long cellCount = (long) (maxCellX - minCellX + 1) * (maxCellY - minCellY + 1);
+
+        // Looking at each cell only pays off if there are fewer cells than items.
+        if (cellCount >= entries.size()) {
+            for (final Entry<T> entry : entries.values()) {
+                if (entry.isInside(minX, minY, maxX, maxY)) {
+                    result.add(entry.item);
+                }
+            }
+            return;
+        }
+
+        for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+            for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+                final List<Entry<T>> cell = cells.get(getCell(cellX, cellY));
+                if (cell == null) {
+                    continue;
+                }
+                for (final Entry<T> entry : cell) {
+                    if (entry.isInside(minX, minY, maxX, maxY)) {
+                        found.add(entry);
+                    }
+                }
+            }
+        }
+        Collections.sort(found, SEQUENCE_COMPARATOR);
+        for (final Entry<T> entry : found) {
+            result.add(entry.item);
+        }
+        found.clear();
+    }
+
+    private static int toGrid(final double coordinate) {
+        return Math.max(0, Math.min(GRID_SIZE - 1, (int) (coordinate * GRID_SIZE)));
+    }
+
+    private static long getCell(final int cellX, final int cellY) {
+        return ((long) cellX << GRID_BITS) | cellY;
+    }
+}
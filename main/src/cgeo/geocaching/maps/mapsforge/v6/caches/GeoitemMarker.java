@@ -0,0 +1,67 @@
+package cgeo.geocaching.maps.mapsforge.v6.caches;
+
+import org.mapsforge.core.graphics.Bitmap;
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.util.MercatorProjection;
+
+/**
+ * A cache or waypoint drawn by a {@link GeoitemsLayer}.
+ */
+public class GeoitemMarker {
+
+    private final GeoitemRef item;
+    /** position in Mercator coordinates normalized to [0, 1] */
+    final double x;
+    final double y;
+    final Bitmap bitmap;
+    final int horizontalOffset;
+    final int verticalOffset;
+    final double halfXSpan;
+    final double halfYSpan;
+    private final int markerKey;
+    private boolean released = false;
+
+    /**
+     * @param markerKey
+     *            the key of the bitmap in the {@link MarkerBitmapPool}, which is released with {@link #release()}
+     */
+    public GeoitemMarker(final GeoitemRef item, final LatLong latLong, final int markerKey, final Bitmap bitmap, final int horizontalOffset, final int verticalOffset) {
+        this.item = item;
+        this.x = MercatorProjection.longitudeToPixelX(latLong.longitude, 1L);
+        this.y = MercatorProjection.latitudeToPixelY(latLong.latitude, 1L);
+        this.markerKey = markerKey;
+        this.bitmap = bitmap;
+        this.horizontalOffset = horizontalOffset;
+        this.verticalOffset = verticalOffset;
+        this.halfXSpan = bitmap.getWidth() / 2.0;
+        this.halfYSpan = bitmap.getHeight() / 2.0;
+    }
+
+    public GeoitemRef getItem() {
+        return item;
+    }
+
+    public String getItemCode() {
+        return item.getItemCode();
+    }
+
+    /**
+     * Release the shared marker bitmap. The bitmap is owned by the {@link MarkerBitmapPool}, and must not be destroyed
+     * otherwise.
+     */
+    synchronized void release() {
+        if (!released) {
+            released = true;
+            MarkerBitmapPool.release(markerKey);
+        }
+    }
+
+    /**
+     * @return whether the marker, when its position is drawn at the given pixel, is within the given radius of the tap
+     */
+    boolean isHit(final double pixelX, final double pixelY, final double tapX, final double tapY, final double radius) {
+        final double dx = Math.max(Math.abs(tapX - (pixelX + horizontalOffset)) - halfXSpan, 0);
+        final double dy = Math.max(Math.abs(tapY - (pixelY + verticalOffset)) - halfYSpan, 0);
+        return dx * dx + dy * dy <= radius * radius;
+    }
+}
@@ -0,0 +1,307 @@
+package cgeo.geocaching.maps.mapsforge.v6.caches;
+
+import cgeo.geocaching.CgeoApplication;
+import cgeo.geocaching.enumerations.CoordinatesType;
+import cgeo.geocaching.location.Viewport;
+import cgeo.geocaching.maps.mapsforge.v6.TapHandler;
+import cgeo.geocaching.settings.Settings;
+import cgeo.geocaching.utils.LeastRecentlyUsedMap;
+
+import org.mapsforge.core.graphics.Align;
+import org.mapsforge.core.graphics.Canvas;
+import org.mapsforge.core.graphics.Paint;
+import org.mapsforge.core.graphics.Style;
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.Point;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.android.graphics.AndroidGraphicFactory;
+import org.mapsforge.map.layer.Layer;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.DisplayMetrics;
+import android.view.WindowManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single layer drawing all caches and waypoints of an overlay.
+ * <p>
+ * The markers are kept in a {@link GeoitemGrid}, so that drawing only looks at the markers in the visible part of the
+ * map, and a tap only looks at the markers next to it.
+ * </p>
+ * <p>
+ * If more markers than {@link Settings#getClusteringThreshold()} are visible, nearby markers are drawn as a single badge
+ * showing their count. The {@link GeoitemClusters} are kept for the recently shown zoom levels and updated together
+ * with the markers, so that moving the map does not compute them again.
+ * </p>
+ */
+public class GeoitemsLayer extends Layer {
+
+    private static final double tapSpanInches = 0.12; // 3mm as inches
+    private static final double tapSpanRadius;
+
+    static {
+
+        final DisplayMetrics metrics = new DisplayMetrics();
+        final WindowManager windowManager = (WindowManager) CgeoApplication.getInstance().getSystemService(Context.WINDOW_SERVICE);
+        windowManager.getDefaultDisplay().getMetrics(metrics);
+
+        tapSpanRadius = metrics.densityDpi * tapSpanInches / 2.0;
+    }
+
+    /** size of the cells grouped into one cluster */
+    private static final int CLUSTER_CELL_DIP = 56;
+    private static final int CLUSTER_RADIUS_DIP = 16;
+    private static final int CLUSTER_TEXT_DIP = 13;
+    private static final int MAX_CLUSTER_LEVELS = 4;
+
+    private final TapHandler tapHandler;
+    private final Map<String, GeoitemMarker> markers = new HashMap<>();
+    private final GeoitemGrid<GeoitemMarker> grid = new GeoitemGrid<>();
+    /** largest distance of a marker edge from its position in pixels, to extend the queried area */
+    private double maxMarkerExtent = 0;
+    /** map size in pixels of the last drawn zoom level, for hit testing taps */
+    private long mapSize = 0;
+    private final List<GeoitemMarker> visible = new ArrayList<>();
+    /** clusters by map size, for the recently shown zoom levels */
+    private final Map<Long, GeoitemClusters<GeoitemMarker>> clusterLevels = new LeastRecentlyUsedMap.LruCache<>(MAX_CLUSTER_LEVELS);
+    /** clusters shown by the last draw, or {@code null} if the markers were drawn individually */
+    private GeoitemClusters<GeoitemMarker> shownClusters = null;
+    private final List<GeoitemClusters.Cluster<GeoitemMarker>> visibleClusters = new ArrayList<>();
+    private Paint clusterPaint = null;
+    private Paint clusterTextPaint = null;
+
+    public GeoitemsLayer(final TapHandler tapHandler) {
+        this.tapHandler = tapHandler;
+    }
+
+    /**
+     * Add a marker, replacing and releasing a marker with the same item code.
+     */
+    public synchronized void add(@NonNull final GeoitemMarker marker) {
+        remove(marker.getItemCode());
+        markers.put(marker.getItemCode(), marker);
+        grid.put(marker, marker.x, marker.y);
+        for (final GeoitemClusters<GeoitemMarker> clusters : clusterLevels.values()) {
+            clusters.add(marker, marker.x, marker.y);
+        }
+        maxMarkerExtent = Math.max(maxMarkerExtent, Math.max(Math.abs(marker.horizontalOffset) + marker.halfXSpan, Math.abs(marker.verticalOffset) + marker.halfYSpan));
+    }
+
+    /**
+     * Remove and release the marker of an item.
+     *
+     * @return {@code true} if there was a marker for the item
+     */
+    public synchronized boolean remove(@NonNull final String itemCode) {
+        final GeoitemMarker marker = markers.remove(itemCode);
+        if (marker == null) {
+            return false;
+        }
+        grid.remove(marker);
+        for (final GeoitemClusters<GeoitemMarker> clusters : clusterLevels.values()) {
+            clusters.remove(marker, marker.x, marker.y);
+        }
+        marker.release();
+        return true;
+    }
+
+    /**
+     * Remove and release all markers.
+     *
+     * @return the item codes of the removed markers
+     */
+    @NonNull
+    public synchronized Collection<String> clear() {
+        final Collection<String> itemCodes = new ArrayList<>(markers.keySet());
+        for (final GeoitemMarker marker : markers.values()) {
+            marker.release();
+        }
+        markers.clear();
+        grid.clear();
+        clusterLevels.clear();
+        shownClusters = null;
+        return itemCodes;
+    }
+
+    @Nullable
+    public synchronized GeoitemMarker getMarker(@NonNull final String itemCode) {
+        return markers.get(itemCode);
+    }
+
+    @NonNull
+    public synchronized Collection<String> getItemCodes() {
+        return new ArrayList<>(markers.keySet());
+    }
+
+    /**
+     * @return the item codes of the markers outside the given area
+     */
+    @NonNull
+    public synchronized Collection<String> getItemCodesOutside(@NonNull final Viewport area) {
+        final double minX = MercatorProjection.longitudeToPixelX(area.getLongitudeMin(), 1L);
+        final double minY = MercatorProjection.latitudeToPixelY(area.getLatitudeMax(), 1L);
+        final double maxX = MercatorProjection.longitudeToPixelX(area.getLongitudeMax(), 1L);
+        final double maxY = MercatorProjection.latitudeToPixelY(area.getLatitudeMin(), 1L);
+        final Collection<String> itemCodes = new ArrayList<>();
+        for (final GeoitemMarker marker : markers.values()) {
+            if (marker.x < minX || marker.x > maxX || marker.y < minY || marker.y > maxY) {
+                itemCodes.add(marker.getItemCode());
+            }
+        }
+        return itemCodes;
+    }
+
+    /**
+     * @return the number of markers of the given type inside the given area
+     */
+    public synchronized int count(@NonNull final Viewport area, @NonNull final CoordinatesType type) {
+        final List<GeoitemMarker> inside = new ArrayList<>();
+        grid.query(MercatorProjection.longitudeToPixelX(area.getLongitudeMin(), 1L), MercatorProjection.latitudeToPixelY(area.getLatitudeMax(), 1L),
+                MercatorProjection.longitudeToPixelX(area.getLongitudeMax(), 1L), MercatorProjection.latitudeToPixelY(area.getLatitudeMin(), 1L), inside);
+        int count = 0;
+        for (final GeoitemMarker marker : inside) {
+            if (marker.getItem().getType() == type) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public synchronized int size() {
+        return markers.size();
+    }
+
+    @Override
+    public synchronized void draw(final BoundingBox boundingBox, final byte zoomLevel, final Canvas canvas, final Point topLeftPoint) {
+        mapSize = MercatorProjection.getMapSize(zoomLevel, displayModel.getTileSize());
+        final float scaleFactor = displayModel.getScaleFactor();
+        final double margin = Math.max(maxMarkerExtent, CLUSTER_RADIUS_DIP * scaleFactor) / mapSize;
+        final double minX = MercatorProjection.longitudeToPixelX(boundingBox.minLongitude, 1L) - margin;
+        final double minY = MercatorProjection.latitudeToPixelY(boundingBox.maxLatitude, 1L) - margin;
+        final double maxX = MercatorProjection.longitudeToPixelX(boundingBox.maxLongitude, 1L) + margin;
+        final double maxY = MercatorProjection.latitudeToPixelY(boundingBox.minLatitude, 1L) + margin;
+        grid.query(minX, minY, maxX, maxY, visible);
+
+        final int clusteringThreshold = Settings.getClusteringThreshold();
+        if (clusteringThreshold > 0 && visible.size() > clusteringThreshold) {
+            visible.clear();
+            shownClusters = getClusters(scaleFactor);
+            shownClusters.query(minX, minY, maxX, maxY, visibleClusters);
+            for (final GeoitemClusters.Cluster<GeoitemMarker> cluster : visibleClusters) {
+                if (cluster.size() == 1) {
+                    drawMarker(cluster.getItems().get(0), canvas, topLeftPoint);
+                } else {
+                    drawCluster(cluster, canvas, topLeftPoint, scaleFactor);
+                }
+            }
+            visibleClusters.clear();
+            return;
+        }
+
+        shownClusters = null;
+        for (final GeoitemMarker marker : visible) {
+            drawMarker(marker, canvas, topLeftPoint);
+        }
+        visible.clear();
+    }
+
+    private void drawMarker(final GeoitemMarker marker, final Canvas canvas, final Point topLeftPoint) {
+        if (marker.bitmap.isDestroyed()) {
+            return;
+        }
+        final int left = (int) (marker.x * mapSize - topLeftPoint.x - marker.halfXSpan + marker.horizontalOffset);
+        final int top = (int) (marker.y * mapSize - topLeftPoint.y - marker.halfYSpan + marker.verticalOffset);
+        canvas.drawBitmap(marker.bitmap, left, top);
+    }
+
+    private void drawCluster(final GeoitemClusters.Cluster<GeoitemMarker> cluster, final Canvas canvas, final Point topLeftPoint, final float scaleFactor) {
+        if (clusterPaint == null) {
+            clusterPaint = AndroidGraphicFactory.INSTANCE.createPaint();
+            clusterPaint.setStyle(Style.FILL);
+            clusterPaint.setColor(0xDD2E6B30);
+            clusterTextPaint = AndroidGraphicFactory.INSTANCE.createPaint();
+            clusterTextPaint.setStyle(Style.FILL);
+            clusterTextPaint.setColor(0xFFFFFFFF);
+            clusterTextPaint.setTextAlign(Align.CENTER);
+            clusterTextPaint.setTextSize(CLUSTER_TEXT_DIP * scaleFactor);
+        }
+        final int centerX = (int) (cluster.getX() * mapSize - topLeftPoint.x);
+        final int centerY = (int) (cluster.getY() * mapSize - topLeftPoint.y);
+        final String count = String.valueOf(cluster.size());
+        canvas.drawCircle(centerX, centerY, (int) (CLUSTER_RADIUS_DIP * scaleFactor), clusterPaint);
+        canvas.drawText(count, centerX, centerY + clusterTextPaint.getTextHeight(count) / 2, clusterTextPaint);
+    }
+
+    /**
+     * Get the clusters for the current map size, computing them if that zoom level was not shown recently.
+     */
+    private GeoitemClusters<GeoitemMarker> getClusters(final float scaleFactor) {
+        GeoitemClusters<GeoitemMarker> clusters = clusterLevels.get(mapSize);
+        if (clusters == null) {
+            clusters = new GeoitemClusters<>(CLUSTER_CELL_DIP * scaleFactor / mapSize);
+            for (final GeoitemMarker marker : markers.values()) {
+                clusters.add(marker, marker.x, marker.y);
+            }
+            clusterLevels.put(mapSize, clusters);
+        }
+        return clusters;
+    }
+
+    /**
+     * Report all markers within the tap radius to the tap handler. A tap on a cluster reports all markers of the
+     * cluster. Returns {@code false}, so that the tap handler layer below shows the result.
+     */
+    @Override
+    public synchronized boolean onTap(final LatLong tapLatLong, final Point layerXY, final Point tapXY) {
+        if (mapSize == 0) {
+            return false;
+        }
+        final double tapX = MercatorProjection.longitudeToPixelX(tapLatLong.longitude, 1L);
+        final double tapY = MercatorProjection.latitudeToPixelY(tapLatLong.latitude, 1L);
+        if (shownClusters != null) {
+            onTapClusters(tapX, tapY);
+            return false;
+        }
+        final double searchRadius = (tapSpanRadius + maxMarkerExtent) / mapSize;
+        grid.query(tapX - searchRadius, tapY - searchRadius, tapX + searchRadius, tapY + searchRadius, visible);
+        for (final GeoitemMarker marker : visible) {
+            if (marker.isHit(marker.x * mapSize, marker.y * mapSize, tapX * mapSize, tapY * mapSize, tapSpanRadius)) {
+                tapHandler.setHit(marker.getItem());
+            }
+        }
+        visible.clear();
+        return false;
+    }
+
+    private void onTapClusters(final double tapX, final double tapY) {
+        final double clusterRadius = CLUSTER_RADIUS_DIP * displayModel.getScaleFactor();
+        final double searchRadius = (tapSpanRadius + Math.max(maxMarkerExtent, clusterRadius)) / mapSize;
+        shownClusters.query(tapX - searchRadius, tapY - searchRadius, tapX + searchRadius, tapY + searchRadius, visibleClusters);
+        for (final GeoitemClusters.Cluster<GeoitemMarker> cluster : visibleClusters) {
+            if (cluster.size() == 1) {
+                final GeoitemMarker marker = cluster.getItems().get(0);
+                if (marker.isHit(marker.x * mapSize, marker.y * mapSize, tapX * mapSize, tapY * mapSize, tapSpanRadius)) {
+                    tapHandler.setHit(marker.getItem());
+                }
+            } else if (Math.hypot(cluster.getX() - tapX, cluster.getY() - tapY) * mapSize <= clusterRadius + tapSpanRadius) {
+                for (final GeoitemMarker marker : cluster.getItems()) {
+                    tapHandler.setHit(marker.getItem());
+                }
+            }
+        }
+        visibleClusters.clear();
+    }
+
+    @Override
+    public void onDestroy() {
+        clear();
+    }
+}
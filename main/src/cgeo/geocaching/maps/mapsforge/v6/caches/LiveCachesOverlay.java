@@ -7,6 +7,7 @@ import cgeo.geocaching.connector.gc.MapTokens;
 import cgeo.geocaching.enumerations.LoadFlags;
 import cgeo.geocaching.enumerations.LoadFlags.RemoveFlag;
 import cgeo.geocaching.location.Viewport;
+import cgeo.geocaching.maps.LivemapStrategy;
 import cgeo.geocaching.maps.mapsforge.v6.MapHandlers;
 import cgeo.geocaching.maps.mapsforge.v6.MfMapView;
 import cgeo.geocaching.models.Geocache;
@@ -20,49 +21,54 @@ import java.lang.ref.WeakReference;
 import java.util.EnumSet;
 import java.util.Locale;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
 
+import io.reactivex.BackpressureStrategy;
 import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
 import io.reactivex.schedulers.Schedulers;
 import org.apache.commons.lang3.StringUtils;
 import org.mapsforge.map.layer.Layer;
 
 public class LiveCachesOverlay extends AbstractCachesOverlay {
 
-    private final Disposable timer;
-    private boolean downloading = false;
-    public long loadThreadRun = -1;
+    private final Disposable loader;
+    private volatile boolean downloading = false;
     private MapTokens tokens;
 
     public LiveCachesOverlay(final int overlayId, final Set<GeoEntry> geoEntries, final MfMapView mapView, final Layer anchorLayer, final MapHandlers mapHandlers) {
         super(overlayId, geoEntries, mapView, anchorLayer, mapHandlers);
 
-        this.timer = startTimer();
+        this.loader = startLoading(mapView);
     }
 
-    private Disposable startTimer() {
-        return Schedulers.newThread().schedulePeriodicallyDirect(new LoadTimerAction(this), 0, 250, TimeUnit.MILLISECONDS);
+    /**
+     * Download the caches each time the map settled. Only the latest viewport is downloaded if the map settled again
+     * during a download.
+     */
+    private Disposable startLoading(final MfMapView mapView) {
+        return mapView.getViewportUpdates().settled()
+                .toFlowable(BackpressureStrategy.LATEST)
+                .observeOn(Schedulers.newThread(), false, 1)
+                .subscribe(new LoadAction(this));
     }
 
-    private static final class LoadTimerAction implements Runnable {
+    private static final class LoadAction implements Consumer<Viewport> {
 
         @NonNull private final WeakReference<LiveCachesOverlay> overlayRef;
         private int previousZoom = -100;
         private Viewport previousViewport;
 
-        LoadTimerAction(@NonNull final LiveCachesOverlay overlay) {
+        LoadAction(@NonNull final LiveCachesOverlay overlay) {
             this.overlayRef = new WeakReference<>(overlay);
         }
 
         @Override
-        public void run() {
+        public void accept(final Viewport viewportNow) {
             final LiveCachesOverlay overlay = overlayRef.get();
-            if (overlay == null || overlay.isDownloading()) {
+            if (overlay == null) {
                 return;
             }
             try {
-                // get current viewport
-                final Viewport viewportNow = overlay.getViewport();
                 // Since zoomNow is used only for local comparison purposes,
                 // it is ok to use the Google Maps compatible zoom level of OSM Maps
                 final int zoomNow = overlay.getMapZoomLevel();
@@ -74,17 +80,13 @@ public class LiveCachesOverlay extends AbstractCachesOverlay {
 
                 // save new values
                 if (moved) {
-                    final long currentTime = System.currentTimeMillis();
-
-                    if (1000 < (currentTime - overlay.loadThreadRun)) {
-                        overlay.downloading = true;
-                        previousZoom = zoomNow;
-                        previousViewport = viewportNow;
-                        overlay.download();
-                    }
+                    overlay.downloading = true;
+                    previousZoom = zoomNow;
+                    previousViewport = viewportNow;
+                    overlay.download();
                 }
             } catch (final Exception e) {
-                Log.w("LiveCachesOverlay.startLoadtimer.start", e);
+                Log.w("LiveCachesOverlay.LoadAction", e);
             } finally {
                 overlay.refreshed();
                 overlay.downloading = false;
@@ -107,7 +109,7 @@ public class LiveCachesOverlay extends AbstractCachesOverlay {
                     //                    }
                 }
             }
-            final SearchResult searchResult = ConnectorFactory.searchByViewport(getViewport().resize(1.2), tokens);
+            final SearchResult searchResult = ConnectorFactory.searchByViewport(getViewport().resize(LivemapStrategy.SEARCH_FACTOR), tokens);
 
             final Set<Geocache> result = searchResult.getCachesFromSearchResult(LoadFlags.LOAD_CACHE_OR_DB);
             AbstractCachesOverlay.filter(result);
@@ -129,7 +131,7 @@ public class LiveCachesOverlay extends AbstractCachesOverlay {
 
     @Override
     public void onDestroy() {
-        timer.dispose();
+        loader.dispose();
 
         super.onDestroy();
     }
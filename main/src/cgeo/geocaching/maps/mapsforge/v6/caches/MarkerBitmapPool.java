@@ -0,0 +1,86 @@
+package cgeo.geocaching.maps.mapsforge.v6.caches;
+
+import cgeo.geocaching.utils.Log;
+
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.util.SparseArray;
+
+import java.util.Locale;
+
+import org.mapsforge.core.graphics.Bitmap;
+import org.mapsforge.map.android.graphics.AndroidGraphicFactory;
+
+/**
+ * Pool of the marker bitmaps shown by the {@link GeoitemMarker}s.
+ * <p>
+ * Only a few distinct markers are shown on the map, so all items showing the same marker share one bitmap. The
+ * bitmaps are keyed by the same hash as the marker drawables in {@link cgeo.geocaching.utils.MapUtils}. A bitmap is
+ * counted for each item using it, and destroyed once the last item released it.
+ * </p>
+ */
+final class MarkerBitmapPool {
+
+    private static final SparseArray<PooledBitmap> pool = new SparseArray<>();
+
+    private static final class PooledBitmap {
+        @NonNull final Bitmap bitmap;
+        int references;
+
+        PooledBitmap(@NonNull final Bitmap bitmap) {
+            this.bitmap = bitmap;
+        }
+    }
+
+    private MarkerBitmapPool() {
+        // utility class
+    }
+
+    /**
+     * Get the bitmap for a marker, creating it from the drawable if no item uses it yet. Each call must be balanced by
+     * a call to {@link #release(int)}.
+     *
+     * @param key
+     *            the hash of the marker drawable
+     * @param drawable
+     *            the marker drawable
+     */
+    @NonNull
+    static Bitmap acquire(final int key, @NonNull final Drawable drawable) {
+        synchronized (pool) {
+            PooledBitmap pooled = pool.get(key);
+            if (pooled == null || pooled.bitmap.isDestroyed()) {
+                pooled = new PooledBitmap(AndroidGraphicFactory.convertToBitmap(drawable));
+                pool.put(key, pooled);
+            }
+            pooled.references++;
+            return pooled.bitmap;
+        }
+    }
+
+    /**
+     * Release a bitmap obtained from {@link #acquire(int, Drawable)}.
+     */
+    static void release(final int key) {
+        synchronized (pool) {
+            final PooledBitmap pooled = pool.get(key);
+            if (pooled == null) {
+                Log.w(String.format(Locale.ENGLISH, "MarkerBitmapPool.release: unknown marker %d", key));
+                return;
+            }
+            if (--pooled.references == 0) {
+                pool.remove(key);
+                pooled.bitmap.decrementRefCount();
+            }
+        }
+    }
+
+    /**
+     * @return the number of distinct bitmaps in use
+     */
+    static int size() {
+        synchronized (pool) {
+            return pool.size();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package cgeo.geocaching.maps.mapsforge.v6.caches;
 
 import cgeo.geocaching.SearchResult;
+import cgeo.geocaching.enumerations.CacheType;
 import cgeo.geocaching.enumerations.LoadFlags;
 import cgeo.geocaching.location.Viewport;
 import cgeo.geocaching.maps.mapsforge.v6.MapHandlers;
@@ -14,44 +15,57 @@ import android.support.annotation.NonNull;
 
 import java.lang.ref.WeakReference;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
 
+import io.reactivex.BackpressureStrategy;
 import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
 import io.reactivex.schedulers.Schedulers;
 import org.mapsforge.map.layer.Layer;
 
 public class StoredCachesOverlay extends AbstractCachesOverlay {
 
-    private final Disposable timer;
+    /** caches within this factor of the loaded area are kept when the map moves */
+    private static final double RETAINED_AREA_FACTOR = 2.0;
+
+    private final Disposable loader;
+    /** area for which all caches are shown, or {@code null} if the whole viewport must be loaded again */
+    private Viewport coveredArea = null;
+    private CacheType coveredCacheType = null;
+    private boolean waypointsShown = false;
 
     public StoredCachesOverlay(final int overlayId, final Set<GeoEntry> geoEntries, final MfMapView mapView, final Layer anchorLayer, final MapHandlers mapHandlers) {
         super(overlayId, geoEntries, mapView, anchorLayer, mapHandlers);
-        this.timer = startTimer();
+        this.loader = startLoading(mapView);
     }
 
-    private Disposable startTimer() {
-        return Schedulers.newThread().schedulePeriodicallyDirect(new LoadTimerAction(this), 0, 250, TimeUnit.MILLISECONDS);
+    /**
+     * Load the caches each time the map settled. Only the latest viewport is loaded if the map settled again during a
+     * load.
+     */
+    private Disposable startLoading(final MfMapView mapView) {
+        return mapView.getViewportUpdates().settled()
+                .toFlowable(BackpressureStrategy.LATEST)
+                .observeOn(Schedulers.newThread(), false, 1)
+                .subscribe(new LoadAction(this));
     }
 
-    private static final class LoadTimerAction implements Runnable {
+    private static final class LoadAction implements Consumer<Viewport> {
 
         @NonNull private final WeakReference<StoredCachesOverlay> overlayRef;
         private int previousZoom = -100;
         private Viewport previousViewport;
 
-        LoadTimerAction(@NonNull final StoredCachesOverlay overlay) {
+        LoadAction(@NonNull final StoredCachesOverlay overlay) {
             this.overlayRef = new WeakReference<>(overlay);
         }
 
         @Override
-        public void run() {
+        public void accept(final Viewport viewportNow) {
             final StoredCachesOverlay overlay = overlayRef.get();
             if (overlay == null) {
                 return;
             }
             try {
-                // get current viewport
-                final Viewport viewportNow = overlay.getViewport();
                 // Since zoomNow is used only for local comparison purposes,
                 // it is ok to use the Google Maps compatible zoom level of OSM Maps
                 final int zoomNow = overlay.getMapZoomLevel();
@@ -66,36 +80,94 @@ public class StoredCachesOverlay extends AbstractCachesOverlay {
 
                     previousZoom = zoomNow;
                     previousViewport = viewportNow;
-                    overlay.load();
+                    final boolean invalidated = overlay.isInvalidated();
                     overlay.refreshed();
+                    overlay.load(invalidated);
                 }
             } catch (final Exception e) {
-                Log.w("StoredCachesOverlay.startLoadtimer.start", e);
+                Log.w("StoredCachesOverlay.LoadAction", e);
             }
         }
     }
 
-    private void load() {
+    /**
+     * Load the caches of the viewport. If the caches of the previous viewport are still shown, only the newly exposed
+     * parts of the viewport are loaded, and the caches far out of view are removed.
+     *
+     * @param full
+     *            {@code true} to load the caches of the whole viewport, because the shown caches are no longer valid
+     */
+    private void load(final boolean full) {
         try {
             showProgress();
 
-            final SearchResult searchResult = new SearchResult(DataStore.loadCachedInViewport(getViewport().resize(1.2), Settings.getCacheType()));
-
-            final Set<Geocache> cachesFromSearchResult = searchResult.getCachesFromSearchResult(LoadFlags.LOAD_WAYPOINTS);
-
-            filter(cachesFromSearchResult);
+            final Viewport area = getViewport().resize(1.2);
+            final CacheType cacheType = Settings.getCacheType();
 
-            // render
-            fill(cachesFromSearchResult);
+            if (full || coveredArea == null || cacheType != coveredCacheType || !loadNewArea(area, cacheType)) {
+                loadArea(area, cacheType);
+            }
 
         } finally {
             hideProgress();
         }
     }
 
+    private void loadArea(final Viewport area, final CacheType cacheType) {
+        final SearchResult searchResult = DataStore.loadCachedInViewport(area, cacheType);
+
+        final Set<Geocache> cachesFromSearchResult = searchResult.getCachesFromSearchResult(LoadFlags.LOAD_WAYPOINTS);
+
+        filter(cachesFromSearchResult);
+
+        // render
+        fill(cachesFromSearchResult);
+
+        // only the caches nearest to the center are loaded for crowded areas, so the area cannot be extended later
+        coveredArea = searchResult.getCount() < DataStore.MAX_VIEWPORT_CACHES ? area : null;
+        coveredCacheType = cacheType;
+        waypointsShown = !cachesFromSearchResult.isEmpty() && cachesFromSearchResult.size() < Settings.getWayPointsThreshold();
+    }
+
+    /**
+     * Load the caches of the parts of the area not covered yet.
+     *
+     * @return {@code false} if the whole area must be loaded instead
+     */
+    private boolean loadNewArea(final Viewport area, final CacheType cacheType) {
+        final SearchResult searchResult = new SearchResult();
+        for (final Viewport newArea : area.subtract(coveredArea)) {
+            final SearchResult newAreaResult = DataStore.loadCachedInViewport(newArea, cacheType);
+            if (newAreaResult.getCount() >= DataStore.MAX_VIEWPORT_CACHES) {
+                return false;
+            }
+            searchResult.addSearchResult(newAreaResult);
+        }
+
+        final Set<Geocache> cachesFromSearchResult = searchResult.getCachesFromSearchResult(LoadFlags.LOAD_WAYPOINTS);
+
+        filter(cachesFromSearchResult);
+
+        // waypoints are shown depending on the number of caches in the whole area
+        final int cachesCount = countCaches(area) + cachesFromSearchResult.size();
+        if (cachesCount >= DataStore.MAX_VIEWPORT_CACHES) {
+            return false;
+        }
+        final boolean showWaypoints = cachesCount > 0 && cachesCount < Settings.getWayPointsThreshold();
+        if (showWaypoints != waypointsShown) {
+            return false;
+        }
+
+        // render
+        extend(cachesFromSearchResult, showWaypoints, area.resize(RETAINED_AREA_FACTOR));
+
+        coveredArea = area;
+        return true;
+    }
+
     @Override
     public void onDestroy() {
-        timer.dispose();
+        loader.dispose();
 
         super.onDestroy();
     }
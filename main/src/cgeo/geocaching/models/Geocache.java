@@ -87,6 +87,10 @@ import org.apache.commons.lang3.StringUtils;
 public class Geocache implements IWaypoint {
 
     private static final int OWN_WP_PREFIX_OFFSET = 17;
+    /** estimated size of a cache object without its texts and lists, see {@link #getEstimatedSize()} */
+    private static final int ESTIMATED_BASE_SIZE = 1024;
+    /** estimated size of a single attribute, waypoint, spoiler, trackable or log count, not including their texts */
+    private static final int ESTIMATED_ELEMENT_SIZE = 200;
     private long updated = 0;
     private long detailedUpdate = 0;
     private long visitedDate = 0;
@@ -738,6 +742,38 @@ public class Geocache implements IWaypoint {
         return StringUtils.defaultIfBlank(personalNote, null);
     }
 
+    /**
+     * Estimate the heap memory used by this cache. Lazily loaded data which has not been loaded yet is not counted,
+     * and calling this method never triggers a database access.
+     *
+     * @return estimated size in bytes
+     */
+    public int getEstimatedSize() {
+        int size = ESTIMATED_BASE_SIZE
+                + estimatedSize(geocode) + estimatedSize(name) + estimatedSize(ownerDisplayName) + estimatedSize(ownerUserId)
+                + estimatedSize(hint) + estimatedSize(location) + estimatedSize(personalNote) + estimatedSize(shortdesc) + estimatedSize(description);
+        if (attributes.isInitialized()) {
+            size += attributes.size() * ESTIMATED_ELEMENT_SIZE;
+        }
+        if (waypoints.isInitialized()) {
+            for (final Waypoint waypoint : waypoints) {
+                size += ESTIMATED_ELEMENT_SIZE + estimatedSize(waypoint.getName()) + estimatedSize(waypoint.getNote()) + estimatedSize(waypoint.getUserNote());
+            }
+        }
+        if (spoilers != null) {
+            size += spoilers.size() * ESTIMATED_ELEMENT_SIZE;
+        }
+        if (inventory != null) {
+            size += inventory.size() * ESTIMATED_ELEMENT_SIZE;
+        }
+        return size + logCounts.size() * ESTIMATED_ELEMENT_SIZE;
+    }
+
+    private static int estimatedSize(@Nullable final String text) {
+        // object header, fields and UTF-16 characters
+        return text == null ? 0 : 40 + 2 * text.length();
+    }
+
     public boolean supportsCachesAround() {
         return getConnector() instanceof ISearchByCenter;
     }
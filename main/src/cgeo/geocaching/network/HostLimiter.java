@@ -0,0 +1,103 @@
+package cgeo.geocaching.network;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+
+import io.reactivex.Scheduler;
+import okhttp3.HttpUrl;
+
+/**
+ * Limits the number of concurrent requests to each host, so that bulk downloads neither flood a single server nor
+ * keep the downloads from other servers waiting behind it.
+ * <p>
+ * Requests beyond the limit of their host are queued, and scheduled once a running request to the same host is done.
+ * No thread of the scheduler ever waits for a host, so that the scheduler stays available for other work. Requests
+ * whose host is unknown are not limited.
+ * </p>
+ */
+public final class HostLimiter {
+
+    private final int tasksPerHost;
+    @NonNull private final Scheduler scheduler;
+    /** running and waiting tasks of the hosts with at least one running task, guarded by {@code this} */
+    private final Map<String, HostTasks> hosts = new HashMap<>();
+
+    private static final class HostTasks {
+        private int running = 0;
+        private final Queue<Runnable> waiting = new ArrayDeque<>();
+    }
+
+    public HostLimiter(final int tasksPerHost, @NonNull final Scheduler scheduler) {
+        this.tasksPerHost = tasksPerHost;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Run a task on the scheduler as soon as fewer than the allowed number of tasks for the host are running.
+     *
+     * @param host
+     *            the host the task sends requests to, or {@code null} if it is unknown
+     */
+    public void execute(@Nullable final String host, @NonNull final Runnable task) {
+        if (host == null) {
+            scheduler.scheduleDirect(task);
+            return;
+        }
+        synchronized (this) {
+            HostTasks hostTasks = hosts.get(host);
+            if (hostTasks == null) {
+                hostTasks = new HostTasks();
+                hosts.put(host, hostTasks);
+            }
+            if (hostTasks.running >= tasksPerHost) {
+                hostTasks.waiting.add(task);
+                return;
+            }
+            hostTasks.running++;
+        }
+        schedule(host, task);
+    }
+
+    private void schedule(@NonNull final String host, @NonNull final Runnable task) {
+        scheduler.scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    scheduleNext(host);
+                }
+            }
+        });
+    }
+
+    private void scheduleNext(@NonNull final String host) {
+        final Runnable next;
+        synchronized (this) {
+            final HostTasks hostTasks = hosts.get(host);
+            next = hostTasks.waiting.poll();
+            if (next == null) {
+                hostTasks.running--;
+                if (hostTasks.running == 0) {
+                    hosts.remove(host);
+                }
+                return;
+            }
+        }
+        schedule(host, next);
+    }
+
+    /**
+     * @return the lower case host of the URL, or {@code null} if it is no valid HTTP URL
+     */
+    @Nullable
+    public static String getHost(@Nullable final String url) {
+        final HttpUrl httpUrl = url != null ? HttpUrl.parse(url) : null;
+        return httpUrl != null ? httpUrl.host() : null;
+    }
+}
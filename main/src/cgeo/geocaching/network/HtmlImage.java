@@ -3,7 +3,9 @@ package cgeo.geocaching.network;
 import cgeo.geocaching.CgeoApplication;
 import cgeo.geocaching.R;
 import cgeo.geocaching.connector.ConnectorFactory;
+import cgeo.geocaching.storage.ImageStore;
 import cgeo.geocaching.storage.LocalStorage;
+import cgeo.geocaching.storage.StorageManager;
 import cgeo.geocaching.utils.AndroidRxUtils;
 import cgeo.geocaching.utils.DisplayUtils;
 import cgeo.geocaching.utils.DisposableHandler;
@@ -28,6 +30,7 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.util.HashMap;
 import java.util.Map;
@@ -72,6 +75,12 @@ public class HtmlImage implements Html.ImageGetter {
     };
     public static final String SHARED = "shared";
 
+    /**
+     * maximum number of concurrent image downloads from the same host
+     */
+    private static final int DOWNLOADS_PER_HOST = 4;
+    private static final HostLimiter downloadLimiter = new HostLimiter(DOWNLOADS_PER_HOST, AndroidRxUtils.networkScheduler);
+
     @NonNull private final String geocode;
     /**
      * on error: return large error image, if {@code true}, otherwise empty 1x1 image
@@ -234,7 +243,10 @@ public class HtmlImage implements Html.ImageGetter {
                         final ImmutablePair<BitmapDrawable, Boolean> loaded = loadFromDisk();
                         final BitmapDrawable bitmap = loaded.left;
                         if (loaded.right) {
-                            if (!onlySave) {
+                            if (onlySave) {
+                                // keep the image stored by other caches for this one as well
+                                ImageStore.addReference(pseudoGeocode, url);
+                            } else {
                                 emitter.onNext(bitmap);
                             }
                             emitter.onComplete();
@@ -243,7 +255,8 @@ public class HtmlImage implements Html.ImageGetter {
                         if (bitmap != null && !onlySave) {
                             emitter.onNext(bitmap);
                         }
-                        AndroidRxUtils.networkScheduler.scheduleDirect(new Runnable() {
+                        final String host = url.startsWith("data:image/") ? null : HostLimiter.getHost(makeAbsoluteURL(url));
+                        downloadLimiter.execute(host, new Runnable() {
                             @Override public void run() {
                                 downloadAndSave(emitter, aborter);
                             }
@@ -258,16 +271,15 @@ public class HtmlImage implements Html.ImageGetter {
             }
 
             private void downloadAndSave(final ObservableEmitter<BitmapDrawable> emitter, final Disposable disposable) {
-                final File file = LocalStorage.getStorageFile(pseudoGeocode, url, true, true);
                 if (url.startsWith("data:image/")) {
                     if (url.contains(";base64,")) {
-                        ImageUtils.decodeBase64ToFile(StringUtils.substringAfter(url, ";base64,"), file);
+                        decodeAndStore(url, pseudoGeocode);
                     } else {
                         Log.e("HtmlImage.getDrawable: unable to decode non-base64 inline image");
                         emitter.onComplete();
                         return;
                     }
-                } else if (disposable.isDisposed() || downloadOrRefreshCopy(url, file)) {
+                } else if (disposable.isDisposed() || downloadOrRefreshCopy(url, pseudoGeocode)) {
                         // The existing copy was fresh enough or we were unsubscribed earlier.
                         emitter.onComplete();
                         return;
@@ -309,21 +321,28 @@ public class HtmlImage implements Html.ImageGetter {
     }
 
     /**
-     * Download or refresh the copy of {@code url} in {@code file}.
+     * Download or refresh the stored copy of {@code url}.
      *
      * @param url the url of the document
-     * @param file the file to save the document in
+     * @param pseudoGeocode the geocode or the shared name to store the document for
      * @return {@code true} if the existing file was up-to-date, {@code false} otherwise
      */
-    private boolean downloadOrRefreshCopy(@NonNull final String url, final File file) {
+    private boolean downloadOrRefreshCopy(@NonNull final String url, @NonNull final String pseudoGeocode) {
         final String absoluteURL = makeAbsoluteURL(url);
 
         if (absoluteURL != null) {
+            final File file = ImageStore.getFile(pseudoGeocode, url);
             try {
-                final Response httpResponse = Network.getRequest(absoluteURL, null, file).blockingGet();
+                final Response httpResponse = Network.getConditionalRequest(absoluteURL, null, ImageStore.getValidators(url, file)).blockingGet();
                 if (httpResponse.isSuccessful()) {
-                    LocalStorage.saveEntityToFile(httpResponse, file);
+                    final File downloaded = ImageStore.createDownloadFile();
+                    if (LocalStorage.saveEntityToFile(httpResponse, downloaded)) {
+                        ImageStore.store(pseudoGeocode, url, downloaded, httpResponse);
+                    } else {
+                        FileUtils.deleteIgnoringFailure(downloaded);
+                    }
                 } else if (httpResponse.code() == 304) {
+                    ImageStore.addReference(pseudoGeocode, url);
                     if (!file.setLastModified(System.currentTimeMillis())) {
                         makeFreshCopy(file);
                     }
@@ -336,6 +355,16 @@ public class HtmlImage implements Html.ImageGetter {
         return false;
     }
 
+    private static void decodeAndStore(@NonNull final String url, @NonNull final String pseudoGeocode) {
+        try {
+            final File decoded = ImageStore.createDownloadFile();
+            ImageUtils.decodeBase64ToFile(StringUtils.substringAfter(url, ";base64,"), decoded);
+            ImageStore.store(pseudoGeocode, url, decoded, null);
+        } catch (final IOException e) {
+            Log.e("HtmlImage.decodeAndStore: cannot create file for decoded inline image", e);
+        }
+    }
+
     /**
      * Make a fresh copy of the file to reset its timestamp. On some storage, it is impossible
      * to modify the modified time after the fact, in which case a brand new file must be
@@ -366,8 +395,11 @@ public class HtmlImage implements Html.ImageGetter {
     @NonNull
     private ImmutablePair<Bitmap, Boolean> loadImageFromStorage(final String url, @NonNull final String pseudoGeocode, final boolean forceKeep) {
         try {
-            final File file = LocalStorage.getStorageFile(pseudoGeocode, url, true, false);
+            final File file = ImageStore.getFile(pseudoGeocode, url);
             final ImmutablePair<Bitmap, Boolean> image = loadCachedImage(file, forceKeep);
+            if (image.left != null) {
+                StorageManager.markAccessed(file);
+            }
             if (image.right || image.left != null) {
                 return image;
             }
@@ -0,0 +1,212 @@
+package cgeo.geocaching.network;
+
+import cgeo.geocaching.CgeoApplication;
+import cgeo.geocaching.utils.Log;
+
+import android.app.Application;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Cache;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
+
+/**
+ * Disk cache for the responses of the shared HTTP client.
+ * <p>
+ * Only the responses of the endpoints in {@link Freshness} are stored, with a fixed freshness as their servers do not
+ * send cache headers. All other responses are never stored. Requests carrying a password are never answered from the
+ * cache either, so that passwords are not written to the cache, and the data of the user is always current.
+ * </p>
+ * <p>
+ * The statistics count the hits and misses of the cached endpoints only.
+ * </p>
+ * <p>
+ * Images and static maps are not kept here, as they are stored with the caches anyway. Their validators are kept in
+ * the database to revalidate them (see {@link Network#getConditionalRequest(String, Parameters, ImmutablePair)}).
+ * </p>
+ */
+public final class HttpCache {
+
+    private static final long MAX_BYTES = 10 * 1024 * 1024;
+
+    private static final String DIRNAME = "http";
+
+    /**
+     * Endpoints whose responses are stored, with their freshness.
+     */
+    enum Freshness {
+        OKAPI_INSTALLATION(null, "/okapi/services/apisrv/", TimeUnit.DAYS.toSeconds(1)),
+        OKAPI_USER_BY_NAME(null, "/okapi/services/users/by_username", TimeUnit.DAYS.toSeconds(1)),
+        GCVOTE_VOTES("gcvote.com", "/getVotes.php", TimeUnit.MINUTES.toSeconds(10));
+
+        @Nullable private final String host;
+        @NonNull private final String pathPrefix;
+        final long maxAgeSeconds;
+
+        Freshness(@Nullable final String host, @NonNull final String pathPrefix, final long maxAgeSeconds) {
+            this.host = host;
+            this.pathPrefix = pathPrefix;
+            this.maxAgeSeconds = maxAgeSeconds;
+        }
+
+        private boolean matches(@NonNull final HttpUrl url) {
+            return (host == null || StringUtils.equals(host, url.host())) && url.encodedPath().startsWith(pathPrefix);
+        }
+
+        /**
+         * @return the freshness of the responses for the URL, or {@code null} if its responses are not stored
+         */
+        @Nullable
+        static Freshness forUrl(@NonNull final HttpUrl url) {
+            if (url.queryParameter("password") != null) {
+                return null;
+            }
+            for (final Freshness freshness : values()) {
+                if (freshness.matches(url)) {
+                    return freshness;
+                }
+            }
+            return null;
+        }
+    }
+
+    @Nullable private static final Cache cache = createCache();
+    private static final AtomicInteger hits = new AtomicInteger();
+    private static final AtomicInteger misses = new AtomicInteger();
+
+    private HttpCache() {
+        // utility class
+    }
+
+    @Nullable
+    private static Cache createCache() {
+        final Application application = CgeoApplication.getInstance();
+        if (application == null) {
+            // not running in the app, e.g. in unit tests
+            return null;
+        }
+        return new Cache(new File(application.getCacheDir(), DIRNAME), MAX_BYTES);
+    }
+
+    /**
+     * @return the cache to use for the shared HTTP client, or {@code null} if there is none
+     */
+    @Nullable
+    static Cache getCache() {
+        return cache;
+    }
+
+    /**
+     * @return the size of the cache in bytes, and the number of requests to the cached endpoints answered from the cache
+     *         and from the network since the start of the app
+     */
+    @NonNull
+    public static ImmutableTriple<Long, Integer, Integer> getStats() {
+        if (cache == null) {
+            return ImmutableTriple.of(0L, 0, 0);
+        }
+        long size = 0;
+        try {
+            size = cache.size();
+        } catch (final IOException e) {
+            Log.w("HttpCache.getStats: unable to get the cache size", e);
+        }
+        return ImmutableTriple.of(size, hits.get(), misses.get());
+    }
+
+    /**
+     * Remove all cached responses. This must not be called on the UI thread.
+     */
+    public static void clear() {
+        if (cache != null) {
+            try {
+                cache.evictAll();
+            } catch (final IOException e) {
+                Log.e("HttpCache.clear", e);
+            }
+        }
+    }
+
+    /**
+     * Remove the cached responses whose URL starts with the given prefix, after a request changed the data they
+     * contain. This must not be called on the UI thread.
+     */
+    public static void evict(@NonNull final String urlPrefix) {
+        if (cache != null) {
+            try {
+                final Iterator<String> urls = cache.urls();
+                while (urls.hasNext()) {
+                    if (urls.next().startsWith(urlPrefix)) {
+                        urls.remove();
+                    }
+                }
+            } catch (final IOException e) {
+                Log.e("HttpCache.evict", e);
+            }
+        }
+    }
+
+    /**
+     * Application interceptor counting the requests to the endpoints in {@link Freshness} answered from the cache and
+     * from the network.
+     */
+    static class StatsInterceptor implements Interceptor {
+
+        @Override
+        public Response intercept(final Interceptor.Chain chain) throws IOException {
+            final Request request = chain.request();
+            final Response response = chain.proceed(request);
+            if ("GET".equals(request.method()) && Freshness.forUrl(request.url()) != null) {
+                if (response.networkResponse() == null) {
+                    hits.incrementAndGet();
+                } else {
+                    misses.incrementAndGet();
+                }
+            }
+            return response;
+        }
+    }
+
+    /**
+     * Network interceptor setting the freshness of the responses of the endpoints in {@link Freshness}, and preventing
+     * the storage of all other responses.
+     */
+    static class FreshnessInterceptor implements Interceptor {
+
+        @Override
+        public Response intercept(final Interceptor.Chain chain) throws IOException {
+            final Request request = chain.request();
+            final Response response = chain.proceed(request);
+            return response.newBuilder()
+                    .removeHeader("Pragma")
+                    .removeHeader("Expires")
+                    .header("Cache-Control", getCacheControl(request, response))
+                    .build();
+        }
+
+        /**
+         * @return the cache control header replacing the one of the response
+         */
+        @NonNull
+        private static String getCacheControl(@NonNull final Request request, @NonNull final Response response) {
+            if (!"GET".equals(request.method()) || !(response.isSuccessful() || response.code() == HttpURLConnection.HTTP_NOT_MODIFIED)) {
+                return "no-store";
+            }
+            final Freshness freshness = Freshness.forUrl(request.url());
+            return freshness != null ? "max-age=" + freshness.maxAgeSeconds : "no-store";
+        }
+    }
+}
@@ -2,7 +2,6 @@ package cgeo.geocaching.network;
 
 import cgeo.geocaching.CgeoApplication;
 import cgeo.geocaching.settings.Settings;
-import cgeo.geocaching.storage.LocalStorage;
 import cgeo.geocaching.utils.JsonUtils;
 import cgeo.geocaching.utils.Log;
 import cgeo.geocaching.utils.RxOkHttpUtils;
@@ -13,6 +12,7 @@ import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.v4.net.ConnectivityManagerCompat;
 
 import java.io.File;
 import java.io.IOException;
@@ -60,8 +60,11 @@ public final class Network {
             .followRedirects(true)
             .followSslRedirects(true)
             .cookieJar(Cookies.cookieJar)
+            .cache(HttpCache.getCache())
             .addInterceptor(new HeadersInterceptor())
             .addInterceptor(new LoggingInterceptor())
+            .addInterceptor(new HttpCache.StatsInterceptor())
+            .addNetworkInterceptor(new HttpCache.FreshnessInterceptor())
             .build();
 
     private static final MediaType MEDIA_TYPE_APPLICATION_JSON = MediaType.parse("application/json; charset=utf-8");
@@ -157,14 +160,15 @@ public final class Network {
      *            the parameters to add to the URI
      * @param headers
      *            the headers to add to the request
-     * @param cacheFile
-     *            the cache file used to cache this query
+     * @param validators
+     *            the ETag and Last-Modified headers of the stored resource, to revalidate it instead of downloading it
+     *            again
      * @return a single with the HTTP response, or an IOException
      */
     @NonNull
     private static Single<Response> request(final String method, final String uri,
                                             @Nullable final Parameters params, @Nullable final Parameters headers,
-                                            @Nullable final File cacheFile) {
+                                            @Nullable final ImmutablePair<String, String> validators) {
         final Builder builder = new Builder();
 
         if ("GET".equals(method)) {
@@ -184,7 +188,7 @@ public final class Network {
             builder.post(body.build());
         }
 
-        addHeaders(builder, headers, cacheFile);
+        addHeaders(builder, headers, validators);
         return RxOkHttpUtils.request(OK_HTTP_CLIENT, builder.build());
     }
 
@@ -194,11 +198,12 @@ public final class Network {
      *            the request builder to add headers to
      * @param headers
      *            the headers to add (in addition to the standard headers), can be null
-     * @param cacheFile
-     *            if non-null, the file to take ETag and If-Modified-Since information from
+     * @param validators
+     *            if non-null, the ETag and Last-Modified headers to take If-None-Match and If-Modified-Since
+     *            information from
      */
-    private static void addHeaders(final Builder request, @Nullable final Parameters headers, @Nullable final File cacheFile) {
-        for (final ImmutablePair<String, String> header : Parameters.extend(Parameters.merge(headers, cacheHeaders(cacheFile)))) {
+    private static void addHeaders(final Builder request, @Nullable final Parameters headers, @Nullable final ImmutablePair<String, String> validators) {
+        for (final ImmutablePair<String, String> header : Parameters.extend(Parameters.merge(headers, cacheHeaders(validators)))) {
             request.header(header.left, header.right);
         }
     }
@@ -254,21 +259,19 @@ public final class Network {
     }
 
     @Nullable
-    private static Parameters cacheHeaders(@Nullable final File cacheFile) {
-        if (cacheFile == null || !cacheFile.exists()) {
+    private static Parameters cacheHeaders(@Nullable final ImmutablePair<String, String> validators) {
+        if (validators == null) {
             return null;
         }
 
-        final String etag = LocalStorage.getSavedHeader(cacheFile, LocalStorage.HEADER_ETAG);
-        if (etag != null) {
+        if (validators.left != null) {
             // The ETag is a more robust check than a timestamp. If we have an ETag, it is enough
             // to identify the right version of the resource.
-            return new Parameters("If-None-Match", etag);
+            return new Parameters("If-None-Match", validators.left);
         }
 
-        final String lastModified = LocalStorage.getSavedHeader(cacheFile, LocalStorage.HEADER_LAST_MODIFIED);
-        if (lastModified != null) {
-            return new Parameters("If-Modified-Since", lastModified);
+        if (validators.right != null) {
+            return new Parameters("If-Modified-Since", validators.right);
         }
 
         return null;
@@ -281,13 +284,14 @@ public final class Network {
      *            the URI to request
      * @param params
      *            the parameters to add to the GET request
-     * @param cacheFile
-     *            the name of the file storing the cached resource, or null not to use one
+     * @param validators
+     *            the ETag and Last-Modified headers of the stored resource, or null if it is not stored. A stored
+     *            resource is revalidated, and the response is 304 if it has not changed.
      * @return a single with the HTTP response, or an IOException
      */
     @NonNull
-    public static Single<Response> getRequest(final String uri, @Nullable final Parameters params, @Nullable final File cacheFile) {
-        return request("GET", uri, params, null, cacheFile);
+    public static Single<Response> getConditionalRequest(final String uri, @Nullable final Parameters params, @Nullable final ImmutablePair<String, String> validators) {
+        return request("GET", uri, params, null, validators);
     }
 
 
@@ -545,12 +549,26 @@ public final class Network {
      * @return {@code true} if the device is connected to the network.
      */
     public static boolean isConnected() {
+        final NetworkInfo activeNetworkInfo = getConnectivityManager().getActiveNetworkInfo();
+        return activeNetworkInfo != null && activeNetworkInfo.isConnected();
+    }
+
+    /**
+     * Checks if the device has a network connection which is not metered, like most Wi-Fi connections.
+     *
+     * @return {@code true} if the device is connected to an unmetered network.
+     */
+    public static boolean isUnmeteredConnection() {
+        return isConnected() && !ConnectivityManagerCompat.isActiveNetworkMetered(getConnectivityManager());
+    }
+
+    @NonNull
+    private static ConnectivityManager getConnectivityManager() {
         if (connectivityManager == null) {
             // Concurrent assignment would not hurt as this request is idempotent
             connectivityManager = (ConnectivityManager) CgeoApplication.getInstance().getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
         }
-        final NetworkInfo activeNetworkInfo = connectivityManager.getActiveNetworkInfo();
-        return activeNetworkInfo != null && activeNetworkInfo.isConnected();
+        return connectivityManager;
     }
 
 }
@@ -0,0 +1,37 @@
+package cgeo.geocaching.settings;
+
+import android.content.Context;
+import android.util.AttributeSet;
+
+/**
+ * Slider for the number of visible caches above which the map groups nearby caches.
+ */
+public class ClusteringThresholdPreference extends WpThresholdPreference {
+
+    public ClusteringThresholdPreference(final Context context) {
+        super(context);
+    }
+
+    public ClusteringThresholdPreference(final Context context, final AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public ClusteringThresholdPreference(final Context context, final AttributeSet attrs, final int defStyle) {
+        super(context, attrs, defStyle);
+    }
+
+    @Override
+    protected int getMaxThreshold() {
+        return Settings.CLUSTERING_THRESHOLD_MAX;
+    }
+
+    @Override
+    protected int getThreshold() {
+        return Settings.getClusteringThreshold();
+    }
+
+    @Override
+    protected void setThreshold(final int threshold) {
+        Settings.setClusteringThreshold(threshold);
+    }
+}
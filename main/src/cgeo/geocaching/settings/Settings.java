@@ -68,6 +68,8 @@ public class Settings {
 
     private static final int SHOW_WP_THRESHOLD_DEFAULT = 10;
     public static final int SHOW_WP_THRESHOLD_MAX = 50;
+    private static final int CLUSTERING_THRESHOLD_DEFAULT = 300;
+    public static final int CLUSTERING_THRESHOLD_MAX = 1000;
     private static final int MAP_SOURCE_DEFAULT = GoogleMapProvider.GOOGLE_MAP_ID.hashCode();
 
     private static final String PHONE_MODEL_AND_SDK = Build.MODEL + "/" + Build.VERSION.SDK_INT;
@@ -541,6 +543,10 @@ public class Settings {
         return getBoolean(R.string.pref_choose_list, false);
     }
 
+    public static boolean isResumeStoreOnStart() {
+        return getBoolean(R.string.pref_store_resume, true);
+    }
+
     public static boolean getLoadDirImg() {
         return !isGCPremiumMember() && getBoolean(R.string.pref_loaddirectionimg, true);
     }
@@ -590,6 +596,24 @@ public class Settings {
         return getBoolean(R.string.pref_logimages, false);
     }
 
+    /**
+     * @return the maximum size of the stored images and static maps in MB, or 0 for no limit
+     */
+    public static int getStorageQuota() {
+        return Integer.parseInt(getString(R.string.pref_storage_quota, "0"));
+    }
+
+    /**
+     * @return {@code true} if the files stored before the storage quota existed have been indexed
+     */
+    public static boolean isStorageIndexed() {
+        return getBoolean(R.string.pref_storage_indexed, false);
+    }
+
+    public static void setStorageIndexed() {
+        putBoolean(R.string.pref_storage_indexed, true);
+    }
+
     public static boolean isRatingWanted() {
         return getBoolean(R.string.pref_ratingwanted, true);
     }
@@ -895,6 +919,17 @@ public class Settings {
         putInt(R.string.pref_showwaypointsthreshold, threshold);
     }
 
+    /**
+     * The Threshold of visible caches above which nearby caches are grouped on the map, 0 to never group them
+     */
+    public static int getClusteringThreshold() {
+        return getInt(R.string.pref_clusteringthreshold, CLUSTERING_THRESHOLD_DEFAULT);
+    }
+
+    static void setClusteringThreshold(final int threshold) {
+        putInt(R.string.pref_clusteringthreshold, threshold);
+    }
+
     public static boolean isUseTwitter() {
         return getBoolean(R.string.pref_twitter, false);
     }
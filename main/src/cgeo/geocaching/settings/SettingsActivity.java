@@ -17,11 +17,13 @@ import cgeo.geocaching.gcvote.GCVote;
 import cgeo.geocaching.maps.MapProviderFactory;
 import cgeo.geocaching.maps.interfaces.MapSource;
 import cgeo.geocaching.network.AndroidBeam;
+import cgeo.geocaching.network.HttpCache;
 import cgeo.geocaching.playservices.GooglePlayServices;
 import cgeo.geocaching.sensors.OrientationProvider;
 import cgeo.geocaching.sensors.RotationProvider;
 import cgeo.geocaching.sensors.Sensors;
 import cgeo.geocaching.storage.DataStore;
+import cgeo.geocaching.storage.StorageManager;
 import cgeo.geocaching.utils.AndroidRxUtils;
 import cgeo.geocaching.utils.DatabaseBackupUtils;
 import cgeo.geocaching.utils.DebugUtils;
@@ -47,15 +49,20 @@ import android.preference.PreferenceManager;
 import android.preference.PreferenceScreen;
 import android.support.annotation.AnyRes;
 import android.support.annotation.NonNull;
+import android.text.format.Formatter;
 import android.widget.BaseAdapter;
 import android.widget.ListAdapter;
 
 import java.io.File;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Callable;
 
+import io.reactivex.functions.Consumer;
 import io.reactivex.schedulers.Schedulers;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
 import org.openintents.intents.FileManagerIntents;
 
 /**
@@ -154,6 +161,8 @@ public class SettingsActivity extends PreferenceActivity {
         initNavigationMenuPreferences();
         initLanguagePreferences();
         initMaintenanceButtons();
+        initStoragePreferences();
+        initHttpCachePreferences();
 
         for (final int k : new int[] {
                 R.string.pref_pass_vote, R.string.pref_signature,
@@ -162,7 +171,7 @@ public class SettingsActivity extends PreferenceActivity {
                 R.string.pref_mapDirectory, R.string.pref_defaultNavigationTool,
                 R.string.pref_defaultNavigationTool2, R.string.pref_webDeviceName,
                 R.string.pref_fakekey_preference_backup_info, R.string.pref_twitter_cache_message, R.string.pref_twitter_trackable_message,
-                R.string.pref_ec_icons }) {
+                R.string.pref_ec_icons, R.string.pref_storage_quota }) {
             bindSummaryToStringValue(k);
         }
         bindGeocachingUserToGCVoteuser();
@@ -407,6 +416,83 @@ public class SettingsActivity extends PreferenceActivity {
                 });
     }
 
+    private void initStoragePreferences() {
+        final Preference storageStats = getPreference(R.string.pref_fakekey_storage_stats);
+        updateStorageStats(storageStats);
+        storageStats.setOnPreferenceClickListener(new OnPreferenceClickListener() {
+            @Override
+            public boolean onPreferenceClick(final Preference preference) {
+                // disable the button while the files are deleted in background
+                preference.setEnabled(false);
+                AndroidRxUtils.andThenOnUi(Schedulers.io(), new Runnable() {
+                    @Override
+                    public void run() {
+                        StorageManager.enforceQuota();
+                    }
+                }, new Runnable() {
+                    @Override
+                    public void run() {
+                        preference.setEnabled(true);
+                        updateStorageStats(preference);
+                    }
+                });
+                return true;
+            }
+        });
+    }
+
+    private void updateStorageStats(final Preference storageStats) {
+        AndroidRxUtils.andThenOnUi(Schedulers.io(), new Callable<ImmutablePair<Long, Long>>() {
+            @Override
+            public ImmutablePair<Long, Long> call() {
+                return StorageManager.getStats();
+            }
+        }, new Consumer<ImmutablePair<Long, Long>>() {
+            @Override
+            public void accept(final ImmutablePair<Long, Long> stats) {
+                storageStats.setSummary(getString(R.string.init_storage_stats_summary, Formatter.formatFileSize(SettingsActivity.this, stats.left), stats.right));
+            }
+        });
+    }
+
+    private void initHttpCachePreferences() {
+        final Preference httpCacheStats = getPreference(R.string.pref_fakekey_http_cache_stats);
+        updateHttpCacheStats(httpCacheStats);
+        httpCacheStats.setOnPreferenceClickListener(new OnPreferenceClickListener() {
+            @Override
+            public boolean onPreferenceClick(final Preference preference) {
+                preference.setEnabled(false);
+                AndroidRxUtils.andThenOnUi(Schedulers.io(), new Runnable() {
+                    @Override
+                    public void run() {
+                        HttpCache.clear();
+                    }
+                }, new Runnable() {
+                    @Override
+                    public void run() {
+                        preference.setEnabled(true);
+                        updateHttpCacheStats(preference);
+                    }
+                });
+                return true;
+            }
+        });
+    }
+
+    private void updateHttpCacheStats(final Preference httpCacheStats) {
+        AndroidRxUtils.andThenOnUi(Schedulers.io(), new Callable<ImmutableTriple<Long, Integer, Integer>>() {
+            @Override
+            public ImmutableTriple<Long, Integer, Integer> call() {
+                return HttpCache.getStats();
+            }
+        }, new Consumer<ImmutableTriple<Long, Integer, Integer>>() {
+            @Override
+            public void accept(final ImmutableTriple<Long, Integer, Integer> stats) {
+                httpCacheStats.setSummary(getString(R.string.init_http_cache_stats_summary, Formatter.formatFileSize(SettingsActivity.this, stats.left), stats.middle, stats.right));
+            }
+        });
+    }
+
     private static void initDeviceSpecificPreferences() {
         // We have to ensure that those preferences are initialized so that devices with specific default values
         // will get the appropriate ones.
@@ -45,10 +45,10 @@ public class WpThresholdPreference extends Preference {
         valueView = ButterKnife.findById(v, R.id.wp_threshold_value_view);
 
         // init seekbar
-        seekBar.setMax(Settings.SHOW_WP_THRESHOLD_MAX);
+        seekBar.setMax(getMaxThreshold());
 
         // set initial value
-        final int threshold = Settings.getWayPointsThreshold();
+        final int threshold = getThreshold();
         valueView.setText(String.valueOf(threshold));
         seekBar.setProgress(threshold);
 
@@ -64,11 +64,23 @@ public class WpThresholdPreference extends Preference {
             }
             @Override
             public void onStopTrackingTouch(final SeekBar seekBar) {
-                Settings.setShowWaypointsThreshold(seekBar.getProgress());
+                setThreshold(seekBar.getProgress());
             }
         });
 
         return v;
     }
 
+    protected int getMaxThreshold() {
+        return Settings.SHOW_WP_THRESHOLD_MAX;
+    }
+
+    protected int getThreshold() {
+        return Settings.getWayPointsThreshold();
+    }
+
+    protected void setThreshold(final int threshold) {
+        Settings.setShowWaypointsThreshold(threshold);
+    }
+
 }
@@ -63,6 +63,25 @@ abstract class AbstractCacheComparator implements CacheComparator {
      */
     protected abstract int compareCaches(final Geocache cache1, final Geocache cache2);
 
+    /**
+     * Check whether the order of this comparator is given by a numeric key of each cache, so that caches can be sorted
+     * by precomputed keys instead of comparing them pairwise.
+     * <p/>
+     * The default implementation returns {@code false} and must be overridden together with
+     * {@link #getSortKey(Geocache)}.
+     */
+    boolean hasSortKey() {
+        return false;
+    }
+
+    /**
+     * Get the numeric key of a cache which can be compared, such that sorting by ascending keys gives the same order
+     * as {@link #compareCaches(Geocache, Geocache)}.
+     */
+    double getSortKey(final Geocache cache) {
+        throw new IllegalStateException("no sort key in " + getClass().getSimpleName());
+    }
+
     @Override
     public boolean isAutoManaged() {
         return false;
@@ -0,0 +1,267 @@
+package cgeo.geocaching.sorting;
+
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.utils.Log;
+
+import android.support.annotation.NonNull;
+
+import java.text.CollationKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sorts lists of caches by keys which are extracted only once per cache.
+ * <p>
+ * Comparing caches pairwise with a {@link CacheComparator} repeats the same work (like computing a distance or
+ * collating a name) in each of the n log n comparisons. For the comparators which support it, the sort key of each
+ * cache is computed once into an array instead, and the indices of the caches are sorted by those keys. Sorting is
+ * stable and gives the same order as sorting with the comparator itself.
+ * </p>
+ * <p>
+ * If the list is known to be nearly sorted already (for example when resorting by distance after a small change of
+ * the position), an insertion sort is tried first, which takes linear time for a list with only a few caches out of
+ * order.
+ * </p>
+ */
+public final class CacheSorter {
+
+    /**
+     * maximum number of moves per cache for the insertion sort of a presorted list, before falling back to a full sort
+     */
+    private static final int MAX_INSERTION_MOVES_PER_CACHE = 4;
+
+    private CacheSorter() {
+        // utility class
+    }
+
+    private interface IndexComparator {
+        int compare(int left, int right);
+    }
+
+    /**
+     * Sort the caches with the given comparator, using precomputed sort keys if the comparator supports them.
+     *
+     * @param inverse
+     *            {@code true} to sort in the inverse order of the comparator
+     */
+    public static void sort(@NonNull final List<Geocache> caches, @NonNull final CacheComparator comparator, final boolean inverse) {
+        if (comparator instanceof NameComparator) {
+            sortByCollationKey(caches, (NameComparator) comparator, inverse);
+        } else if (comparator instanceof AbstractCacheComparator && ((AbstractCacheComparator) comparator).hasSortKey()) {
+            sortByNumericKey(caches, (AbstractCacheComparator) comparator, inverse);
+        } else {
+            Collections.sort(caches, inverse ? new InverseComparator(comparator) : comparator);
+        }
+    }
+
+    /**
+     * Sort the caches by their distance to the given coordinates, like {@link DistanceComparator}. The distances of the
+     * caches are updated as well.
+     *
+     * @param inverse
+     *            {@code true} to sort the farthest caches first
+     * @param presorted
+     *            {@code true} if the list is expected to be nearly sorted already, because it has been sorted by the
+     *            distance to nearby coordinates before
+     * @return {@code true} if the order of the caches changed
+     */
+    public static boolean sortByDistance(@NonNull final List<Geocache> caches, @NonNull final Geopoint coords, final boolean inverse, final boolean presorted) {
+        final Geocache[] items = caches.toArray(new Geocache[caches.size()]);
+        final float[] distances = new float[items.length];
+        final int[] order = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            final Geocache cache = items[i];
+            if (cache.getCoords() != null) {
+                cache.setDistance(coords.distanceTo(cache.getCoords()));
+            }
+            // caches without distance are sorted last, like in DistanceComparator
+            final Float distance = cache.getDistance();
+            distances[i] = distance != null ? distance : Float.POSITIVE_INFINITY;
+            order[i] = i;
+        }
+        sortIndices(order, order.length, inverse(new IndexComparator() {
+            @Override
+            public int compare(final int left, final int right) {
+                return Float.compare(distances[left], distances[right]);
+            }
+        }, inverse), presorted);
+
+        final List<Geocache> sorted = new ArrayList<>(items.length);
+        for (final int index : order) {
+            sorted.add(items[index]);
+        }
+        return reorder(caches, sorted);
+    }
+
+    private static void sortByNumericKey(@NonNull final List<Geocache> caches, @NonNull final AbstractCacheComparator comparator, final boolean inverse) {
+        final Geocache[] items = caches.toArray(new Geocache[caches.size()]);
+        final double[] keys = new double[items.length];
+        final int[] order = new int[items.length];
+        int comparable = 0;
+        int incomparable = items.length;
+        for (int i = 0; i < items.length; i++) {
+            if (extractNumericKey(comparator, items[i], keys, i)) {
+                order[comparable++] = i;
+            } else {
+                order[--incomparable] = i;
+            }
+        }
+        sortIndices(order, comparable, inverse(new IndexComparator() {
+            @Override
+            public int compare(final int left, final int right) {
+                return Double.compare(keys[left], keys[right]);
+            }
+        }, inverse), false);
+        sortIncomparable(caches, items, order, comparable, comparator, inverse);
+    }
+
+    private static boolean extractNumericKey(@NonNull final AbstractCacheComparator comparator, @NonNull final Geocache cache, @NonNull final double[] keys, final int index) {
+        try {
+            if (comparator.canCompare(cache)) {
+                keys[index] = comparator.getSortKey(cache);
+                return true;
+            }
+        } catch (final Exception e) {
+            Log.e("CacheSorter.extractNumericKey", e);
+        }
+        return false;
+    }
+
+    private static void sortByCollationKey(@NonNull final List<Geocache> caches, @NonNull final NameComparator comparator, final boolean inverse) {
+        final Geocache[] items = caches.toArray(new Geocache[caches.size()]);
+        final CollationKey[] keys = new CollationKey[items.length];
+        final int[] order = new int[items.length];
+        int comparable = 0;
+        int incomparable = items.length;
+        for (int i = 0; i < items.length; i++) {
+            if (comparator.canCompare(items[i])) {
+                keys[i] = comparator.getCollationKey(items[i]);
+                order[comparable++] = i;
+            } else {
+                order[--incomparable] = i;
+            }
+        }
+        sortIndices(order, comparable, inverse(new IndexComparator() {
+            @Override
+            public int compare(final int left, final int right) {
+                return keys[left].compareTo(keys[right]);
+            }
+        }, inverse), false);
+        sortIncomparable(caches, items, order, comparable, comparator, inverse);
+    }
+
+    /**
+     * Sort the caches which cannot be compared by key like {@link AbstractCacheComparator#compare} does it, and write
+     * all caches back into the list. Those caches go last, or first in inverse order.
+     *
+     * @param order
+     *            the sorted indices of the caches which can be compared, followed by the indices of all other caches
+     *            in reverse list order
+     */
+    private static void sortIncomparable(@NonNull final List<Geocache> caches, @NonNull final Geocache[] items, @NonNull final int[] order, final int comparable, @NonNull final CacheComparator comparator, final boolean inverse) {
+        final List<Geocache> incomparable = new ArrayList<>(order.length - comparable);
+        for (int i = order.length - 1; i >= comparable; i--) {
+            incomparable.add(items[order[i]]);
+        }
+        Collections.sort(incomparable, inverse ? new InverseComparator(comparator) : comparator);
+
+        final List<Geocache> sorted = new ArrayList<>(items.length);
+        if (inverse) {
+            sorted.addAll(incomparable);
+        }
+        for (int i = 0; i < comparable; i++) {
+            sorted.add(items[order[i]]);
+        }
+        if (!inverse) {
+            sorted.addAll(incomparable);
+        }
+        reorder(caches, sorted);
+    }
+
+    @NonNull
+    private static IndexComparator inverse(@NonNull final IndexComparator comparator, final boolean inverse) {
+        if (!inverse) {
+            return comparator;
+        }
+        return new IndexComparator() {
+            @Override
+            public int compare(final int left, final int right) {
+                return comparator.compare(right, left);
+            }
+        };
+    }
+
+    /**
+     * Write the sorted caches into the list.
+     *
+     * @return {@code true} if the order of the list changed
+     */
+    private static boolean reorder(@NonNull final List<Geocache> caches, @NonNull final List<Geocache> sorted) {
+        boolean changed = false;
+        for (int i = 0; i < sorted.size(); i++) {
+            final Geocache cache = sorted.get(i);
+            if (caches.get(i) != cache) {
+                caches.set(i, cache);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Stable sort of the first {@code count} indices.
+     */
+    private static void sortIndices(@NonNull final int[] order, final int count, @NonNull final IndexComparator comparator, final boolean presorted) {
+        if (presorted && insertionSort(order, count, comparator, MAX_INSERTION_MOVES_PER_CACHE * count)) {
+            return;
+        }
+        mergeSort(order, new int[count], 0, count, comparator);
+    }
+
+    /**
+     * Insertion sort, which is linear for nearly sorted indices.
+     *
+     * @return {@code false} if the sort was given up after {@code maxMoves} moves, leaving the indices partly sorted
+     */
+    private static boolean insertionSort(@NonNull final int[] order, final int count, @NonNull final IndexComparator comparator, final int maxMoves) {
+        int moves = 0;
+        for (int i = 1; i < count; i++) {
+            final int current = order[i];
+            int j = i - 1;
+            while (j >= 0 && comparator.compare(order[j], current) > 0) {
+                order[j + 1] = order[j];
+                j--;
+                if (++moves > maxMoves) {
+                    order[j + 1] = current;
+                    return false;
+                }
+            }
+            order[j + 1] = current;
+        }
+        return true;
+    }
+
+    private static void mergeSort(@NonNull final int[] order, @NonNull final int[] buffer, final int from, final int to, @NonNull final IndexComparator comparator) {
+        if (to - from < 2) {
+            return;
+        }
+        final int middle = (from + to) >>> 1;
+        mergeSort(order, buffer, from, middle, comparator);
+        mergeSort(order, buffer, middle, to, comparator);
+        if (comparator.compare(order[middle - 1], order[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(order, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && comparator.compare(buffer[left], buffer[right]) <= 0)) {
+                order[i] = buffer[left++];
+            } else {
+                order[i] = buffer[right++];
+            }
+        }
+    }
+}
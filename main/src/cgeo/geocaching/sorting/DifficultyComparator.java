@@ -17,4 +17,14 @@ class DifficultyComparator extends AbstractCacheComparator {
     protected int compareCaches(final Geocache cache1, final Geocache cache2) {
         return Float.compare(cache1.getDifficulty(), cache2.getDifficulty());
     }
+
+    @Override
+    boolean hasSortKey() {
+        return true;
+    }
+
+    @Override
+    double getSortKey(final Geocache cache) {
+        return cache.getDifficulty();
+    }
 }
@@ -16,4 +16,14 @@ class FindsComparator extends AbstractCacheComparator {
         return finds2 - finds1;
     }
 
+    @Override
+    boolean hasSortKey() {
+        return true;
+    }
+
+    @Override
+    double getSortKey(final Geocache cache) {
+        return -cache.getFindsCount();
+    }
+
 }
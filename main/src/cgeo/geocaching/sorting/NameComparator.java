@@ -3,6 +3,10 @@ package cgeo.geocaching.sorting;
 import cgeo.geocaching.models.Geocache;
 import cgeo.geocaching.utils.TextUtils;
 
+import android.support.annotation.NonNull;
+
+import java.text.CollationKey;
+
 import org.apache.commons.lang3.StringUtils;
 
 /**
@@ -20,4 +24,13 @@ public class NameComparator extends AbstractCacheComparator {
     protected int compareCaches(final Geocache cache1, final Geocache cache2) {
         return TextUtils.COLLATOR.compare(cache1.getNameForSorting(), cache2.getNameForSorting());
     }
+
+    /**
+     * Get the collation key of the name of a cache, for sorting many caches without collating the names again in each
+     * comparison.
+     */
+    @NonNull
+    CollationKey getCollationKey(final Geocache cache) {
+        return TextUtils.COLLATOR.getCollationKey(cache.getNameForSorting());
+    }
 }
@@ -12,4 +12,14 @@ class PopularityComparator extends AbstractCacheComparator {
     protected int compareCaches(final Geocache cache1, final Geocache cache2) {
         return cache2.getFavoritePoints() - cache1.getFavoritePoints();
     }
+
+    @Override
+    boolean hasSortKey() {
+        return true;
+    }
+
+    @Override
+    double getSortKey(final Geocache cache) {
+        return -cache.getFavoritePoints();
+    }
 }
@@ -15,4 +15,15 @@ class RatingComparator extends AbstractCacheComparator {
         // Voting can be disabled for caches, then assume an average rating instead
         return Float.compare(rating2 != 0.0 ? rating2 : 2.5f, rating1 != 0.0 ? rating1 : 2.5f);
     }
+
+    @Override
+    boolean hasSortKey() {
+        return true;
+    }
+
+    @Override
+    double getSortKey(final Geocache cache) {
+        final float rating = cache.getRating();
+        return -(rating != 0.0 ? rating : 2.5f);
+    }
 }
@@ -12,4 +12,14 @@ class SizeComparator extends AbstractCacheComparator {
     protected int compareCaches(final Geocache cache1, final Geocache cache2) {
         return cache2.getSize().comparable - cache1.getSize().comparable;
     }
+
+    @Override
+    boolean hasSortKey() {
+        return true;
+    }
+
+    @Override
+    double getSortKey(final Geocache cache) {
+        return -cache.getSize().comparable;
+    }
 }
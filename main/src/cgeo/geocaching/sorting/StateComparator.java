@@ -23,4 +23,14 @@ class StateComparator extends AbstractCacheComparator {
         return 0;
     }
 
+    @Override
+    boolean hasSortKey() {
+        return true;
+    }
+
+    @Override
+    double getSortKey(final Geocache cache) {
+        return getState(cache);
+    }
+
 }
@@ -15,4 +15,14 @@ class StorageTimeComparator extends AbstractCacheComparator {
         return 0;
     }
 
+    @Override
+    boolean hasSortKey() {
+        return true;
+    }
+
+    @Override
+    double getSortKey(final Geocache cache) {
+        return cache.getUpdated();
+    }
+
 }
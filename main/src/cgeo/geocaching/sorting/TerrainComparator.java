@@ -17,4 +17,14 @@ class TerrainComparator extends AbstractCacheComparator {
     protected int compareCaches(final Geocache cache1, final Geocache cache2) {
         return Float.compare(cache1.getTerrain(), cache2.getTerrain());
     }
+
+    @Override
+    boolean hasSortKey() {
+        return true;
+    }
+
+    @Override
+    double getSortKey(final Geocache cache) {
+        return cache.getTerrain();
+    }
 }
@@ -22,4 +22,14 @@ public class VisitComparator extends AbstractCacheComparator {
         return lhs < rhs ? -1 : (lhs == rhs ? 0 : 1);
     }
 
+    @Override
+    boolean hasSortKey() {
+        return true;
+    }
+
+    @Override
+    double getSortKey(final Geocache cache) {
+        return -cache.getVisitedDate();
+    }
+
 }
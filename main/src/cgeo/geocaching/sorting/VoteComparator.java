@@ -12,4 +12,14 @@ class VoteComparator extends AbstractCacheComparator {
         // if there is no vote available, put that cache at the end of the list
         return Float.compare(cache2.getMyVote(), cache1.getMyVote());
     }
+
+    @Override
+    boolean hasSortKey() {
+        return true;
+    }
+
+    @Override
+    double getSortKey(final Geocache cache) {
+        return -cache.getMyVote();
+    }
 }
@@ -7,7 +7,9 @@ import cgeo.geocaching.models.Waypoint;
 import cgeo.geocaching.network.Network;
 import cgeo.geocaching.network.Parameters;
 import cgeo.geocaching.settings.Settings;
+import cgeo.geocaching.storage.DataStore;
 import cgeo.geocaching.storage.LocalStorage;
+import cgeo.geocaching.storage.StorageManager;
 import cgeo.geocaching.utils.AndroidRxUtils;
 import cgeo.geocaching.utils.DisplayUtils;
 import cgeo.geocaching.utils.FileUtils;
@@ -19,6 +21,7 @@ import android.graphics.Point;
 import android.support.annotation.NonNull;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -100,9 +103,14 @@ public final class StaticMapsProvider {
                     params.addAll(waypoints);
                 }
                 try {
-                    final Response httpResponse = Network.getRequest(GOOGLE_STATICMAP_URL, params).blockingGet();
+                    final File file = getMapFile(geocode, prefix, true);
+                    final Response httpResponse = Network.getConditionalRequest(GOOGLE_STATICMAP_URL, params, StorageManager.getValidators(file)).blockingGet();
 
                     final int statusCode = httpResponse.code();
+                    if (statusCode == 304) {
+                        // the stored map is still up to date
+                        return Completable.complete();
+                    }
                     if (statusCode != 200) {
                         Log.d("StaticMapsProvider.downloadMap: httpResponseCode = " + statusCode);
                         if (statusCode == 403) {
@@ -115,12 +123,13 @@ public final class StaticMapsProvider {
                     if (warning != null) {
                         Log.w("Static maps download API warning: " + warning);
                     }
-                    final File file = getMapFile(geocode, prefix, true);
                     if (LocalStorage.saveEntityToFile(httpResponse, file)) {
                         // Delete image if it has no contents
                         final long fileSize = file.length();
                         if (fileSize < MIN_MAP_IMAGE_BYTES) {
                             FileUtils.deleteIgnoringFailure(file);
+                        } else {
+                            StorageManager.addFile(file, geocode, null, httpResponse);
                         }
                     }
                 } catch (final Exception ex) {
@@ -256,12 +265,15 @@ public final class StaticMapsProvider {
         }
         final int waypointId = waypoint.getId();
         final int waypointMapHash = waypoint.getStaticMapsHashcode();
+        final List<String> removed = new ArrayList<>(MAPS_LEVEL_MAX);
         for (int level = 1; level <= MAPS_LEVEL_MAX; level++) {
             final File mapFile = getMapFile(geocode, WAYPOINT_PREFIX + waypointId + "_" + waypointMapHash + '_' + level, false);
             if (!FileUtils.delete(mapFile)) {
                 Log.e("StaticMapsProvider.removeWpStaticMaps failed for " + mapFile.getAbsolutePath());
             }
+            removed.add(mapFile.getAbsolutePath());
         }
+        DataStore.removeStorageFiles(removed);
     }
 
     /**
@@ -335,6 +347,7 @@ public final class StaticMapsProvider {
     private static Bitmap decodeFile(final File mapFile) {
         // avoid exception in system log, if we got nothing back from Google.
         if (mapFile.exists()) {
+            StorageManager.markAccessed(mapFile);
             return BitmapFactory.decodeFile(mapFile.getPath());
         }
         return null;
@@ -1,35 +1,170 @@
 package cgeo.geocaching.storage;
 
+import cgeo.geocaching.CgeoApplication;
 import cgeo.geocaching.storage.DataStore.StorageLocation;
 import cgeo.geocaching.connector.gc.Tile;
 import cgeo.geocaching.enumerations.CacheType;
+import cgeo.geocaching.location.Geopoint;
 import cgeo.geocaching.location.Viewport;
 import cgeo.geocaching.models.Geocache;
-import cgeo.geocaching.utils.LeastRecentlyUsedMap;
 import cgeo.geocaching.utils.LeastRecentlyUsedMap.RemoveHandler;
 import cgeo.geocaching.utils.Log;
 
+import android.app.ActivityManager;
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Cache for Caches. Every cache is stored in memory while c:geo is active to
  * speed up the app and to minimize network requests - which are slow.
+ * <p>
+ * Reading a cache does not take any lock. The caches are distributed over several segments by geocode, and only
+ * changes lock the segment of the geocode. Each segment evicts its caches with the CLOCK algorithm, which approximates
+ * least recently used eviction: reading a cache only sets its reference bit, and eviction skips (and clears) caches
+ * with the bit set.
+ * </p>
+ * <p>
+ * The size of the CacheCache is limited by memory, not by number of caches, as a detailed cache can be a hundred times
+ * larger than a cache created from the live map. The memory of each cache is estimated by
+ * {@link Geocache#getEstimatedSize()} when it is put into the CacheCache, and the budget is a fraction of the
+ * application heap.
+ * </p>
+ * <p>
+ * Caches with coordinates are additionally kept in a coarse grid of spatial buckets, so that the lookup of the caches in
+ * a viewport only needs to check the caches in the buckets overlapping the viewport.
+ * </p>
  */
 public class CacheCache {
 
-    private static final int MAX_CACHED_CACHES = 1000;
-    private final LeastRecentlyUsedMap<String, Geocache> cachesCache;
+    /** fraction of the application heap used for the CacheCache, i.e. 1/8 of it */
+    private static final int HEAP_FRACTION = 8;
+    /** heap size in MB assumed if the memory class of the device is unknown */
+    private static final int DEFAULT_MEMORY_CLASS = 32;
+    private static final int SEGMENT_COUNT = 16;
+    /** size of a spatial bucket in degrees */
+    private static final double BUCKET_SIZE = 0.2;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Set<Entry>> buckets = new ConcurrentHashMap<>();
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    private final long maxBytes;
+    @NonNull private final RemoveHandler<Geocache> removeHandler;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private static final class Entry {
+        @NonNull final String geocode;
+        @NonNull volatile Geocache cache;
+        volatile boolean referenced;
+        /** spatial bucket of the entry, or {@code null} if the cache has no coordinates. Guarded by the segment. */
+        @Nullable Long bucket;
+        /** estimated size in bytes. Guarded by the segment. */
+        int weight;
+
+        Entry(@NonNull final String geocode, @NonNull final Geocache cache) {
+            this.geocode = geocode;
+            this.cache = cache;
+        }
+    }
+
+    private static final class Segment {
+        /** entries of this segment in CLOCK order. Guarded by this. */
+        final ArrayDeque<Entry> clock = new ArrayDeque<>();
+        /** estimated size of all entries of this segment in bytes. Guarded by this. */
+        long weight;
+    }
 
     public CacheCache() {
-        cachesCache = new LeastRecentlyUsedMap.LruCache<>(MAX_CACHED_CACHES);
-        cachesCache.setRemoveHandler(new CacheRemoveHandler());
+        this(getDefaultMaxBytes(), new CacheRemoveHandler());
+    }
+
+    /**
+     * @param maxBytes
+     *            memory budget for the cached caches in bytes
+     */
+    CacheCache(final long maxBytes, @NonNull final RemoveHandler<Geocache> removeHandler) {
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment();
+        }
+        this.maxBytes = maxBytes;
+        this.removeHandler = removeHandler;
+    }
+
+    private static long getDefaultMaxBytes() {
+        int memoryClass = DEFAULT_MEMORY_CLASS;
+        final Application application = CgeoApplication.getInstance();
+        if (application != null) {
+            final ActivityManager activityManager = (ActivityManager) application.getSystemService(Context.ACTIVITY_SERVICE);
+            if (activityManager != null) {
+                memoryClass = activityManager.getMemoryClass();
+            }
+        }
+        return memoryClass * 1024L * 1024L / HEAP_FRACTION;
     }
 
-    public synchronized void removeAllFromCache() {
-        cachesCache.clear();
+    public void removeAllFromCache() {
+        for (final Segment segment : segments) {
+            synchronized (segment) {
+                for (final Entry entry : segment.clock) {
+                    entries.remove(entry.geocode);
+                    removeFromBucket(entry);
+                }
+                segment.clock.clear();
+                segment.weight = 0;
+            }
+        }
+    }
+
+    /**
+     * Evict caches until the estimated size of the CacheCache is at most the given number of bytes. In contrast to
+     * {@link #removeAllFromCache()}, the remove handler is notified about the evicted caches.
+     */
+    public void trimToSize(final long bytes) {
+        final long maxBytesPerSegment = bytes / SEGMENT_COUNT;
+        final List<Geocache> evicted = new ArrayList<>();
+        for (final Segment segment : segments) {
+            synchronized (segment) {
+                while (segment.weight > maxBytesPerSegment && !segment.clock.isEmpty()) {
+                    evicted.add(evict(segment));
+                }
+            }
+        }
+        for (final Geocache removed : evicted) {
+            removeHandler.onRemove(removed);
+        }
+    }
+
+    /**
+     * Release memory according to the level given by {@link ComponentCallbacks2#onTrimMemory(int)}.
+     */
+    public void onTrimMemory(final int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            trimToSize(0);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            trimToSize(maxBytes / 4);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            trimToSize(maxBytes / 2);
+        }
+        Log.i("CacheCache trimmed for level " + level + ": " + getStatistics());
     }
 
     /**
@@ -40,8 +175,18 @@ public class CacheCache {
         if (StringUtils.isBlank(geocode)) {
             throw new IllegalArgumentException("geocode must not be empty");
         }
-        synchronized (this) {
-            cachesCache.remove(geocode);
+        final Segment segment = segmentFor(geocode);
+        final Entry removed;
+        synchronized (segment) {
+            removed = entries.remove(geocode);
+            if (removed != null) {
+                segment.clock.remove(removed);
+                removeFromBucket(removed);
+                setWeight(segment, removed, 0);
+            }
+        }
+        if (removed != null) {
+            removeHandler.onRemove(removed.cache);
         }
     }
 
@@ -56,12 +201,38 @@ public class CacheCache {
         if (cache == null) {
             throw new IllegalArgumentException("cache must not be null");
         }
-        if (StringUtils.isBlank(cache.getGeocode())) {
+        final String geocode = cache.getGeocode();
+        if (StringUtils.isBlank(geocode)) {
             throw new IllegalArgumentException("geocode must not be empty");
         }
-        synchronized (this) {
-            cache.addStorageLocation(StorageLocation.CACHE);
-            cachesCache.put(cache.getGeocode(), cache);
+        cache.addStorageLocation(StorageLocation.CACHE);
+        final Segment segment = segmentFor(geocode);
+        final List<Geocache> evicted = new ArrayList<>();
+        synchronized (segment) {
+            final Entry existing = entries.get(geocode);
+            if (existing != null) {
+                existing.cache = cache;
+                existing.referenced = true;
+                // the coordinates may have changed
+                removeFromBucket(existing);
+                addToBucket(existing);
+                setWeight(segment, existing, cache.getEstimatedSize());
+            } else {
+                final Entry entry = new Entry(geocode, cache);
+                entries.put(geocode, entry);
+                segment.clock.add(entry);
+                addToBucket(entry);
+                setWeight(segment, entry, cache.getEstimatedSize());
+            }
+            // always keep the cache just put, even if it alone exceeds the budget
+            final long maxBytesPerSegment = maxBytes / SEGMENT_COUNT;
+            while (segment.weight > maxBytesPerSegment && segment.clock.size() > 1) {
+                evicted.add(evict(segment));
+            }
+        }
+        // notify outside of the lock, the handler may need other locks
+        for (final Geocache removed : evicted) {
+            removeHandler.onRemove(removed);
         }
     }
 
@@ -74,37 +245,181 @@ public class CacheCache {
         if (StringUtils.isBlank(geocode)) {
             throw new IllegalArgumentException("geocode must not be empty");
         }
-        synchronized (this) {
-            return cachesCache.get(geocode);
+        final Entry entry = entries.get(geocode);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
         }
+        hits.incrementAndGet();
+        entry.referenced = true;
+        return entry.cache;
     }
 
-    public synchronized Set<String> getInViewport(final Viewport viewport, final CacheType cacheType) {
+    public Set<String> getInViewport(final Viewport viewport, final CacheType cacheType) {
         final Set<String> geocodes = new HashSet<>();
-        for (final Geocache cache : cachesCache.values()) {
-            if (cache.getCoords() == null) {
-                // FIXME: this kludge must be removed, it is only present to help us debug the cases where
-                // caches contain null coordinates.
-                Log.w("CacheCache.getInViewport: got cache with null coordinates: " + cache.getGeocode());
-                continue;
-            }
-            if (cacheType.contains(cache) && viewport.contains(cache)) {
-                geocodes.add(cache.getGeocode());
+        for (final Set<Entry> bucket : getBuckets(viewport)) {
+            for (final Entry entry : bucket) {
+                final Geocache cache = entry.cache;
+                if (cache.getCoords() != null && cacheType.contains(cache) && viewport.contains(cache)) {
+                    geocodes.add(entry.geocode);
+                }
             }
         }
         return geocodes;
     }
 
+    /**
+     * @return number of caches currently in the CacheCache
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return estimated size of all caches in the CacheCache in bytes
+     */
+    public long getResidentBytes() {
+        long bytes = 0;
+        for (final Segment segment : segments) {
+            synchronized (segment) {
+                bytes += segment.weight;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return a human readable summary of size, hit rate and evictions
+     */
+    @NonNull
+    public String getStatistics() {
+        final long hitCount = hits.get();
+        final long requestCount = hitCount + misses.get();
+        return String.format(Locale.US, "%d caches, %d of %d KB, hit rate %d%% of %d lookups, %d evictions",
+                size(), getResidentBytes() / 1024, maxBytes / 1024, requestCount == 0 ? 0 : hitCount * 100 / requestCount, requestCount, evictions.get());
+    }
+
     @Override
-    public synchronized String toString() {
-        return StringUtils.join(cachesCache.keySet(), ' ');
+    public String toString() {
+        return StringUtils.join(entries.keySet(), ' ');
+    }
+
+    @NonNull
+    private Segment segmentFor(@NonNull final String geocode) {
+        // spread the hash, as geocodes often only differ in the last characters
+        final int hash = geocode.hashCode();
+        return segments[((hash ^ (hash >>> 16)) & 0x7fffffff) % SEGMENT_COUNT];
+    }
+
+    /**
+     * Remove the next entry in CLOCK order which has not been referenced since the hand passed it the last time. Must
+     * be called with the segment locked.
+     *
+     * @return the evicted cache
+     */
+    @NonNull
+    private Geocache evict(@NonNull final Segment segment) {
+        while (true) {
+            final Entry entry = segment.clock.poll();
+            if (entry.referenced) {
+                entry.referenced = false;
+                segment.clock.add(entry);
+                continue;
+            }
+            entries.remove(entry.geocode);
+            removeFromBucket(entry);
+            setWeight(segment, entry, 0);
+            evictions.incrementAndGet();
+            return entry.cache;
+        }
+    }
+
+    /**
+     * Must be called with the segment locked.
+     */
+    private static void setWeight(@NonNull final Segment segment, @NonNull final Entry entry, final int weight) {
+        segment.weight += weight - entry.weight;
+        entry.weight = weight;
+    }
+
+    @NonNull
+    private Collection<Set<Entry>> getBuckets(@NonNull final Viewport viewport) {
+        final long rowMin = getBucketIndex(viewport.getLatitudeMin(), 90);
+        final long rowMax = getBucketIndex(viewport.getLatitudeMax(), 90);
+        final long columnMin = getBucketIndex(viewport.getLongitudeMin(), 180);
+        final long columnMax = getBucketIndex(viewport.getLongitudeMax(), 180);
+        // for large viewports it is cheaper to look at all existing buckets
+        if ((rowMax - rowMin + 1) * (columnMax - columnMin + 1) > buckets.size()) {
+            return buckets.values();
+        }
+        final List<Set<Entry>> result = new ArrayList<>();
+        for (long row = rowMin; row <= rowMax; row++) {
+            for (long column = columnMin; column <= columnMax; column++) {
+                final Set<Entry> bucket = buckets.get(getBucket(row, column));
+                if (bucket != null) {
+                    result.add(bucket);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static long getBucketIndex(final double degrees, final double offset) {
+        return (long) Math.floor((degrees + offset) / BUCKET_SIZE);
+    }
+
+    private static long getBucket(final long row, final long column) {
+        return (row << 32) | (column & 0xffffffffL);
+    }
+
+    @Nullable
+    private static Long getBucket(@NonNull final Geocache cache) {
+        final Geopoint coords = cache.getCoords();
+        if (coords == null) {
+            return null;
+        }
+        return getBucket(getBucketIndex(coords.getLatitude(), 90), getBucketIndex(coords.getLongitude(), 180));
+    }
+
+    /**
+     * Must be called with the segment of the entry locked.
+     */
+    private void addToBucket(@NonNull final Entry entry) {
+        entry.bucket = getBucket(entry.cache);
+        if (entry.bucket == null) {
+            return;
+        }
+        Set<Entry> bucket = buckets.get(entry.bucket);
+        if (bucket == null) {
+            final Set<Entry> newBucket = Collections.newSetFromMap(new ConcurrentHashMap<Entry, Boolean>());
+            bucket = buckets.putIfAbsent(entry.bucket, newBucket);
+            if (bucket == null) {
+                bucket = newBucket;
+            }
+        }
+        bucket.add(entry);
+    }
+
+    /**
+     * Must be called with the segment of the entry locked. Empty buckets are kept, as other segments may concurrently
+     * add to them.
+     */
+    private void removeFromBucket(@NonNull final Entry entry) {
+        if (entry.bucket == null) {
+            return;
+        }
+        final Set<Entry> bucket = buckets.get(entry.bucket);
+        if (bucket != null) {
+            bucket.remove(entry);
+        }
+        entry.bucket = null;
     }
 
     private static class CacheRemoveHandler implements RemoveHandler<Geocache> {
 
         @Override
         public void onRemove(final Geocache removed) {
-            // FIXME: as above, we sometimes get caches with null coordinates, that may then provoke
+            // FIXME: we sometimes get caches with null coordinates, that may then provoke
             // a NullPointerException down the invocation chain.
             if (removed.getCoords() != null) {
                 Tile.cache.removeFromTileCache(removed);
@@ -13,10 +13,12 @@ import cgeo.geocaching.enumerations.LoadFlags.LoadFlag;
 import cgeo.geocaching.enumerations.LoadFlags.RemoveFlag;
 import cgeo.geocaching.enumerations.LoadFlags.SaveFlag;
 import cgeo.geocaching.enumerations.WaypointType;
+import cgeo.geocaching.filter.IFilter;
 import cgeo.geocaching.list.AbstractList;
 import cgeo.geocaching.list.PseudoList;
 import cgeo.geocaching.list.StoredList;
 import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.location.SpatialIndex;
 import cgeo.geocaching.location.Viewport;
 import cgeo.geocaching.log.LogEntry;
 import cgeo.geocaching.log.LogType;
@@ -25,6 +27,7 @@ import cgeo.geocaching.models.Geocache;
 import cgeo.geocaching.models.Image;
 import cgeo.geocaching.models.Trackable;
 import cgeo.geocaching.models.Waypoint;
+import cgeo.geocaching.network.HtmlImage;
 import cgeo.geocaching.search.SearchSuggestionCursor;
 import cgeo.geocaching.settings.Settings;
 import cgeo.geocaching.ui.dialog.Dialogs;
@@ -63,6 +66,7 @@ import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
@@ -83,6 +87,9 @@ import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
+import org.apache.commons.lang3.tuple.Pair;
 
 public class DataStore {
 
@@ -160,6 +167,34 @@ public class DataStore {
     /** The list of fields needed for mapping. */
     private static final String[] WAYPOINT_COLUMNS = { "_id", "geocode", "updated", "type", "prefix", "lookup", "name", "latitude", "longitude", "note", "own", "visited", "user_note", "org_coords_empty" };
 
+    /** The columns written when storing a cache, see {@link #getCacheValues(Geocache)} */
+    private static final String[] CACHE_STORE_COLUMNS = { "updated", "reason", "detailed", "detailedupdate", "visiteddate", "geocode", "cacheid", "guid", "type", "name",
+            "owner", "owner_real", "hidden", "hint", "size", "difficulty", "terrain", "location", "distance", "direction", "latitude", "longitude", "reliable_latlon",
+            "shortdesc", "personal_note", "description", "favourite_cnt", "rating", "votes", "myvote", "disabled", "archived", "members", "found", "favourite",
+            "inventoryunknown", "onWatchlist", "coordsChanged", "finalDefined", "logPasswordRequired", "watchlistCount", "spatial_cell" };
+
+    /** The columns written when storing a waypoint, see {@link #getWaypointValues(String, long, Waypoint)} */
+    private static final String[] WAYPOINT_STORE_COLUMNS = { "geocode", "updated", "type", "prefix", "lookup", "name", "latitude", "longitude", "note", "own", "visited", "user_note", "org_coords_empty",
+            "spatial_cell" };
+
+    /** The columns written when storing a trackable */
+    private static final String[] TRACKABLE_STORE_COLUMNS = { "geocode", "updated", "tbcode", "guid", "title", "owner", "released", "goal", "description" };
+
+    /** Characters separating the words of a full text query, the same as for the default tokenizer of SQLite */
+    private static final String FULL_TEXT_SEPARATORS = " \t\n\r!\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~";
+
+    /** Maximum number of caches loaded for a viewport. The caches nearest to the center of the viewport are used. */
+    public static final int MAX_VIEWPORT_CACHES = 500;
+
+    /** Number of caches written to the database in a single transaction when saving many caches */
+    public static final int SAVE_BATCH_SIZE = 100;
+
+    /** Number of geocodes used in a single {@code geocode IN (...)} query when loading many caches at once */
+    private static final int LOAD_GEOCODES_CHUNK_SIZE = 500;
+
+    /** Maximum number of attributes, spoilers, log counts and trackables loaded per cache */
+    private static final int MAX_DEPENDENT_ROWS_PER_CACHE = 100;
+
     /** Number of days (as ms) after temporarily saved caches are deleted */
     private static final long DAYS_AFTER_CACHE_IS_DELETED = 3 * 24 * 60 * 60 * 1000;
 
@@ -168,7 +203,7 @@ public class DataStore {
      */
     private static final CacheCache cacheCache = new CacheCache();
     private static volatile SQLiteDatabase database = null;
-    private static final int dbVersion = 72;
+    private static final int dbVersion = 80;
     public static final int customListIdOffset = 10;
     @NonNull private static final String dbName = "data";
     @NonNull private static final String dbTableCaches = "cg_caches";
@@ -183,6 +218,23 @@ public class DataStore {
     @NonNull private static final String dbTableLogsOffline = "cg_logs_offline";
     @NonNull private static final String dbTableTrackables = "cg_trackables";
     @NonNull private static final String dbTableSearchDestinationHistory = "cg_search_destination_history";
+    @NonNull private static final String dbTableCachesFts = "cg_caches_fts";
+    @NonNull private static final String dbTableLogsFts = "cg_logs_fts";
+    @NonNull private static final String dbTableTrackablesFts = "cg_trackables_fts";
+    @NonNull private static final String dbTableListCounts = "cg_list_counts";
+    @NonNull private static final String dbTableStoreQueue = "cg_store_queue";
+    @NonNull private static final String dbTableImages = "cg_images";
+    @NonNull private static final String dbTableStorageFiles = "cg_storage_files";
+    /**
+     * tables of the viewport queries, which name the spatial cell index, as the query planner does not know how
+     * selective it is and prefers the index on the cache type otherwise
+     */
+    @NonNull static final String dbTableCachesInViewport = dbTableCaches + " INDEXED BY in_caches_cell";
+    @NonNull private static final String dbTableWaypointsInViewport = dbTableWaypoints + " INDEXED BY in_wpts_cell";
+    /**
+     * id of the row in the list counts table holding the number of distinct caches on all stored lists
+     */
+    private static final int allStoredCachesCountId = -1;
     @NonNull private static final String dbCreateCaches = ""
             + "CREATE TABLE " + dbTableCaches + " ("
             + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
@@ -228,7 +280,8 @@ public class DataStore {
             + "coordsChanged INTEGER DEFAULT 0, "
             + "finalDefined INTEGER DEFAULT 0, "
             + "logPasswordRequired INTEGER DEFAULT 0,"
-            + "watchlistCount INTEGER DEFAULT -1"
+            + "watchlistCount INTEGER DEFAULT -1, "
+            + "spatial_cell INTEGER" // see SpatialIndex
             + "); ";
     private static final String dbCreateLists = ""
             + "CREATE TABLE " + dbTableLists + " ("
@@ -242,6 +295,11 @@ public class DataStore {
             + "geocode TEXT NOT NULL, "
             + "PRIMARY KEY (list_id, geocode)"
             + "); ";
+    private static final String dbCreateListCounts = ""
+            + "CREATE TABLE " + dbTableListCounts + " ("
+            + "list_id INTEGER PRIMARY KEY, "
+            + "count INTEGER NOT NULL"
+            + "); ";
     private static final String dbCreateAttributes = ""
             + "CREATE TABLE " + dbTableAttributes + " ("
             + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
@@ -265,7 +323,8 @@ public class DataStore {
             + "own INTEGER DEFAULT 0, "
             + "visited INTEGER DEFAULT 0, "
             + "user_note TEXT, "
-            + "org_coords_empty INTEGER DEFAULT 0"
+            + "org_coords_empty INTEGER DEFAULT 0, "
+            + "spatial_cell INTEGER" // see SpatialIndex
             + "); ";
     private static final String dbCreateSpoilers = ""
             + "CREATE TABLE " + dbTableSpoilers + " ("
@@ -336,6 +395,44 @@ public class DataStore {
             + "longitude DOUBLE "
             + "); ";
 
+    private static final String dbCreateStoreQueue = ""
+            + "CREATE TABLE " + dbTableStoreQueue + " ("
+            + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + "geocode TEXT UNIQUE NOT NULL, "
+            + "lists TEXT NOT NULL, "
+            + "redownload INTEGER NOT NULL DEFAULT 0"
+            + "); ";
+
+    /**
+     * references of caches to the images in the {@link ImageStore}, by the hash of their content, with the validators
+     * of the response the image was downloaded from for this URL
+     */
+    private static final String dbCreateImages = ""
+            + "CREATE TABLE " + dbTableImages + " ("
+            + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + "geocode TEXT NOT NULL, "
+            + "url TEXT NOT NULL, "
+            + "hash TEXT NOT NULL, "
+            + "etag TEXT, "
+            + "last_modified TEXT, "
+            + "UNIQUE (geocode, url)"
+            + "); ";
+
+    /**
+     * size and last access of the files managed by the {@link StorageManager}, either static maps of a cache or images
+     * of the {@link ImageStore}, and the validators of the response they were downloaded from
+     */
+    private static final String dbCreateStorageFiles = ""
+            + "CREATE TABLE " + dbTableStorageFiles + " ("
+            + "path TEXT PRIMARY KEY, "
+            + "geocode TEXT, "
+            + "hash TEXT, "
+            + "size INTEGER NOT NULL, "
+            + "accessed INTEGER NOT NULL, "
+            + "etag TEXT, "
+            + "last_modified TEXT"
+            + "); ";
+
     private static final Single<Integer> allCachesCountObservable = Single.create(new SingleOnSubscribe<Integer>() {
         @Override
         public void subscribe(final SingleEmitter<Integer> emitter) throws Exception {
@@ -545,13 +642,17 @@ public class DataStore {
             db.execSQL(dbCreateSearchDestinationHistory);
 
             createIndices(db);
+            createSpatialIndices(db);
+            createFullTextIndices(db, false);
+            createListCounts(db);
+            db.execSQL(dbCreateStoreQueue);
+            createImages(db);
+            createStorageFiles(db);
         }
 
         private static void createIndices(final SQLiteDatabase db) {
             db.execSQL("CREATE INDEX IF NOT EXISTS in_caches_geo ON " + dbTableCaches + " (geocode)");
             db.execSQL("CREATE INDEX IF NOT EXISTS in_caches_guid ON " + dbTableCaches + " (guid)");
-            db.execSQL("CREATE INDEX IF NOT EXISTS in_caches_lat ON " + dbTableCaches + " (latitude)");
-            db.execSQL("CREATE INDEX IF NOT EXISTS in_caches_lon ON " + dbTableCaches + " (longitude)");
             db.execSQL("CREATE INDEX IF NOT EXISTS in_caches_reason ON " + dbTableCaches + " (reason)");
             db.execSQL("CREATE INDEX IF NOT EXISTS in_caches_detailed ON " + dbTableCaches + " (detailed)");
             db.execSQL("CREATE INDEX IF NOT EXISTS in_caches_type ON " + dbTableCaches + " (type)");
@@ -567,6 +668,121 @@ public class DataStore {
             db.execSQL("CREATE INDEX IF NOT EXISTS in_lists_geo ON " + dbTableCachesLists + " (geocode)");
         }
 
+        /**
+         * Indices on the spatial cell columns. These are separate from {@link #createIndices(SQLiteDatabase)}, as the
+         * columns only exist since database version 73.
+         */
+        private static void createSpatialIndices(final SQLiteDatabase db) {
+            // covering index for the viewport queries, so that the table itself is only read for matching caches
+            db.execSQL("CREATE INDEX IF NOT EXISTS in_caches_cell ON " + dbTableCaches + " (spatial_cell, latitude, longitude, type, geocode)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS in_wpts_cell ON " + dbTableWaypoints + " (spatial_cell, latitude, longitude)");
+        }
+
+        /**
+         * Full text indices of the columns used for search suggestions. Each index is a FTS4 table with the same row
+         * ids as the indexed table, and is kept in sync by triggers, so that every way of storing or removing rows
+         * updates it.
+         *
+         * @param indexExistingRows
+         *            {@code true} to index the rows already stored, when upgrading the database
+         */
+        private static void createFullTextIndices(final SQLiteDatabase db, final boolean indexExistingRows) {
+            createFullTextIndex(db, dbTableCaches, dbTableCachesFts, indexExistingRows, "geocode", "name", "owner", "owner_real");
+            createFullTextIndex(db, dbTableLogs, dbTableLogsFts, indexExistingRows, "author");
+            createFullTextIndex(db, dbTableTrackables, dbTableTrackablesFts, indexExistingRows, "tbcode", "title");
+        }
+
+        private static void createFullTextIndex(final SQLiteDatabase db, final String table, final String ftsTable, final boolean indexExistingRows, final String... columns) {
+            final String columnList = StringUtils.join(columns, ", ");
+            final String newValues = "new._id, new." + StringUtils.join(columns, ", new.");
+            final StringBuilder changed = new StringBuilder();
+            for (final String column : columns) {
+                if (changed.length() > 0) {
+                    changed.append(" OR ");
+                }
+                changed.append("old.").append(column).append(" IS NOT new.").append(column);
+            }
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + ftsTable + " USING fts4 (" + columnList + ")");
+            if (indexExistingRows) {
+                db.execSQL("INSERT INTO " + ftsTable + " (docid, " + columnList + ") SELECT _id, " + columnList + " FROM " + table);
+            }
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS tr_" + ftsTable + "_insert AFTER INSERT ON " + table
+                    + " BEGIN INSERT INTO " + ftsTable + " (docid, " + columnList + ") VALUES (" + newValues + "); END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS tr_" + ftsTable + "_update AFTER UPDATE OF " + columnList + " ON " + table + " WHEN " + changed
+                    + " BEGIN DELETE FROM " + ftsTable + " WHERE docid = old._id; INSERT INTO " + ftsTable + " (docid, " + columnList + ") VALUES (" + newValues + "); END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS tr_" + ftsTable + "_delete AFTER DELETE ON " + table
+                    + " BEGIN DELETE FROM " + ftsTable + " WHERE docid = old._id; END");
+        }
+
+        /**
+         * Number of caches on each list, and of distinct caches on all stored lists. The counts are computed from the
+         * rows already stored, and then kept up to date by triggers, so that every way of adding caches to lists or
+         * removing them updates the counts in the same transaction.
+         */
+        private static void createListCounts(final SQLiteDatabase db) {
+            final String incrementList = "INSERT OR IGNORE INTO " + dbTableListCounts + " (list_id, count) VALUES (new.list_id, 0); "
+                    + "UPDATE " + dbTableListCounts + " SET count = count + 1 WHERE list_id = new.list_id; ";
+            final String decrementList = "UPDATE " + dbTableListCounts + " SET count = count - 1 WHERE list_id = old.list_id; ";
+
+            db.execSQL(dbCreateListCounts);
+            db.execSQL("INSERT INTO " + dbTableListCounts + " (list_id, count) SELECT list_id, COUNT(*) FROM " + dbTableCachesLists + " GROUP BY list_id");
+            db.execSQL("INSERT INTO " + dbTableListCounts + " (list_id, count) SELECT " + allStoredCachesCountId + ", COUNT(DISTINCT geocode) FROM " + dbTableCachesLists
+                    + " WHERE list_id >= " + StoredList.STANDARD_LIST_ID);
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS tr_" + dbTableListCounts + "_insert AFTER INSERT ON " + dbTableCachesLists
+                    + " BEGIN " + incrementList + updateStoredCount("+", "new", true) + "END");
+            // a moved row is counted like a removed and an added one
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS tr_" + dbTableListCounts + "_update AFTER UPDATE OF list_id, geocode ON " + dbTableCachesLists
+                    + " BEGIN " + decrementList + incrementList + updateStoredCount("-", "old", true) + updateStoredCount("+", "new", true) + "END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS tr_" + dbTableListCounts + "_delete AFTER DELETE ON " + dbTableCachesLists
+                    + " BEGIN " + decrementList + updateStoredCount("-", "old", false) + "END");
+        }
+
+        /**
+         * Trigger statement changing the number of distinct stored caches, if the given row is the only one of its cache
+         * on a stored list.
+         *
+         * @param row
+         *            {@code new} or {@code old}
+         * @param excludeNewRow
+         *            {@code true} if the new row is in the table already and does not count as another row of the cache
+         */
+        private static String updateStoredCount(final String operator, final String row, final boolean excludeNewRow) {
+            return "UPDATE " + dbTableListCounts + " SET count = count " + operator + " 1"
+                    + " WHERE list_id = " + allStoredCachesCountId + " AND " + row + ".list_id >= " + StoredList.STANDARD_LIST_ID
+                    + " AND NOT EXISTS (SELECT 1 FROM " + dbTableCachesLists + " WHERE geocode = " + row + ".geocode AND list_id >= " + StoredList.STANDARD_LIST_ID
+                    + (excludeNewRow ? " AND rowid <> new.rowid" : "") + "); ";
+        }
+
+        private static void createImages(final SQLiteDatabase db) {
+            db.execSQL(dbCreateImages);
+            db.execSQL("CREATE INDEX IF NOT EXISTS in_images_url ON " + dbTableImages + " (url)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS in_images_hash ON " + dbTableImages + " (hash)");
+        }
+
+        private static void createStorageFiles(final SQLiteDatabase db) {
+            db.execSQL(dbCreateStorageFiles);
+            db.execSQL("CREATE INDEX IF NOT EXISTS in_storage_files_geo ON " + dbTableStorageFiles + " (geocode)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS in_storage_files_accessed ON " + dbTableStorageFiles + " (accessed)");
+        }
+
+        /**
+         * Fill the spatial cell column for all rows with coordinates.
+         */
+        private static void fillSpatialCells(final SQLiteDatabase db, final String table) {
+            final SQLiteStatement update = db.compileStatement("UPDATE " + table + " SET spatial_cell = ? WHERE _id = ?");
+            final Cursor cursor = db.query(table, new String[] { "_id", "latitude", "longitude" }, "latitude IS NOT NULL AND longitude IS NOT NULL", null, null, null, null);
+            try {
+                while (cursor.moveToNext()) {
+                    update.bindLong(1, SpatialIndex.getCell(cursor.getDouble(1), cursor.getDouble(2)));
+                    update.bindLong(2, cursor.getLong(0));
+                    update.executeUpdateDelete();
+                }
+            } finally {
+                cursor.close();
+                update.close();
+            }
+        }
+
         @Override
         public void onUpgrade(final SQLiteDatabase db, final int oldVersion, final int newVersion) {
             Log.i("Upgrade database from ver. " + oldVersion + " to ver. " + newVersion + ": start");
@@ -870,6 +1086,79 @@ public class DataStore {
                             Log.e("Failed to upgrade to ver. 72", e);
                         }
                     }
+                    // spatial index for viewport queries
+                    if (oldVersion < 73) {
+                        try {
+                            db.execSQL("ALTER TABLE " + dbTableCaches + " ADD COLUMN spatial_cell INTEGER");
+                            db.execSQL("ALTER TABLE " + dbTableWaypoints + " ADD COLUMN spatial_cell INTEGER");
+                            fillSpatialCells(db, dbTableCaches);
+                            fillSpatialCells(db, dbTableWaypoints);
+                            createSpatialIndices(db);
+                            // replaced by the spatial index
+                            db.execSQL("DROP INDEX IF EXISTS in_caches_lat");
+                            db.execSQL("DROP INDEX IF EXISTS in_caches_lon");
+                        } catch (final Exception e) {
+                            Log.e("Failed to upgrade to ver. 73", e);
+                        }
+                    }
+                    // full text indices for search suggestions
+                    if (oldVersion < 74) {
+                        try {
+                            createFullTextIndices(db, true);
+                        } catch (final Exception e) {
+                            Log.e("Failed to upgrade to ver. 74", e);
+                        }
+                    }
+                    // materialized number of caches per list
+                    if (oldVersion < 75) {
+                        try {
+                            createListCounts(db);
+                        } catch (final Exception e) {
+                            Log.e("Failed to upgrade to ver. 75", e);
+                        }
+                    }
+                    // queue of caches to store, to resume storing them after a restart
+                    if (oldVersion < 76) {
+                        try {
+                            db.execSQL(dbCreateStoreQueue);
+                        } catch (final Exception e) {
+                            Log.e("Failed to upgrade to ver. 76", e);
+                        }
+                    }
+                    // images shared between caches, the images stored before stay in the cache directories
+                    if (oldVersion < 77) {
+                        try {
+                            createImages(db);
+                        } catch (final Exception e) {
+                            Log.e("Failed to upgrade to ver. 77", e);
+                        }
+                    }
+                    // storage quota, only the files stored from now on are counted
+                    if (oldVersion < 78) {
+                        try {
+                            createStorageFiles(db);
+                        } catch (final Exception e) {
+                            Log.e("Failed to upgrade to ver. 78", e);
+                        }
+                    }
+                    // validators of stored files, formerly saved in separate files
+                    if (oldVersion < 79) {
+                        try {
+                            db.execSQL("ALTER TABLE " + dbTableStorageFiles + " ADD COLUMN etag TEXT");
+                            db.execSQL("ALTER TABLE " + dbTableStorageFiles + " ADD COLUMN last_modified TEXT");
+                        } catch (final Exception e) {
+                            Log.e("Failed to upgrade to ver. 79", e);
+                        }
+                    }
+                    // validators of the images by URL, as an image may be shared by several URLs
+                    if (oldVersion < 80) {
+                        try {
+                            db.execSQL("ALTER TABLE " + dbTableImages + " ADD COLUMN etag TEXT");
+                            db.execSQL("ALTER TABLE " + dbTableImages + " ADD COLUMN last_modified TEXT");
+                        } catch (final Exception e) {
+                            Log.e("Failed to upgrade to ver. 80", e);
+                        }
+                    }
                 }
 
                 db.setTransactionSuccessful();
@@ -952,6 +1241,13 @@ public class DataStore {
             db.execSQL("DROP TABLE IF EXISTS " + dbTableLogCount);
             db.execSQL("DROP TABLE IF EXISTS " + dbTableLogsOffline);
             db.execSQL("DROP TABLE IF EXISTS " + dbTableTrackables);
+            db.execSQL("DROP TABLE IF EXISTS " + dbTableCachesFts);
+            db.execSQL("DROP TABLE IF EXISTS " + dbTableLogsFts);
+            db.execSQL("DROP TABLE IF EXISTS " + dbTableTrackablesFts);
+            db.execSQL("DROP TABLE IF EXISTS " + dbTableListCounts);
+            db.execSQL("DROP TABLE IF EXISTS " + dbTableStoreQueue);
+            db.execSQL("DROP TABLE IF EXISTS " + dbTableImages);
+            db.execSQL("DROP TABLE IF EXISTS " + dbTableStorageFiles);
         }
 
     }
@@ -1143,9 +1439,25 @@ public class DataStore {
      *
      */
     public static void saveCaches(final Collection<Geocache> caches, final Set<LoadFlags.SaveFlag> saveFlags) {
+        saveCaches(caches, saveFlags, SAVE_BATCH_SIZE);
+    }
+
+    /**
+     * Save/store a cache to the CacheCache
+     *
+     * @param caches
+     *            the caches to save in the CacheCache/DB
+     * @param batchSize
+     *            the number of caches written to the database in a single transaction
+     *
+     */
+    public static void saveCaches(final Collection<Geocache> caches, final Set<LoadFlags.SaveFlag> saveFlags, final int batchSize) {
         if (CollectionUtils.isEmpty(caches)) {
             return;
         }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be > 0");
+        }
         final List<String> cachesFromDatabase = new ArrayList<>();
         final Map<String, Geocache> existingCaches = new HashMap<>();
 
@@ -1188,96 +1500,173 @@ public class DataStore {
             }
         }
 
-        for (final Geocache geocache : toBeStored) {
-            storeIntoDatabase(geocache);
-        }
+        storeIntoDatabase(toBeStored, batchSize);
     }
 
-    private static boolean storeIntoDatabase(final Geocache cache) {
-        cache.addStorageLocation(StorageLocation.DATABASE);
-        cacheCache.putCacheInCache(cache);
-        Log.d("Saving " + cache.toString() + " (" + cache.getLists() + ") to DB");
+    /**
+     * Store caches into the database, using a single transaction for every batch of {@code batchSize} caches.
+     */
+    private static void storeIntoDatabase(final Collection<Geocache> caches, final int batchSize) {
+        if (caches.isEmpty()) {
+            return;
+        }
+        init();
 
-        final ContentValues values = new ContentValues();
+        final List<Geocache> batch = new ArrayList<>(Math.min(batchSize, caches.size()));
+        for (final Geocache cache : caches) {
+            batch.add(cache);
+            if (batch.size() == batchSize) {
+                storeBatchIntoDatabase(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            storeBatchIntoDatabase(batch);
+        }
+    }
 
-        if (cache.getUpdated() == 0) {
-            values.put("updated", System.currentTimeMillis());
-        } else {
-            values.put("updated", cache.getUpdated());
-        }
-        values.put("reason", StoredList.STANDARD_LIST_ID);
-        values.put("detailed", cache.isDetailed() ? 1 : 0);
-        values.put("detailedupdate", cache.getDetailedUpdate());
-        values.put("visiteddate", cache.getVisitedDate());
-        values.put("geocode", cache.getGeocode());
-        values.put("cacheid", cache.getCacheId());
-        values.put("guid", cache.getGuid());
-        values.put("type", cache.getType().id);
-        values.put("name", cache.getName());
-        values.put("owner", cache.getOwnerDisplayName());
-        values.put("owner_real", cache.getOwnerUserId());
-        final Date hiddenDate = cache.getHiddenDate();
-        if (hiddenDate == null) {
-            values.put("hidden", 0);
-        } else {
-            values.put("hidden", hiddenDate.getTime());
-        }
-        values.put("hint", cache.getHint());
-        values.put("size", cache.getSize().id);
-        values.put("difficulty", cache.getDifficulty());
-        values.put("terrain", cache.getTerrain());
-        values.put("location", cache.getLocation());
-        values.put("distance", cache.getDistance());
-        values.put("direction", cache.getDirection());
-        putCoords(values, cache.getCoords());
-        values.put("reliable_latlon", cache.isReliableLatLon() ? 1 : 0);
-        values.put("shortdesc", cache.getShortDescription());
-        values.put("personal_note", cache.getPersonalNote());
-        values.put("description", cache.getDescription());
-        values.put("favourite_cnt", cache.getFavoritePoints());
-        values.put("rating", cache.getRating());
-        values.put("votes", cache.getVotes());
-        values.put("myvote", cache.getMyVote());
-        values.put("disabled", cache.isDisabled() ? 1 : 0);
-        values.put("archived", cache.isArchived() ? 1 : 0);
-        values.put("members", cache.isPremiumMembersOnly() ? 1 : 0);
-        values.put("found", cache.isFound() ? 1 : 0);
-        values.put("favourite", cache.isFavorite() ? 1 : 0);
-        values.put("inventoryunknown", cache.getInventoryItems());
-        values.put("onWatchlist", cache.isOnWatchlist() ? 1 : 0);
-        values.put("coordsChanged", cache.hasUserModifiedCoords() ? 1 : 0);
-        values.put("finalDefined", cache.hasFinalDefined() ? 1 : 0);
-        values.put("logPasswordRequired", cache.isLogPasswordRequired() ? 1 : 0);
-        values.put("watchlistCount", cache.getWatchlistCount());
+    /**
+     * Store a batch of caches in one transaction. If that fails, the caches of the batch are stored one by one,
+     * so that a single broken cache does not prevent the others from being stored.
+     */
+    private static void storeBatchIntoDatabase(final List<Geocache> batch) {
+        if (storeIntoDatabaseInTransaction(batch) || batch.size() == 1) {
+            return;
+        }
+        Log.w("DataStore.storeBatchIntoDatabase: storing batch of " + batch.size() + " caches failed, storing them one by one");
+        for (final Geocache cache : batch) {
+            storeIntoDatabaseInTransaction(Collections.singletonList(cache));
+        }
+    }
 
-        init();
+    private static boolean storeIntoDatabaseInTransaction(final List<Geocache> caches) {
+        // remember the waypoints which get their id from this transaction, to reset them in case of a rollback
+        final List<Waypoint> newWaypoints = new ArrayList<>();
+        for (final Geocache cache : caches) {
+            for (final Waypoint waypoint : cache.getWaypoints()) {
+                if (waypoint.getId() < 0) {
+                    newWaypoints.add(waypoint);
+                }
+            }
+        }
 
-        // try to update record else insert fresh..
         database.beginTransaction();
-
+        boolean success = false;
         try {
-            saveAttributesWithoutTransaction(cache);
-            saveWaypointsWithoutTransaction(cache);
-            saveSpoilersWithoutTransaction(cache);
-            saveLogCountsWithoutTransaction(cache);
-            saveInventoryWithoutTransaction(cache.getGeocode(), cache.getInventory());
-            saveListsWithoutTransaction(cache);
-
-            final int rows = database.update(dbTableCaches, values, "geocode = ?", new String[] { cache.getGeocode() });
-            if (rows == 0) {
-                // cache is not in the DB, insert it
-                /* long id = */
-                database.insert(dbTableCaches, null, values);
+            for (final Geocache cache : caches) {
+                storeIntoDatabaseWithoutTransaction(cache);
             }
             database.setTransactionSuccessful();
-            return true;
+            success = true;
         } catch (final Exception e) {
             Log.e("SaveCache", e);
         } finally {
             database.endTransaction();
         }
 
-        return false;
+        if (!success) {
+            for (final Waypoint waypoint : newWaypoints) {
+                waypoint.setId(-1);
+            }
+        }
+        return success;
+    }
+
+    private static void storeIntoDatabaseWithoutTransaction(final Geocache cache) {
+        cache.addStorageLocation(StorageLocation.DATABASE);
+        cacheCache.putCacheInCache(cache);
+        Log.d("Saving " + cache.toString() + " (" + cache.getLists() + ") to DB");
+
+        saveAttributesWithoutTransaction(cache);
+        saveWaypointsWithoutTransaction(cache);
+        saveSpoilersWithoutTransaction(cache);
+        saveLogCountsWithoutTransaction(cache);
+        saveInventoryWithoutTransaction(cache.getGeocode(), cache.getInventory());
+        saveListsWithoutTransaction(cache);
+
+        // try to update record else insert fresh..
+        final Object[] values = getCacheValues(cache);
+        final SQLiteStatement update = PreparedStatement.UPDATE_CACHE.getStatement();
+        bindValues(update, values);
+        update.bindString(values.length + 1, cache.getGeocode());
+        if (update.executeUpdateDelete() == 0) {
+            // cache is not in the DB, insert it
+            final SQLiteStatement insert = PreparedStatement.INSERT_CACHE.getStatement();
+            bindValues(insert, values);
+            insert.executeInsert();
+        }
+    }
+
+    /**
+     * @return the values to store for the given cache, in the order of {@link #CACHE_STORE_COLUMNS}
+     */
+    @NonNull
+    private static Object[] getCacheValues(final Geocache cache) {
+        final Date hiddenDate = cache.getHiddenDate();
+        final Geopoint coords = cache.getCoords();
+        return new Object[] {
+                cache.getUpdated() == 0 ? System.currentTimeMillis() : cache.getUpdated(),
+                StoredList.STANDARD_LIST_ID,
+                cache.isDetailed() ? 1 : 0,
+                cache.getDetailedUpdate(),
+                cache.getVisitedDate(),
+                cache.getGeocode(),
+                cache.getCacheId(),
+                cache.getGuid(),
+                cache.getType().id,
+                cache.getName(),
+                cache.getOwnerDisplayName(),
+                cache.getOwnerUserId(),
+                hiddenDate == null ? 0L : hiddenDate.getTime(),
+                cache.getHint(),
+                cache.getSize().id,
+                cache.getDifficulty(),
+                cache.getTerrain(),
+                cache.getLocation(),
+                cache.getDistance(),
+                cache.getDirection(),
+                coords == null ? null : coords.getLatitude(),
+                coords == null ? null : coords.getLongitude(),
+                cache.isReliableLatLon() ? 1 : 0,
+                cache.getShortDescription(),
+                cache.getPersonalNote(),
+                cache.getDescription(),
+                cache.getFavoritePoints(),
+                cache.getRating(),
+                cache.getVotes(),
+                cache.getMyVote(),
+                cache.isDisabled() ? 1 : 0,
+                cache.isArchived() ? 1 : 0,
+                cache.isPremiumMembersOnly() ? 1 : 0,
+                cache.isFound() ? 1 : 0,
+                cache.isFavorite() ? 1 : 0,
+                cache.getInventoryItems(),
+                cache.isOnWatchlist() ? 1 : 0,
+                cache.hasUserModifiedCoords() ? 1 : 0,
+                cache.hasFinalDefined() ? 1 : 0,
+                cache.isLogPasswordRequired() ? 1 : 0,
+                cache.getWatchlistCount(),
+                SpatialIndex.getCell(cache.getCoords())
+        };
+    }
+
+    /**
+     * Bind the given values (which may be {@code null}) to the parameters 1 to {@code values.length} of the statement.
+     */
+    private static void bindValues(final SQLiteStatement statement, final Object[] values) {
+        for (int i = 0; i < values.length; i++) {
+            DatabaseUtils.bindObjectToProgram(statement, i + 1, values[i]);
+        }
+    }
+
+    @NonNull
+    private static String buildInsert(@NonNull final String table, @NonNull final String[] columns) {
+        return "INSERT INTO " + table + " (" + StringUtils.join(columns, ", ") + ") VALUES (" + StringUtils.repeat("?", ", ", columns.length) + ")";
+    }
+
+    @NonNull
+    private static String buildUpdate(@NonNull final String table, @NonNull final String[] columns, @NonNull final String keyColumn) {
+        return "UPDATE " + table + " SET " + StringUtils.join(columns, " = ?, ") + " = ? WHERE " + keyColumn + " = ?";
     }
 
     private static void saveAttributesWithoutTransaction(final Geocache cache) {
@@ -1286,7 +1675,9 @@ public class DataStore {
         // The attributes must be fetched first because lazy loading may load
         // a null set otherwise.
         final List<String> attributes = cache.getAttributes();
-        database.delete(dbTableAttributes, "geocode = ?", new String[]{geocode});
+        final SQLiteStatement remove = PreparedStatement.REMOVE_ATTRIBUTES.getStatement();
+        remove.bindString(1, geocode);
+        remove.execute();
 
         if (attributes.isEmpty()) {
             return;
@@ -1366,28 +1757,18 @@ public class DataStore {
         final List<Waypoint> waypoints = cache.getWaypoints();
         if (CollectionUtils.isNotEmpty(waypoints)) {
             final List<String> currentWaypointIds = new ArrayList<>();
-            final ContentValues values = new ContentValues();
             final long timeStamp = System.currentTimeMillis();
             for (final Waypoint oneWaypoint : waypoints) {
-
-                values.clear();
-                values.put("geocode", geocode);
-                values.put("updated", timeStamp);
-                values.put("type", oneWaypoint.getWaypointType() != null ? oneWaypoint.getWaypointType().id : null);
-                values.put("prefix", oneWaypoint.getPrefix());
-                values.put("lookup", oneWaypoint.getLookup());
-                values.put("name", oneWaypoint.getName());
-                putCoords(values, oneWaypoint.getCoords());
-                values.put("note", oneWaypoint.getNote());
-                values.put("own", oneWaypoint.isUserDefined() ? 1 : 0);
-                values.put("visited", oneWaypoint.isVisited() ? 1 : 0);
-                values.put("user_note", oneWaypoint.getUserNote());
-                values.put("org_coords_empty", oneWaypoint.isOriginalCoordsEmpty() ? 1 : 0);
+                final Object[] values = getWaypointValues(geocode, timeStamp, oneWaypoint);
                 if (oneWaypoint.getId() < 0) {
-                    final long rowId = database.insert(dbTableWaypoints, null, values);
-                    oneWaypoint.setId((int) rowId);
+                    final SQLiteStatement insert = PreparedStatement.INSERT_WAYPOINT.getStatement();
+                    bindValues(insert, values);
+                    oneWaypoint.setId((int) insert.executeInsert());
                 } else {
-                    database.update(dbTableWaypoints, values, "_id = ?", new String[] { Integer.toString(oneWaypoint.getId(), 10) });
+                    final SQLiteStatement update = PreparedStatement.UPDATE_WAYPOINT.getStatement();
+                    bindValues(update, values);
+                    update.bindLong(values.length + 1, oneWaypoint.getId());
+                    update.executeUpdateDelete();
                 }
                 currentWaypointIds.add(Integer.toString(oneWaypoint.getId()));
             }
@@ -1396,6 +1777,30 @@ public class DataStore {
         }
     }
 
+    /**
+     * @return the values to store for the given waypoint, in the order of {@link #WAYPOINT_STORE_COLUMNS}
+     */
+    @NonNull
+    private static Object[] getWaypointValues(final String geocode, final long timeStamp, final Waypoint waypoint) {
+        final Geopoint coords = waypoint.getCoords();
+        return new Object[] {
+                geocode,
+                timeStamp,
+                waypoint.getWaypointType() != null ? waypoint.getWaypointType().id : null,
+                waypoint.getPrefix(),
+                waypoint.getLookup(),
+                waypoint.getName(),
+                coords == null ? null : coords.getLatitude(),
+                coords == null ? null : coords.getLongitude(),
+                waypoint.getNote(),
+                waypoint.isUserDefined() ? 1 : 0,
+                waypoint.isVisited() ? 1 : 0,
+                waypoint.getUserNote(),
+                waypoint.isOriginalCoordsEmpty() ? 1 : 0,
+                SpatialIndex.getCell(coords)
+        };
+    }
+
     /**
      * remove all waypoints of the given cache, where the id is not in the given list
      *
@@ -1418,6 +1823,7 @@ public class DataStore {
     private static void putCoords(final ContentValues values, final Geopoint coords) {
         values.put("latitude", coords == null ? null : coords.getLatitude());
         values.put("longitude", coords == null ? null : coords.getLongitude());
+        values.put("spatial_cell", SpatialIndex.getCell(coords));
     }
 
     /**
@@ -1524,9 +1930,33 @@ public class DataStore {
         }
     }
 
+    /**
+     * Save the logs of several caches in a single transaction.
+     *
+     * @param logsByGeocode
+     *            the logs to save, by geocode of their cache
+     */
+    public static void saveLogs(final Map<String, ? extends Iterable<LogEntry>> logsByGeocode) {
+        if (logsByGeocode.isEmpty()) {
+            return;
+        }
+        init();
+        database.beginTransaction();
+        try {
+            for (final Entry<String, ? extends Iterable<LogEntry>> entry : logsByGeocode.entrySet()) {
+                saveLogsWithoutTransaction(entry.getKey(), entry.getValue());
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
     private static void saveLogsWithoutTransaction(final String geocode, final Iterable<LogEntry> logs) {
         // TODO delete logimages referring these logs
-        database.delete(dbTableLogs, "geocode = ?", new String[]{geocode});
+        final SQLiteStatement remove = PreparedStatement.REMOVE_LOGS.getStatement();
+        remove.bindString(1, geocode);
+        remove.execute();
 
         final SQLiteStatement insertLog = PreparedStatement.INSERT_LOG.getStatement();
         final long timestamp = System.currentTimeMillis();
@@ -1555,7 +1985,9 @@ public class DataStore {
 
     private static void saveLogCountsWithoutTransaction(final Geocache cache) {
         final String geocode = cache.getGeocode();
-        database.delete(dbTableLogCount, "geocode = ?", new String[]{geocode});
+        final SQLiteStatement remove = PreparedStatement.REMOVE_LOG_COUNTS.getStatement();
+        remove.bindString(1, geocode);
+        remove.execute();
 
         final Map<LogType, Integer> logCounts = cache.getLogCounts();
         if (MapUtils.isNotEmpty(logCounts)) {
@@ -1587,36 +2019,34 @@ public class DataStore {
 
     private static void saveInventoryWithoutTransaction(final String geocode, final List<Trackable> trackables) {
         if (geocode != null) {
-            database.delete(dbTableTrackables, "geocode = ?", new String[]{geocode});
+            final SQLiteStatement removeInventory = PreparedStatement.REMOVE_INVENTORY.getStatement();
+            removeInventory.bindString(1, geocode);
+            removeInventory.execute();
         }
 
         if (CollectionUtils.isNotEmpty(trackables)) {
-            final ContentValues values = new ContentValues();
             final long timeStamp = System.currentTimeMillis();
             for (final Trackable trackable : trackables) {
                 final String tbCode = trackable.getGeocode();
                 if (StringUtils.isNotBlank(tbCode)) {
-                    database.delete(dbTableTrackables, "tbcode = ?", new String[] { tbCode });
+                    final SQLiteStatement removeTrackable = PreparedStatement.REMOVE_TRACKABLE.getStatement();
+                    removeTrackable.bindString(1, tbCode);
+                    removeTrackable.execute();
                 }
-                values.clear();
-                if (geocode != null) {
-                    values.put("geocode", geocode);
-                }
-                values.put("updated", timeStamp);
-                values.put("tbcode", tbCode);
-                values.put("guid", trackable.getGuid());
-                values.put("title", trackable.getName());
-                values.put("owner", trackable.getOwner());
                 final Date releasedDate = trackable.getReleased();
-                if (releasedDate != null) {
-                    values.put("released", releasedDate.getTime());
-                } else {
-                    values.put("released", 0L);
-                }
-                values.put("goal", trackable.getGoal());
-                values.put("description", trackable.getDetails());
-
-                database.insert(dbTableTrackables, null, values);
+                final SQLiteStatement insertTrackable = PreparedStatement.INSERT_TRACKABLE.getStatement();
+                bindValues(insertTrackable, new Object[] {
+                        geocode,
+                        timeStamp,
+                        tbCode,
+                        trackable.getGuid(),
+                        trackable.getName(),
+                        trackable.getOwner(),
+                        releasedDate != null ? releasedDate.getTime() : 0L,
+                        trackable.getGoal(),
+                        trackable.getDetails()
+                });
+                insertTrackable.executeInsert();
 
                 saveLogsWithoutTransaction(tbCode, trackable.getLogs());
             }
@@ -1732,79 +2162,174 @@ public class DataStore {
         query.append(" WHERE ").append(dbTableCaches).append('.');
         query.append(whereGeocodeIn(geocodes));
 
+        final Map<String, Geocache> caches = new HashMap<>();
         final Cursor cursor = database.rawQuery(query.toString(), null);
         try {
-            final Set<Geocache> caches = new HashSet<>();
             int logIndex = -1;
 
             while (cursor.moveToNext()) {
                 final Geocache cache = createCacheFromDatabaseContent(cursor);
 
-                if (loadFlags.contains(LoadFlag.ATTRIBUTES)) {
-                    cache.setAttributes(loadAttributes(cache.getGeocode()));
-                }
-
-                if (loadFlags.contains(LoadFlag.WAYPOINTS)) {
-                    final List<Waypoint> waypoints = loadWaypoints(cache.getGeocode());
-                    if (CollectionUtils.isNotEmpty(waypoints)) {
-                        cache.setWaypoints(waypoints, false);
+                if (loadFlags.contains(LoadFlag.OFFLINE_LOG)) {
+                    if (logIndex < 0) {
+                        logIndex = cursor.getColumnIndex("log");
                     }
+                    cache.setLogOffline(!cursor.isNull(logIndex));
                 }
+                cache.addStorageLocation(StorageLocation.DATABASE);
+                caches.put(cache.getGeocode(), cache);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        if (caches.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        // load the dependent data with one query per flag (and chunk of geocodes) instead of one query per cache
+        final Set<String> foundGeocodes = caches.keySet();
+
+        if (loadFlags.contains(LoadFlag.ATTRIBUTES)) {
+            final Map<String, List<String>> attributes = queryGroupedByGeocode(dbTableAttributes, new String[]{"attribute"}, foundGeocodes, null, MAX_DEPENDENT_ROWS_PER_CACHE, GET_STRING_0);
+            for (final Geocache cache : caches.values()) {
+                cache.setAttributes(attributes.get(cache.getGeocode()));
+            }
+        }
 
-                if (loadFlags.contains(LoadFlag.SPOILERS)) {
-                    final List<Image> spoilers = loadSpoilers(cache.getGeocode());
-                    cache.setSpoilers(spoilers);
+        if (loadFlags.contains(LoadFlag.WAYPOINTS)) {
+            final Map<String, List<Waypoint>> waypoints = queryGroupedByGeocode(dbTableWaypoints, WAYPOINT_COLUMNS, foundGeocodes, "_id", Integer.MAX_VALUE, new Func1<Cursor, Waypoint>() {
+                @Override
+                public Waypoint call(final Cursor cursor) {
+                    return createWaypointFromDatabaseContent(cursor);
                 }
+            });
+            for (final Entry<String, List<Waypoint>> entry : waypoints.entrySet()) {
+                caches.get(entry.getKey()).setWaypoints(entry.getValue(), false);
+            }
+        }
 
-                if (loadFlags.contains(LoadFlag.LOGS)) {
-                    final Map<LogType, Integer> logCounts = loadLogCounts(cache.getGeocode());
-                    if (MapUtils.isNotEmpty(logCounts)) {
-                        cache.getLogCounts().clear();
-                        cache.getLogCounts().putAll(logCounts);
-                    }
+        if (loadFlags.contains(LoadFlag.SPOILERS)) {
+            final Map<String, List<Image>> spoilers = queryGroupedByGeocode(dbTableSpoilers, new String[]{"url", "title", "description"}, foundGeocodes, null, MAX_DEPENDENT_ROWS_PER_CACHE, new Func1<Cursor, Image>() {
+                @Override
+                public Image call(final Cursor cursor) {
+                    return new Image.Builder()
+                            .setUrl(cursor.getString(0))
+                            .setTitle(cursor.getString(1))
+                            .setDescription(cursor.getString(2))
+                            .build();
                 }
+            });
+            for (final Geocache cache : caches.values()) {
+                final List<Image> cacheSpoilers = spoilers.get(cache.getGeocode());
+                cache.setSpoilers(cacheSpoilers != null ? cacheSpoilers : new LinkedList<Image>());
+            }
+        }
 
-                if (loadFlags.contains(LoadFlag.INVENTORY)) {
-                    final List<Trackable> inventory = loadInventory(cache.getGeocode());
-                    if (CollectionUtils.isNotEmpty(inventory)) {
-                        cache.setInventory(inventory);
-                    }
+        if (loadFlags.contains(LoadFlag.LOGS)) {
+            final Map<String, List<Pair<LogType, Integer>>> logCounts = queryGroupedByGeocode(dbTableLogCount, new String[]{"type", "count"}, foundGeocodes, null, MAX_DEPENDENT_ROWS_PER_CACHE, new Func1<Cursor, Pair<LogType, Integer>>() {
+                @Override
+                public Pair<LogType, Integer> call(final Cursor cursor) {
+                    return new ImmutablePair<>(LogType.getById(cursor.getInt(0)), cursor.getInt(1));
+                }
+            });
+            for (final Entry<String, List<Pair<LogType, Integer>>> entry : logCounts.entrySet()) {
+                final Map<LogType, Integer> cacheLogCounts = caches.get(entry.getKey()).getLogCounts();
+                cacheLogCounts.clear();
+                for (final Pair<LogType, Integer> logCount : entry.getValue()) {
+                    cacheLogCounts.put(logCount.getLeft(), logCount.getRight());
                 }
+            }
+        }
 
-                if (loadFlags.contains(LoadFlag.OFFLINE_LOG)) {
-                    if (logIndex < 0) {
-                        logIndex = cursor.getColumnIndex("log");
-                    }
-                    cache.setLogOffline(!cursor.isNull(logIndex));
+        if (loadFlags.contains(LoadFlag.INVENTORY)) {
+            final Map<String, List<Trackable>> inventories = queryGroupedByGeocode(dbTableTrackables, new String[]{"_id", "updated", "tbcode", "guid", "title", "owner", "released", "goal", "description"},
+                    foundGeocodes, "title COLLATE NOCASE ASC", MAX_DEPENDENT_ROWS_PER_CACHE, new Func1<Cursor, Trackable>() {
+                @Override
+                public Trackable call(final Cursor cursor) {
+                    return createTrackableFromDatabaseContent(cursor);
                 }
-                cache.addStorageLocation(StorageLocation.DATABASE);
-                cacheCache.putCacheInCache(cache);
+            });
+            for (final Entry<String, List<Trackable>> entry : inventories.entrySet()) {
+                caches.get(entry.getKey()).setInventory(entry.getValue());
+            }
+        }
 
-                caches.add(cache);
+        final Map<String, Set<Integer>> cacheLists = loadLists(foundGeocodes);
+        for (final Geocache geocache : caches.values()) {
+            final Set<Integer> listIds = cacheLists.get(geocache.getGeocode());
+            if (listIds != null) {
+                geocache.setLists(listIds);
             }
+            cacheCache.putCacheInCache(geocache);
+        }
+        return new HashSet<>(caches.values());
+    }
 
-            final Map<String, Set<Integer>> cacheLists = loadLists(geocodes);
-            for (final Geocache geocache : caches) {
-                final Set<Integer> listIds = cacheLists.get(geocache.getGeocode());
-                if (listIds != null) {
-                    geocache.setLists(listIds);
+    /**
+     * Query rows of a table depending on the cache table for many geocodes at once. The geocodes are split into
+     * chunks to keep the size of the SQL statement bounded.
+     *
+     * @param columns
+     *            the columns passed to {@code func}, the geocode column is appended after them
+     * @param limitPerGeocode
+     *            the maximum number of rows to keep for a single geocode
+     * @return the converted rows, grouped by geocode. Geocodes without any row are not contained.
+     */
+    @NonNull
+    private static <T> Map<String, List<T>> queryGroupedByGeocode(@NonNull final String table,
+                                                                 @NonNull final String[] columns,
+                                                                 @NonNull final Collection<String> geocodes,
+                                                                 @Nullable final String orderBy,
+                                                                 final int limitPerGeocode,
+                                                                 @NonNull final Func1<? super Cursor, ? extends T> func) {
+        init();
+        final String[] columnsWithGeocode = ArrayUtils.add(columns, "geocode");
+        final int geocodeIndex = columns.length;
+        final Map<String, List<T>> result = new HashMap<>();
+        final List<String> geocodeList = new ArrayList<>(geocodes);
+        for (int start = 0; start < geocodeList.size(); start += LOAD_GEOCODES_CHUNK_SIZE) {
+            final List<String> chunk = geocodeList.subList(start, Math.min(start + LOAD_GEOCODES_CHUNK_SIZE, geocodeList.size()));
+            final Cursor cursor = database.query(table, columnsWithGeocode, whereGeocodeIn(chunk).toString(), null, null, null, orderBy, null);
+            try {
+                while (cursor.moveToNext()) {
+                    final String geocode = cursor.getString(geocodeIndex);
+                    List<T> rows = result.get(geocode);
+                    if (rows == null) {
+                        rows = new LinkedList<>();
+                        result.put(geocode, rows);
+                    }
+                    if (rows.size() < limitPerGeocode) {
+                        rows.add(func.call(cursor));
+                    }
                 }
+            } finally {
+                cursor.close();
             }
-            return caches;
-        } finally {
-            cursor.close();
         }
+        return result;
     }
 
-
     /**
-     * Builds a where for a viewport with the size enhanced by 50%.
-     *
+     * Builds a where for a viewport with the size enhanced by 50%. The spatial cell condition lets the database search
+     * the spatial index, the coordinate condition makes the result exact.
      */
+    @NonNull
+    static StringBuilder buildCoordinateWhere(final String dbTable, final Viewport viewport) {
+        final Viewport resized = viewport.resize(1.5);
+        return SpatialIndex.sqlWhere(dbTable, resized).append(" and ").append(resized.sqlWhere(dbTable));
+    }
 
+    /**
+     * Builds an order clause sorting by (manhattan) distance to the center of the viewport, so that a limited query
+     * returns the caches nearest to the center instead of an arbitrary subset.
+     */
     @NonNull
-    private static StringBuilder buildCoordinateWhere(final String dbTable, final Viewport viewport) {
-        return viewport.resize(1.5).sqlWhere(dbTable);
+    static String buildCenterDistanceOrder(final String dbTable, final Viewport viewport) {
+        final String prefix = dbTable == null ? "" : (dbTable + ".");
+        final Geopoint center = viewport.getCenter();
+        return "ABS(" + prefix + "latitude-" + String.format((Locale) null, "%.6f", center.getLatitude()) +
+                ") + ABS(" + prefix + "longitude-" + String.format((Locale) null, "%.6f", center.getLongitude()) + "), " + prefix + "geocode";
     }
 
     /**
@@ -2310,10 +2835,12 @@ public class DataStore {
      *
      * @param coords
      *            the current coordinates to sort by distance, or null to sort by geocode
+     * @param filter
+     *            a filter to apply in the database if it provides a SQL predicate, or {@code null}
      * @return a non-null set of geocodes
      */
     @NonNull
-    private static Set<String> loadBatchOfStoredGeocodes(final Geopoint coords, final CacheType cacheType, final int listId) {
+    private static Set<String> loadBatchOfStoredGeocodes(final Geopoint coords, final CacheType cacheType, final int listId, @Nullable final IFilter filter) {
         if (cacheType == null) {
             throw new IllegalArgumentException("cacheType must not be null");
         }
@@ -2331,6 +2858,10 @@ public class DataStore {
         selection.append(listId != PseudoList.ALL_LIST.id ? "=" + Math.max(listId, 1) : ">= " + StoredList.STANDARD_LIST_ID);
         selection.append(')');
 
+        final String filterPredicate = filter != null ? filter.toSqlPredicate() : null;
+        if (filterPredicate != null) {
+            selection.append(" AND (").append(filterPredicate).append(')');
+        }
 
         try {
             if (coords != null) {
@@ -2425,12 +2956,12 @@ public class DataStore {
         }
 
         try {
-            return new SearchResult(queryToColl(dbTableCaches,
+            return new SearchResult(queryToColl(dbTableCachesInViewport,
                     new String[]{"geocode"},
                     selection.toString(),
                     selectionArgs,
-                    null,
-                    "500",
+                    buildCenterDistanceOrder(null, viewport),
+                    String.valueOf(MAX_VIEWPORT_CACHES),
                     geocodes,
                     GET_STRING_0));
         } catch (final Exception e) {
@@ -2475,6 +3006,9 @@ public class DataStore {
                     // Remove the obsolete "_others" directory where the user avatar used to be stored.
                     FileUtils.deleteDirectory(LocalStorage.getStorageDir("_others"));
 
+                    StorageManager.indexStoredFiles();
+                    StorageManager.enforceQuota();
+
                     final int version = Version.getVersionCode(context);
                     if (version > -1) {
                         Settings.setVersion(version);
@@ -2489,6 +3023,9 @@ public class DataStore {
     }
 
     private static void deleteOrphanedRecords() {
+        Log.d("Database clean: removing non-existing caches from images");
+        ImageStore.deleteImages(removeImages("geocode NOT IN (SELECT geocode FROM " + dbTableCaches + ") AND geocode <> " + DatabaseUtils.sqlEscapeString(HtmlImage.SHARED)));
+
         Log.d("Database clean: removing non-existing lists");
         database.delete(dbTableCachesLists, "list_id <> " + StoredList.STANDARD_LIST_ID + " AND list_id NOT IN (SELECT _id + " + customListIdOffset + " FROM " + dbTableLists + ")", null);
 
@@ -2547,6 +3084,21 @@ public class DataStore {
         cacheCache.removeAllFromCache();
     }
 
+    /**
+     * Release memory of the CacheCache according to the level given by {@link android.content.ComponentCallbacks2#onTrimMemory(int)}.
+     */
+    public static void trimCacheCache(final int level) {
+        cacheCache.onTrimMemory(level);
+    }
+
+    /**
+     * @return a human readable summary of size, hit rate and evictions of the CacheCache
+     */
+    @NonNull
+    public static String getCacheCacheStatistics() {
+        return cacheCache.getStatistics();
+    }
+
     public static void removeCache(final String geocode, final EnumSet<LoadFlags.RemoveFlag> removeFlags) {
         removeCaches(Collections.singleton(geocode), removeFlags);
     }
@@ -2578,6 +3130,7 @@ public class DataStore {
             }
             final String geocodeList = StringUtils.join(quotedGeocodes.toArray(), ',');
             final String baseWhereClause = "geocode IN (" + geocodeList + ")";
+            final Set<String> unusedImages;
             database.beginTransaction();
             try {
                 database.delete(dbTableCaches, baseWhereClause, null);
@@ -2593,6 +3146,8 @@ public class DataStore {
                 }
                 database.delete(dbTableWaypoints, wayPointClause, null);
                 database.delete(dbTableTrackables, baseWhereClause, null);
+                unusedImages = removeImages(baseWhereClause);
+                database.delete(dbTableStorageFiles, baseWhereClause, null);
                 database.setTransactionSuccessful();
             } finally {
                 database.endTransaction();
@@ -2602,6 +3157,7 @@ public class DataStore {
             for (final String geocode : geocodes) {
                 FileUtils.deleteDirectory(LocalStorage.getStorageDir(geocode));
             }
+            ImageStore.deleteImages(unusedImages);
         }
     }
 
@@ -2741,10 +3297,9 @@ public class DataStore {
         lists.add(new StoredList(StoredList.STANDARD_LIST_ID, res.getString(R.string.list_inbox), (int) PreparedStatement.COUNT_CACHES_ON_STANDARD_LIST.simpleQueryForLong()));
 
         try {
-            final String query = "SELECT l._id AS _id, l.title AS title, COUNT(c.geocode) AS count" +
-                    " FROM " + dbTableLists + " l LEFT OUTER JOIN " + dbTableCachesLists + " c" +
+            final String query = "SELECT l._id AS _id, l.title AS title, IFNULL(c.count, 0) AS count" +
+                    " FROM " + dbTableLists + " l LEFT OUTER JOIN " + dbTableListCounts + " c" +
                     " ON l._id + " + customListIdOffset + " = c.list_id" +
-                    " GROUP BY l._id" +
                     " ORDER BY l.title COLLATE NOCASE ASC";
 
             lists.addAll(getListsFromCursor(database.rawQuery(query, null)));
@@ -3180,8 +3735,9 @@ public class DataStore {
         for (int i = 0; i < WAYPOINT_COLUMNS.length; i++) {
             query.append(i > 0 ? ", " : "").append(dbTableWaypoints).append('.').append(WAYPOINT_COLUMNS[i]).append(' ');
         }
-        query.append(" FROM ").append(dbTableWaypoints).append(", ").append(dbTableCaches).append(" WHERE ").append(dbTableWaypoints)
+        query.append(" FROM ").append(dbTableWaypointsInViewport).append(", ").append(dbTableCaches).append(" WHERE ").append(dbTableWaypoints)
                 .append(".geocode == ").append(dbTableCaches).append(".geocode AND ").append(where)
+                .append(" ORDER BY ").append(buildCenterDistanceOrder(dbTableWaypoints, viewport))
                 .append(" LIMIT " + (Settings.SHOW_WP_THRESHOLD_MAX * 2));  // Hardcoded limit to avoid memory overflow
 
         return cursorToColl(database.rawQuery(query.toString(), null), new HashSet<Waypoint>(), new Func1<Cursor, Waypoint>() {
@@ -3209,21 +3765,46 @@ public class DataStore {
         INSERT_SPOILER("INSERT INTO " + dbTableSpoilers + " (geocode, updated, url, title, description) VALUES (?, ?, ?, ?, ?)"),
         REMOVE_SPOILERS("DELETE FROM " + dbTableSpoilers + " WHERE geocode = ?"),
         LOG_COUNT_OF_GEOCODE("SELECT COUNT(_id) FROM " + dbTableLogsOffline + " WHERE geocode = ?"),
-        COUNT_CACHES_ON_STANDARD_LIST("SELECT COUNT(geocode) FROM " + dbTableCachesLists + " WHERE list_id = " + StoredList.STANDARD_LIST_ID),
-        COUNT_ALL_CACHES("SELECT COUNT(DISTINCT(geocode)) FROM " + dbTableCachesLists + " WHERE list_id >= " + StoredList.STANDARD_LIST_ID),
+        COUNT_CACHES_ON_STANDARD_LIST("SELECT IFNULL(MAX(count), 0) FROM " + dbTableListCounts + " WHERE list_id = " + StoredList.STANDARD_LIST_ID),
+        COUNT_ALL_CACHES("SELECT IFNULL(MAX(count), 0) FROM " + dbTableListCounts + " WHERE list_id = " + allStoredCachesCountId),
         INSERT_LOG("INSERT INTO " + dbTableLogs + " (geocode, updated, type, author, log, date, found, friend) VALUES (?, ?, ?, ?, ?, ?, ?, ?)"),
         INSERT_ATTRIBUTE("INSERT INTO " + dbTableAttributes + " (geocode, updated, attribute) VALUES (?, ?, ?)"),
-        ADD_TO_LIST("INSERT OR REPLACE INTO " + dbTableCachesLists + " (list_id, geocode) VALUES (?, ?)"),
+        // ignore instead of replace existing rows, as replacing deletes them without running the delete trigger of the list counts
+        ADD_TO_LIST("INSERT OR IGNORE INTO " + dbTableCachesLists + " (list_id, geocode) VALUES (?, ?)"),
         GEOCODE_OFFLINE("SELECT COUNT(l.list_id) FROM " + dbTableCachesLists + " l, " + dbTableCaches + " c WHERE c.geocode = ? AND c.geocode = l.geocode AND c.detailed = 1 AND l.list_id != " + StoredList.TEMPORARY_LIST.id),
         GUID_OFFLINE("SELECT COUNT(l.list_id) FROM " + dbTableCachesLists + " l, " + dbTableCaches + " c WHERE c.guid = ? AND c.geocode = l.geocode AND c.detailed = 1 AND list_id != " + StoredList.TEMPORARY_LIST.id),
         GEOCODE_OF_GUID("SELECT geocode FROM " + dbTableCaches + " WHERE guid = ?"),
         GEOCODE_FROM_TITLE("SELECT geocode FROM " + dbTableCaches + " WHERE name = ?"),
+        ADD_TO_STORE_QUEUE("INSERT OR REPLACE INTO " + dbTableStoreQueue + " (geocode, lists, redownload) VALUES (?, ?, ?)"),
+        REMOVE_FROM_STORE_QUEUE("DELETE FROM " + dbTableStoreQueue + " WHERE geocode = ?"),
+        IMAGE_HASH("SELECT hash FROM " + dbTableImages + " WHERE geocode = ? AND url = ?"),
+        SHARED_IMAGE_HASH("SELECT hash FROM " + dbTableImages + " WHERE url = ? LIMIT 1"),
+        ADD_IMAGE("INSERT OR REPLACE INTO " + dbTableImages + " (geocode, url, hash, etag, last_modified) VALUES (?, ?, ?, ?, ?)"),
+        ADD_IMAGE_REFERENCE("INSERT OR IGNORE INTO " + dbTableImages + " (geocode, url, hash, etag, last_modified) SELECT ?, url, hash, etag, last_modified FROM " + dbTableImages + " WHERE url = ? LIMIT 1"),
+        COUNT_IMAGE_REFERENCES("SELECT COUNT(*) FROM " + dbTableImages + " WHERE hash = ?"),
+        ADD_STORAGE_FILE("INSERT OR REPLACE INTO " + dbTableStorageFiles + " (path, geocode, hash, size, accessed, etag, last_modified) VALUES (?, ?, ?, ?, ?, ?, ?)"),
+        INDEX_STORAGE_FILE("INSERT OR IGNORE INTO " + dbTableStorageFiles + " (path, geocode, hash, size, accessed) VALUES (?, ?, ?, ?, ?)"),
+        ACCESS_STORAGE_FILE("UPDATE " + dbTableStorageFiles + " SET accessed = ? WHERE path = ? AND accessed < ?"),
+        REMOVE_STORAGE_FILE("DELETE FROM " + dbTableStorageFiles + " WHERE path = ?"),
+        REMOVE_EVICTED_STORAGE_FILE("DELETE FROM " + dbTableStorageFiles + " WHERE path = ? AND accessed = ?"),
+        STORAGE_SIZE("SELECT IFNULL(SUM(size), 0) FROM " + dbTableStorageFiles),
+        COUNT_STORAGE_FILES("SELECT COUNT(*) FROM " + dbTableStorageFiles),
         INSERT_SEARCH_DESTINATION("INSERT INTO " + dbTableSearchDestinationHistory + " (date, latitude, longitude) VALUES (?, ?, ?)"),
         COUNT_TYPE_ALL_LIST("SELECT COUNT(c._id) FROM " + dbTableCaches + " c, " + dbTableCachesLists + " l  WHERE c.type = ? AND c.geocode = l.geocode AND l.list_id > 0"), // See use of COUNT_TYPE_LIST for synchronization
-        COUNT_ALL_TYPES_ALL_LIST("SELECT COUNT(c._id) FROM " + dbTableCaches + " c, " + dbTableCachesLists + " l WHERE c.geocode = l.geocode AND l.list_id  > 0"), // See use of COUNT_TYPE_LIST for synchronization
+        COUNT_ALL_TYPES_ALL_LIST("SELECT IFNULL(SUM(count), 0) FROM " + dbTableListCounts + " WHERE list_id > 0"), // See use of COUNT_TYPE_LIST for synchronization
         COUNT_TYPE_LIST("SELECT COUNT(c._id) FROM " + dbTableCaches + " c, " + dbTableCachesLists + " l WHERE c.type = ? AND c.geocode = l.geocode AND l.list_id = ?"),
-        COUNT_ALL_TYPES_LIST("SELECT COUNT(c._id) FROM " + dbTableCaches + " c, " + dbTableCachesLists + " l WHERE c.geocode = l.geocode AND l.list_id = ?"), // See use of COUNT_TYPE_LIST for synchronization
-        CHECK_IF_PRESENT("SELECT COUNT(*) FROM " + dbTableCaches + " WHERE geocode = ?");
+        COUNT_ALL_TYPES_LIST("SELECT IFNULL(MAX(count), 0) FROM " + dbTableListCounts + " WHERE list_id = ?"), // See use of COUNT_TYPE_LIST for synchronization
+        CHECK_IF_PRESENT("SELECT COUNT(*) FROM " + dbTableCaches + " WHERE geocode = ?"),
+        INSERT_CACHE(buildInsert(dbTableCaches, CACHE_STORE_COLUMNS)),
+        UPDATE_CACHE(buildUpdate(dbTableCaches, CACHE_STORE_COLUMNS, "geocode")),
+        REMOVE_ATTRIBUTES("DELETE FROM " + dbTableAttributes + " WHERE geocode = ?"),
+        INSERT_WAYPOINT(buildInsert(dbTableWaypoints, WAYPOINT_STORE_COLUMNS)),
+        UPDATE_WAYPOINT(buildUpdate(dbTableWaypoints, WAYPOINT_STORE_COLUMNS, "_id")),
+        REMOVE_LOGS("DELETE FROM " + dbTableLogs + " WHERE geocode = ?"),
+        REMOVE_LOG_COUNTS("DELETE FROM " + dbTableLogCount + " WHERE geocode = ?"),
+        INSERT_TRACKABLE(buildInsert(dbTableTrackables, TRACKABLE_STORE_COLUMNS)),
+        REMOVE_TRACKABLE("DELETE FROM " + dbTableTrackables + " WHERE tbcode = ?"),
+        REMOVE_INVENTORY("DELETE FROM " + dbTableTrackables + " WHERE geocode = ?");
 
         private static final List<PreparedStatement> statements = new ArrayList<>();
 
@@ -3296,6 +3877,394 @@ public class DataStore {
         return oldLists;
     }
 
+    /**
+     * Remember caches which are going to be stored, so that storing them can be resumed if the app is stopped before.
+     *
+     * @param cachesLists
+     *            the lists to store each cache on
+     */
+    public static void addToStoreQueue(final Map<String, Set<Integer>> cachesLists, final boolean forceRedownload) {
+        init();
+
+        final SQLiteStatement add = PreparedStatement.ADD_TO_STORE_QUEUE.getStatement();
+
+        database.beginTransaction();
+        try {
+            for (final Entry<String, Set<Integer>> entry : cachesLists.entrySet()) {
+                add.bindString(1, entry.getKey());
+                add.bindString(2, StringUtils.join(entry.getValue(), ','));
+                add.bindLong(3, forceRedownload ? 1 : 0);
+                add.execute();
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    public static void removeFromStoreQueue(final Collection<String> geocodes) {
+        init();
+
+        final SQLiteStatement remove = PreparedStatement.REMOVE_FROM_STORE_QUEUE.getStatement();
+
+        database.beginTransaction();
+        try {
+            for (final String geocode : geocodes) {
+                remove.bindString(1, geocode);
+                remove.execute();
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Load the caches which are still to be stored, in the order they were added.
+     *
+     * @return the lists to store each cache on
+     */
+    @NonNull
+    public static Map<String, Set<Integer>> loadStoreQueue(final boolean forceRedownload) {
+        init();
+
+        final Map<String, Set<Integer>> cachesLists = new LinkedHashMap<>();
+        final Cursor cursor = database.query(dbTableStoreQueue, new String[] { "geocode", "lists" }, "redownload = " + (forceRedownload ? 1 : 0), null, null, null, "_id");
+        try {
+            while (cursor.moveToNext()) {
+                final Set<Integer> listIds = new HashSet<>();
+                for (final String listId : StringUtils.split(cursor.getString(1), ',')) {
+                    listIds.add(Integer.valueOf(listId));
+                }
+                cachesLists.put(cursor.getString(0), listIds);
+            }
+        } finally {
+            cursor.close();
+        }
+        return cachesLists;
+    }
+
+    /**
+     * Get the hash of the stored image of a cache. If this cache has no reference to the image, the image stored by
+     * other caches with this URL is used. This does not add a reference, see {@link #addImageReference(String, String)}.
+     *
+     * @return the hash of the image content, or {@code null} if no image has been stored for this URL
+     */
+    @Nullable
+    public static String getImageHash(@NonNull final String geocode, @NonNull final String url) {
+        init();
+
+        final String hash = loadOwnImageHash(geocode, url);
+        if (hash != null) {
+            return hash;
+        }
+        try {
+            final SQLiteStatement sharedImageHash = PreparedStatement.SHARED_IMAGE_HASH.getStatement();
+            synchronized (sharedImageHash) {
+                sharedImageHash.bindString(1, url);
+                return sharedImageHash.simpleQueryForString();
+            }
+        } catch (final SQLiteDoneException ignored) {
+            // Do nothing, the image has not been stored
+        }
+        return null;
+    }
+
+    @Nullable
+    private static String loadOwnImageHash(@NonNull final String geocode, @NonNull final String url) {
+        try {
+            final SQLiteStatement imageHash = PreparedStatement.IMAGE_HASH.getStatement();
+            synchronized (imageHash) {
+                imageHash.bindString(1, geocode);
+                imageHash.bindString(2, url);
+                return imageHash.simpleQueryForString();
+            }
+        } catch (final SQLiteDoneException ignored) {
+            // Do nothing, this cache has no reference to the image yet
+        }
+        return null;
+    }
+
+    /**
+     * Let a cache reference the image stored by other caches with this URL, so that it is kept as long as any of them
+     * is.
+     *
+     * @return {@code true} if a reference has been added, {@code false} if the cache references the image already or
+     *         no image has been stored for this URL
+     */
+    public static boolean addImageReference(@NonNull final String geocode, @NonNull final String url) {
+        init();
+
+        final SQLiteStatement addReference = PreparedStatement.ADD_IMAGE_REFERENCE.getStatement();
+        synchronized (addReference) {
+            addReference.bindString(1, geocode);
+            addReference.bindString(2, url);
+            return addReference.executeInsert() != -1;
+        }
+    }
+
+    /**
+     * Let a cache reference the image with the given hash for this URL.
+     *
+     * @param etag
+     *            the ETag header of the response the image was downloaded from, may be {@code null}
+     * @param lastModified
+     *            the Last-Modified header of the response the image was downloaded from, may be {@code null}
+     * @return the hash of the image referenced before instead, which may not be referenced anymore, or {@code null} if
+     *         there was none or it was the same
+     */
+    @Nullable
+    public static String setImageHash(@NonNull final String geocode, @NonNull final String url, @NonNull final String hash,
+                                      @Nullable final String etag, @Nullable final String lastModified) {
+        init();
+
+        final String oldHash = loadOwnImageHash(geocode, url);
+        final SQLiteStatement addImage = PreparedStatement.ADD_IMAGE.getStatement();
+        synchronized (addImage) {
+            bindValues(addImage, new Object[] { geocode, url, hash, etag, lastModified });
+            addImage.executeInsert();
+        }
+        return StringUtils.equals(oldHash, hash) ? null : oldHash;
+    }
+
+    /**
+     * Load the validators of the response an image was downloaded from for the given URL.
+     *
+     * @return the ETag and Last-Modified headers, each of them may be {@code null}, or {@code null} if the image has
+     *         not been stored for this URL
+     */
+    @Nullable
+    public static ImmutablePair<String, String> loadImageValidators(@NonNull final String url, @NonNull final String hash) {
+        init();
+
+        final Cursor cursor = database.query(
+                dbTableImages,
+                new String[] { "etag", "last_modified" },
+                "url = ? AND hash = ?",
+                new String[] { url, hash },
+                null,
+                null,
+                null,
+                "1");
+        try {
+            return cursor.moveToFirst() ? ImmutablePair.of(cursor.getString(0), cursor.getString(1)) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public static boolean isImageReferenced(@NonNull final String hash) {
+        init();
+
+        final SQLiteStatement countReferences = PreparedStatement.COUNT_IMAGE_REFERENCES.getStatement();
+        synchronized (countReferences) {
+            countReferences.bindString(1, hash);
+            return countReferences.simpleQueryForLong() > 0;
+        }
+    }
+
+    /**
+     * Remove the image references matching the where clause.
+     *
+     * @return the hashes of the images which are not referenced anymore. They may be referenced again before their
+     *         files are deleted, which {@link ImageStore#deleteImages(Collection)} checks.
+     */
+    @NonNull
+    private static Set<String> removeImages(@NonNull final String whereClause) {
+        final Set<String> hashes = queryToColl(dbTableImages, new String[] { "hash" }, whereClause, null, null, null, new HashSet<String>(), GET_STRING_0);
+        if (hashes.isEmpty()) {
+            return hashes;
+        }
+        database.delete(dbTableImages, whereClause, null);
+
+        final List<String> quotedHashes = new ArrayList<>(hashes.size());
+        for (final String hash : hashes) {
+            quotedHashes.add(DatabaseUtils.sqlEscapeString(hash));
+        }
+        hashes.removeAll(queryToColl(dbTableImages, new String[] { "hash" }, "hash IN (" + StringUtils.join(quotedHashes, ',') + ")", null, null, null, new HashSet<String>(), GET_STRING_0));
+        return hashes;
+    }
+
+    /**
+     * Add a stored file to the index of the storage manager, or update its size and validators.
+     *
+     * @param geocode
+     *            the geocode of the cache the file belongs to, or {@code null} for an image of the {@link ImageStore}
+     * @param hash
+     *            the hash of the image of the {@link ImageStore}, or {@code null} for a file of a cache
+     * @param etag
+     *            the ETag header of the response the file was downloaded from, may be {@code null}
+     * @param lastModified
+     *            the Last-Modified header of the response the file was downloaded from, may be {@code null}
+     */
+    public static void addStorageFile(@NonNull final File file, @Nullable final String geocode, @Nullable final String hash,
+                                      @Nullable final String etag, @Nullable final String lastModified) {
+        init();
+
+        final SQLiteStatement add = PreparedStatement.ADD_STORAGE_FILE.getStatement();
+        synchronized (add) {
+            bindValues(add, new Object[] { file.getAbsolutePath(), geocode, hash, file.length(), System.currentTimeMillis(), etag, lastModified });
+            add.executeInsert();
+        }
+    }
+
+    /**
+     * Add files stored before they were indexed to the index of the storage manager. Their last access is estimated by
+     * their last modification. Files already indexed are left unchanged.
+     *
+     * @param geocode
+     *            the geocode of the cache the files belong to, or {@code null} for images of the {@link ImageStore},
+     *            which are named by their hash
+     */
+    public static void indexStorageFiles(@Nullable final String geocode, @NonNull final Collection<File> files) {
+        init();
+
+        final SQLiteStatement index = PreparedStatement.INDEX_STORAGE_FILE.getStatement();
+
+        database.beginTransaction();
+        try {
+            synchronized (index) {
+                for (final File file : files) {
+                    bindValues(index, new Object[] { file.getAbsolutePath(), geocode, geocode == null ? file.getName() : null, file.length(), file.lastModified() });
+                    index.executeInsert();
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Load the validators of the response a stored static map was downloaded from. The validators of images are kept
+     * by URL instead, see {@link #loadImageValidators(String, String)}.
+     *
+     * @return the ETag and Last-Modified headers, each of them may be {@code null}, or {@code null} if the file is not
+     *         indexed
+     */
+    @Nullable
+    public static ImmutablePair<String, String> loadStorageFileValidators(@NonNull final File file) {
+        init();
+
+        final Cursor cursor = database.query(
+                dbTableStorageFiles,
+                new String[] { "etag", "last_modified" },
+                "path = ?",
+                new String[] { file.getAbsolutePath() },
+                null,
+                null,
+                null,
+                "1");
+        try {
+            return cursor.moveToFirst() ? ImmutablePair.of(cursor.getString(0), cursor.getString(1)) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Record the access to a stored file, unless it has been accessed after the given time already.
+     */
+    public static void markStorageFileAccessed(@NonNull final File file, final long accessedBefore) {
+        init();
+
+        final SQLiteStatement access = PreparedStatement.ACCESS_STORAGE_FILE.getStatement();
+        synchronized (access) {
+            access.bindLong(1, System.currentTimeMillis());
+            access.bindString(2, file.getAbsolutePath());
+            access.bindLong(3, accessedBefore);
+            access.executeUpdateDelete();
+        }
+    }
+
+    public static void removeStorageFiles(@NonNull final Collection<String> paths) {
+        init();
+
+        final SQLiteStatement remove = PreparedStatement.REMOVE_STORAGE_FILE.getStatement();
+
+        database.beginTransaction();
+        try {
+            synchronized (remove) {
+                for (final String path : paths) {
+                    remove.bindString(1, path);
+                    remove.execute();
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Remove an evicted file from the index, unless it has been accessed or stored again since it was loaded by
+     * {@link #loadEvictableStorageFiles(Viewport, int)}.
+     *
+     * @param accessed
+     *            the last access of the file when it was loaded
+     * @return {@code true} if the file has been removed from the index and can be deleted
+     */
+    public static boolean removeEvictedStorageFile(@NonNull final String path, final long accessed) {
+        init();
+
+        final SQLiteStatement remove = PreparedStatement.REMOVE_EVICTED_STORAGE_FILE.getStatement();
+        synchronized (remove) {
+            remove.bindString(1, path);
+            remove.bindLong(2, accessed);
+            return remove.executeUpdateDelete() > 0;
+        }
+    }
+
+    /**
+     * @return the total size of the indexed files in bytes
+     */
+    public static long getStorageSize() {
+        init();
+
+        final SQLiteStatement size = PreparedStatement.STORAGE_SIZE.getStatement();
+        synchronized (size) {
+            return size.simpleQueryForLong();
+        }
+    }
+
+    public static long getStorageFileCount() {
+        init();
+
+        final SQLiteStatement count = PreparedStatement.COUNT_STORAGE_FILES.getStatement();
+        synchronized (count) {
+            return count.simpleQueryForLong();
+        }
+    }
+
+    /**
+     * Load the indexed files which can be evicted, the least recently accessed first. Files used by caches on a stored
+     * list inside of the given area cannot be evicted.
+     *
+     * @param keep
+     *            the area of the stored caches to keep, or {@code null} to keep the files of all stored caches
+     * @return the paths, sizes and last accesses of the files
+     */
+    @NonNull
+    public static List<ImmutableTriple<String, Long, Long>> loadEvictableStorageFiles(@Nullable final Viewport keep, final int limit) {
+        init();
+
+        final String needed = "SELECT 1 FROM " + dbTableCachesLists + " l, " + dbTableCaches + " c"
+                + " WHERE c.geocode = l.geocode AND l.list_id >= " + StoredList.STANDARD_LIST_ID
+                + (keep != null ? " AND " + keep.sqlWhere("c") : "")
+                + " AND (l.geocode = f.geocode OR l.geocode IN (SELECT geocode FROM " + dbTableImages + " WHERE hash = f.hash))";
+        final Cursor cursor = database.rawQuery("SELECT f.path, f.size, f.accessed FROM " + dbTableStorageFiles + " f WHERE NOT EXISTS (" + needed + ")"
+                + " ORDER BY f.accessed LIMIT " + limit, null);
+        final List<ImmutableTriple<String, Long, Long>> files = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                files.add(ImmutableTriple.of(cursor.getString(0), cursor.getLong(1), cursor.getLong(2)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return files;
+    }
+
     @Nullable
     public static Viewport getBounds(final String geocode) {
         if (geocode == null) {
@@ -3311,7 +4280,17 @@ public class DataStore {
 
     @NonNull
     public static SearchResult getBatchOfStoredCaches(final Geopoint coords, final CacheType cacheType, final int listId) {
-        final Set<String> geocodes = loadBatchOfStoredGeocodes(coords, cacheType, listId);
+        return getBatchOfStoredCaches(coords, cacheType, listId, null);
+    }
+
+    /**
+     * Load the stored caches of a list. Filters which provide a SQL predicate are applied by the database, all others
+     * must still be applied to the loaded caches. The total count of the result is the number of caches in the list,
+     * regardless of the filter.
+     */
+    @NonNull
+    public static SearchResult getBatchOfStoredCaches(final Geopoint coords, final CacheType cacheType, final int listId, @Nullable final IFilter filter) {
+        final Set<String> geocodes = loadBatchOfStoredGeocodes(coords, cacheType, listId, filter);
         return new SearchResult(geocodes, getAllStoredCachesCount(cacheType, listId));
     }
 
@@ -3368,22 +4347,25 @@ public class DataStore {
         }
         init();
         final SearchSuggestionCursor resultCursor = new SearchSuggestionCursor();
+        final String query = getFullTextPrefixQuery(searchTerm);
+        if (query == null) {
+            return resultCursor;
+        }
         try {
-            final String selectionArg = getSuggestionArgument(searchTerm);
-            findCaches(resultCursor, selectionArg);
-            findTrackables(resultCursor, selectionArg);
+            findCaches(resultCursor, query);
+            findTrackables(resultCursor, query);
         } catch (final Exception e) {
             Log.e("DataStore.loadBatchOfStoredGeocodes", e);
         }
         return resultCursor;
     }
 
-    private static void findCaches(final SearchSuggestionCursor resultCursor, final String selectionArg) {
+    private static void findCaches(final SearchSuggestionCursor resultCursor, final String query) {
         final Cursor cursor = database.query(
                 dbTableCaches,
                 new String[] { "geocode", "name", "type" },
-                "geocode IS NOT NULL AND geocode != '' AND (geocode LIKE ? OR name LIKE ? OR owner LIKE ?)",
-                new String[] { selectionArg, selectionArg, selectionArg },
+                "geocode IS NOT NULL AND geocode != '' AND _id IN (SELECT docid FROM " + dbTableCachesFts + " WHERE " + dbTableCachesFts + " MATCH ?)",
+                new String[] { query },
                 null,
                 null,
                 "name");
@@ -3396,17 +4378,30 @@ public class DataStore {
         cursor.close();
     }
 
-    @NonNull
-    private static String getSuggestionArgument(final String input) {
-        return "%" + StringUtils.trim(input) + "%";
+    /**
+     * Build a full text query matching the rows containing words starting with each word of the input. Quoting the
+     * words keeps query operators in the input from being interpreted.
+     *
+     * @return the query, or {@code null} if the input contains no words
+     */
+    @Nullable
+    static String getFullTextPrefixQuery(final String input) {
+        final StringBuilder query = new StringBuilder();
+        for (final String word : StringUtils.split(StringUtils.defaultString(input), FULL_TEXT_SEPARATORS)) {
+            if (query.length() > 0) {
+                query.append(' ');
+            }
+            query.append('"').append(word).append("*\"");
+        }
+        return query.length() > 0 ? query.toString() : null;
     }
 
-    private static void findTrackables(final MatrixCursor resultCursor, final String selectionArg) {
+    private static void findTrackables(final MatrixCursor resultCursor, final String query) {
         final Cursor cursor = database.query(
                 dbTableTrackables,
                 new String[] { "tbcode", "title" },
-                "tbcode IS NOT NULL AND tbcode != '' AND (tbcode LIKE ? OR title LIKE ?)",
-                new String[] { selectionArg, selectionArg },
+                "tbcode IS NOT NULL AND tbcode != '' AND _id IN (SELECT docid FROM " + dbTableTrackablesFts + " WHERE " + dbTableTrackablesFts + " MATCH ?)",
+                new String[] { query },
                 null,
                 null,
                 "title");
@@ -3424,13 +4419,23 @@ public class DataStore {
         cursor.close();
     }
 
+    /**
+     * Get the distinct values of an indexed column containing words starting with the words of the input.
+     *
+     * @param table
+     *            the full text index of the table
+     */
     @NonNull
     public static String[] getSuggestions(final String table, final String column, final String input) {
+        final String query = getFullTextPrefixQuery(input);
+        if (query == null) {
+            return ArrayUtils.EMPTY_STRING_ARRAY;
+        }
         try {
             final Cursor cursor = database.rawQuery("SELECT DISTINCT " + column
                     + " FROM " + table
-                    + " WHERE " + column + " LIKE ?"
-                    + " ORDER BY " + column + " COLLATE NOCASE ASC;", new String[] { getSuggestionArgument(input) });
+                    + " WHERE " + column + " MATCH ?"
+                    + " ORDER BY " + column + " COLLATE NOCASE ASC;", new String[] { query });
             return cursorToColl(cursor, new LinkedList<String>(), GET_STRING_0).toArray(new String[cursor.getCount()]);
         } catch (final RuntimeException e) {
             Log.e("cannot get suggestions from " + table + "->" + column + " for input '" + input + "'", e);
@@ -3440,27 +4445,27 @@ public class DataStore {
 
     @NonNull
     public static String[] getSuggestionsOwnerName(final String input) {
-        return getSuggestions(dbTableCaches, "owner_real", input);
+        return getSuggestions(dbTableCachesFts, "owner_real", input);
     }
 
     @NonNull
     public static String[] getSuggestionsTrackableCode(final String input) {
-        return getSuggestions(dbTableTrackables, "tbcode", input);
+        return getSuggestions(dbTableTrackablesFts, "tbcode", input);
     }
 
     @NonNull
     public static String[] getSuggestionsFinderName(final String input) {
-        return getSuggestions(dbTableLogs, "author", input);
+        return getSuggestions(dbTableLogsFts, "author", input);
     }
 
     @NonNull
     public static String[] getSuggestionsGeocode(final String input) {
-        return getSuggestions(dbTableCaches, "geocode", input);
+        return getSuggestions(dbTableCachesFts, "geocode", input);
     }
 
     @NonNull
     public static String[] getSuggestionsKeyword(final String input) {
-        return getSuggestions(dbTableCaches, "name", input);
+        return getSuggestions(dbTableCachesFts, "name", input);
     }
 
     /**
@@ -0,0 +1,254 @@
+package cgeo.geocaching.storage;
+
+import cgeo.geocaching.utils.CryptUtils;
+import cgeo.geocaching.utils.FileUtils;
+import cgeo.geocaching.utils.Log;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import okhttp3.Response;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+
+/**
+ * Stores downloaded images once, named by the hash of their content, for all caches using them.
+ * <p>
+ * The database references the images of each cache by URL and hash, together with the validators of the response
+ * for this URL to revalidate the image. Images with the same URL (like the banner of a
+ * cache series or smileys) are then downloaded and stored only once, and images with the same content are stored
+ * only once even if they have different URLs. An image is deleted when the last cache referencing it is removed, or
+ * when the last cache referencing it stores a changed image for its URL.
+ * </p>
+ * <p>
+ * Storing, referencing and deleting images are serialized, so that an image is never deleted while a reference to
+ * it is being added.
+ * </p>
+ * <p>
+ * Images stored before are still found in the directory of their cache.
+ * </p>
+ */
+public final class ImageStore {
+
+    private static final String IMAGES_DIRNAME = "_images";
+    private static final String[] HEADERS = { LocalStorage.HEADER_ETAG, LocalStorage.HEADER_LAST_MODIFIED };
+
+    private static final Object referencesLock = new Object();
+
+    private ImageStore() {
+        // utility class
+    }
+
+    @NonNull
+    static File getImagesDir() {
+        return LocalStorage.getStorageDir(IMAGES_DIRNAME);
+    }
+
+    /**
+     * Get the file of the image with the given hash. The images are spread over subdirectories by the first
+     * characters of their hash, to keep the directories small.
+     */
+    @NonNull
+    static File getImageFile(@NonNull final String hash) {
+        return new File(new File(getImagesDir(), hash.substring(0, 2)), hash);
+    }
+
+    /**
+     * Get the file of an image of a cache. This is the shared image if it has been stored, and the file in the cache
+     * directory otherwise. The file does not exist if the image has not been stored yet.
+     *
+     * @param geocode
+     *            the geocode, or the shared name of {@link cgeo.geocaching.network.HtmlImage}
+     */
+    @NonNull
+    public static File getFile(@NonNull final String geocode, @NonNull final String url) {
+        final String hash = DataStore.getImageHash(geocode, url);
+        if (hash != null) {
+            final File file = getImageFile(hash);
+            if (file.isFile()) {
+                return file;
+            }
+        }
+        return LocalStorage.getStorageFile(geocode, url, true, false);
+    }
+
+    /**
+     * Create an empty file to download an image into, before it is stored with {@link #store(String, String, File, Response)}.
+     */
+    @NonNull
+    public static File createDownloadFile() throws IOException {
+        final File dir = getImagesDir();
+        FileUtils.mkdirs(dir);
+        return File.createTempFile("download", null, dir);
+    }
+
+    /**
+     * Store a downloaded image for a cache, together with the validators of its response. If the same image is stored
+     * already, it is replaced by the downloaded one, which has a fresh timestamp.
+     *
+     * @param downloaded
+     *            the downloaded image, which is moved or deleted
+     * @param response
+     *            the response the image was downloaded from, or {@code null} if it was not downloaded
+     * @return {@code true} if the image has been stored
+     */
+    public static boolean store(@NonNull final String geocode, @NonNull final String url, @NonNull final File downloaded, @Nullable final Response response) {
+        final String hash = CryptUtils.sha1(downloaded);
+        if (StringUtils.isEmpty(hash) || downloaded.length() == 0) {
+            deleteWithHeaders(downloaded);
+            return false;
+        }
+        final File file = getImageFile(hash);
+        synchronized (referencesLock) {
+            FileUtils.mkdirs(file.getParentFile());
+            if (!downloaded.renameTo(file)) {
+                Log.w("ImageStore.store: could not move " + downloaded + " to " + file);
+                deleteWithHeaders(downloaded);
+                if (!file.isFile()) {
+                    return false;
+                }
+            }
+            final ImmutablePair<String, String> validators = StorageManager.getValidators(response);
+            final String replacedHash = DataStore.setImageHash(geocode, url, hash, validators.left, validators.right);
+            StorageManager.addFile(file, null, hash, null);
+            if (replacedHash != null) {
+                deleteImages(Collections.singleton(replacedHash));
+            }
+        }
+
+        // the copy stored in the cache directory before is not used anymore
+        deleteWithHeaders(LocalStorage.getStorageFile(geocode, url, true, false));
+        return true;
+    }
+
+    /**
+     * Get the validators of the response an image was downloaded from, to revalidate it.
+     *
+     * @param file
+     *            the file of the image, as returned by {@link #getFile(String, String)}
+     * @return the ETag and Last-Modified headers, each of them may be {@code null}, or {@code null} if the file does
+     *         not exist
+     */
+    @Nullable
+    public static ImmutablePair<String, String> getValidators(@NonNull final String url, @NonNull final File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        if (isImageFile(file)) {
+            try {
+                final ImmutablePair<String, String> validators = DataStore.loadImageValidators(url, file.getName());
+                if (validators != null && (validators.left != null || validators.right != null)) {
+                    return validators;
+                }
+            } catch (final Exception e) {
+                Log.e("ImageStore.getValidators", e);
+            }
+        }
+        return loadSavedValidators(file);
+    }
+
+    /**
+     * @return the validators saved next to the file by older versions, which may both be {@code null}
+     */
+    @NonNull
+    static ImmutablePair<String, String> loadSavedValidators(@NonNull final File file) {
+        return ImmutablePair.of(LocalStorage.getSavedHeader(file, LocalStorage.HEADER_ETAG), LocalStorage.getSavedHeader(file, LocalStorage.HEADER_LAST_MODIFIED));
+    }
+
+    /**
+     * Let a cache reference the image already stored for the URL by other caches, when storing the cache finds the
+     * image fresh enough not to download it again.
+     */
+    public static void addReference(@NonNull final String geocode, @NonNull final String url) {
+        synchronized (referencesLock) {
+            DataStore.addImageReference(geocode, url);
+        }
+    }
+
+    /**
+     * Delete the images with the given hashes which are not referenced by any cache anymore.
+     */
+    static void deleteImages(@NonNull final Collection<String> hashes) {
+        if (hashes.isEmpty()) {
+            return;
+        }
+        final List<String> paths = new ArrayList<>(hashes.size());
+        synchronized (referencesLock) {
+            for (final String hash : hashes) {
+                // a cache may have referenced the image again since it was found unused
+                if (!DataStore.isImageReferenced(hash)) {
+                    final File file = getImageFile(hash);
+                    deleteWithHeaders(file);
+                    paths.add(file.getAbsolutePath());
+                }
+            }
+            DataStore.removeStorageFiles(paths);
+        }
+    }
+
+    /**
+     * Delete an image evicted by the {@link StorageManager}, unless it has been accessed or stored again since it was
+     * found evictable.
+     *
+     * @param accessed
+     *            the last access of the image when it was found evictable
+     * @return {@code true} if the image has been deleted
+     */
+    static boolean deleteEvicted(@NonNull final File file, final long accessed) {
+        synchronized (referencesLock) {
+            if (!DataStore.removeEvictedStorageFile(file.getAbsolutePath(), accessed)) {
+                return false;
+            }
+            deleteWithHeaders(file);
+            return true;
+        }
+    }
+
+    /**
+     * @return {@code true} if the file is a shared image, named by its hash
+     */
+    static boolean isImageFile(@NonNull final File file) {
+        return file.getParentFile() != null && getImagesDir().equals(file.getParentFile().getParentFile());
+    }
+
+    /**
+     * @return {@code true} if the file is a header saved next to a stored file by older versions
+     */
+    static boolean isHeaderFile(@NonNull final File file) {
+        for (final String header : HEADERS) {
+            if (file.getName().endsWith("-" + header)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Delete a file, together with the headers saved next to it by older versions.
+     */
+    static void deleteWithHeaders(@NonNull final File file) {
+        if (file.exists()) {
+            FileUtils.deleteIgnoringFailure(file);
+        }
+        deleteHeaders(file);
+    }
+
+    /**
+     * Delete the headers saved next to a file by older versions.
+     */
+    static void deleteHeaders(@NonNull final File file) {
+        for (final String header : HEADERS) {
+            final File headerFile = LocalStorage.filenameForHeader(file, header);
+            if (headerFile.exists()) {
+                FileUtils.deleteIgnoringFailure(headerFile);
+            }
+        }
+    }
+}
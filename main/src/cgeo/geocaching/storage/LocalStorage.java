@@ -11,7 +11,6 @@ import org.apache.commons.lang3.StringUtils;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -22,7 +21,6 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Reader;
-import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -208,12 +206,7 @@ public final class LocalStorage {
      */
     public static boolean saveEntityToFile(@NonNull final Response response, @NonNull final File targetFile) {
         try {
-            final boolean saved = saveToFile(response.body().byteStream(), targetFile);
-            if (saved) {
-                saveHeader(HEADER_ETAG, response, targetFile);
-                saveHeader(HEADER_LAST_MODIFIED, response, targetFile);
-            }
-            return saved;
+            return saveToFile(response.body().byteStream(), targetFile);
         } catch (final Exception e) {
             Log.e("LocalStorage.saveEntityToFile", e);
         }
@@ -221,29 +214,17 @@ public final class LocalStorage {
         return false;
     }
 
-    private static void saveHeader(final String name, @NonNull final Response response, @NonNull final File baseFile) {
-        final String header = response.header(name);
-        final File file = filenameForHeader(baseFile, name);
-        if (header == null) {
-            FileUtils.deleteIgnoringFailure(file);
-        } else {
-            try {
-                saveToFile(new ByteArrayInputStream(header.getBytes("UTF-8")), file);
-            } catch (final UnsupportedEncodingException e) {
-                // Do not try to display the header in the log message, as our default encoding is
-                // likely to be UTF-8 and it will fail as well.
-                Log.e("LocalStorage.saveHeader: unable to decode header", e);
-            }
-        }
-    }
-
+    /**
+     * Get the file in which older versions saved a header of the response for a file. The validators are now kept in
+     * the database, those files are only read for files stored before and deleted with them.
+     */
     @NonNull
-    private static File filenameForHeader(@NonNull final File baseFile, final String name) {
+    static File filenameForHeader(@NonNull final File baseFile, final String name) {
         return new File(baseFile.getAbsolutePath() + "-" + name);
     }
 
     /**
-     * Get the saved header value for this file.
+     * Get the header value saved for this file by older versions.
      *
      * @param baseFile
      *            the name of the cached resource
@@ -252,7 +233,7 @@ public final class LocalStorage {
      * @return the cached value, or <tt>null</tt> if none has been cached
      */
     @Nullable
-    public static String getSavedHeader(@NonNull final File baseFile, final String name) {
+    static String getSavedHeader(@NonNull final File baseFile, final String name) {
         try {
             final File file = filenameForHeader(baseFile, name);
             final Reader reader = new InputStreamReader(new FileInputStream(file), CharEncoding.UTF_8);
@@ -260,7 +241,7 @@ public final class LocalStorage {
                 // No header will be more than 256 bytes
                 final char[] value = new char[256];
                 final int count = reader.read(value);
-                return new String(value, 0, count);
+                return count > 0 ? new String(value, 0, count) : null;
             } finally {
                 IOUtils.closeQuietly(reader);
             }
@@ -0,0 +1,183 @@
+package cgeo.geocaching.storage;
+
+import cgeo.geocaching.connector.ConnectorFactory;
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.network.Network;
+import cgeo.geocaching.settings.Settings;
+import cgeo.geocaching.utils.DisposableHandler;
+import cgeo.geocaching.utils.Log;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.internal.schedulers.RxThreadFactory;
+import io.reactivex.observables.GroupedObservable;
+import io.reactivex.schedulers.Schedulers;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Stores many caches for offline use at once.
+ * <p>
+ * The caches to store are first written to a queue in the database, and each cache is removed from the queue once it
+ * has been stored. Caches which are still queued when the app is stopped are stored on the next start if the user
+ * allows it and the connection is not metered (see {@link #resume()}).
+ * </p>
+ * <p>
+ * Several caches are stored in parallel, but only {@link #PARALLEL_CACHES_PER_HOST} of them from the same connector,
+ * so that storing caches of different connectors does not wait behind a single slow server. The caches are grouped by
+ * host, and each group submits at most that many caches to the store threads at once, so that no thread waits for a
+ * host. The images of the caches are limited per host by {@link cgeo.geocaching.network.HtmlImage}.
+ * </p>
+ */
+public final class OfflineStoreQueue {
+
+    private static final int PARALLEL_CACHES = 6;
+    private static final int PARALLEL_CACHES_PER_HOST = 3;
+
+    private static final Scheduler storeScheduler = Schedulers.from(Executors.newFixedThreadPool(PARALLEL_CACHES, new RxThreadFactory("store-")));
+    private static final AtomicBoolean resumed = new AtomicBoolean(false);
+
+    private OfflineStoreQueue() {
+        // utility class
+    }
+
+    /**
+     * Store the caches in parallel. Storing starts on subscription, and the caches not stored yet are removed from the
+     * queue if the subscription is disposed.
+     *
+     * @param cachesLists
+     *            the lists to store each cache on, in the order in which the caches should be stored
+     * @param handler
+     *            the handler to pass to {@link Geocache#storeCache}, may be {@code null}
+     * @return an observable emitting the geocode of each cache once it has been stored or failed to be stored
+     */
+    @NonNull
+    public static Observable<String> store(@NonNull final Map<String, Set<Integer>> cachesLists, final boolean forceRedownload, @Nullable final DisposableHandler handler) {
+        final List<String> geocodes = new ArrayList<>(cachesLists.keySet());
+        return Observable.fromCallable(new Callable<Map<String, Set<Integer>>>() {
+            @Override
+            public Map<String, Set<Integer>> call() {
+                DataStore.addToStoreQueue(cachesLists, forceRedownload);
+                return cachesLists;
+            }
+        }).flatMapIterable(new Function<Map<String, Set<Integer>>, Iterable<Entry<String, Set<Integer>>>>() {
+            @Override
+            public Iterable<Entry<String, Set<Integer>>> apply(final Map<String, Set<Integer>> queued) {
+                return queued.entrySet();
+            }
+        }).groupBy(new Function<Entry<String, Set<Integer>>, String>() {
+            @Override
+            public String apply(final Entry<String, Set<Integer>> entry) {
+                return StringUtils.defaultString(ConnectorFactory.getConnector(entry.getKey()).getHost());
+            }
+        }).flatMap(new Function<GroupedObservable<String, Entry<String, Set<Integer>>>, ObservableSource<String>>() {
+            @Override
+            public ObservableSource<String> apply(final GroupedObservable<String, Entry<String, Set<Integer>>> hostEntries) {
+                // caches of unknown hosts are only limited by the number of store threads
+                final int maxConcurrency = StringUtils.isBlank(hostEntries.getKey()) ? PARALLEL_CACHES : PARALLEL_CACHES_PER_HOST;
+                return hostEntries.flatMap(new Function<Entry<String, Set<Integer>>, ObservableSource<String>>() {
+                    @Override
+                    public ObservableSource<String> apply(final Entry<String, Set<Integer>> entry) {
+                        return Observable.fromCallable(new Callable<String>() {
+                            @Override
+                            public String call() {
+                                storeOne(entry.getKey(), entry.getValue(), forceRedownload, handler);
+                                return entry.getKey();
+                            }
+                        }).subscribeOn(storeScheduler);
+                    }
+                }, maxConcurrency);
+            }
+        }).doOnComplete(new Action() {
+            @Override
+            public void run() {
+                Schedulers.io().scheduleDirect(new Runnable() {
+                    @Override
+                    public void run() {
+                        StorageManager.enforceQuota();
+                    }
+                });
+            }
+        }).doOnDispose(new Action() {
+            @Override
+            public void run() {
+                Schedulers.io().scheduleDirect(new Runnable() {
+                    @Override
+                    public void run() {
+                        DataStore.removeFromStoreQueue(geocodes);
+                    }
+                });
+            }
+        }).subscribeOn(Schedulers.io());
+    }
+
+    private static void storeOne(@NonNull final String geocode, @NonNull final Set<Integer> listIds, final boolean forceRedownload, @Nullable final DisposableHandler handler) {
+        try {
+            if (!DisposableHandler.isDisposed(handler)) {
+                Geocache.storeCache(null, geocode, listIds, forceRedownload, handler);
+            }
+        } catch (final Exception e) {
+            Log.e("OfflineStoreQueue.storeOne: " + geocode, e);
+        } finally {
+            DataStore.removeFromStoreQueue(Collections.singleton(geocode));
+        }
+    }
+
+    /**
+     * Store the caches left in the queue by a previous run of the app, if enabled in the settings and the connection
+     * is not metered. Otherwise the caches stay in the queue for a later start. Only the first call storing the
+     * caches has an effect.
+     */
+    public static void resume() {
+        if (!Settings.isResumeStoreOnStart() || !Network.isUnmeteredConnection()) {
+            Log.d("OfflineStoreQueue.resume: not resuming without permission or on a metered connection");
+            return;
+        }
+        if (!resumed.compareAndSet(false, true)) {
+            return;
+        }
+        for (final boolean forceRedownload : new boolean[] { false, true }) {
+            Observable.fromCallable(new Callable<Map<String, Set<Integer>>>() {
+                @Override
+                public Map<String, Set<Integer>> call() {
+                    return DataStore.loadStoreQueue(forceRedownload);
+                }
+            }).flatMap(new Function<Map<String, Set<Integer>>, ObservableSource<String>>() {
+                @Override
+                public ObservableSource<String> apply(final Map<String, Set<Integer>> cachesLists) {
+                    if (cachesLists.isEmpty()) {
+                        return Observable.empty();
+                    }
+                    Log.i("OfflineStoreQueue.resume: storing " + cachesLists.size() + " caches");
+                    return store(cachesLists, forceRedownload, null);
+                }
+            }).subscribeOn(Schedulers.io()).subscribe(new Consumer<String>() {
+                @Override
+                public void accept(final String geocode) {
+                    Log.d("OfflineStoreQueue.resume: stored " + geocode);
+                }
+            }, new Consumer<Throwable>() {
+                @Override
+                public void accept(final Throwable throwable) {
+                    Log.e("OfflineStoreQueue.resume", throwable);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package cgeo.geocaching.storage;
+
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.location.Viewport;
+import cgeo.geocaching.settings.Settings;
+import cgeo.geocaching.utils.Log;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.Response;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
+
+/**
+ * Keeps the size of the stored images and static maps below the limit set by the user.
+ * <p>
+ * The size and the last access of each stored file are kept in an index in the database, together with the validators
+ * of the response a static map was downloaded from, used to revalidate it. The validators of images are kept by the
+ * {@link ImageStore}. When the files take more
+ * space than allowed, the least recently accessed ones are deleted until they take less than
+ * {@link #TARGET_PERCENT} percent of the limit. The files used by caches on a stored list within
+ * {@link #HOME_RADIUS_KM} of the home location (or anywhere if no home location is set) are never deleted, so the limit
+ * may still be exceeded by them.
+ * </p>
+ * <p>
+ * Files stored before the index existed are indexed once in the background (see {@link #indexStoredFiles()}).
+ * </p>
+ */
+public final class StorageManager {
+
+    private static final int HOME_RADIUS_KM = 50;
+    private static final int TARGET_PERCENT = 90;
+    private static final int EVICTION_BATCH = 500;
+    private static final long BYTES_PER_MB = 1024 * 1024;
+
+    /** accesses are recorded only once in this period, to avoid a database write each time an image is shown */
+    private static final long ACCESS_RESOLUTION = TimeUnit.HOURS.toMillis(1);
+
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+
+    private static final AtomicBoolean evicting = new AtomicBoolean(false);
+
+    private StorageManager() {
+        // utility class
+    }
+
+    /**
+     * Add a newly stored file to the index.
+     *
+     * @param geocode
+     *            the geocode of the cache the file belongs to, or {@code null} for an image of the {@link ImageStore}
+     * @param hash
+     *            the hash of the image of the {@link ImageStore}, or {@code null} for a file of a cache
+     * @param response
+     *            the response the file was downloaded from, to keep its validators, or {@code null} not to keep them
+     */
+    public static void addFile(@NonNull final File file, @Nullable final String geocode, @Nullable final String hash, @Nullable final Response response) {
+        try {
+            final ImmutablePair<String, String> validators = getValidators(response);
+            DataStore.addStorageFile(file, geocode, hash, validators.left, validators.right);
+            if (response != null) {
+                // the headers saved by older versions belong to the replaced file
+                ImageStore.deleteHeaders(file);
+            }
+        } catch (final Exception e) {
+            Log.e("StorageManager.addFile", e);
+        }
+    }
+
+    /**
+     * @return the ETag and Last-Modified headers of the response, each of them may be {@code null}
+     */
+    @NonNull
+    static ImmutablePair<String, String> getValidators(@Nullable final Response response) {
+        return response != null ? ImmutablePair.of(response.header(HEADER_ETAG), response.header(HEADER_LAST_MODIFIED)) : ImmutablePair.of((String) null, (String) null);
+    }
+
+    /**
+     * Get the validators of the response a static map was downloaded from, to revalidate it.
+     *
+     * @return the ETag and Last-Modified headers, each of them may be {@code null}, or {@code null} if the file does
+     *         not exist
+     */
+    @Nullable
+    public static ImmutablePair<String, String> getValidators(@NonNull final File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            final ImmutablePair<String, String> validators = DataStore.loadStorageFileValidators(file);
+            if (validators != null && (validators.left != null || validators.right != null)) {
+                return validators;
+            }
+        } catch (final Exception e) {
+            Log.e("StorageManager.getValidators", e);
+        }
+        return ImageStore.loadSavedValidators(file);
+    }
+
+    /**
+     * Record that a stored file has been shown to the user.
+     */
+    public static void markAccessed(@NonNull final File file) {
+        try {
+            DataStore.markStorageFileAccessed(file, System.currentTimeMillis() - ACCESS_RESOLUTION);
+        } catch (final Exception e) {
+            Log.e("StorageManager.markAccessed", e);
+        }
+    }
+
+    /**
+     * @return the total size in bytes and the number of the indexed files
+     */
+    @NonNull
+    public static ImmutablePair<Long, Long> getStats() {
+        return ImmutablePair.of(DataStore.getStorageSize(), DataStore.getStorageFileCount());
+    }
+
+    /**
+     * Delete the least recently accessed files if the stored files exceed the limit. This must not be called on the UI
+     * thread.
+     */
+    public static void enforceQuota() {
+        final long quota = Settings.getStorageQuota() * BYTES_PER_MB;
+        if (quota <= 0 || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long size = DataStore.getStorageSize();
+            if (size <= quota) {
+                return;
+            }
+            final long target = quota / 100 * TARGET_PERCENT;
+            final Viewport keep = getHomeArea();
+            Log.i("StorageManager.enforceQuota: " + size + " bytes stored, limit is " + quota);
+            while (size > target) {
+                final List<ImmutableTriple<String, Long, Long>> files = DataStore.loadEvictableStorageFiles(keep, EVICTION_BATCH);
+                if (files.isEmpty()) {
+                    Log.i("StorageManager.enforceQuota: no more files to delete");
+                    break;
+                }
+                final List<String> deleted = new ArrayList<>(files.size());
+                for (final ImmutableTriple<String, Long, Long> file : files) {
+                    if (size <= target) {
+                        break;
+                    }
+                    final File stored = new File(file.left);
+                    if (ImageStore.isImageFile(stored)) {
+                        // a cache may have stored the shared image again since it was found evictable
+                        if (!ImageStore.deleteEvicted(stored, file.right)) {
+                            continue;
+                        }
+                    } else {
+                        ImageStore.deleteWithHeaders(stored);
+                        deleted.add(file.left);
+                    }
+                    size -= file.middle;
+                }
+                DataStore.removeStorageFiles(deleted);
+            }
+        } catch (final Exception e) {
+            Log.e("StorageManager.enforceQuota", e);
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * Index the static maps and images stored before the index existed, once. This must not be called on the UI
+     * thread.
+     */
+    public static void indexStoredFiles() {
+        if (Settings.isStorageIndexed()) {
+            return;
+        }
+        final File[] dirs = LocalStorage.getStorage().listFiles();
+        if (dirs != null) {
+            Log.i("StorageManager.indexStoredFiles: indexing " + dirs.length + " directories");
+            for (final File dir : dirs) {
+                if (!dir.isDirectory()) {
+                    continue;
+                }
+                if (dir.equals(ImageStore.getImagesDir())) {
+                    // the images are spread over subdirectories and named by their hash
+                    final File[] hashDirs = dir.listFiles();
+                    if (hashDirs != null) {
+                        for (final File hashDir : hashDirs) {
+                            if (hashDir.isDirectory()) {
+                                DataStore.indexStorageFiles(null, listStoredFiles(hashDir));
+                            }
+                        }
+                    }
+                } else {
+                    DataStore.indexStorageFiles(dir.getName(), listStoredFiles(dir));
+                }
+            }
+        }
+        Settings.setStorageIndexed();
+    }
+
+    /**
+     * @return the files of the directory, without the headers saved next to them by older versions
+     */
+    @NonNull
+    private static List<File> listStoredFiles(@NonNull final File dir) {
+        final List<File> files = new ArrayList<>();
+        final File[] dirFiles = dir.listFiles();
+        if (dirFiles != null) {
+            for (final File file : dirFiles) {
+                if (file.isFile() && !ImageStore.isHeaderFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * @return the area around the home location whose stored caches are kept, or {@code null} if no home location is set
+     */
+    @Nullable
+    private static Viewport getHomeArea() {
+        final String homeLocation = Settings.getHomeLocation();
+        if (StringUtils.isBlank(homeLocation)) {
+            return null;
+        }
+        try {
+            final Geopoint home = new Geopoint(homeLocation);
+            final double diagonal = HOME_RADIUS_KM * Math.sqrt(2);
+            return new Viewport(home.project(225, diagonal), home.project(45, diagonal));
+        } catch (final Geopoint.ParseException e) {
+            Log.w("StorageManager.getHomeArea: unable to parse home location " + homeLocation, e);
+            return null;
+        }
+    }
+}
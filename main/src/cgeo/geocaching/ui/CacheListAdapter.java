@@ -10,9 +10,9 @@ import cgeo.geocaching.sensors.GeoData;
 import cgeo.geocaching.sensors.Sensors;
 import cgeo.geocaching.settings.Settings;
 import cgeo.geocaching.sorting.CacheComparator;
+import cgeo.geocaching.sorting.CacheSorter;
 import cgeo.geocaching.sorting.DistanceComparator;
 import cgeo.geocaching.sorting.EventDateComparator;
-import cgeo.geocaching.sorting.InverseComparator;
 import cgeo.geocaching.sorting.SeriesNameComparator;
 import cgeo.geocaching.sorting.VisitComparator;
 import cgeo.geocaching.utils.AngleUtils;
@@ -43,8 +43,6 @@ import android.widget.TextView;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -293,7 +291,7 @@ public class CacheListAdapter extends ArrayAdapter<Geocache> {
             lastSort = 0;
             updateSortByDistance();
         } else {
-            Collections.sort(list, getPotentialInversion(getCacheComparator()));
+            CacheSorter.sort(list, getCacheComparator(), inverseSort);
         }
 
         notifyDataSetChanged();
@@ -327,24 +325,16 @@ public class CacheListAdapter extends ArrayAdapter<Geocache> {
         if (coords == null) {
             return;
         }
-        final List<Geocache> oldList = new ArrayList<>(list);
-        Collections.sort(list, getPotentialInversion(new DistanceComparator(coords, list)));
-
+        // after the first sort by distance, the list only gets slightly out of order by position updates
+        final boolean presorted = lastSort != 0;
         // avoid an update if the list has not changed due to location update
-        if (list.equals(oldList)) {
+        if (!CacheSorter.sortByDistance(list, coords, inverseSort, presorted)) {
             return;
         }
         notifyDataSetChanged();
         lastSort = System.currentTimeMillis();
     }
 
-    private Comparator<? super Geocache> getPotentialInversion(final CacheComparator comparator) {
-        if (inverseSort) {
-            return new InverseComparator(comparator);
-        }
-        return comparator;
-    }
-
     private boolean isSortedByDistance() {
         final CacheComparator comparator = getCacheComparator();
         return comparator == null || comparator instanceof DistanceComparator;
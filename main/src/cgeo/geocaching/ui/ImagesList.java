@@ -9,6 +9,7 @@ import cgeo.geocaching.models.Geocache;
 import cgeo.geocaching.models.Image;
 import cgeo.geocaching.models.Waypoint;
 import cgeo.geocaching.network.HtmlImage;
+import cgeo.geocaching.storage.ImageStore;
 import cgeo.geocaching.storage.LocalStorage;
 import cgeo.geocaching.utils.AndroidRxUtils;
 import cgeo.geocaching.utils.Log;
@@ -189,7 +190,7 @@ public class ImagesList {
     @Nullable
     private Geopoint getImageLocation(final Image image) {
         try {
-            final File file = LocalStorage.getStorageFile(geocode, image.getUrl(), true, false);
+            final File file = ImageStore.getFile(geocode, image.getUrl());
             final Metadata metadata = ImageMetadataReader.readMetadata(file);
             final Collection<GpsDirectory> gpsDirectories = metadata.getDirectoriesOfType(GpsDirectory.class);
             if (gpsDirectories == null) {
@@ -307,7 +308,7 @@ public class ImagesList {
     private void viewImageInStandardApp(final Image img, final BitmapDrawable image) {
         try {
             final Intent intent = new Intent().setAction(Intent.ACTION_VIEW);
-            final File file = img.isLocalFile() ? img.localFile() : LocalStorage.getStorageFile(geocode, img.getUrl(), true, true);
+            final File file = img.isLocalFile() ? img.localFile() : ImageStore.getFile(geocode, img.getUrl());
             if (file.exists()) {
                 intent.setDataAndType(Uri.fromFile(file), mimeTypeForUrl(img.getUrl()));
             } else {
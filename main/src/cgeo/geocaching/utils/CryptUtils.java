@@ -1,5 +1,6 @@
 package cgeo.geocaching.utils;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.CharEncoding;
 import org.apache.commons.lang3.StringUtils;
 import android.support.annotation.NonNull;
@@ -7,6 +8,10 @@ import android.support.annotation.NonNull;
 import android.text.Spannable;
 import android.text.SpannableStringBuilder;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
 import java.security.GeneralSecurityException;
@@ -96,6 +101,32 @@ public final class CryptUtils {
         return StringUtils.EMPTY;
     }
 
+    /**
+     * Compute the SHA-1 hash of the content of a file.
+     *
+     * @return the hash as 40 hexadecimal digits, or the empty string if the file could not be read
+     */
+    @NonNull
+    public static String sha1(@NonNull final File file) {
+        InputStream input = null;
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            input = new FileInputStream(file);
+            final byte[] buffer = new byte[8192];
+            int length;
+            while ((length = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, length);
+            }
+            return String.format("%040x", new BigInteger(1, digest.digest()));
+        } catch (NoSuchAlgorithmException | IOException e) {
+            Log.e("CryptUtils.sha1", e);
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+
+        return StringUtils.EMPTY;
+    }
+
     @NonNull
     public static byte[] hashHmac(final String text, final String salt) {
         try {
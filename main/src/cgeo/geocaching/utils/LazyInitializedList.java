@@ -33,6 +33,13 @@ public abstract class LazyInitializedList<ElementType> extends AbstractList<Elem
         return list;
     }
 
+    /**
+     * @return {@code true} if the list has already been initialized, i.e. accessing it does not call {@link #call()}
+     */
+    public boolean isInitialized() {
+        return list != null;
+    }
+
     @Override
     public boolean add(final ElementType element) {
         return getUnderlyingList().add(element);
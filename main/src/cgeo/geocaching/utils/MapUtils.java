@@ -72,7 +72,30 @@ public final class MapUtils {
      */
     @NonNull
     public static LayerDrawable getCacheMarker(final Resources res, final Geocache cache, @Nullable final CacheListType cacheListType) {
-        final int hashcode = new HashCodeBuilder()
+        final int hashcode = getCacheMarkerHash(cache, cacheListType);
+
+        synchronized (overlaysCache) {
+            LayerDrawable drawable = overlaysCache.get(hashcode);
+            if (drawable == null) {
+                drawable = createCacheMarker(res, cache, cacheListType);
+                overlaysCache.put(hashcode, drawable);
+            }
+            return drawable;
+        }
+    }
+
+    /**
+     * Compute the key under which the drawable of a cache is cached. Caches with the same key have the same marker.
+     *
+     * @param cache
+     *          the cache to build the drawable for
+     * @param cacheListType
+     *          the current CacheListType or Null
+     * @return
+     *          the key of the drawable representing the current cache status
+     */
+    public static int getCacheMarkerHash(final Geocache cache, @Nullable final CacheListType cacheListType) {
+        return new HashCodeBuilder()
                 .append(cache.isReliableLatLon())
                 .append(cache.getType().id)
                 .append(cache.isDisabled() || cache.isArchived())
@@ -87,15 +110,6 @@ public final class MapUtils {
                 .append(showBackground(cacheListType))
                 .append(showFloppyOverlay(cacheListType))
                 .toHashCode();
-
-        synchronized (overlaysCache) {
-            LayerDrawable drawable = overlaysCache.get(hashcode);
-            if (drawable == null) {
-                drawable = createCacheMarker(res, cache, cacheListType);
-                overlaysCache.put(hashcode, drawable);
-            }
-            return drawable;
-        }
     }
 
     /**
@@ -111,10 +125,7 @@ public final class MapUtils {
      */
     @NonNull
     public static LayerDrawable getWaypointMarker(final Resources res, final Waypoint waypoint) {
-        final int hashcode = new HashCodeBuilder()
-        .append(waypoint.isVisited())
-        .append(waypoint.getWaypointType().id)
-        .toHashCode();
+        final int hashcode = getWaypointMarkerHash(waypoint);
 
         synchronized (overlaysCache) {
             LayerDrawable drawable = overlaysCache.get(hashcode);
@@ -126,6 +137,21 @@ public final class MapUtils {
         }
     }
 
+    /**
+     * Compute the key under which the drawable of a waypoint is cached. Waypoints with the same key have the same marker.
+     *
+     * @param waypoint
+     *          the waypoint to build the drawable for
+     * @return
+     *          the key of the drawable representing the current waypoint status
+     */
+    public static int getWaypointMarkerHash(final Waypoint waypoint) {
+        return new HashCodeBuilder()
+                .append(waypoint.isVisited())
+                .append(waypoint.getWaypointType().id)
+                .toHashCode();
+    }
+
     /**
      * Build the drawable for a given waypoint.
      *
@@ -13,6 +13,7 @@ import cgeo.geocaching.sensors.RotationProvider;
 import cgeo.geocaching.sensors.Sensors;
 import cgeo.geocaching.settings.HwAccel;
 import cgeo.geocaching.settings.Settings;
+import cgeo.geocaching.storage.DataStore;
 
 import android.Manifest;
 import android.content.Context;
@@ -68,7 +69,8 @@ public final class SystemInformation {
             body.append(" (cgeo forced to English)");
         }
         body.append("\nSystem date format: ").append(Formatter.getShortDateFormat())
-                .append("\nDebug mode active: ").append(Settings.isDebug() ? "yes" : "no");
+                .append("\nDebug mode active: ").append(Settings.isDebug() ? "yes" : "no")
+                .append("\nCache memory: ").append(DataStore.getCacheCacheStatistics());
         appendPermissions(context, body);
         appendConnectors(body);
         if (GCConnector.getInstance().isActive()) {
@@ -0,0 +1,173 @@
+package cgeo.geocaching.connector.gc;
+
+import static cgeo.geocaching.test.R.raw.map1_z13;
+import static cgeo.geocaching.test.R.raw.map2_z13;
+import static cgeo.geocaching.test.R.raw.map3_z12;
+import static cgeo.geocaching.test.R.raw.map4_z12;
+import static cgeo.geocaching.test.R.raw.map5_z15;
+import static cgeo.geocaching.test.R.raw.map6_z11;
+import static cgeo.geocaching.test.R.raw.map7_z14;
+import static cgeo.geocaching.test.R.raw.map_all14;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cgeo.geocaching.enumerations.CacheType;
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.settings.Settings;
+import cgeo.geocaching.test.AbstractResourceInstrumentationTestCase;
+import cgeo.geocaching.test.PerformanceTestUtils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+/**
+ * Measures decoding the icons of all grid positions of the recorded live map tiles, and compares the results with a
+ * copy of the decoder reading each pixel separately.
+ */
+public class IconDecoderPerformanceTest extends AbstractResourceInstrumentationTestCase {
+
+    private static final int[] TILES = { map1_z13, map2_z13, map3_z12, map4_z12, map5_z15, map6_z11, map7_z14, map_all14 };
+    private static final int[] ZOOMLEVELS = { 13, 13, 12, 12, 15, 11, 14, 14 };
+    private static final int ROUNDS = 5;
+
+    /** cache types by the type numbers of the decoder, the numbers of found and own caches are not types */
+    private static final CacheType[] BASELINE_TYPES = { CacheType.TRADITIONAL, CacheType.MULTI, CacheType.MYSTERY, CacheType.EVENT, CacheType.EARTH,
+            null, null, CacheType.CITO, CacheType.VIRTUAL, CacheType.MEGA_EVENT, CacheType.WHERIGO, CacheType.WEBCAM, CacheType.LETTERBOX };
+    private static final int CT_FOUND = 5;
+    private static final int CT_OWN = 6;
+
+    private final Bitmap[] bitmaps = new Bitmap[TILES.length];
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inScaled = false;
+        for (int i = 0; i < TILES.length; i++) {
+            bitmaps[i] = BitmapFactory.decodeStream(getInstrumentation().getContext().getResources().openRawResource(TILES[i]), null, options);
+        }
+    }
+
+    public void testDecodeTiles() {
+        PerformanceTestUtils.measure("decode " + bitmaps.length + " tiles with the baseline decoder", ROUNDS, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < bitmaps.length; i++) {
+                    for (int y = 0; y <= UTFGrid.GRID_MAXY; y++) {
+                        for (int x = 0; x <= UTFGrid.GRID_MAXX; x++) {
+                            parseMapPNGBaseline(new Geocache(), bitmaps[i], new UTFGridPosition(x, y), ZOOMLEVELS[i]);
+                        }
+                    }
+                }
+            }
+        });
+        PerformanceTestUtils.measure("decode " + bitmaps.length + " tiles at once", ROUNDS, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < bitmaps.length; i++) {
+                    final IconDecoder decoder = new IconDecoder(bitmaps[i], ZOOMLEVELS[i]);
+                    for (int y = 0; y <= UTFGrid.GRID_MAXY; y++) {
+                        for (int x = 0; x <= UTFGrid.GRID_MAXX; x++) {
+                            decoder.parseMapPNG(new Geocache(), new UTFGridPosition(x, y));
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    public void testSameResultsAsBaseline() {
+        for (int i = 0; i < bitmaps.length; i++) {
+            final IconDecoder decoder = new IconDecoder(bitmaps[i], ZOOMLEVELS[i]);
+            for (int y = 0; y <= UTFGrid.GRID_MAXY; y++) {
+                for (int x = 0; x <= UTFGrid.GRID_MAXX; x++) {
+                    final UTFGridPosition position = new UTFGridPosition(x, y);
+                    final Geocache baseline = new Geocache();
+                    final Geocache single = new Geocache();
+                    final Geocache batched = new Geocache();
+                    final boolean expected = parseMapPNGBaseline(baseline, bitmaps[i], position, ZOOMLEVELS[i]);
+                    assertThat(decoder.parseMapPNG(batched, position)).isEqualTo(expected);
+                    assertThat(IconDecoder.parseMapPNG(single, bitmaps[i], position, ZOOMLEVELS[i])).isEqualTo(expected);
+                    for (final Geocache cache : new Geocache[] { batched, single }) {
+                        assertThat(cache.getType()).isEqualTo(baseline.getType());
+                        assertThat(cache.isFound()).isEqualTo(baseline.isFound());
+                        assertThat(cache.getOwnerUserId()).isEqualTo(baseline.getOwnerUserId());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy of the decoder before the tile was read at once, reading each pixel with {@link Bitmap#getPixel(int, int)}
+     * and classifying it without the lookup table.
+     */
+    private static boolean parseMapPNGBaseline(final Geocache cache, final Bitmap bitmap, final UTFGridPosition xy, final int zoomlevel) {
+        final int topX = xy.getX() * 4;
+        final int topY = xy.getY() * 4;
+        final int bitmapWidth = bitmap.getWidth();
+        final int bitmapHeight = bitmap.getHeight();
+
+        if ((topX < 0) || (topY < 0) || (topX + 4 > bitmapWidth) || (topY + 4 > bitmapHeight)) {
+            return false; //out of image position
+        }
+
+        int numberOfDetections = 9; //for level 12 and 13
+        if (zoomlevel < 12) {
+            numberOfDetections = 5;
+        }
+        if (zoomlevel > 13) {
+            numberOfDetections = 9;
+        }
+
+        final int[] pngType = new int[numberOfDetections];
+        for (int x = topX; x < topX + 4; x++) {
+            for (int y = topY; y < topY + 4; y++) {
+                final int color = bitmap.getPixel(x, y);
+
+                if ((color >>> 24) != 255) {
+                    continue; //transparent pixels (or semi_transparent) are only shadows of border
+                }
+
+                final int r = (color & 0xFF0000) >> 16;
+                final int g = (color & 0xFF00) >> 8;
+                final int b = color & 0xFF;
+
+                if (IconDecoder.isPixelDuplicated(r, g, b, zoomlevel)) {
+                    continue;
+                }
+
+                final int type;
+                if (zoomlevel < 12) {
+                    type = IconDecoder.getCacheTypeFromPixel11(r, g, b);
+                } else if (zoomlevel > 13) {
+                    type = IconDecoder.getCacheTypeFromPixel14(r, g, b);
+                } else {
+                    type = IconDecoder.getCacheTypeFromPixel13(r, g, b);
+                }
+                pngType[type]++;
+            }
+        }
+
+        int type = -1;
+        int count = 0;
+
+        for (int x = 0; x < pngType.length; x++) {
+            if (pngType[x] > count) {
+                count = pngType[x];
+                type = x;
+            }
+        }
+
+        if (count > 1) { // 2 pixels need to detect same type and we say good to go
+            if (type == CT_FOUND) {
+                cache.setFound(true);
+            } else if (type == CT_OWN) {
+                cache.setOwnerUserId(Settings.getUserName());
+            } else {
+                cache.setType(BASELINE_TYPES[type], zoomlevel);
+            }
+            return true;
+        }
+        return false;
+    }
+}
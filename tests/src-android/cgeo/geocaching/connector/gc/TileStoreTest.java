@@ -0,0 +1,89 @@
+package cgeo.geocaching.connector.gc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cgeo.geocaching.CgeoApplication;
+import cgeo.geocaching.enumerations.CacheType;
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.utils.FileUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class TileStoreTest extends TestCase {
+
+    private File directory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        directory = new File(CgeoApplication.getInstance().getCacheDir(), "TileStoreTest");
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(directory);
+        super.tearDown();
+    }
+
+    private static Geocache createCache(final String geocode, final CacheType type) {
+        final Geocache cache = new Geocache();
+        cache.setGeocode(geocode);
+        cache.setName("Name of " + geocode);
+        cache.setCoords(new Geopoint(48.1, 11.5), 14);
+        cache.setType(type, 14);
+        return cache;
+    }
+
+    public void testSaveAndLoad() {
+        final TileStore store = new TileStore(directory, 1024 * 1024);
+        final Tile tile = new Tile(new Geopoint(48.1, 11.5), 14);
+        final String key = TileStore.getKey(tile, "filter");
+        assertThat(store.load(key, tile)).isNull();
+
+        final Geocache found = createCache("GC12345", CacheType.MULTI);
+        found.setFound(true);
+        final List<Geocache> caches = new ArrayList<>();
+        caches.add(createCache("GC1", CacheType.TRADITIONAL));
+        caches.add(found);
+        store.save(key, caches);
+
+        final TileStore.StoredTile stored = store.load(key, tile);
+        assertThat(stored).isNotNull();
+        assertThat(stored.isFresh()).isTrue();
+        assertThat(stored.caches).hasSize(2);
+        final Geocache loaded = stored.caches.get(1);
+        assertThat(loaded.getGeocode()).isEqualTo("GC12345");
+        assertThat(loaded.getName()).isEqualTo("Name of GC12345");
+        assertThat(loaded.getType()).isEqualTo(CacheType.MULTI);
+        assertThat(loaded.isFound()).isTrue();
+        assertThat(loaded.getCoords()).isEqualTo(found.getCoords());
+        assertThat(loaded.getCoordZoomLevel()).isEqualTo(tile.getZoomLevel());
+
+        // other filters are stored separately
+        assertThat(store.load(TileStore.getKey(tile, "other filter"), tile)).isNull();
+    }
+
+    public void testSizeLimit() {
+        final TileStore store = new TileStore(directory, 4 * 1024);
+        final List<Geocache> caches = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            caches.add(createCache("GC" + i, CacheType.TRADITIONAL));
+        }
+        for (int x = 0; x < 20; x++) {
+            store.save("tile" + x, caches);
+        }
+        assertThat(store.getStoredBytes()).isLessThanOrEqualTo(4 * 1024);
+        assertThat(store.getKeys().size()).isBetween(1, 19);
+
+        store.trim(0);
+        assertThat(store.getKeys()).isEmpty();
+        assertThat(store.getStoredBytes()).isZero();
+        assertThat(store.load("tile19", new Tile(new Geopoint(48.1, 11.5), 14))).isNull();
+    }
+}
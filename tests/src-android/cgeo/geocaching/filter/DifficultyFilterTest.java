@@ -21,6 +21,11 @@ public class DifficultyFilterTest extends TestCase {
         assertThat(easyFilter.accepts(hard)).isFalse();
     }
 
+    public static void testSqlPredicate() {
+        final DifficultyFilter easyFilter = (DifficultyFilter) new DifficultyFilter.Factory().getFilters().get(0);
+        assertThat(easyFilter.toSqlPredicate()).isEqualTo("difficulty >= 1.0 AND difficulty < 2.0");
+    }
+
     public static void testAllFilters() {
         assertThat(new DifficultyFilter.Factory().getFilters()).hasSize(5); // difficulty ranges from 1 to 5
     }
@@ -0,0 +1,120 @@
+package cgeo.geocaching.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cgeo.geocaching.enumerations.CacheType;
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.location.Viewport;
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.utils.LeastRecentlyUsedMap.RemoveHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.lang3.StringUtils;
+
+public class CacheCacheTest extends TestCase {
+
+    private static final long MAX_BYTES = 1024 * 1024;
+
+    private final List<Geocache> removed = new ArrayList<>();
+    private final RemoveHandler<Geocache> removeHandler = new RemoveHandler<Geocache>() {
+        @Override
+        public void onRemove(final Geocache cache) {
+            removed.add(cache);
+        }
+    };
+    private final CacheCache cacheCache = new CacheCache(MAX_BYTES, removeHandler);
+
+    private static Geocache createCache(final String geocode, final Geopoint coords) {
+        final Geocache cache = new Geocache();
+        cache.setGeocode(geocode);
+        cache.setType(CacheType.TRADITIONAL);
+        cache.setCoords(coords);
+        return cache;
+    }
+
+    public void testPutGetRemove() {
+        final Geocache cache = createCache("GC1", new Geopoint(48.0, 11.0));
+        cacheCache.putCacheInCache(cache);
+        assertThat(cacheCache.getCacheFromCache("GC1")).isSameAs(cache);
+        assertThat(cacheCache.getCacheFromCache("GC2")).isNull();
+
+        final Geocache replacement = createCache("GC1", new Geopoint(48.0, 11.0));
+        cacheCache.putCacheInCache(replacement);
+        assertThat(cacheCache.getCacheFromCache("GC1")).isSameAs(replacement);
+        assertThat(removed).isEmpty();
+
+        cacheCache.removeCacheFromCache("GC1");
+        assertThat(cacheCache.getCacheFromCache("GC1")).isNull();
+        assertThat(removed).containsExactly(replacement);
+    }
+
+    public void testEviction() {
+        final long maxBytes = 64 * 1024;
+        final CacheCache smallCache = new CacheCache(maxBytes, removeHandler);
+        for (int i = 0; i < 1000; i++) {
+            smallCache.putCacheInCache(createCache("GC" + i, new Geopoint(48.0, 11.0)));
+        }
+        assertThat(smallCache.size()).isLessThan(1000);
+        assertThat(smallCache.getResidentBytes()).isLessThanOrEqualTo(maxBytes);
+        assertThat(removed).hasSize(1000 - smallCache.size());
+        assertThat(smallCache.getInViewport(new Viewport(new Geopoint(47.0, 10.0), new Geopoint(49.0, 12.0)), CacheType.ALL)).hasSize(smallCache.size());
+    }
+
+    public void testLargeCachesUseMoreBudget() {
+        final Geocache small = createCache("GC1", new Geopoint(48.0, 11.0));
+        final Geocache large = createCache("GC1", new Geopoint(48.0, 11.0));
+        large.setDescription(StringUtils.repeat('x', 100000));
+        assertThat(large.getEstimatedSize()).isGreaterThan(100 * small.getEstimatedSize());
+
+        cacheCache.putCacheInCache(small);
+        assertThat(cacheCache.getResidentBytes()).isEqualTo(small.getEstimatedSize());
+        cacheCache.putCacheInCache(large);
+        assertThat(cacheCache.getResidentBytes()).isEqualTo(large.getEstimatedSize());
+        cacheCache.removeCacheFromCache("GC1");
+        assertThat(cacheCache.getResidentBytes()).isZero();
+    }
+
+    public void testTrim() {
+        for (int i = 0; i < 100; i++) {
+            cacheCache.putCacheInCache(createCache("GC" + i, new Geopoint(48.0, 11.0)));
+        }
+        assertThat(cacheCache.size()).isEqualTo(100);
+        cacheCache.trimToSize(cacheCache.getResidentBytes() / 2);
+        assertThat(cacheCache.size()).isLessThan(100);
+        cacheCache.trimToSize(0);
+        assertThat(cacheCache.size()).isZero();
+        assertThat(cacheCache.getResidentBytes()).isZero();
+        assertThat(removed).hasSize(100);
+    }
+
+    public void testStatistics() {
+        cacheCache.putCacheInCache(createCache("GC1", new Geopoint(48.0, 11.0)));
+        cacheCache.getCacheFromCache("GC1");
+        cacheCache.getCacheFromCache("GC2");
+        assertThat(cacheCache.getStatistics()).startsWith("1 caches, ").contains("hit rate 50% of 2 lookups, 0 evictions");
+    }
+
+    public void testInViewport() {
+        cacheCache.putCacheInCache(createCache("GC1", new Geopoint(48.0, 11.0)));
+        cacheCache.putCacheInCache(createCache("GC2", new Geopoint(48.5, 11.5)));
+        cacheCache.putCacheInCache(createCache("GC3", new Geopoint(-33.9, 151.2)));
+        cacheCache.putCacheInCache(createCache("GC4", null));
+
+        assertThat(cacheCache.getInViewport(new Viewport(new Geopoint(47.9, 10.9), new Geopoint(48.1, 11.1)), CacheType.ALL)).containsOnly("GC1");
+        assertThat(cacheCache.getInViewport(new Viewport(new Geopoint(47.0, 10.0), new Geopoint(49.0, 12.0)), CacheType.ALL)).containsOnly("GC1", "GC2");
+        assertThat(cacheCache.getInViewport(new Viewport(new Geopoint(47.0, 10.0), new Geopoint(49.0, 12.0)), CacheType.MYSTERY)).isEmpty();
+        assertThat(cacheCache.getInViewport(new Viewport(new Geopoint(-89.0, -179.0), new Geopoint(89.0, 179.0)), CacheType.ALL)).containsOnly("GC1", "GC2", "GC3");
+
+        // moved caches are found at their new location
+        cacheCache.putCacheInCache(createCache("GC1", new Geopoint(-33.8, 151.2)));
+        assertThat(cacheCache.getInViewport(new Viewport(new Geopoint(-34.0, 151.0), new Geopoint(-33.0, 152.0)), CacheType.ALL)).containsOnly("GC1", "GC3");
+
+        cacheCache.removeAllFromCache();
+        assertThat(cacheCache.size()).isZero();
+        assertThat(cacheCache.getInViewport(new Viewport(new Geopoint(-89.0, -179.0), new Geopoint(89.0, 179.0)), CacheType.ALL)).isEmpty();
+    }
+}
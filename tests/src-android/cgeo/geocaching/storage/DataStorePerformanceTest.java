@@ -0,0 +1,113 @@
+package cgeo.geocaching.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cgeo.CGeoTestCase;
+import cgeo.geocaching.SearchResult;
+import cgeo.geocaching.enumerations.CacheType;
+import cgeo.geocaching.enumerations.LoadFlags;
+import cgeo.geocaching.enumerations.LoadFlags.LoadFlag;
+import cgeo.geocaching.enumerations.LoadFlags.RemoveFlag;
+import cgeo.geocaching.enumerations.WaypointType;
+import cgeo.geocaching.export.GpxSerializer;
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.models.Geocache;
+import cgeo.geocaching.models.Waypoint;
+import cgeo.geocaching.test.PerformanceTestUtils;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Measures loading of many stored caches, as done for stored lists and for the GPX export.
+ */
+public class DataStorePerformanceTest extends CGeoTestCase {
+
+    private static final int CACHE_COUNT = 200;
+
+    private int listId;
+    private final List<String> geocodes = new ArrayList<>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        listId = DataStore.createList("DataStorePerformanceTest");
+        final List<Geocache> caches = new ArrayList<>(CACHE_COUNT);
+        for (int i = 0; i < CACHE_COUNT; i++) {
+            final Geocache cache = new Geocache();
+            cache.setGeocode("TESTPERF" + i);
+            cache.setName("Performance test cache " + i);
+            cache.setType(CacheType.TRADITIONAL);
+            cache.setCoords(new Geopoint(49.0 + i * 0.001, 8.0 + i * 0.001));
+            cache.setDetailed(true);
+            cache.setAttributes(Arrays.asList("parking_yes", "dogs_no", "night_yes"));
+            cache.addOrChangeWaypoint(new Waypoint("Parking", WaypointType.PARKING, false), false);
+            cache.addOrChangeWaypoint(new Waypoint("Final", WaypointType.FINAL, false), false);
+            cache.getLists().add(listId);
+            caches.add(cache);
+            geocodes.add(cache.getGeocode());
+        }
+        DataStore.saveCaches(caches, LoadFlags.SAVE_ALL);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        final EnumSet<RemoveFlag> flags = EnumSet.copyOf(LoadFlags.REMOVE_ALL);
+        flags.add(RemoveFlag.OWN_WAYPOINTS_ONLY_FOR_TESTING);
+        DataStore.removeCaches(new HashSet<>(geocodes), flags);
+        DataStore.removeList(listId);
+        super.tearDown();
+    }
+
+    public void testLoadStoredList() {
+        final SearchResult search = DataStore.getBatchOfStoredCaches(null, CacheType.ALL, listId);
+        assertThat(search.getGeocodes()).hasSize(CACHE_COUNT);
+
+        DataStore.removeAllFromCache();
+        PerformanceTestUtils.measure("load " + CACHE_COUNT + " caches one by one", 1, new Runnable() {
+            @Override
+            public void run() {
+                // one query for the cache and one for its waypoints per cache, as before the bulk loading
+                for (final String geocode : search.getGeocodes()) {
+                    final Geocache cache = DataStore.loadCache(geocode, EnumSet.of(LoadFlag.DB_MINIMAL, LoadFlag.OFFLINE_LOG));
+                    assertThat(cache).isNotNull();
+                    cache.setWaypoints(DataStore.loadWaypoints(geocode), false);
+                    assertThat(cache.getWaypoints()).hasSize(2);
+                }
+            }
+        });
+        DataStore.removeAllFromCache();
+        PerformanceTestUtils.measure("load " + CACHE_COUNT + " caches in bulk", 1, new Runnable() {
+            @Override
+            public void run() {
+                final Set<Geocache> caches = DataStore.loadCaches(search.getGeocodes(), LoadFlags.LOAD_WAYPOINTS);
+                assertThat(caches).hasSize(CACHE_COUNT);
+                for (final Geocache cache : caches) {
+                    assertThat(cache.getWaypoints()).hasSize(2);
+                }
+            }
+        });
+    }
+
+    public void testExportGpx() {
+        DataStore.removeAllFromCache();
+        PerformanceTestUtils.measure("export " + CACHE_COUNT + " caches to GPX", 1, new Runnable() {
+            @Override
+            public void run() {
+                final StringWriter writer = new StringWriter();
+                try {
+                    new GpxSerializer().writeGPX(geocodes, writer, null);
+                } catch (final IOException e) {
+                    fail(e.getMessage());
+                }
+                assertThat(writer.toString()).contains("TESTPERF" + (CACHE_COUNT - 1));
+            }
+        });
+    }
+}
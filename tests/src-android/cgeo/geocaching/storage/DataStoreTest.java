@@ -6,15 +6,20 @@ import cgeo.geocaching.connector.gc.GCConnector;
 import cgeo.geocaching.connector.gc.Tile;
 import cgeo.geocaching.enumerations.CacheType;
 import cgeo.geocaching.enumerations.LoadFlags;
+import cgeo.geocaching.enumerations.LoadFlags.RemoveFlag;
 import cgeo.geocaching.enumerations.LoadFlags.SaveFlag;
+import cgeo.geocaching.enumerations.WaypointType;
 import cgeo.geocaching.list.StoredList;
 import cgeo.geocaching.location.Geopoint;
 import cgeo.geocaching.location.Viewport;
 import cgeo.geocaching.log.LogEntry;
 import cgeo.geocaching.models.Geocache;
 import cgeo.geocaching.models.Trackable;
+import cgeo.geocaching.models.Waypoint;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
@@ -22,6 +27,8 @@ import java.util.List;
 import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class DataStoreTest extends CGeoTestCase {
@@ -97,6 +104,67 @@ public class DataStoreTest extends CGeoTestCase {
         }
     }
 
+    private static int getListCount(final int listId) {
+        for (final StoredList list : DataStore.getLists()) {
+            if (list.id == listId) {
+                return list.getNumberOfCaches();
+            }
+        }
+        throw new IllegalArgumentException("no list " + listId);
+    }
+
+    public static void testListCountsFollowChanges() {
+        final int allCaches = DataStore.getAllCachesCount();
+        final int standardCaches = getListCount(StoredList.STANDARD_LIST_ID);
+        final int listId = DataStore.createList("DataStore Counts Test");
+
+        final Geocache cache1 = new Geocache();
+        cache1.setGeocode("Cache 1");
+        cache1.setDetailed(true);
+        cache1.getLists().add(listId);
+        cache1.getLists().add(StoredList.STANDARD_LIST_ID);
+        final Geocache cache2 = new Geocache();
+        cache2.setGeocode("Cache 2");
+        cache2.setDetailed(true);
+        cache2.getLists().add(listId);
+
+        try {
+            DataStore.saveCache(cache1, LoadFlags.SAVE_ALL);
+            DataStore.saveCache(cache2, LoadFlags.SAVE_ALL);
+            assertThat(getListCount(listId)).isEqualTo(2);
+            assertThat(getListCount(StoredList.STANDARD_LIST_ID)).isEqualTo(standardCaches + 1);
+            assertThat(DataStore.getAllStoredCachesCount(CacheType.ALL, listId)).isEqualTo(2);
+            // caches on several lists are counted once
+            assertThat(DataStore.getAllCachesCount()).isEqualTo(allCaches + 2);
+
+            // saving again does not count the caches twice
+            DataStore.saveCache(cache1, LoadFlags.SAVE_ALL);
+            assertThat(getListCount(listId)).isEqualTo(2);
+
+            DataStore.removeFromList(Collections.singletonList(cache1), listId);
+            assertThat(getListCount(listId)).isEqualTo(1);
+            assertThat(DataStore.getAllCachesCount()).isEqualTo(allCaches + 2);
+
+            DataStore.markDropped(Collections.singletonList(cache2));
+            assertThat(getListCount(listId)).isEqualTo(0);
+            assertThat(DataStore.getAllCachesCount()).isEqualTo(allCaches + 1);
+
+            // removing a list moves its caches to the standard list
+            DataStore.moveToList(Collections.singletonList(cache2), StoredList.TEMPORARY_LIST.id, listId);
+            assertThat(DataStore.removeList(listId)).isTrue();
+            assertThat(getListCount(StoredList.STANDARD_LIST_ID)).isEqualTo(standardCaches + 2);
+            assertThat(DataStore.getAllCachesCount()).isEqualTo(allCaches + 2);
+        } finally {
+            final Set<String> geocodes = new HashSet<>();
+            geocodes.add(cache1.getGeocode());
+            geocodes.add(cache2.getGeocode());
+            DataStore.removeCaches(geocodes, LoadFlags.REMOVE_ALL);
+            DataStore.removeList(listId);
+        }
+        assertThat(getListCount(StoredList.STANDARD_LIST_ID)).isEqualTo(standardCaches);
+        assertThat(DataStore.getAllCachesCount()).isEqualTo(allCaches);
+    }
+
     // Check that queries don't throw an exception (see issue #1429).
     public static void testLoadWaypoints() {
         final Viewport viewport = new Viewport(new Geopoint(-1, -2), new Geopoint(3, 4));
@@ -110,6 +178,30 @@ public class DataStoreTest extends CGeoTestCase {
         DataStore.loadWaypoints(viewport, true, true, CacheType.TRADITIONAL);
     }
 
+    public static void testLoadStoredInViewport() {
+        final int listId = DataStore.createList("DataStoreTest");
+        final Geocache inside = new Geocache();
+        inside.setGeocode("TESTVP1");
+        inside.setType(CacheType.TRADITIONAL);
+        inside.setCoords(new Geopoint(49.001, 8.001));
+        inside.getLists().add(listId);
+        final Geocache outside = new Geocache();
+        outside.setGeocode("TESTVP2");
+        outside.setType(CacheType.TRADITIONAL);
+        outside.setCoords(new Geopoint(51.0, 8.0));
+        outside.getLists().add(listId);
+        try {
+            DataStore.saveCaches(Arrays.asList(inside, outside), LoadFlags.SAVE_ALL);
+
+            final Viewport viewport = new Viewport(new Geopoint(48.99, 7.99), new Geopoint(49.01, 8.01));
+            assertThat(DataStore.loadStoredInViewport(viewport, CacheType.ALL).getGeocodes()).contains("TESTVP1").doesNotContain("TESTVP2");
+            assertThat(DataStore.loadStoredInViewport(viewport, CacheType.MYSTERY).getGeocodes()).doesNotContain("TESTVP1");
+        } finally {
+            DataStore.removeCaches(new HashSet<>(Arrays.asList("TESTVP1", "TESTVP2")), LoadFlags.REMOVE_ALL);
+            DataStore.removeList(listId);
+        }
+    }
+
     // Check that saving a cache and trackable without logs works (see #2199)
     public static void testSaveWithoutLogs() {
 
@@ -163,6 +255,39 @@ public class DataStoreTest extends CGeoTestCase {
         }
     }
 
+    public static void testFullTextPrefixQuery() {
+        assertThat(DataStore.getFullTextPrefixQuery("GC12")).isEqualTo("\"GC12*\"");
+        assertThat(DataStore.getFullTextPrefixQuery(" old  mi")).isEqualTo("\"old*\" \"mi*\"");
+        assertThat(DataStore.getFullTextPrefixQuery("a OR \"b\"")).isEqualTo("\"a*\" \"OR*\" \"b*\"");
+        assertThat(DataStore.getFullTextPrefixQuery(" - ")).isNull();
+        assertThat(DataStore.getFullTextPrefixQuery(null)).isNull();
+    }
+
+    public static void testSuggestionsFollowStoredCaches() {
+        final Geocache cache = new Geocache();
+        cache.setGeocode(ARTIFICIAL_GEOCODE);
+        cache.setName("Zyxwvu Quarry");
+        cache.setOwnerUserId("qwertzowner");
+        cache.setDetailed(true);
+
+        try {
+            DataStore.saveCache(cache, EnumSet.of(SaveFlag.DB));
+            assertThat(DataStore.getSuggestionsKeyword("zyxw")).containsExactly("Zyxwvu Quarry");
+            assertThat(DataStore.getSuggestionsKeyword("Quar")).contains("Zyxwvu Quarry");
+            assertThat(DataStore.getSuggestionsOwnerName("qwertz")).containsExactly("qwertzowner");
+
+            // renamed caches are found by their new name only
+            cache.setName("Zyxwvu Mill");
+            DataStore.saveCache(cache, EnumSet.of(SaveFlag.DB));
+            assertThat(DataStore.getSuggestionsKeyword("zyxw")).containsExactly("Zyxwvu Mill");
+            assertThat(DataStore.getSuggestionsKeyword("Quar")).doesNotContain("Zyxwvu Quarry");
+        } finally {
+            DataStore.removeCache(ARTIFICIAL_GEOCODE, LoadFlags.REMOVE_ALL);
+        }
+        assertThat(DataStore.getSuggestionsKeyword("zyxw")).isEmpty();
+        assertThat(DataStore.getSuggestionsOwnerName("qwertz")).isEmpty();
+    }
+
     // Loading logs for an empty geocode should return an empty list, not null!
     public static void testLoadLogsFromEmptyGeocode() {
         final List<LogEntry> logs = DataStore.loadLogs("");
@@ -227,4 +352,214 @@ public class DataStoreTest extends CGeoTestCase {
         assertThat(filteredGeoCodes).contains(inTileLowZoom.getGeocode());
         assertThat(filteredGeoCodes).doesNotContain(inTileHighZoom.getGeocode(), otherConnector.getGeocode(), outTile.getGeocode(), main.getGeocode());
     }
+
+    // Check that the dependent data of several caches is assigned to the right cache when loading in bulk
+    public static void testLoadCachesBulk() {
+        final Geocache cache1 = new Geocache();
+        cache1.setGeocode("TEST1");
+        cache1.setDetailed(true);
+        cache1.setAttributes(Collections.singletonList("parking_yes"));
+        cache1.addOrChangeWaypoint(new Waypoint("Parking", WaypointType.PARKING, false), false);
+        final Geocache cache2 = new Geocache();
+        cache2.setGeocode("TEST2");
+        cache2.setDetailed(true);
+        cache2.setAttributes(Arrays.asList("dogs_no", "night_yes"));
+
+        try {
+            DataStore.saveCaches(Arrays.asList(cache1, cache2), EnumSet.of(SaveFlag.DB));
+            DataStore.removeAllFromCache();
+
+            final Set<Geocache> loaded = DataStore.loadCaches(Arrays.asList("TEST1", "TEST2", "TEST3"), LoadFlags.LOAD_ALL_DB_ONLY);
+            assertThat(loaded).hasSize(2);
+            for (final Geocache cache : loaded) {
+                if (cache.getGeocode().equals("TEST1")) {
+                    assertThat(cache.getAttributes()).containsExactly("parking_yes");
+                    assertThat(cache.getWaypoints()).hasSize(1);
+                } else {
+                    assertThat(cache.getAttributes()).containsOnly("dogs_no", "night_yes");
+                    assertThat(cache.getWaypoints()).isEmpty();
+                    assertThat(cache.getSpoilers()).isEmpty();
+                }
+            }
+        } finally {
+            final EnumSet<RemoveFlag> flags = EnumSet.copyOf(LoadFlags.REMOVE_ALL);
+            flags.add(RemoveFlag.OWN_WAYPOINTS_ONLY_FOR_TESTING);
+            DataStore.removeCaches(new HashSet<>(Arrays.asList("TEST1", "TEST2")), flags);
+        }
+    }
+
+    // Check that all caches are stored when their number is not a multiple of the batch size
+    public static void testSaveCachesInBatches() {
+        final List<Geocache> caches = new ArrayList<>();
+        final Set<String> geocodes = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            final Geocache cache = new Geocache();
+            cache.setGeocode("TESTBATCH" + i);
+            cache.setDetailed(true);
+            cache.addOrChangeWaypoint(new Waypoint("Parking", WaypointType.PARKING, false), false);
+            caches.add(cache);
+            geocodes.add(cache.getGeocode());
+        }
+
+        try {
+            DataStore.saveCaches(caches, EnumSet.of(SaveFlag.DB), 2);
+            for (final Geocache cache : caches) {
+                assertThat(cache.getWaypoints().get(0).getId()).isGreaterThan(0);
+            }
+            DataStore.removeAllFromCache();
+
+            final Set<Geocache> loaded = DataStore.loadCaches(geocodes, LoadFlags.LOAD_ALL_DB_ONLY);
+            assertThat(loaded).hasSize(5);
+            for (final Geocache cache : loaded) {
+                assertThat(cache.getWaypoints()).hasSize(1);
+            }
+        } finally {
+            final EnumSet<RemoveFlag> flags = EnumSet.copyOf(LoadFlags.REMOVE_ALL);
+            flags.add(RemoveFlag.OWN_WAYPOINTS_ONLY_FOR_TESTING);
+            DataStore.removeCaches(geocodes, flags);
+        }
+    }
+
+    // Check that an image stored for one cache is shared with other caches, and kept until the last of them is removed
+    public static void testImagesSharedBetweenCaches() {
+        final String url = "https://img.example.com/banner.png";
+        final String hash = "0123456789abcdef0123456789abcdef01234567";
+        final Set<String> geocodes = new HashSet<>(Arrays.asList("TESTIMG1", "TESTIMG2"));
+        try {
+            assertThat(DataStore.getImageHash("TESTIMG1", url)).isNull();
+            assertThat(DataStore.setImageHash("TESTIMG1", url, hash, null, null)).isNull();
+            assertThat(DataStore.getImageHash("TESTIMG1", url)).isEqualTo(hash);
+            assertThat(DataStore.getImageHash("TESTIMG2", url)).isEqualTo(hash);
+            assertThat(DataStore.addImageReference("TESTIMG2", url)).isTrue();
+            assertThat(DataStore.addImageReference("TESTIMG2", url)).isFalse();
+
+            DataStore.removeCache("TESTIMG1", LoadFlags.REMOVE_ALL);
+            assertThat(DataStore.getImageHash("TESTIMG1", url)).isEqualTo(hash);
+            assertThat(DataStore.isImageReferenced(hash)).isTrue();
+            DataStore.removeCaches(geocodes, LoadFlags.REMOVE_ALL);
+            assertThat(DataStore.getImageHash("TESTIMG1", url)).isNull();
+            assertThat(DataStore.isImageReferenced(hash)).isFalse();
+        } finally {
+            DataStore.removeCaches(geocodes, LoadFlags.REMOVE_ALL);
+        }
+    }
+
+    public static void testImageValidatorsByUrl() {
+        final String hash = "3333333333333333333333333333333333333333";
+        final String url1 = "https://img.example.com/one.png";
+        final String url2 = "https://img.example.com/two.png";
+        try {
+            assertThat(DataStore.loadImageValidators(url1, hash)).isNull();
+            DataStore.setImageHash("TESTIMG1", url1, hash, "\"one\"", null);
+            // the same content downloaded from another URL keeps the validators of each URL
+            DataStore.setImageHash("TESTIMG1", url2, hash, null, "Wed, 21 Oct 2015 07:28:00 GMT");
+            assertThat(DataStore.loadImageValidators(url1, hash)).isEqualTo(ImmutablePair.of("\"one\"", (String) null));
+            assertThat(DataStore.loadImageValidators(url2, hash)).isEqualTo(ImmutablePair.of((String) null, "Wed, 21 Oct 2015 07:28:00 GMT"));
+        } finally {
+            DataStore.removeCache("TESTIMG1", LoadFlags.REMOVE_ALL);
+        }
+    }
+
+    public static void testChangedImageReplacesHash() {
+        final String url = "https://img.example.com/changing.png";
+        final String oldHash = "1111111111111111111111111111111111111111";
+        final String newHash = "2222222222222222222222222222222222222222";
+        try {
+            DataStore.setImageHash("TESTIMG1", url, oldHash, null, null);
+            assertThat(DataStore.setImageHash("TESTIMG1", url, oldHash, null, null)).isNull();
+            assertThat(DataStore.setImageHash("TESTIMG1", url, newHash, null, null)).isEqualTo(oldHash);
+            assertThat(DataStore.isImageReferenced(oldHash)).isFalse();
+            assertThat(DataStore.getImageHash("TESTIMG1", url)).isEqualTo(newHash);
+        } finally {
+            DataStore.removeCache("TESTIMG1", LoadFlags.REMOVE_ALL);
+        }
+    }
+
+    // Check that only the files of caches not on a stored list (or outside of the kept area) can be evicted
+    public static void testEvictableStorageFiles() {
+        final Geocache stored = new Geocache();
+        stored.setGeocode("TESTSTORED");
+        stored.setDetailed(true);
+        stored.setCoords(new Geopoint(48.1, 11.5));
+        stored.getLists().add(StoredList.STANDARD_LIST_ID);
+        final Geocache notStored = new Geocache();
+        notStored.setGeocode("TESTNOTSTORED");
+        notStored.setDetailed(true);
+        notStored.setCoords(new Geopoint(48.1, 11.5));
+        final File storedMap = new File("/nonexisting/TESTSTORED/map_1");
+        final File notStoredMap = new File("/nonexisting/TESTNOTSTORED/map_1");
+        final File sharedImage = new File("/nonexisting/_images/01/0123");
+
+        try {
+            DataStore.saveCache(stored, LoadFlags.SAVE_ALL);
+            DataStore.saveCache(notStored, LoadFlags.SAVE_ALL);
+            DataStore.addStorageFile(storedMap, stored.getGeocode(), null, null, null);
+            DataStore.addStorageFile(notStoredMap, notStored.getGeocode(), null, null, null);
+            DataStore.setImageHash(stored.getGeocode(), "https://img.example.com/banner.png", "0123", null, null);
+            DataStore.addStorageFile(sharedImage, null, "0123", null, null);
+
+            // the files of the device are indexed as well, so all of them have to be loaded
+            assertThat(getPaths(DataStore.loadEvictableStorageFiles(null, getAllStorageFiles()))).contains(notStoredMap.getAbsolutePath())
+                    .doesNotContain(storedMap.getAbsolutePath(), sharedImage.getAbsolutePath());
+            final Viewport elsewhere = new Viewport(new Geopoint(52.0, 13.0), new Geopoint(53.0, 14.0));
+            assertThat(getPaths(DataStore.loadEvictableStorageFiles(elsewhere, getAllStorageFiles()))).contains(notStoredMap.getAbsolutePath(),
+                    storedMap.getAbsolutePath(), sharedImage.getAbsolutePath());
+        } finally {
+            DataStore.removeCaches(new HashSet<>(Arrays.asList(stored.getGeocode(), notStored.getGeocode())), LoadFlags.REMOVE_ALL);
+        }
+        assertThat(getPaths(DataStore.loadEvictableStorageFiles(null, getAllStorageFiles()))).doesNotContain(storedMap.getAbsolutePath(),
+                notStoredMap.getAbsolutePath(), sharedImage.getAbsolutePath());
+    }
+
+    public static void testStorageFileValidators() {
+        final File map = new File("/nonexisting/TESTVALIDATORS/map_1");
+        assertThat(DataStore.loadStorageFileValidators(map)).isNull();
+        try {
+            DataStore.addStorageFile(map, "TESTVALIDATORS", null, "\"abc\"", null);
+            assertThat(DataStore.loadStorageFileValidators(map)).isEqualTo(ImmutablePair.of("\"abc\"", (String) null));
+
+            // a downloaded again file replaces the validators
+            DataStore.addStorageFile(map, "TESTVALIDATORS", null, null, "Wed, 21 Oct 2015 07:28:00 GMT");
+            assertThat(DataStore.loadStorageFileValidators(map)).isEqualTo(ImmutablePair.of((String) null, "Wed, 21 Oct 2015 07:28:00 GMT"));
+        } finally {
+            DataStore.removeStorageFiles(Collections.singleton(map.getAbsolutePath()));
+        }
+        assertThat(DataStore.loadStorageFileValidators(map)).isNull();
+    }
+
+    public static void testRemoveEvictedStorageFile() {
+        final File map = new File("/nonexisting/TESTEVICTED/map_1");
+        try {
+            DataStore.addStorageFile(map, "TESTEVICTED", null, null, null);
+            final long accessed = getAccessed(map);
+
+            // a file accessed again since it was found evictable is kept
+            assertThat(DataStore.removeEvictedStorageFile(map.getAbsolutePath(), accessed - 1)).isFalse();
+            assertThat(DataStore.removeEvictedStorageFile(map.getAbsolutePath(), accessed)).isTrue();
+            assertThat(DataStore.removeEvictedStorageFile(map.getAbsolutePath(), accessed)).isFalse();
+        } finally {
+            DataStore.removeStorageFiles(Collections.singleton(map.getAbsolutePath()));
+        }
+    }
+
+    private static long getAccessed(final File file) {
+        for (final ImmutableTriple<String, Long, Long> evictable : DataStore.loadEvictableStorageFiles(null, getAllStorageFiles())) {
+            if (evictable.left.equals(file.getAbsolutePath())) {
+                return evictable.right;
+            }
+        }
+        throw new IllegalStateException(file + " is not evictable");
+    }
+
+    private static int getAllStorageFiles() {
+        return (int) DataStore.getStorageFileCount() + 1;
+    }
+
+    private static List<String> getPaths(final List<ImmutableTriple<String, Long, Long>> files) {
+        final List<String> paths = new ArrayList<>(files.size());
+        for (final ImmutableTriple<String, Long, Long> file : files) {
+            paths.add(file.left);
+        }
+        return paths;
+    }
 }
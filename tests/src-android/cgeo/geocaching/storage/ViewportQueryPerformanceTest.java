@@ -0,0 +1,125 @@
+package cgeo.geocaching.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cgeo.geocaching.enumerations.CacheType;
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.location.SpatialIndex;
+import cgeo.geocaching.location.Viewport;
+import cgeo.geocaching.test.PerformanceTestUtils;
+import cgeo.geocaching.utils.Log;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * Measures the viewport query of the map with the spatial cell index against the former query using the separate
+ * latitude and longitude indexes, on an in-memory copy of the relevant part of the caches table.
+ */
+public class ViewportQueryPerformanceTest extends TestCase {
+
+    private static final int CACHE_COUNT = 50000;
+    private static final int VIEWPORT_COUNT = 50;
+
+    private SQLiteDatabase database;
+    private final List<Viewport> viewports = new ArrayList<>(VIEWPORT_COUNT);
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        database = SQLiteDatabase.create(null);
+        database.execSQL("CREATE TABLE cg_caches (_id INTEGER PRIMARY KEY AUTOINCREMENT, geocode TEXT UNIQUE NOT NULL, type TEXT, "
+                + "latitude DOUBLE, longitude DOUBLE, spatial_cell INTEGER)");
+        database.execSQL("CREATE INDEX in_caches_type ON cg_caches (type)");
+        // indexes used before the spatial index, and the spatial index as created by the DataStore
+        database.execSQL("CREATE INDEX in_caches_lat ON cg_caches (latitude)");
+        database.execSQL("CREATE INDEX in_caches_lon ON cg_caches (longitude)");
+        database.execSQL("CREATE INDEX in_caches_cell ON cg_caches (spatial_cell, latitude, longitude, type, geocode)");
+
+        // caches spread over central Europe, denser around the center like in a real database
+        final Random random = new Random(42);
+        final CacheType[] types = { CacheType.TRADITIONAL, CacheType.MULTI, CacheType.MYSTERY };
+        final SQLiteStatement insert = database.compileStatement("INSERT INTO cg_caches (geocode, type, latitude, longitude, spatial_cell) VALUES (?, ?, ?, ?, ?)");
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < CACHE_COUNT; i++) {
+                final double latitude = 48.0 + random.nextGaussian() * 3.0;
+                final double longitude = 11.0 + random.nextGaussian() * 5.0;
+                insert.bindString(1, "GCPERF" + i);
+                insert.bindString(2, types[i % types.length].id);
+                insert.bindDouble(3, latitude);
+                insert.bindDouble(4, longitude);
+                insert.bindLong(5, SpatialIndex.getCell(latitude, longitude));
+                insert.executeInsert();
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        for (int i = 0; i < VIEWPORT_COUNT; i++) {
+            final Geopoint center = new Geopoint(48.0 + random.nextGaussian() * 2.0, 11.0 + random.nextGaussian() * 3.0);
+            viewports.add(new Viewport(center, 0.05, 0.1));
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        database.close();
+        super.tearDown();
+    }
+
+    public void testSameResults() {
+        for (final Viewport viewport : viewports) {
+            assertThat(query(viewport, true)).isEqualTo(query(viewport, false));
+        }
+    }
+
+    public void testViewportQuery() {
+        final float lonIndex = PerformanceTestUtils.measure("viewport query with latitude and longitude indexes", VIEWPORT_COUNT, new ViewportQueries(false));
+        final float cellIndex = PerformanceTestUtils.measure("viewport query with spatial index", VIEWPORT_COUNT, new ViewportQueries(true));
+        Log.d("speedup of the spatial index: " + lonIndex / Math.max(cellIndex, 0.001f));
+    }
+
+    private final class ViewportQueries implements Runnable {
+        private final boolean spatial;
+        private int next = 0;
+
+        ViewportQueries(final boolean spatial) {
+            this.spatial = spatial;
+        }
+
+        @Override
+        public void run() {
+            query(viewports.get(next++ % viewports.size()), spatial);
+        }
+    }
+
+    /**
+     * Query the traditional caches in the viewport, like {@link DataStore#loadCachedInViewport(Viewport, CacheType)}.
+     */
+    private Set<String> query(final Viewport viewport, final boolean spatial) {
+        final String table = spatial ? DataStore.dbTableCachesInViewport : "cg_caches";
+        final String where = spatial ? DataStore.buildCoordinateWhere("cg_caches", viewport).toString() : viewport.resize(1.5).sqlWhere("cg_caches").toString();
+        final Cursor cursor = database.query(table, new String[] { "geocode" }, where + " AND type = ?", new String[] { CacheType.TRADITIONAL.id },
+                null, null, DataStore.buildCenterDistanceOrder(null, viewport), String.valueOf(DataStore.MAX_VIEWPORT_CACHES));
+        final Set<String> geocodes = new HashSet<>();
+        try {
+            while (cursor.moveToNext()) {
+                geocodes.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return geocodes;
+    }
+}
@@ -0,0 +1,38 @@
+package cgeo.geocaching.test;
+
+import cgeo.geocaching.utils.Log;
+
+import android.os.SystemClock;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Shared helper of the performance tests, which report their measurements in the log.
+ */
+public final class PerformanceTestUtils {
+
+    private PerformanceTestUtils() {
+        // utility class
+    }
+
+    /**
+     * Run a task several times and log the average duration of a run.
+     *
+     * @param label
+     *            the description of the task in the log
+     * @param runs
+     *            the number of times to run the task
+     * @return the average duration of a run in milliseconds
+     */
+    @SuppressFBWarnings("DM_GC")
+    public static float measure(final String label, final int runs, final Runnable runnable) {
+        System.gc();
+        final long start = SystemClock.elapsedRealtime();
+        for (int run = 0; run < runs; run++) {
+            runnable.run();
+        }
+        final float average = (SystemClock.elapsedRealtime() - start) / (float) runs;
+        Log.d(label + ": " + average + " ms");
+        return average;
+    }
+}
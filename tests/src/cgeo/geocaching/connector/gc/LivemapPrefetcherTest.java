@@ -0,0 +1,51 @@
+package cgeo.geocaching.connector.gc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.location.Viewport;
+import cgeo.geocaching.maps.LivemapStrategy;
+
+import junit.framework.TestCase;
+
+public class LivemapPrefetcherTest extends TestCase {
+
+    private static final Viewport VIEWPORT = new Viewport(new Geopoint(48.0, 11.0), 0.1, 0.1);
+
+    public static void testViewportAheadNorth() {
+        // 20 m/s for 90 seconds: 1.8 km to the north
+        final Viewport ahead = LivemapPrefetcher.getViewportAhead(VIEWPORT, VIEWPORT.getCenter(), 0, 20);
+        assertThat(ahead).isNotNull();
+        assertThat(ahead.getCenter().getLongitude()).isEqualTo(11.0, offset(1e-6));
+        assertThat(ahead.getCenter().getLatitude()).isGreaterThan(48.0);
+        assertThat((double) VIEWPORT.getCenter().distanceTo(ahead.getCenter())).isEqualTo(1.8, offset(0.02));
+        assertThat(ahead.getLatitudeSpan()).isEqualTo(VIEWPORT.getLatitudeSpan(), offset(1e-9));
+        assertThat(ahead.getLongitudeSpan()).isEqualTo(VIEWPORT.getLongitudeSpan(), offset(1e-9));
+    }
+
+    public static void testViewportAheadLimitedToNextViewport() {
+        // very fast: at most one viewport diagonal ahead
+        final Viewport ahead = LivemapPrefetcher.getViewportAhead(VIEWPORT, VIEWPORT.getCenter(), 90, 1000);
+        assertThat(ahead).isNotNull();
+        assertThat((double) VIEWPORT.getCenter().distanceTo(ahead.getCenter())).isEqualTo(VIEWPORT.bottomLeft.distanceTo(VIEWPORT.topRight), offset(0.1));
+        assertThat(ahead.getCenter().getLongitude()).isGreaterThan(11.0);
+    }
+
+    public static void testViewportAheadOfPositionNearEdge() {
+        // shown near the edge of the map
+        final Viewport shown = VIEWPORT.resize(1 / LivemapStrategy.SEARCH_FACTOR);
+        final Geopoint position = new Geopoint(48.0 + shown.getLatitudeSpan() * 0.45, 11.0);
+        final Viewport ahead = LivemapPrefetcher.getViewportAhead(VIEWPORT, position, 0, 20);
+        assertThat(ahead).isNotNull();
+        assertThat((double) position.distanceTo(ahead.getCenter())).isEqualTo(1.8, offset(0.02));
+        assertThat(ahead.getCenter().getLatitude()).isGreaterThan(position.getLatitude());
+    }
+
+    public static void testNoViewportAheadWhenOutside() {
+        assertThat(LivemapPrefetcher.getViewportAhead(VIEWPORT, new Geopoint(50.0, 11.0), 0, 20)).isNull();
+        // searched around the shown area, but not shown anymore
+        final Viewport shown = VIEWPORT.resize(1 / LivemapStrategy.SEARCH_FACTOR);
+        assertThat(LivemapPrefetcher.getViewportAhead(VIEWPORT, new Geopoint(48.0 + shown.getLatitudeSpan() * 0.55, 11.0), 0, 20)).isNull();
+    }
+}
@@ -0,0 +1,96 @@
+package cgeo.geocaching.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cgeo.geocaching.utils.functions.Func1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import io.reactivex.schedulers.Schedulers;
+import junit.framework.TestCase;
+
+public class FilterUtilsTest extends TestCase {
+
+    private static final Func1<Integer, Boolean> EVEN = new Func1<Integer, Boolean>() {
+        @Override
+        public Boolean call(final Integer value) {
+            return value % 2 == 0;
+        }
+    };
+
+    private static List<Integer> range(final int count) {
+        final List<Integer> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(i);
+        }
+        return values;
+    }
+
+    private static void assertEven(final Iterable<Integer> values, final int count) {
+        int expected = 0;
+        for (final Integer value : values) {
+            assertThat(value).isEqualTo(expected);
+            expected += 2;
+        }
+        assertThat(expected).isEqualTo(count);
+    }
+
+    public static void testFilterRandomAccessList() {
+        final List<Integer> values = new ArrayList<>(Arrays.asList(1, 2, 3, 4, 5, 6));
+        FilterUtils.filter(values, EVEN);
+        assertThat(values).containsExactly(2, 4, 6);
+    }
+
+    public static void testFilterKeepsAll() {
+        final List<Integer> values = new ArrayList<>(Arrays.asList(2, 4));
+        FilterUtils.filter(values, EVEN);
+        assertThat(values).containsExactly(2, 4);
+    }
+
+    public static void testFilterRemovesAll() {
+        final List<Integer> values = new ArrayList<>(Arrays.asList(1, 3));
+        FilterUtils.filter(values, EVEN);
+        assertThat(values).isEmpty();
+    }
+
+    public static void testFilterLinkedList() {
+        final List<Integer> values = new LinkedList<>(Arrays.asList(1, 2, 3, 4, 5, 6));
+        FilterUtils.filter(values, EVEN);
+        assertThat(values).containsExactly(2, 4, 6);
+    }
+
+    public static void testFilterSet() {
+        final Set<Integer> values = new LinkedHashSet<>(Arrays.asList(6, 5, 4, 3, 2, 1));
+        FilterUtils.filter(values, EVEN);
+        assertThat(values).containsExactly(6, 4, 2);
+    }
+
+    public static void testFilterParallel() {
+        // not a multiple of the chunk size, to have an incomplete last chunk
+        final int count = 5 * FilterUtils.CHUNK_SIZE + 42;
+        final List<Integer> values = range(count);
+        FilterUtils.filter(values, EVEN, Schedulers.computation());
+        assertThat(values).hasSize(count / 2);
+        assertEven(values, count);
+    }
+
+    public static void testFilterParallelLinkedList() {
+        final int count = 3 * FilterUtils.CHUNK_SIZE;
+        final List<Integer> values = new LinkedList<>(range(count));
+        FilterUtils.filter(values, EVEN, Schedulers.computation());
+        assertThat(values).hasSize(count / 2);
+        assertEven(values, count);
+    }
+
+    public static void testFilterLargeList() {
+        final int count = FilterUtils.PARALLEL_THRESHOLD * 2;
+        final List<Integer> values = range(count);
+        FilterUtils.filter(values, EVEN, null);
+        assertEven(values, count);
+    }
+}
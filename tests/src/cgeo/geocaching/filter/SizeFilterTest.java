@@ -34,6 +34,10 @@ public class SizeFilterTest extends TestCase {
         assertThat(microFilter.accepts(regular)).isFalse();
     }
 
+    public void testSqlPredicate() {
+        assertThat(microFilter.toSqlPredicate()).isEqualTo("size = 'Micro'");
+    }
+
     public static void testGetAllFilters() {
         final int expectedSizes = CacheSize.values().length - 1; // hide "UNKNOWN"
         assertThat(new SizeFilter.Factory().getFilters()).hasSize(expectedSizes);
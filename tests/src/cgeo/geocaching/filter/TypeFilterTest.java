@@ -46,6 +46,11 @@ public class TypeFilterTest extends TestCase {
 
     }
 
+    public void testSqlPredicate() {
+        assertThat(traditionalFilter.toSqlPredicate()).isEqualTo("type = 'traditional'");
+        assertThat(new TypeFilter(CacheType.UNKNOWN).toSqlPredicate()).isNull();
+    }
+
     public static void testGetAllFilters() {
         final int expectedEntries = CacheType.values().length - 1; // hide "all"
         assertThat(new TypeFilter.Factory().getFilters()).hasSize(expectedEntries);
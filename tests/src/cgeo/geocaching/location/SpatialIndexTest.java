@@ -0,0 +1,94 @@
+package cgeo.geocaching.location;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class SpatialIndexTest extends TestCase {
+
+    public static void testInterleave() {
+        assertThat(SpatialIndex.interleave(0, 0)).isEqualTo(0);
+        assertThat(SpatialIndex.interleave(1, 0)).isEqualTo(1);
+        assertThat(SpatialIndex.interleave(0, 1)).isEqualTo(2);
+        assertThat(SpatialIndex.interleave(3, 3)).isEqualTo(15);
+        assertThat(SpatialIndex.interleave(0xFFFF, 0xFFFF)).isEqualTo(0xFFFFFFFFL);
+    }
+
+    public static void testCellBounds() {
+        assertThat(SpatialIndex.getCell(-90, -180)).isEqualTo(0);
+        assertThat(SpatialIndex.getCell(90, 180)).isEqualTo(0xFFFFFFFFL);
+        // out of range coordinates are clamped
+        assertThat(SpatialIndex.getCell(-100, -200)).isEqualTo(0);
+        assertThat(SpatialIndex.getCell(null)).isNull();
+    }
+
+    public static void testNeighbourCellsAreClose() {
+        final long cell = SpatialIndex.getCell(48.858, 2.294);
+        assertThat(SpatialIndex.getCell(48.8581, 2.2941)).isEqualTo(cell);
+        assertThat(SpatialIndex.getCell(new Geopoint(48.858, 2.294))).isEqualTo(cell);
+    }
+
+    public static void testRangesAreSortedAndDisjoint() {
+        final List<long[]> ranges = SpatialIndex.getCellRanges(new Viewport(new Geopoint(48.0, 1.0), new Geopoint(50.0, 3.5)));
+        assertThat(ranges).isNotEmpty();
+        assertThat(ranges.size()).isLessThanOrEqualTo(SpatialIndex.MAX_COVER_CELLS_PER_AXIS * SpatialIndex.MAX_COVER_CELLS_PER_AXIS);
+        for (int i = 0; i < ranges.size(); i++) {
+            assertThat(ranges.get(i)[0]).isLessThanOrEqualTo(ranges.get(i)[1]);
+            if (i > 0) {
+                assertThat(ranges.get(i)[0]).isGreaterThan(ranges.get(i - 1)[1] + 1);
+            }
+        }
+    }
+
+    public static void testRangesContainAllPointsOfViewport() {
+        assertCovered(new Viewport(new Geopoint(48.0, 1.0), new Geopoint(50.0, 3.5)));
+        assertCovered(new Viewport(new Geopoint(-0.01, -0.01), new Geopoint(0.01, 0.01)));
+        assertCovered(new Viewport(new Geopoint(-33.9, 151.1), new Geopoint(-33.8, 151.3)));
+        assertCovered(new Viewport(new Geopoint(-90, -180), new Geopoint(90, 180)));
+    }
+
+    public static void testSinglePointViewport() {
+        final Geopoint point = new Geopoint(10.0, 20.0);
+        final List<long[]> ranges = SpatialIndex.getCellRanges(new Viewport(point, point));
+        assertThat(ranges).hasSize(1);
+        final long cell = SpatialIndex.getCell(point.getLatitude(), point.getLongitude());
+        assertThat(ranges.get(0)).containsExactly(cell, cell);
+    }
+
+    public static void testSqlWhere() {
+        final Geopoint point = new Geopoint(10.0, 20.0);
+        final long cell = SpatialIndex.getCell(point.getLatitude(), point.getLongitude());
+        assertThat(SpatialIndex.sqlWhere(null, new Viewport(point, point)).toString()).isEqualTo("(spatial_cell between " + cell + " and " + cell + ")");
+        assertThat(SpatialIndex.sqlWhere("t", new Viewport(point, point)).toString()).isEqualTo("(t.spatial_cell between " + cell + " and " + cell + ")");
+    }
+
+    public static void testSqlWhereStartsWithContiguousRange() {
+        final Viewport viewport = new Viewport(new Geopoint(48.0, 1.0), new Geopoint(50.0, 3.5));
+        final List<long[]> ranges = SpatialIndex.getCellRanges(viewport);
+        assertThat(ranges.size()).isGreaterThan(1);
+        final String where = SpatialIndex.sqlWhere(null, viewport).toString();
+        assertThat(where).startsWith("(spatial_cell between " + ranges.get(0)[0] + " and " + ranges.get(ranges.size() - 1)[1] + " and (");
+        for (final long[] range : ranges) {
+            assertThat(where).contains("spatial_cell between " + range[0] + " and " + range[1]);
+        }
+    }
+
+    private static void assertCovered(final Viewport viewport) {
+        final List<long[]> ranges = SpatialIndex.getCellRanges(viewport);
+        final int steps = 20;
+        for (int i = 0; i <= steps; i++) {
+            for (int j = 0; j <= steps; j++) {
+                final double latitude = viewport.getLatitudeMin() + (viewport.getLatitudeMax() - viewport.getLatitudeMin()) * i / steps;
+                final double longitude = viewport.getLongitudeMin() + (viewport.getLongitudeMax() - viewport.getLongitudeMin()) * j / steps;
+                final long cell = SpatialIndex.getCell(latitude, longitude);
+                boolean found = false;
+                for (final long[] range : ranges) {
+                    found |= range[0] <= cell && cell <= range[1];
+                }
+                assertThat(found).as("cell of " + latitude + "," + longitude).isTrue();
+            }
+        }
+    }
+}
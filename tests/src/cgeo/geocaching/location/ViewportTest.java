@@ -95,6 +95,26 @@ public class ViewportTest extends TestCase {
         assertThat(vpRef.includes(vpRef.resize(2.0))).isFalse();
     }
 
+    public static void testSubtract() {
+        assertThat(vpRef.subtract(vpRef)).isEmpty();
+        assertThat(vpRef.subtract(vpRef.resize(2.0))).isEmpty();
+        final Viewport disjoint = new Viewport(new Geopoint(10.0, 10.0), 1.0, 1.0);
+        assertThat(vpRef.subtract(disjoint)).containsExactly(vpRef);
+
+        // moved to the top right: a strip at the top and one at the right
+        final Viewport moved = new Viewport(new Geopoint(0.0, 0.0), new Geopoint(4.0, 5.0));
+        assertThat(moved.subtract(vpRef)).containsExactly(
+                new Viewport(new Geopoint(3.0, 0.0), new Geopoint(4.0, 5.0)),
+                new Viewport(new Geopoint(0.0, 4.0), new Geopoint(3.0, 5.0)));
+
+        // zoomed out: a frame around the former viewport
+        assertThat(vpRef.resize(2.0).subtract(vpRef)).containsExactly(
+                new Viewport(new Geopoint(-3.0, -5.0), new Geopoint(-1.0, 7.0)),
+                new Viewport(new Geopoint(3.0, -5.0), new Geopoint(5.0, 7.0)),
+                new Viewport(new Geopoint(-1.0, -5.0), new Geopoint(3.0, -2.0)),
+                new Viewport(new Geopoint(-1.0, 4.0), new Geopoint(3.0, 7.0)));
+    }
+
     public static void testContaining() {
         assertThat(containing(singleton((ICoordinates) null))).isNull();
         final Set<Geopoint> points = new HashSet<>();
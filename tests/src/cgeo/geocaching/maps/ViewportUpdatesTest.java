@@ -0,0 +1,91 @@
+package cgeo.geocaching.maps;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.location.Viewport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.TestScheduler;
+import junit.framework.TestCase;
+
+public class ViewportUpdatesTest extends TestCase {
+
+    private static final Viewport FIRST = new Viewport(new Geopoint(48.0, 11.0), 0.1, 0.2);
+    private static final Viewport SECOND = new Viewport(new Geopoint(48.05, 11.05), 0.1, 0.2);
+
+    private static Disposable collect(final ViewportUpdates updates, final List<Viewport> settled) {
+        return updates.settled().subscribe(new Consumer<Viewport>() {
+            @Override
+            public void accept(final Viewport viewport) {
+                settled.add(viewport);
+            }
+        });
+    }
+
+    public static void testSettledAfterDelay() {
+        final TestScheduler scheduler = new TestScheduler();
+        final ViewportUpdates updates = new ViewportUpdates(scheduler);
+        final List<Viewport> settled = new ArrayList<>();
+        final Disposable disposable = collect(updates, settled);
+
+        updates.onViewportChanged(FIRST);
+        scheduler.advanceTimeBy(ViewportUpdates.SETTLE_DELAY_MS / 2, TimeUnit.MILLISECONDS);
+        updates.onViewportChanged(SECOND);
+        scheduler.advanceTimeBy(ViewportUpdates.SETTLE_DELAY_MS - 1, TimeUnit.MILLISECONDS);
+        assertThat(settled).isEmpty();
+
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        assertThat(settled).containsExactly(SECOND);
+        disposable.dispose();
+    }
+
+    public static void testUnchangedViewportIgnored() {
+        final TestScheduler scheduler = new TestScheduler();
+        final ViewportUpdates updates = new ViewportUpdates(scheduler);
+        final List<Viewport> settled = new ArrayList<>();
+        final Disposable disposable = collect(updates, settled);
+
+        updates.onViewportChanged(FIRST);
+        scheduler.advanceTimeBy(ViewportUpdates.SETTLE_DELAY_MS, TimeUnit.MILLISECONDS);
+        updates.onViewportChanged(new Viewport(new Geopoint(48.0, 11.0), 0.1, 0.2));
+        updates.onViewportChanged(new Viewport(new Geopoint(48.0, 11.0), 0, 0));
+        updates.onViewportChanged(null);
+        scheduler.advanceTimeBy(ViewportUpdates.SETTLE_DELAY_MS, TimeUnit.MILLISECONDS);
+        assertThat(settled).containsExactly(FIRST);
+        disposable.dispose();
+    }
+
+    public static void testRefresh() {
+        final TestScheduler scheduler = new TestScheduler();
+        final ViewportUpdates updates = new ViewportUpdates(scheduler);
+        final List<Viewport> settled = new ArrayList<>();
+        final Disposable disposable = collect(updates, settled);
+
+        // nothing to refresh before the first viewport is known
+        updates.refresh();
+        assertThat(settled).isEmpty();
+
+        updates.onViewportChanged(FIRST);
+        updates.refresh();
+        assertThat(settled).containsExactly(FIRST);
+        disposable.dispose();
+    }
+
+    public static void testLateSubscriberGetsCurrentViewport() {
+        final TestScheduler scheduler = new TestScheduler();
+        final ViewportUpdates updates = new ViewportUpdates(scheduler);
+        updates.onViewportChanged(FIRST);
+
+        final List<Viewport> settled = new ArrayList<>();
+        final Disposable disposable = collect(updates, settled);
+        scheduler.advanceTimeBy(ViewportUpdates.SETTLE_DELAY_MS, TimeUnit.MILLISECONDS);
+        assertThat(settled).containsExactly(FIRST);
+        disposable.dispose();
+    }
+}
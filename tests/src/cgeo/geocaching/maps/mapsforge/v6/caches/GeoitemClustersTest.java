@@ -0,0 +1,68 @@
+package cgeo.geocaching.maps.mapsforge.v6.caches;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class GeoitemClustersTest extends TestCase {
+
+    private static List<GeoitemClusters.Cluster<String>> query(final GeoitemClusters<String> clusters, final double minX, final double minY, final double maxX, final double maxY) {
+        final List<GeoitemClusters.Cluster<String>> result = new ArrayList<>();
+        clusters.query(minX, minY, maxX, maxY, result);
+        return result;
+    }
+
+    public static void testNearbyItemsFormOneCluster() {
+        final GeoitemClusters<String> clusters = new GeoitemClusters<>(0.01);
+        clusters.add("a", 0.501, 0.301);
+        clusters.add("b", 0.503, 0.303);
+        clusters.add("c", 0.521, 0.301);
+        assertThat(clusters.size()).isEqualTo(2);
+
+        final List<GeoitemClusters.Cluster<String>> result = query(clusters, 0.5, 0.3, 0.509, 0.309);
+        assertThat(result).hasSize(1);
+        final GeoitemClusters.Cluster<String> cluster = result.get(0);
+        assertThat(cluster.getItems()).containsExactly("a", "b");
+        assertThat(cluster.getX()).isEqualTo(0.502, offset(1e-9));
+        assertThat(cluster.getY()).isEqualTo(0.302, offset(1e-9));
+
+        assertThat(query(clusters, 0.0, 0.0, 1.0, 1.0)).hasSize(2);
+        assertThat(query(clusters, 0.6, 0.6, 0.7, 0.7)).isEmpty();
+    }
+
+    public static void testIncrementalUpdate() {
+        final GeoitemClusters<String> clusters = new GeoitemClusters<>(0.01);
+        clusters.add("a", 0.501, 0.301);
+        clusters.add("b", 0.503, 0.303);
+        clusters.remove("a", 0.501, 0.301);
+
+        final List<GeoitemClusters.Cluster<String>> result = query(clusters, 0.5, 0.3, 0.509, 0.309);
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).getItems()).containsExactly("b");
+        assertThat(result.get(0).getX()).isEqualTo(0.503, offset(1e-9));
+
+        // removing unknown items has no effect
+        clusters.remove("a", 0.501, 0.301);
+        clusters.remove("b", 0.9, 0.9);
+        assertThat(clusters.size()).isEqualTo(1);
+
+        clusters.remove("b", 0.503, 0.303);
+        assertThat(clusters.size()).isZero();
+        assertThat(query(clusters, 0.0, 0.0, 1.0, 1.0)).isEmpty();
+    }
+
+    public static void testQueryManyCells() {
+        final GeoitemClusters<String> clusters = new GeoitemClusters<>(0.0001);
+        for (int i = 0; i < 100; i++) {
+            clusters.add("item" + i, 0.5 + (i + 0.5) * 0.0001, 0.30005);
+        }
+        assertThat(clusters.size()).isEqualTo(100);
+        // few cells looked up one by one, or many cells compared with each cluster
+        assertThat(query(clusters, 0.50001, 0.30001, 0.50049, 0.30009)).hasSize(5);
+        assertThat(query(clusters, 0.0, 0.0, 0.50049, 1.0)).hasSize(5);
+    }
+}
@@ -0,0 +1,92 @@
+package cgeo.geocaching.maps.mapsforge.v6.caches;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class GeoitemGridTest extends TestCase {
+
+    private static List<String> query(final GeoitemGrid<String> grid, final double minX, final double minY, final double maxX, final double maxY) {
+        final List<String> result = new ArrayList<>();
+        grid.query(minX, minY, maxX, maxY, result);
+        return result;
+    }
+
+    private static void fill(final GeoitemGrid<String> grid, final int count) {
+        // many items around a small area, so that queries of a small rectangle use the cells
+        for (int i = 0; i < count; i++) {
+            grid.put("item" + i, 0.5 + (i % 100) * 1e-5, 0.3 + (i / 100) * 1e-5);
+        }
+    }
+
+    public static void testQuerySmallArea() {
+        final GeoitemGrid<String> grid = new GeoitemGrid<>();
+        fill(grid, 1000);
+        grid.put("far", 0.1, 0.1);
+        assertThat(grid.size()).isEqualTo(1001);
+
+        assertThat(query(grid, 0.5, 0.3, 0.5, 0.3)).containsExactly("item0");
+        assertThat(query(grid, 0.5 - 1e-6, 0.3 - 1e-6, 0.5 + 1.5e-5, 0.3 + 0.5e-5)).containsExactly("item0", "item1");
+        assertThat(query(grid, 0.09, 0.09, 0.11, 0.11)).containsExactly("far");
+        assertThat(query(grid, 0.6, 0.6, 0.7, 0.7)).isEmpty();
+    }
+
+    public static void testQueryLargeArea() {
+        final GeoitemGrid<String> grid = new GeoitemGrid<>();
+        fill(grid, 1000);
+        assertThat(query(grid, 0.0, 0.0, 1.0, 1.0)).hasSize(1000);
+        assertThat(query(grid, 0.0, 0.0, 0.5, 1.0)).containsExactly("item0", "item100", "item200", "item300", "item400", "item500", "item600", "item700", "item800", "item900");
+    }
+
+    public static void testOrderOfAddition() {
+        final GeoitemGrid<String> grid = new GeoitemGrid<>();
+        fill(grid, 1000);
+        grid.put("item1", 0.5, 0.3);
+        // moved items are returned after all others, in both query strategies
+        assertThat(query(grid, 0.5 - 1e-6, 0.3 - 1e-6, 0.5 + 1.5e-5, 0.3 + 0.5e-5)).containsExactly("item0", "item1");
+        final List<String> all = query(grid, 0.0, 0.0, 1.0, 1.0);
+        assertThat(all).hasSize(1000);
+        assertThat(all.get(999)).isEqualTo("item1");
+    }
+
+    public static void testRemove() {
+        final GeoitemGrid<String> grid = new GeoitemGrid<>();
+        fill(grid, 1000);
+        assertThat(grid.remove("item0")).isTrue();
+        assertThat(grid.remove("item0")).isFalse();
+        assertThat(grid.size()).isEqualTo(999);
+        assertThat(query(grid, 0.5, 0.3, 0.5, 0.3)).isEmpty();
+
+        grid.clear();
+        assertThat(grid.size()).isZero();
+        assertThat(query(grid, 0.0, 0.0, 1.0, 1.0)).isEmpty();
+    }
+
+    public static void testSameResultAsLinearScan() {
+        final Random random = new Random(42);
+        final GeoitemGrid<String> grid = new GeoitemGrid<>();
+        final double[] xs = new double[5000];
+        final double[] ys = new double[5000];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = 0.5 + random.nextDouble() * 0.01;
+            ys[i] = 0.3 + random.nextDouble() * 0.01;
+            grid.put("item" + i, xs[i], ys[i]);
+        }
+        for (int round = 0; round < 100; round++) {
+            final double minX = 0.5 + random.nextDouble() * 0.01;
+            final double minY = 0.3 + random.nextDouble() * 0.01;
+            final double size = random.nextDouble() * 0.002;
+            final List<String> expected = new ArrayList<>();
+            for (int i = 0; i < xs.length; i++) {
+                if (xs[i] >= minX && xs[i] <= minX + size && ys[i] >= minY && ys[i] <= minY + size) {
+                    expected.add("item" + i);
+                }
+            }
+            assertThat(query(grid, minX, minY, minX + size, minY + size)).containsExactlyElementsOf(expected);
+        }
+    }
+}
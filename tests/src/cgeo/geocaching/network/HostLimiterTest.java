@@ -0,0 +1,90 @@
+package cgeo.geocaching.network;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.schedulers.Schedulers;
+import junit.framework.TestCase;
+
+public class HostLimiterTest extends TestCase {
+
+    public static void testGetHost() {
+        assertThat(HostLimiter.getHost("https://img.geocaching.com/cache/large/abc.jpg")).isEqualTo("img.geocaching.com");
+        assertThat(HostLimiter.getHost("http://WWW.Opencaching.DE:8080/images/uploads/abc.png")).isEqualTo("www.opencaching.de");
+    }
+
+    public static void testGetHostInvalid() {
+        assertThat(HostLimiter.getHost(null)).isNull();
+        assertThat(HostLimiter.getHost("")).isNull();
+        assertThat(HostLimiter.getHost("file:///sdcard/cgeo/abc.jpg")).isNull();
+        assertThat(HostLimiter.getHost("not an url")).isNull();
+    }
+
+    public static void testUnknownHostIsNotLimited() throws InterruptedException {
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            final HostLimiter limiter = new HostLimiter(1, Schedulers.from(executor));
+            final CountDownLatch release = new CountDownLatch(1);
+            final CountDownLatch started = new CountDownLatch(2);
+            for (int i = 0; i < 2; i++) {
+                limiter.execute(null, new BlockingTask(started, release));
+            }
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            release.countDown();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public static void testLimitPerHost() throws InterruptedException {
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            final HostLimiter limiter = new HostLimiter(2, Schedulers.from(executor));
+            final CountDownLatch releaseA = new CountDownLatch(1);
+            final CountDownLatch startedA = new CountDownLatch(2);
+            limiter.execute("a.example.com", new BlockingTask(startedA, releaseA));
+            limiter.execute("a.example.com", new BlockingTask(startedA, releaseA));
+            assertThat(startedA.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // the third task for the same host is queued instead of blocking a thread
+            final CountDownLatch startedQueued = new CountDownLatch(1);
+            final CountDownLatch releaseQueued = new CountDownLatch(0);
+            limiter.execute("a.example.com", new BlockingTask(startedQueued, releaseQueued));
+
+            // other hosts are not kept waiting by the first one
+            final CountDownLatch startedB = new CountDownLatch(1);
+            limiter.execute("b.example.com", new BlockingTask(startedB, releaseQueued));
+            assertThat(startedB.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(startedQueued.await(200, TimeUnit.MILLISECONDS)).isFalse();
+
+            releaseA.countDown();
+            assertThat(startedQueued.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static final class BlockingTask implements Runnable {
+        private final CountDownLatch started;
+        private final CountDownLatch release;
+
+        BlockingTask(final CountDownLatch started, final CountDownLatch release) {
+            this.started = started;
+            this.release = release;
+        }
+
+        @Override
+        public void run() {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (final InterruptedException ignored) {
+                // end the task
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package cgeo.geocaching.network;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cgeo.geocaching.network.HttpCache.Freshness;
+
+import junit.framework.TestCase;
+import okhttp3.HttpUrl;
+
+public class HttpCacheTest extends TestCase {
+
+    public static void testFreshnessForUrl() {
+        assertThat(Freshness.forUrl(HttpUrl.parse("https://www.opencaching.de/okapi/services/apisrv/installation?consumer_key=abc"))).isEqualTo(Freshness.OKAPI_INSTALLATION);
+        assertThat(Freshness.forUrl(HttpUrl.parse("https://opencache.uk/okapi/services/users/by_username?username=abc"))).isEqualTo(Freshness.OKAPI_USER_BY_NAME);
+        assertThat(Freshness.forUrl(HttpUrl.parse("http://gcvote.com/getVotes.php?version=cgeo&waypoints=GC12345"))).isEqualTo(Freshness.GCVOTE_VOTES);
+    }
+
+    public static void testNoFreshnessForOtherUrls() {
+        assertThat(Freshness.forUrl(HttpUrl.parse("https://www.opencaching.de/okapi/services/caches/geocache?cache_code=OC1234"))).isNull();
+        assertThat(Freshness.forUrl(HttpUrl.parse("http://gcvote.com/setVote.php?version=cgeo"))).isNull();
+        assertThat(Freshness.forUrl(HttpUrl.parse("http://www.example.com/getVotes.php"))).isNull();
+    }
+
+    public static void testNoFreshnessForUrlWithCredentials() {
+        assertThat(Freshness.forUrl(HttpUrl.parse("http://gcvote.com/getVotes.php?version=cgeo&userName=abc&password=secret&waypoints=GC12345"))).isNull();
+    }
+}
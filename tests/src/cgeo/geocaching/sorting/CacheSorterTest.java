@@ -0,0 +1,86 @@
+package cgeo.geocaching.sorting;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cgeo.geocaching.location.Geopoint;
+import cgeo.geocaching.models.Geocache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class CacheSorterTest extends TestCase {
+
+    private static List<Geocache> createCaches(final int count) {
+        final Random random = new Random(42);
+        final List<Geocache> caches = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final Geocache cache = new Geocache();
+            cache.setGeocode("GC" + Integer.toString(1000 + random.nextInt(9000), 36).toUpperCase());
+            // some caches without difficulty and name, which cannot be compared
+            cache.setDifficulty(i % 7 == 0 ? 0.0f : 1.0f + random.nextInt(9) / 2.0f);
+            cache.setName(i % 11 == 0 ? "" : "Cache " + random.nextInt(count / 2));
+            if (i % 13 != 0) {
+                cache.setCoords(new Geopoint(48.0 + random.nextDouble(), 11.0 + random.nextDouble()));
+            }
+            caches.add(cache);
+        }
+        return caches;
+    }
+
+    private static void assertSameOrder(final CacheComparator comparator) {
+        for (final boolean inverse : new boolean[] { false, true }) {
+            final List<Geocache> expected = createCaches(200);
+            final List<Geocache> actual = new ArrayList<>(expected);
+            Collections.sort(expected, inverse ? new InverseComparator(comparator) : comparator);
+            CacheSorter.sort(actual, comparator, inverse);
+            assertThat(actual).containsExactlyElementsOf(expected);
+        }
+    }
+
+    public static void testSortByNumericKey() {
+        assertSameOrder(new DifficultyComparator());
+    }
+
+    public static void testSortByCollationKey() {
+        assertSameOrder(new NameComparator());
+    }
+
+    public static void testSortWithoutKey() {
+        assertSameOrder(new GeocodeComparator());
+    }
+
+    public static void testSortByDistance() {
+        final Geopoint coords = new Geopoint(48.5, 11.5);
+        for (final boolean inverse : new boolean[] { false, true }) {
+            final List<Geocache> expected = createCaches(200);
+            final List<Geocache> actual = new ArrayList<>(expected);
+            final DistanceComparator comparator = new DistanceComparator(coords, expected);
+            Collections.sort(expected, inverse ? new InverseComparator(comparator) : comparator);
+            assertThat(CacheSorter.sortByDistance(actual, coords, inverse, false)).isTrue();
+            assertThat(actual).containsExactlyElementsOf(expected);
+            assertThat(CacheSorter.sortByDistance(actual, coords, inverse, true)).isFalse();
+        }
+    }
+
+    public static void testSortByDistancePresorted() {
+        final List<Geocache> caches = createCaches(200);
+        CacheSorter.sortByDistance(caches, new Geopoint(48.5, 11.5), false, false);
+
+        // a small move only changes the order of some caches
+        final Geopoint moved = new Geopoint(48.501, 11.5);
+        final List<Geocache> expected = new ArrayList<>(caches);
+        Collections.sort(expected, new DistanceComparator(moved, expected));
+        CacheSorter.sortByDistance(caches, moved, false, true);
+        assertThat(caches).containsExactlyElementsOf(expected);
+
+        // a large move falls back to the full sort
+        final Geopoint far = new Geopoint(49.0, 12.0);
+        Collections.sort(expected, new DistanceComparator(far, expected));
+        CacheSorter.sortByDistance(caches, far, false, true);
+        assertThat(caches).containsExactlyElementsOf(expected);
+    }
+}
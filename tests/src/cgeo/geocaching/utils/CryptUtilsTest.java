@@ -2,6 +2,12 @@ package cgeo.geocaching.utils;
 
 import junit.framework.TestCase;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.CharEncoding;
+
+import java.io.File;
+import java.io.IOException;
+
 import cgeo.geocaching.connector.gc.GCConstants;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -31,4 +37,16 @@ public class CryptUtilsTest extends TestCase {
         // expected value taken from debugger. should assure every developer uses UTF-8
         assertThat(CryptUtils.md5("äöü")).isEqualTo("a7f4e3ec08f09be2ef7ecb4eea5f8981");
     }
+
+    public static void testSha1() throws IOException {
+        final File file = File.createTempFile("cgeo", "test");
+        try {
+            assertThat(CryptUtils.sha1(file)).isEqualTo("da39a3ee5e6b4b0d3255bfef95601890afd80709");
+            FileUtils.writeStringToFile(file, "abc", CharEncoding.UTF_8);
+            assertThat(CryptUtils.sha1(file)).isEqualTo("a9993e364706816aba3e25717850c26c9cd0d89d");
+        } finally {
+            FileUtils.deleteQuietly(file);
+        }
+        assertThat(CryptUtils.sha1(file)).isEmpty();
+    }
 }
@@ -30,4 +30,11 @@ public class LazyInitializedListTest extends TestCase {
         assertThat(iterations).isEqualTo(1);
     }
 
+    public static void testIsInitialized() {
+        final LazyInitializedList<String> list = new MockedLazyInitializedList();
+        assertThat(list.isInitialized()).isFalse();
+        assertThat(list).isEmpty();
+        assertThat(list.isInitialized()).isTrue();
+    }
+
 }